@@ -0,0 +1,455 @@
+/*
+ * ConstraintTester Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package com.cohort.array;
+
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.StringHolder;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This is used by PrimitiveArray.applyConstraint to test a constraint (e.g., "&gt;= 32.5") on the
+ * most common types of columns. Unlike the general code in applyConstraint, which calls
+ * testValueOpValue (and so compares op Strings) for each row, the op and value2 are parsed once (in
+ * compile) and each (type, op) combination has its own tight loop over the backing array. The keep
+ * BitSet is processed one 64-bit word (64 rows) at a time, and integer missing values (see maxIsMV)
+ * are converted to a single sentinel value once per word.
+ *
+ * <p>The results are exactly the same as the general code in applyConstraint. compile returns null
+ * for the cases that aren't specialized here (e.g., regex, ULong, UInt, char, or an integer column
+ * with a non-integer value2), which are then tested the general way.
+ *
+ * <p>A ConstraintTester is not thread-safe.
+ */
+public abstract class ConstraintTester {
+
+  // the ops (see EDDTable.OPERATORS)
+  static final int EQ = 0, NE = 1, LE = 2, GE = 3, LT = 4, GT = 5;
+
+  protected final int op;
+  protected final int size; // the size of the PrimitiveArray when compiled
+
+  private ConstraintTester(int op, int size) {
+    this.op = op;
+    this.size = size;
+  }
+
+  /**
+   * This makes a ConstraintTester for 'pa[row] op value2', with the same semantics as
+   * pa.applyConstraint(morePrecise, keep, op, value2).
+   *
+   * @param pa the column to be tested. The ConstraintTester uses pa's backing array, so don't
+   *     change pa's size while the ConstraintTester is in use.
+   * @param morePrecise e.g., for tests of time values which are very precise.
+   * @param op one of EDDTable.OPERATORS
+   * @param value2 the value to compare to
+   * @return a ConstraintTester, or null if this combination of pa's type and op isn't specialized
+   *     (or op is invalid), so the caller needs to use the general approach.
+   */
+  public static ConstraintTester compile(
+      PrimitiveArray pa, boolean morePrecise, String op, String value2) {
+    int opi = opIndex(op);
+    if (opi < 0 || value2 == null) return null;
+    int size = pa.size();
+    boolean maxIsMV = pa.getMaxIsMV();
+    switch (pa.elementType()) {
+      case STRING:
+        return new StringTester(opi, size, ((StringArray) pa).array, op, value2);
+      case DOUBLE:
+        return new DoubleTester(
+            opi, size, ((DoubleArray) pa).array, String2.parseDouble(value2), morePrecise ? 12 : 9);
+      case FLOAT:
+        return new FloatTester(opi, size, ((FloatArray) pa).array, String2.parseFloat(value2));
+      case LONG:
+        {
+          double value2d = String2.parseDouble(value2);
+          long value2l = String2.parseLong(value2); // Long.MAX_VALUE if trouble
+          if (value2d != value2l || value2l == Long.MAX_VALUE) return null;
+          long[] ar = ((LongArray) pa).array;
+          return new LongTester(opi, size, value2l) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              // testValueOpValue(long) treats Long.MAX_VALUE as NaN, whatever maxIsMV is
+              System.arraycopy(ar, base, values, 0, n);
+            }
+          };
+        }
+      case INT:
+      case SHORT:
+      case USHORT:
+      case BYTE:
+      case UBYTE:
+        {
+          double value2d = String2.parseDouble(value2);
+          int value2i = String2.parseInt(value2);
+          if (value2d != value2i || value2d == Integer.MAX_VALUE) return null;
+          return intTester(pa, opi, size, maxIsMV, value2i);
+        }
+      default: // CHAR, ULONG, UINT
+        return null;
+    }
+  }
+
+  /**
+   * This makes a LongTester for the int-like types, with values and missing values like
+   * pa.getInt(row).
+   */
+  private static ConstraintTester intTester(
+      PrimitiveArray pa, int opi, int size, boolean maxIsMV, int value2i) {
+    switch (pa.elementType()) {
+      case INT:
+        {
+          int[] ar = ((IntArray) pa).array;
+          return new LongTester(opi, size, value2i) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              // testValueOpValue(int) treats Integer.MAX_VALUE as NaN, whatever maxIsMV is
+              for (int i = 0; i < n; i++) {
+                int v = ar[base + i];
+                values[i] = v == Integer.MAX_VALUE ? Long.MAX_VALUE : v;
+              }
+            }
+          };
+        }
+      case SHORT:
+        {
+          short[] ar = ((ShortArray) pa).array;
+          long mv = maxIsMV ? Short.MAX_VALUE : Long.MIN_VALUE; // MIN_VALUE never matches
+          return new LongTester(opi, size, value2i) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              for (int i = 0; i < n; i++) {
+                long v = ar[base + i];
+                values[i] = v == mv ? Long.MAX_VALUE : v;
+              }
+            }
+          };
+        }
+      case USHORT:
+        {
+          short[] ar = ((UShortArray) pa).array;
+          long mv = maxIsMV ? UShortArray.MAX_VALUE : Long.MIN_VALUE;
+          return new LongTester(opi, size, value2i) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              for (int i = 0; i < n; i++) {
+                long v = ar[base + i] & 0xFFFF;
+                values[i] = v == mv ? Long.MAX_VALUE : v;
+              }
+            }
+          };
+        }
+      case BYTE:
+        {
+          byte[] ar = ((ByteArray) pa).array;
+          long mv = maxIsMV ? Byte.MAX_VALUE : Long.MIN_VALUE;
+          return new LongTester(opi, size, value2i) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              for (int i = 0; i < n; i++) {
+                long v = ar[base + i];
+                values[i] = v == mv ? Long.MAX_VALUE : v;
+              }
+            }
+          };
+        }
+      default: // UBYTE
+        {
+          byte[] ar = ((UByteArray) pa).array;
+          long mv = maxIsMV ? UByteArray.MAX_VALUE : Long.MIN_VALUE;
+          return new LongTester(opi, size, value2i) {
+            @Override
+            void gather(int base, int n, long[] values) {
+              for (int i = 0; i < n; i++) {
+                long v = ar[base + i] & 0xFF;
+                values[i] = v == mv ? Long.MAX_VALUE : v;
+              }
+            }
+          };
+        }
+    }
+  }
+
+  /**
+   * This returns the index (EQ, NE, ...) of op.
+   *
+   * @param op one of EDDTable.OPERATORS
+   * @return the index, or -1 if op is REGEX_OP or invalid.
+   */
+  static int opIndex(String op) {
+    switch (op) {
+      case "=":
+        return EQ;
+      case "!=":
+        return NE;
+      case "<=":
+        return LE;
+      case ">=":
+        return GE;
+      case "<":
+        return LT;
+      case ">":
+        return GT;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * This tests the keep=true rows to see if 'pa[row] op value2' is true. If the test is false, the
+   * keep element is set to false.
+   *
+   * @param keep The test is only applied to keep=true elements. keep must not have any true
+   *     elements at or beyond pa's size.
+   * @return nStillGood
+   * @throws RuntimeException if trouble (e.g., invalid keep element)
+   */
+  public int apply(BitSet keep) {
+    if (keep.length() > size)
+      throw new IllegalArgumentException(
+          String2.ERROR
+              + " in ConstraintTester.apply: keep.length ("
+              + keep.length()
+              + ") > size ("
+              + size
+              + ").");
+    long words[] = keep.toLongArray();
+    int nStillGood = 0;
+    for (int w = 0; w < words.length; w++) {
+      long word = words[w];
+      if (word == 0) continue;
+      int base = w << 6;
+      word = test(base, Math.min(64, size - base), word) & word;
+      words[w] = word;
+      nStillGood += Long.bitCount(word);
+    }
+    keep.clear();
+    keep.or(BitSet.valueOf(words));
+    return nStillGood;
+  }
+
+  /**
+   * This tests one word's worth of rows.
+   *
+   * @param base the first row (a multiple of 64)
+   * @param n the number of rows (1 - 64) in this word which are less than size
+   * @param word the keep bits for the rows base ... base+63
+   * @return a word with bit i set if row base+i passes the test. Bits which aren't set in word may
+   *     be set or not.
+   */
+  abstract long test(int base, int n, long word);
+
+  /**
+   * This is for integer types. The values are compared as longs, with all missing values converted
+   * to Long.MAX_VALUE, as in testValueOpValue(long).
+   */
+  private abstract static class LongTester extends ConstraintTester {
+    private final long value2; // never Long.MAX_VALUE
+    private final long[] values = new long[64];
+
+    LongTester(int op, int size, long value2) {
+      super(op, size);
+      this.value2 = value2;
+    }
+
+    /**
+     * This puts the n values starting at row base into values, with missing values as
+     * Long.MAX_VALUE.
+     */
+    abstract void gather(int base, int n, long[] values);
+
+    @Override
+    long test(int base, int n, long word) {
+      long v[] = values;
+      long v2 = value2;
+      gather(base, n, v);
+      long result = 0;
+      switch (op) {
+        case EQ:
+          for (int i = 0; i < n; i++) if (v[i] == v2) result |= 1L << i;
+          break;
+        case NE:
+          for (int i = 0; i < n; i++) if (v[i] != v2) result |= 1L << i;
+          break;
+        case LE: // a missing value is > v2
+          for (int i = 0; i < n; i++) if (v[i] <= v2) result |= 1L << i;
+          break;
+        case LT:
+          for (int i = 0; i < n; i++) if (v[i] < v2) result |= 1L << i;
+          break;
+        case GE:
+          for (int i = 0; i < n; i++) if (v[i] >= v2 && v[i] != Long.MAX_VALUE) result |= 1L << i;
+          break;
+        default: // GT
+          for (int i = 0; i < n; i++) if (v[i] > v2 && v[i] != Long.MAX_VALUE) result |= 1L << i;
+          break;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * This is for DoubleArrays, with the same semantics as testValueOpValue(double) (nDigits=9) or
+   * testValueOpValueExtra (nDigits=12).
+   */
+  private static final class DoubleTester extends ConstraintTester {
+    private final double[] ar;
+    private final double value2;
+    private final int nDigits;
+
+    DoubleTester(int op, int size, double[] ar, double value2, int nDigits) {
+      super(op, size);
+      this.ar = ar;
+      this.value2 = value2;
+      this.nDigits = nDigits;
+    }
+
+    @Override
+    long test(int base, int n, long word) {
+      double a[] = ar;
+      double v2 = value2;
+      int nd = nDigits;
+      long result = 0;
+      if (Double.isNaN(v2)) {
+        // NaN = NaN is true, nonNaN != NaN is true, all other tests are false
+        if (op == EQ) {
+          for (int i = 0; i < n; i++) if (Double.isNaN(a[base + i])) result |= 1L << i;
+        } else if (op == NE) {
+          for (int i = 0; i < n; i++) if (!Double.isNaN(a[base + i])) result |= 1L << i;
+        }
+        return result;
+      }
+      switch (op) {
+        case EQ:
+          for (int i = 0; i < n; i++)
+            if (Math2.almostEqual(nd, a[base + i], v2)) result |= 1L << i;
+          break;
+        case NE:
+          for (int i = 0; i < n; i++) if (a[base + i] != v2) result |= 1L << i;
+          break;
+        case LE:
+          for (int i = 0; i < n; i++) {
+            double v = a[base + i];
+            if (v <= v2 || Math2.almostEqual(nd, v, v2)) result |= 1L << i;
+          }
+          break;
+        case GE:
+          for (int i = 0; i < n; i++) {
+            double v = a[base + i];
+            if (v >= v2 || Math2.almostEqual(nd, v, v2)) result |= 1L << i;
+          }
+          break;
+        case LT:
+          for (int i = 0; i < n; i++) if (a[base + i] < v2) result |= 1L << i;
+          break;
+        default: // GT
+          for (int i = 0; i < n; i++) if (a[base + i] > v2) result |= 1L << i;
+          break;
+      }
+      return result;
+    }
+  }
+
+  /** This is for FloatArrays, with the same semantics as testValueOpValue(float). */
+  private static final class FloatTester extends ConstraintTester {
+    private final float[] ar;
+    private final float value2;
+
+    FloatTester(int op, int size, float[] ar, float value2) {
+      super(op, size);
+      this.ar = ar;
+      this.value2 = value2;
+    }
+
+    @Override
+    long test(int base, int n, long word) {
+      float a[] = ar;
+      float v2 = value2;
+      long result = 0;
+      if (Float.isNaN(v2)) {
+        // NaN = NaN is true, nonNaN != NaN is true, all other tests are false
+        if (op == EQ) {
+          for (int i = 0; i < n; i++) if (Float.isNaN(a[base + i])) result |= 1L << i;
+        } else if (op == NE) {
+          for (int i = 0; i < n; i++) if (!Float.isNaN(a[base + i])) result |= 1L << i;
+        }
+        return result;
+      }
+      switch (op) {
+        case EQ:
+          for (int i = 0; i < n; i++) if (Math2.almostEqual(6, a[base + i], v2)) result |= 1L << i;
+          break;
+        case NE:
+          for (int i = 0; i < n; i++) if (a[base + i] != v2) result |= 1L << i;
+          break;
+        case LE:
+          for (int i = 0; i < n; i++) {
+            float v = a[base + i];
+            if (v <= v2 || Math2.almostEqual(6, v, v2)) result |= 1L << i;
+          }
+          break;
+        case GE:
+          for (int i = 0; i < n; i++) {
+            float v = a[base + i];
+            if (v >= v2 || Math2.almostEqual(6, v, v2)) result |= 1L << i;
+          }
+          break;
+        case LT:
+          for (int i = 0; i < n; i++) if (a[base + i] < v2) result |= 1L << i;
+          break;
+        default: // GT
+          for (int i = 0; i < n; i++) if (a[base + i] > v2) result |= 1L << i;
+          break;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * This is for StringArrays, with the same semantics as testValueOpValue(String). = and != compare
+   * the stored chars directly (without making a String for each row). The other ops compare
+   * lowercase Strings, but value2 is only converted to lowercase once.
+   */
+  private static final class StringTester extends ConstraintTester {
+    private final StringHolder[] ar;
+    private final String opString;
+    private final String value2;
+    private final char[] value2Chars;
+    private final String value2Lower;
+
+    StringTester(int op, int size, StringHolder[] ar, String opString, String value2) {
+      super(op, size);
+      this.ar = ar;
+      this.opString = opString;
+      this.value2 = value2;
+      value2Chars = value2.toCharArray();
+      value2Lower = value2.toLowerCase();
+    }
+
+    @Override
+    long test(int base, int n, long word) {
+      // Strings are slower to test, so just test the keep=true rows
+      long result = 0;
+      for (long w = word; w != 0; w &= w - 1) {
+        int i = Long.numberOfTrailingZeros(w);
+        StringHolder sh = ar[base + i];
+        boolean pass;
+        if (op == EQ || op == NE) {
+          char car[] = sh.charArray();
+          pass =
+              car == null
+                  ? PrimitiveArray.testValueOpValue(sh.string(), opString, value2)
+                  : Arrays.equals(car, value2Chars) == (op == EQ);
+        } else {
+          int t = sh.string().toLowerCase().compareTo(value2Lower);
+          pass = op == LE ? t <= 0 : op == GE ? t >= 0 : op == LT ? t < 0 : t > 0;
+        }
+        if (pass) result |= 1L << i;
+      }
+      return result;
+    }
+  }
+}
@@ -1087,7 +1087,7 @@ public class DoubleArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeDouble(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 8;
   }
 
@@ -1116,7 +1116,8 @@ public class DoubleArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readDouble();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1131,7 +1132,8 @@ public class DoubleArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = dis.readDouble();
+    readBulk(dis, array, size, nValues);
+    size += nValues;
   }
 
   /**
@@ -1112,7 +1112,7 @@ public class FloatArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeFloat(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 4;
   }
 
@@ -1141,7 +1141,8 @@ public class FloatArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readFloat();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1156,7 +1157,8 @@ public class FloatArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = dis.readFloat();
+    readBulk(dis, array, size, nValues);
+    size += nValues;
   }
 
   /**
@@ -1219,7 +1219,7 @@ public class IntArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeInt(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 4;
   }
 
@@ -1248,7 +1248,8 @@ public class IntArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readInt();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1303,7 +1304,8 @@ public class IntArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = dis.readInt();
+    readBulk(dis, array, size, nValues);
+    size += nValues;
   }
 
   /**
@@ -11,10 +11,15 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
@@ -1778,6 +1783,299 @@ public abstract class PrimitiveArray {
    */
   public abstract void readDis(DataInputStream dis, int n) throws Exception;
 
+  /** The number of bytes in each thread's buffer for the bulk writeDos and readDis methods. */
+  protected static final int BULK_BUFFER_NBYTES = 64 * 1024;
+
+  /**
+   * Each thread's reusable big-endian buffer for the bulk writeDos and readDis methods (so writing
+   * a big array is a few dos.write(byte[]) calls, not 1 call per element).
+   */
+  private static final ThreadLocal<ByteBuffer> bulkBuffer =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(BULK_BUFFER_NBYTES));
+
+  /** This returns this thread's bulk buffer, cleared and big-endian. */
+  protected static ByteBuffer bulkBuffer() {
+    ByteBuffer bb = bulkBuffer.get();
+    bb.clear();
+    return bb;
+  }
+
+  /**
+   * This writes n shorts (big-endian, like dos.writeShort) to a DataOutputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulk(DataOutputStream dos, short[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    ShortBuffer view = bb.asShortBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      view.put(ar, start + po, tn);
+      dos.write(bb.array(), 0, tn * 2);
+    }
+  }
+
+  /**
+   * This writes n shorts as ints (big-endian, like dos.writeInt(ar[i]), as needed for DODS) to a
+   * DataOutputStream via this thread's bulk buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulkAsInts(DataOutputStream dos, short[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    IntBuffer view = bb.asIntBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      for (int i = 0; i < tn; i++) view.put(ar[start + po + i]);
+      dos.write(bb.array(), 0, tn * 4);
+    }
+  }
+
+  /**
+   * This writes n ints (big-endian, like dos.writeInt) to a DataOutputStream via this thread's bulk
+   * buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulk(DataOutputStream dos, int[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    IntBuffer view = bb.asIntBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      view.put(ar, start + po, tn);
+      dos.write(bb.array(), 0, tn * 4);
+    }
+  }
+
+  /**
+   * This writes n longs (big-endian, like dos.writeLong) to a DataOutputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulk(DataOutputStream dos, long[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    LongBuffer view = bb.asLongBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      view.put(ar, start + po, tn);
+      dos.write(bb.array(), 0, tn * 8);
+    }
+  }
+
+  /**
+   * This writes n floats (big-endian, like dos.writeFloat) to a DataOutputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulk(DataOutputStream dos, float[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    FloatBuffer view = bb.asFloatBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      view.put(ar, start + po, tn);
+      dos.write(bb.array(), 0, tn * 4);
+    }
+  }
+
+  /**
+   * This writes n doubles (big-endian, like dos.writeDouble) to a DataOutputStream via this
+   * thread's bulk buffer.
+   *
+   * @param dos the DataOutputStream
+   * @param ar the source array
+   * @param start the index of the first element to be written
+   * @param n the number of elements to be written
+   * @throws IOException if trouble
+   */
+  protected static void writeBulk(DataOutputStream dos, double[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    DoubleBuffer view = bb.asDoubleBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      view.clear();
+      view.put(ar, start + po, tn);
+      dos.write(bb.array(), 0, tn * 8);
+    }
+  }
+
+  /**
+   * This reads n shorts (big-endian, like dis.readShort) from a DataInputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulk(DataInputStream dis, short[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    ShortBuffer view = bb.asShortBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 2);
+      view.clear();
+      view.get(ar, start + po, tn);
+    }
+  }
+
+  /**
+   * This reads n ints and stores them as shorts (like (short)dis.readInt(), as needed for DODS)
+   * via this thread's bulk buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulkFromInts(DataInputStream dis, short[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    IntBuffer view = bb.asIntBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 4);
+      view.clear();
+      for (int i = 0; i < tn; i++) ar[start + po + i] = (short) view.get();
+    }
+  }
+
+  /**
+   * This reads n ints (big-endian, like dis.readInt) from a DataInputStream via this thread's bulk
+   * buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulk(DataInputStream dis, int[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    IntBuffer view = bb.asIntBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 4);
+      view.clear();
+      view.get(ar, start + po, tn);
+    }
+  }
+
+  /**
+   * This reads n longs (big-endian, like dis.readLong) from a DataInputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulk(DataInputStream dis, long[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    LongBuffer view = bb.asLongBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 8);
+      view.clear();
+      view.get(ar, start + po, tn);
+    }
+  }
+
+  /**
+   * This reads n floats (big-endian, like dis.readFloat) from a DataInputStream via this thread's
+   * bulk buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulk(DataInputStream dis, float[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    FloatBuffer view = bb.asFloatBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 4);
+      view.clear();
+      view.get(ar, start + po, tn);
+    }
+  }
+
+  /**
+   * This reads n doubles (big-endian, like dis.readDouble) from a DataInputStream via this
+   * thread's bulk buffer.
+   *
+   * @param dis the DataInputStream
+   * @param ar the destination array (with room for n elements at start)
+   * @param start the index where the first element will be put
+   * @param n the number of elements to be read
+   * @throws IOException if trouble
+   */
+  protected static void readBulk(DataInputStream dis, double[] ar, int start, int n)
+      throws IOException {
+    ByteBuffer bb = bulkBuffer();
+    DoubleBuffer view = bb.asDoubleBuffer();
+    int chunk = view.capacity();
+    for (int po = 0; po < n; po += chunk) {
+      int tn = Math.min(chunk, n - po);
+      dis.readFully(bb.array(), 0, tn * 8);
+      view.clear();
+      view.get(ar, start + po, tn);
+    }
+  }
+
   /**
    * This writes all the data to a DataOutputStream in the DODS Array format (see www.opendap.org
    * DAP 2.0 standard, section 7.3.2.1). See also the XDR standard
@@ -2714,30 +3012,12 @@ public abstract class PrimitiveArray {
    *     rank[1] is the row number of the second item in the sorted list, ...).
    */
   public static int[] rank(List<PrimitiveArray> table, int keys[], boolean[] ascending) {
-    return lowRank(new RowComparator(table, keys, ascending), table);
+    return new RowRanker(table, keys, ascending, false).rank(table.get(0).size());
   }
 
   /** This is like rank, but StringArrays are tested case insensitively. */
   public static int[] rankIgnoreCase(List<PrimitiveArray> table, int keys[], boolean[] ascending) {
-    return lowRank(new RowComparatorIgnoreCase(table, keys, ascending), table);
-  }
-
-  private static int[] lowRank(RowComparator comparator, List<PrimitiveArray> table) {
-
-    // create the rowArray with pointer to specific rows
-    int n = table.get(0).size();
-    Integer[] rowArray = new Integer[n];
-    for (int i = 0; i < n; i++) rowArray[i] = i;
-
-    // sort the rows
-    Arrays.sort(rowArray, comparator); // this is "stable"
-    // String2.log("rank results: " + String2.toCSSVString(integerArray));
-
-    // create the int[]
-    int[] newArray = new int[n];
-    for (int i = 0; i < n; i++) newArray[i] = rowArray[i];
-
-    return newArray;
+    return new RowRanker(table, keys, ascending, true).rank(table.get(0).size());
   }
 
   /**
@@ -2861,17 +3141,12 @@ public abstract class PrimitiveArray {
     int nRows = table.get(0).size();
     if (nRows <= 1) return 0;
     int nColumns = table.size();
+    // rows row-1 and row are never overwritten before they are compared
+    RowRanker rowRanker = RowRanker.forAllColumns(table);
     int nUnique = 1; // row 0 is unique
     for (int row = 1; row < nRows; row++) { // start at 1; compare to previous row
       // does it equal row above?
-      boolean equal = true;
-      for (int col = 0; col < nColumns; col++) {
-        if (table.get(col).compare(row - 1, row) != 0) {
-          equal = false;
-          break;
-        }
-      }
-      if (!equal) {
+      if (rowRanker.compare(row - 1, row) != 0) {
         // no? copy row 'row' to row 'nUnique'
         if (row != nUnique)
           for (int col = 0; col < nColumns; col++) table.get(col).copy(row, nUnique);
@@ -3803,6 +4078,9 @@ public abstract class PrimitiveArray {
    * Tests of "nonNaN != NaN" will evaluate to true. <br>
    * All other tests where value1 is NaN or value2 is NaN will evaluate to false.
    *
+   * <p>The common cases (e.g., numeric and String columns) are done by a ConstraintTester, which
+   * has a specialized loop for each type and op.
+   *
    * @param morePrecise e.g., for tests of time values which are very precise.
    * @param keep The test is only applied to keep=true elements. If the test is false, the keep
    *     element is set to false.
@@ -3825,6 +4103,12 @@ public abstract class PrimitiveArray {
       return nStillGood;
     }
 
+    // common cases: a tight loop for this type and op
+    if (keep.length() <= size()) {
+      ConstraintTester tester = ConstraintTester.compile(this, morePrecise, op, value2);
+      if (tester != null) return tester.apply(keep);
+    }
+
     // string
     if (elementType() == PAType.STRING || elementType() == PAType.CHAR) {
       // String2.log("applyConstraint(String)");
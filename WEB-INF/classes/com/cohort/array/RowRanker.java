@@ -0,0 +1,318 @@
+/*
+ * RowRanker Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package com.cohort.array;
+
+import com.cohort.util.String2;
+import com.cohort.util.StringHolder;
+import com.cohort.util.Test;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This is used by PrimitiveArray.rank and rankIgnoreCase to rank the rows of a table of data
+ * stored as a List of PrimitiveArrays. Unlike sorting an Integer[] with a RowComparator, this
+ * sorts an int[] of row numbers with a merge sort, and each key column gets a comparator which is
+ * specialized for its data type (double, long, int, String), so there is no boxing and no
+ * per-comparison dispatch through PrimitiveArray.compare.
+ *
+ * <p>The ordering is exactly the same as PrimitiveArray.compare (or compareIgnoreCase), e.g., NaN
+ * and the cohort missing value sort highest. The sort is stable: rows with equal keys stay in their
+ * original order. Big tables are sorted in parallel (in the common ForkJoinPool).
+ */
+public class RowRanker {
+
+  /** Tables with at least this many rows are sorted in parallel. */
+  public static final int PARALLEL_MIN_ROWS = 1 << 17;
+
+  /** Segments with fewer than this many rows are sorted with an insertion sort. */
+  private static final int INSERTION_SORT_MAX = 32;
+
+  private final Key[] keys;
+  private final boolean[] ascending;
+
+  /**
+   * A constructor.
+   *
+   * @param table a List of PrimitiveArrays
+   * @param keyColumns an array of the key column numbers (each is 0..nColumns-1, the first key is
+   *     the most important) which are used to determine the sort order
+   * @param ascending an array of booleans corresponding to the keys indicating if the arrays are to
+   *     be sorted by a given key in ascending or descending order.
+   * @param ignoreCase if true, StringArrays and CharArrays are compared case insensitively (as
+   *     with PrimitiveArray.compareIgnoreCase).
+   * @throws RuntimeException if trouble
+   */
+  public RowRanker(
+      List<PrimitiveArray> table, int keyColumns[], boolean[] ascending, boolean ignoreCase) {
+    String errorInMethod = String2.ERROR + " in RowRanker constructor:\n";
+    Test.ensureNotEqual(keyColumns.length, 0, errorInMethod + "keys.length must not be 0.");
+    Test.ensureEqual(
+        keyColumns.length,
+        ascending.length,
+        errorInMethod + "keys.length must equal ascending.length.");
+    for (int k = 0; k < keyColumns.length; k++)
+      Test.ensureBetween(
+          keyColumns[k],
+          0,
+          table.size() - 1,
+          errorInMethod + "keys[" + k + "] points to a column that isn't in the table.");
+    keys = new Key[keyColumns.length];
+    for (int k = 0; k < keyColumns.length; k++)
+      keys[k] = makeKey(table.get(keyColumns[k]), ignoreCase);
+    this.ascending = ascending.clone();
+  }
+
+  /**
+   * This makes a RowRanker which compares all of the columns (in order, all ascending), e.g., for
+   * PrimitiveArray.removeDuplicates.
+   *
+   * @param table a List of PrimitiveArrays
+   * @return a RowRanker
+   */
+  public static RowRanker forAllColumns(List<PrimitiveArray> table) {
+    int nColumns = table.size();
+    int keyColumns[] = new int[nColumns];
+    boolean ascending[] = new boolean[nColumns];
+    for (int col = 0; col < nColumns; col++) {
+      keyColumns[col] = col;
+      ascending[col] = true;
+    }
+    return new RowRanker(table, keyColumns, ascending, false);
+  }
+
+  /**
+   * This compares two rows, like RowComparator.compare.
+   *
+   * @param row1 a row number (0 ... size-1)
+   * @param row2 a row number (0 ... size-1)
+   * @return a negative integer, zero, or a positive integer if row1 is less than, equal to, or
+   *     greater than row2.
+   */
+  public int compare(int row1, int row2) {
+    for (int k = 0; k < keys.length; k++) {
+      int result = keys[k].compare(row1, row2);
+      if (result != 0) return ascending[k] ? result : -result;
+    }
+    return 0;
+  }
+
+  /**
+   * This ranks the rows.
+   *
+   * @param nRows the number of rows in the table
+   * @return an int[] with values (0 ... nRows-1) which points to the row number for a row with a
+   *     specific rank (e.g., rank[0] is the row number of the first item in the sorted list,
+   *     rank[1] is the row number of the second item in the sorted list, ...).
+   */
+  public int[] rank(int nRows) {
+    int rows[] = new int[nRows];
+    for (int i = 0; i < nRows; i++) rows[i] = i;
+    if (nRows < 2) return rows;
+    int temp[] = new int[nRows];
+    if (nRows >= PARALLEL_MIN_ROWS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(new ParallelSort(rows, temp, 0, nRows));
+    } else {
+      sort(rows, temp, 0, nRows);
+    }
+    return rows;
+  }
+
+  /**
+   * This stably sorts rows[from..to) (using temp[from..to) as scratch space).
+   *
+   * @param rows the row numbers
+   * @param temp scratch space, the same size as rows
+   * @param from the first index (inclusive)
+   * @param to the last index (exclusive)
+   */
+  private void sort(int[] rows, int[] temp, int from, int to) {
+    if (to - from <= INSERTION_SORT_MAX) {
+      insertionSort(rows, from, to);
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    sort(rows, temp, from, mid);
+    sort(rows, temp, mid, to);
+    merge(rows, temp, from, mid, to);
+  }
+
+  /** This stably sorts a small segment of rows. */
+  private void insertionSort(int[] rows, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int row = rows[i];
+      int j = i - 1;
+      while (j >= from && compare(rows[j], row) > 0) {
+        rows[j + 1] = rows[j];
+        j--;
+      }
+      rows[j + 1] = row;
+    }
+  }
+
+  /** This merges the sorted segments rows[from..mid) and rows[mid..to). */
+  private void merge(int[] rows, int[] temp, int from, int mid, int to) {
+    // already in order?
+    if (compare(rows[mid - 1], rows[mid]) <= 0) return;
+    System.arraycopy(rows, from, temp, from, mid - from);
+    int i = from, j = mid, k = from;
+    while (i < mid && j < to) {
+      // take from the right only if strictly less, so the sort is stable
+      rows[k++] = compare(rows[j], temp[i]) < 0 ? rows[j++] : temp[i++];
+    }
+    while (i < mid) rows[k++] = temp[i++];
+  }
+
+  /** This sorts a segment of rows, sorting the two halves in parallel. */
+  private class ParallelSort extends RecursiveAction {
+    private final int[] rows, temp;
+    private final int from, to;
+
+    ParallelSort(int[] rows, int[] temp, int from, int to) {
+      this.rows = rows;
+      this.temp = temp;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from < PARALLEL_MIN_ROWS / 4) {
+        sort(rows, temp, from, to);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new ParallelSort(rows, temp, from, mid), new ParallelSort(rows, temp, mid, to));
+      merge(rows, temp, from, mid, to);
+    }
+  }
+
+  /**
+   * This makes the Key for one column. The values are gathered into a primitive array with the
+   * same ordering as pa.compare(), or (when pa's backing array has that ordering) pa's backing
+   * array is used directly.
+   *
+   * @param pa a column
+   * @param ignoreCase if true, String and char columns are compared case insensitively
+   * @return the Key
+   */
+  private static Key makeKey(PrimitiveArray pa, boolean ignoreCase) {
+    int n = pa.size();
+    switch (pa.elementType()) {
+      case DOUBLE:
+        return new DoubleKey(((DoubleArray) pa).array);
+      case FLOAT:
+        {
+          // Float.compare on floats == Double.compare on the widened doubles
+          double values[] = new double[n];
+          for (int i = 0; i < n; i++) values[i] = pa.getFloat(i);
+          return new DoubleKey(values);
+        }
+      case LONG:
+        return new LongKey(((LongArray) pa).array);
+      case INT:
+        // maxIsMV's MAX_VALUE is already the biggest value, so raw ints sort like getLong()
+        return new IntKey(((IntArray) pa).array);
+      case UINT:
+        {
+          long values[] = new long[n];
+          for (int i = 0; i < n; i++) values[i] = pa.getLong(i);
+          return new LongKey(values);
+        }
+      case SHORT:
+      case USHORT:
+      case BYTE:
+      case UBYTE:
+        {
+          int values[] = new int[n];
+          for (int i = 0; i < n; i++) values[i] = pa.getInt(i);
+          return new IntKey(values);
+        }
+      case STRING:
+        return new StringKey(
+            ((StringArray) pa).array,
+            ignoreCase
+                ? StringArray.stringHolderComparatorIgnoreCase
+                : StringArray.stringHolderComparator);
+      default: // ULONG, CHAR
+        return new GenericKey(pa, ignoreCase);
+    }
+  }
+
+  /** This compares the values of one key column in two rows. */
+  private abstract static class Key {
+    abstract int compare(int row1, int row2);
+  }
+
+  private static final class DoubleKey extends Key {
+    private final double[] values;
+
+    DoubleKey(double[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int compare(int row1, int row2) {
+      return Double.compare(values[row1], values[row2]);
+    }
+  }
+
+  private static final class LongKey extends Key {
+    private final long[] values;
+
+    LongKey(long[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int compare(int row1, int row2) {
+      return Long.compare(values[row1], values[row2]);
+    }
+  }
+
+  private static final class IntKey extends Key {
+    private final int[] values;
+
+    IntKey(int[] values) {
+      this.values = values;
+    }
+
+    @Override
+    int compare(int row1, int row2) {
+      return Integer.compare(values[row1], values[row2]);
+    }
+  }
+
+  private static final class StringKey extends Key {
+    private final StringHolder[] values;
+    private final Comparator<StringHolder> comparator;
+
+    StringKey(StringHolder[] values, Comparator<StringHolder> comparator) {
+      this.values = values;
+      this.comparator = comparator;
+    }
+
+    @Override
+    int compare(int row1, int row2) {
+      return comparator.compare(values[row1], values[row2]);
+    }
+  }
+
+  private static final class GenericKey extends Key {
+    private final PrimitiveArray pa;
+    private final boolean ignoreCase;
+
+    GenericKey(PrimitiveArray pa, boolean ignoreCase) {
+      this.pa = pa;
+      this.ignoreCase = ignoreCase;
+    }
+
+    @Override
+    int compare(int row1, int row2) {
+      return ignoreCase ? pa.compareIgnoreCase(row1, row2) : pa.compare(row1, row2);
+    }
+  }
+}
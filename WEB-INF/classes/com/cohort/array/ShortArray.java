@@ -1243,7 +1243,7 @@ public class ShortArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeShort(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 2;
   }
 
@@ -1272,7 +1272,8 @@ public class ShortArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readShort();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1289,7 +1290,7 @@ public class ShortArray extends PrimitiveArray {
     dos.writeInt(size); // yes, a second time
     // shorts are written as ints (see dods.dap.Int16PrimitiveVector.externalize)
     // since XDR doesn't support shorts
-    for (int i = 0; i < size; i++) dos.writeInt(array[i]); // yes, as ints
+    writeBulkAsInts(dos, array, 0, size); // yes, as ints
   }
 
   /**
@@ -1318,7 +1319,8 @@ public class ShortArray extends PrimitiveArray {
     int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = (short) dis.readInt(); // yes, ints; see above
+    readBulkFromInts(dis, array, size, nValues); // yes, ints; see above
+    size += nValues;
   }
 
   /**
@@ -1299,7 +1299,7 @@ public class UIntArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeInt(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 4;
   }
 
@@ -1328,7 +1328,8 @@ public class UIntArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readInt();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1383,7 +1384,8 @@ public class UIntArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = dis.readInt();
+    readBulk(dis, array, size, nValues);
+    size += nValues;
   }
 
   /**
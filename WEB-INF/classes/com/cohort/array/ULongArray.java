@@ -1331,7 +1331,7 @@ public class ULongArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeLong(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 8;
   }
 
@@ -1360,7 +1360,8 @@ public class ULongArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readLong();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1375,7 +1376,8 @@ public class ULongArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = dis.readLong();
+    readBulk(dis, array, size, nValues);
+    size += nValues;
   }
 
   /**
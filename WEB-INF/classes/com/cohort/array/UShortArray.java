@@ -1330,7 +1330,7 @@ public class UShortArray extends PrimitiveArray {
    */
   @Override
   public int writeDos(final DataOutputStream dos) throws Exception {
-    for (int i = 0; i < size; i++) dos.writeShort(array[i]);
+    writeBulk(dos, array, 0, size);
     return size == 0 ? 0 : 2;
   }
 
@@ -1359,7 +1359,8 @@ public class UShortArray extends PrimitiveArray {
   @Override
   public void readDis(final DataInputStream dis, final int n) throws Exception {
     ensureCapacity(size + (long) n);
-    for (int i = 0; i < n; i++) array[size++] = dis.readShort();
+    readBulk(dis, array, size, n);
+    size += n;
   }
 
   /**
@@ -1376,7 +1377,7 @@ public class UShortArray extends PrimitiveArray {
     dos.writeInt(size); // yes, a second time
     // shorts are written as ints (see dods.dap.Int16PrimitiveVector.externalize)
     // since XDR doesn't support shorts
-    for (int i = 0; i < size; i++) dos.writeInt(array[i]); // yes, as ints
+    writeBulkAsInts(dos, array, 0, size); // yes, as ints
   }
 
   /**
@@ -1405,7 +1406,8 @@ public class UShortArray extends PrimitiveArray {
     final int nValues = dis.readInt();
     dis.readInt(); // skip duplicate of nValues
     ensureCapacity(size + (long) nValues);
-    for (int i = 0; i < nValues; i++) array[size++] = (short) dis.readInt(); // yes, ints; see above
+    readBulkFromInts(dis, array, size, nValues); // yes, ints; see above
+    size += nValues;
   }
 
   /**
@@ -5,9 +5,11 @@
 package com.cohort.util;
 
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
 import org.apache.commons.jexl3.MapContext;
 import org.apache.commons.jexl3.introspection.JexlPermissions;
 import org.apache.commons.jexl3.introspection.JexlSandbox;
@@ -21,6 +23,12 @@ public class Script2 {
   /** Use jexlEngine to instantiate and obtain this. */
   private static JexlEngine jexlEngine;
 
+  /** The maximum number of compiled scripts in the jexlScript cache. */
+  public static final int MAX_CACHED_SCRIPTS = 1000;
+
+  private static final ConcurrentHashMap<String, JexlScript> jexlScripts =
+      new ConcurrentHashMap<>();
+
   public static JexlPermissions permissions =
       JexlPermissions.parse(
           "com.cohort.util.*\n"
@@ -100,6 +108,24 @@ public class Script2 {
     return jexlEngine;
   }
 
+  /**
+   * This returns the compiled JexlScript for a script, from a cache if possible, so that a
+   * dataset's scripts aren't recompiled for every file. JexlScripts are thread safe.
+   *
+   * @param script the script (without the initial '=')
+   * @return the compiled script
+   * @throws RuntimeException (e.g., JexlException) if the script is invalid
+   */
+  public static JexlScript jexlScript(String script) {
+    JexlScript jscript = jexlScripts.get(script);
+    if (jscript == null) {
+      if (jexlScripts.size() >= MAX_CACHED_SCRIPTS) jexlScripts.clear();
+      jscript = jexlEngine().createScript(script);
+      jexlScripts.put(script, jscript);
+    }
+    return jscript;
+  }
+
   private static ScriptCalendar2 scriptCalendar2;
   private static ScriptMath scriptMath;
   private static ScriptMath2 scriptMath2;
@@ -17,6 +17,8 @@ import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PushbackInputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
@@ -4380,8 +4382,12 @@ public class String2 {
   /** The size of the int[] needed for distributeCount() and getCountDistributionStatistics(). */
   public static final int CountDistributionSize = CountBinMax.length;
 
+  // for atomic increments of the distribution bins (many threads update the same distribution)
+  private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
   /**
-   * Put aTime into one of the distribution bins.
+   * Put aTime into one of the distribution bins. This is thread-safe (the bin is incremented
+   * atomically).
    *
    * @param aTime
    * @param distribution an int[TimeDistributionSize] holding the counts of aTimes in different
@@ -4391,21 +4397,22 @@ public class String2 {
     // catch really long times (greater than Integer.MAX_VALUE)
     if (aTime < 0) aTime = 0;
     if (aTime > TimeBinMax[TimeDistributionSize - 2]) {
-      distribution[TimeDistributionSize - 1]++;
+      INT_ARRAY.getAndAdd(distribution, TimeDistributionSize - 1, 1);
       return;
     } // 1hr
 
     int iTime = (int) aTime; // safe since extreme values caught above
     for (int bin = 0; bin < TimeDistributionSize; bin++) {
       if (iTime <= TimeBinMax[bin]) {
-        distribution[bin]++;
+        INT_ARRAY.getAndAdd(distribution, bin, 1);
         return;
       }
     }
   }
 
   /**
-   * Put aCount into one of the distribution bins.
+   * Put aCount into one of the distribution bins. This is thread-safe (the bin is incremented
+   * atomically).
    *
    * @param aCount
    * @param distribution an int[CountDistributionSize] holding the counts of aCounts in different
@@ -4415,13 +4422,13 @@ public class String2 {
     // catch really long times (greater than Integer.MAX_VALUE)
     if (aCount < 0) aCount = 0;
     if (aCount > CountBinMax[CountDistributionSize - 2]) {
-      distribution[CountDistributionSize - 1]++;
+      INT_ARRAY.getAndAdd(distribution, CountDistributionSize - 1, 1);
       return;
     }
 
     for (int bin = 0; bin < CountDistributionSize; bin++) {
       if (aCount <= CountBinMax[bin]) {
-        distribution[bin]++;
+        INT_ARRAY.getAndAdd(distribution, bin, 1);
         return;
       }
     }
@@ -0,0 +1,401 @@
+/*
+ * Nc3StreamWriter Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.CharArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.String2;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * This writes a netCDF-3 classic format (CDF-1) file to an OutputStream as a stream. Since all of
+ * the dimensions, variables, and attributes are known before any data is written, the layout of
+ * the file (and so the header) can be computed ahead of time. The header is written first, then the
+ * values of each variable (in the order the variables were added) are written as they become
+ * available, so (unlike NetcdfFormatWriter) this doesn't need a temporary file and the first bytes
+ * are sent before all of the data has been read. Optionally, a copy of everything is written to a
+ * second OutputStream (e.g., a cache file).
+ *
+ * <p>This only supports fixed size variables (no unlimited dimension) and doesn't support String
+ * variables (the maximum String length must be known before the header is written). LONG and ULONG
+ * values are written as doubles. Attributes are converted the way
+ * NcHelper.setAttributes(nc3Mode=true, ...) converts them (e.g., unsigned variables get
+ * _Unsigned="true"), so the file matches one written via NetcdfFormatWriter.createNewNetcdf3().
+ *
+ * <p>See https://docs.unidata.ucar.edu/netcdf-c/current/file_format_specifications.html .
+ */
+public class Nc3StreamWriter {
+
+  public static final int NC_BYTE = 1;
+  public static final int NC_CHAR = 2;
+  public static final int NC_SHORT = 3;
+  public static final int NC_INT = 4;
+  public static final int NC_FLOAT = 5;
+  public static final int NC_DOUBLE = 6;
+
+  private static final int NC_DIMENSION = 10;
+  private static final int NC_VARIABLE = 11;
+  private static final int NC_ATTRIBUTE = 12;
+
+  private final StringArray dimNames = new StringArray();
+  private final IntArray dimSizes = new IntArray();
+  private Attributes globalAttributes = new Attributes();
+  private final ArrayList<Var> vars = new ArrayList<>();
+
+  // things set when writing
+  private DataOutputStream dos;
+  private int currentVar = -1; // the variable whose data is being written
+  private long currentNWritten; // the number of values of currentVar written so far
+
+  /** A variable. */
+  private static class Var {
+    final String name;
+    final PAType paType;
+    final int ncType;
+    final int dims[];
+    final Attributes attributes;
+    long nValues = 1;
+
+    Var(String name, PAType paType, int dims[], Attributes attributes) {
+      this.name = name;
+      this.paType = paType;
+      this.ncType = ncType(paType);
+      this.dims = dims;
+      this.attributes = attributes;
+    }
+
+    /** The number of bytes of data (including the padding to a 4 byte boundary). */
+    long vsize() {
+      return pad4(nValues * ncTypeNBytes(ncType));
+    }
+  }
+
+  /**
+   * This returns the netcdf-3 nc_type for a PAType.
+   *
+   * @param paType the PrimitiveArray element type (not STRING)
+   * @return the nc_type (e.g., NC_INT for PAType.INT and PAType.UINT)
+   * @throws RuntimeException if the paType isn't supported
+   */
+  public static int ncType(PAType paType) {
+    return switch (paType) {
+      case BYTE, UBYTE -> NC_BYTE;
+      case CHAR -> NC_CHAR;
+      case SHORT, USHORT -> NC_SHORT;
+      case INT, UINT -> NC_INT;
+      case FLOAT -> NC_FLOAT;
+      case LONG, ULONG, DOUBLE -> NC_DOUBLE; // long -> double in .nc3
+      default ->
+          throw new RuntimeException(
+              String2.ERROR + " in Nc3StreamWriter: unsupported data type=" + paType);
+    };
+  }
+
+  /** This returns the number of bytes per value of an nc_type. */
+  private static int ncTypeNBytes(int ncType) {
+    return switch (ncType) {
+      case NC_BYTE, NC_CHAR -> 1;
+      case NC_SHORT -> 2;
+      case NC_INT, NC_FLOAT -> 4;
+      default -> 8;
+    };
+  }
+
+  /** This rounds n up to a multiple of 4. */
+  private static long pad4(long n) {
+    return (n + 3) / 4 * 4;
+  }
+
+  /**
+   * This adds a dimension. This must be called before writeHeader.
+   *
+   * @param name the dimension's name
+   * @param size the dimension's size (1+)
+   * @return the dimension's index (for addVariable)
+   */
+  public int addDimension(String name, int size) {
+    dimNames.add(name);
+    dimSizes.add(size);
+    return dimNames.size() - 1;
+  }
+
+  /**
+   * This sets the global attributes. This must be called before writeHeader.
+   *
+   * @param attributes the global attributes (not changed)
+   */
+  public void setGlobalAttributes(Attributes attributes) {
+    globalAttributes = attributes;
+  }
+
+  /**
+   * This adds a variable. This must be called before writeHeader. The variable's data must be
+   * written (see write()) in the order that the variables were added.
+   *
+   * @param name the variable's name
+   * @param paType the type of the PrimitiveArrays that will be written (not STRING)
+   * @param dims the indexes of the variable's dimensions (from addDimension)
+   * @param attributes the variable's attributes (not changed). If paType is unsigned, an
+   *     _Unsigned="true" attribute is added.
+   */
+  public void addVariable(String name, PAType paType, int dims[], Attributes attributes) {
+    Var var = new Var(name, paType, dims, attributes);
+    for (int dim : dims) var.nValues *= dimSizes.get(dim);
+    vars.add(var);
+  }
+
+  /**
+   * This returns the size of the file (including the header).
+   *
+   * @return the size of the file, in bytes
+   * @throws IOException if trouble
+   */
+  public long nBytes() throws IOException {
+    long n = headerBytes(0).length;
+    for (Var var : vars) n += var.vsize();
+    return n;
+  }
+
+  /**
+   * This writes the header. Then call write() to write the data.
+   *
+   * @param out the destination (this buffers it)
+   * @param copy if not null, everything written to out is also written to this (e.g., a cache
+   *     file). This buffers it.
+   * @throws IOException if trouble
+   */
+  public void writeHeader(OutputStream out, OutputStream copy) throws IOException {
+    int headerNBytes = headerBytes(0).length;
+    byte header[] = headerBytes(headerNBytes);
+    OutputStream os = new BufferedOutputStream(out);
+    if (copy != null) os = new Tee(os, new BufferedOutputStream(copy));
+    dos = new DataOutputStream(os);
+    dos.write(header);
+    nextVar();
+  }
+
+  /**
+   * This makes the header.
+   *
+   * @param dataStart the offset of the first variable's data (i.e., the header's size), or 0 to
+   *     just find out the header's size
+   */
+  private byte[] headerBytes(int dataStart) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream h = new DataOutputStream(baos);
+    h.write(new byte[] {'C', 'D', 'F', 1});
+    h.writeInt(0); // numrecs
+
+    // dim_list
+    int nDims = dimNames.size();
+    h.writeInt(nDims == 0 ? 0 : NC_DIMENSION);
+    h.writeInt(nDims);
+    for (int dim = 0; dim < nDims; dim++) {
+      writeName(h, dimNames.get(dim));
+      h.writeInt(dimSizes.get(dim));
+    }
+
+    // gatt_list
+    writeAttributes(h, globalAttributes, false, true);
+
+    // var_list
+    long begin = dataStart;
+    h.writeInt(vars.isEmpty() ? 0 : NC_VARIABLE);
+    h.writeInt(vars.size());
+    for (Var var : vars) {
+      writeName(h, var.name);
+      h.writeInt(var.dims.length);
+      for (int dim : var.dims) h.writeInt(dim);
+      writeAttributes(h, var.attributes, var.paType.isUnsigned(), false);
+      h.writeInt(var.ncType);
+      long vsize = var.vsize();
+      h.writeInt(vsize > Integer.MAX_VALUE ? -1 : (int) vsize); // -1 is 2^32-1 as unsigned
+      if (begin > Integer.MAX_VALUE)
+        throw new RuntimeException(
+            String2.ERROR + " in Nc3StreamWriter: the data is too big for a netcdf-3 file.");
+      h.writeInt((int) begin);
+      begin += vsize;
+    }
+    h.flush();
+    return baos.toByteArray();
+  }
+
+  /** This writes a name (the UTF-8 bytes, padded to a 4 byte boundary). */
+  private static void writeName(DataOutputStream h, String name) throws IOException {
+    byte bytes[] = String2.stringToUtf8Bytes(name);
+    h.writeInt(bytes.length);
+    h.write(bytes);
+    writePadding(h, bytes.length);
+  }
+
+  /** This writes zeros to pad n bytes to a 4 byte boundary. */
+  private static void writePadding(DataOutputStream h, long n) throws IOException {
+    for (long i = n; i < pad4(n); i++) h.writeByte(0);
+  }
+
+  /**
+   * This writes an att_list, skipping the same attributes that NcHelper.setAttributes skips.
+   *
+   * @param unsigned if true, an _Unsigned="true" attribute is written first
+   * @param global true for global attributes
+   */
+  private static void writeAttributes(
+      DataOutputStream h, Attributes attributes, boolean unsigned, boolean global)
+      throws IOException {
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<PrimitiveArray> values = new ArrayList<>();
+    if (unsigned) {
+      names.add("_Unsigned");
+      values.add(new StringArray(new String[] {"true"}));
+    }
+    for (String name : attributes.getNames()) {
+      if (!String2.isSomething(name) || (unsigned && name.equals("_Unsigned"))) continue;
+      if (global && name.equals("_NCProperties")) continue;
+      PrimitiveArray pa = attributes.get(name);
+      if (pa == null
+          || pa.size() == 0
+          || ((global || pa.elementType() == PAType.STRING) && pa.toString().length() == 0))
+        continue;
+      names.add(name);
+      values.add(pa);
+    }
+
+    int n = names.size();
+    h.writeInt(n == 0 ? 0 : NC_ATTRIBUTE);
+    h.writeInt(n);
+    for (int i = 0; i < n; i++) {
+      writeName(h, names.get(i));
+      PrimitiveArray pa = values.get(i);
+      PAType paType = pa.elementType();
+      if (paType == PAType.STRING || paType == PAType.CHAR) {
+        String s =
+            paType == PAType.STRING
+                ? Attributes.valueToNcString(pa)
+                : new String(((CharArray) pa).toArray());
+        byte bytes[] = String2.stringToUtf8Bytes(s);
+        h.writeInt(NC_CHAR);
+        h.writeInt(bytes.length);
+        h.write(bytes);
+        writePadding(h, bytes.length);
+      } else {
+        // nc3 attributes can't be long or unsigned: write long as double, unsigned as raw bits
+        if (paType == PAType.LONG || paType == PAType.ULONG)
+          pa = PrimitiveArray.rawFactory(PAType.DOUBLE, pa);
+        int ncType = ncType(pa.elementType());
+        h.writeInt(ncType);
+        h.writeInt(pa.size());
+        try {
+          pa.writeDos(h);
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+        writePadding(h, (long) pa.size() * ncTypeNBytes(ncType));
+      }
+    }
+  }
+
+  /** This moves on to the next variable (if any). */
+  private void nextVar() {
+    currentVar++;
+    currentNWritten = 0;
+  }
+
+  /**
+   * This writes some of the current variable's values. Once all of a variable's values have been
+   * written, subsequent calls write the next variable's values.
+   *
+   * @param pa the next values of the current variable. Its elementType must be the variable's
+   *     paType.
+   * @throws Exception if trouble (e.g., more values than the variable has)
+   */
+  public void write(PrimitiveArray pa) throws Exception {
+    if (dos == null || currentVar >= vars.size())
+      throw new RuntimeException(
+          String2.ERROR + " in Nc3StreamWriter.write: no variable is waiting for data.");
+    Var var = vars.get(currentVar);
+    int n = pa.size();
+    if (pa.elementType() != var.paType || currentNWritten + n > var.nValues)
+      throw new RuntimeException(
+          String2.ERROR
+              + " in Nc3StreamWriter.write: unexpected data for variable="
+              + var.name
+              + " (paType="
+              + pa.elementType()
+              + " n="
+              + n
+              + ").");
+
+    if (var.paType == PAType.CHAR) {
+      // netcdf-3 chars are 1 byte
+      char car[] = ((CharArray) pa).toArray();
+      byte bar[] = new byte[n];
+      for (int i = 0; i < n; i++) bar[i] = (byte) car[i];
+      dos.write(bar);
+    } else if (var.paType == PAType.LONG || var.paType == PAType.ULONG) {
+      new DoubleArray(pa).writeDos(dos);
+    } else {
+      pa.writeDos(dos); // big endian, like netcdf-3
+    }
+
+    currentNWritten += n;
+    if (currentNWritten == var.nValues) {
+      writePadding(dos, var.nValues * ncTypeNBytes(var.ncType));
+      nextVar();
+    }
+  }
+
+  /**
+   * Call this after all of the data has been written. This flushes (but doesn't close) the
+   * OutputStreams.
+   *
+   * @throws Exception if trouble (e.g., not all of the data was written)
+   */
+  public void finish() throws Exception {
+    if (dos == null || currentVar < vars.size())
+      throw new RuntimeException(
+          String2.ERROR + " in Nc3StreamWriter.finish: not all of the data was written.");
+    dos.flush();
+  }
+
+  /** This writes everything to two OutputStreams. */
+  private static class Tee extends OutputStream {
+    private final OutputStream out, copy;
+
+    Tee(OutputStream out, OutputStream copy) {
+      this.out = out;
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      copy.write(b);
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+      out.write(b, off, len);
+      copy.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+      copy.flush();
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * NcFileCache Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.util.File2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import ucar.nc2.NetcdfFile;
+
+/**
+ * This is a bounded, shared cache of open NetcdfFile handles, so that repeated reads from the same
+ * file (e.g., a time series request that gets 1 point per file in many chunks) don't have to open
+ * the file and parse its header every time.
+ *
+ * <p>NetcdfFile objects aren't thread-safe, so each handle is checked out exclusively: open()
+ * returns an idle handle for the same file (fullName and lastModified) or opens a new one, and
+ * release() returns it to the cache (or closes it). There may be several handles for one file if
+ * several threads are reading it. Only idle handles are limited by maxOpenFiles; the oldest idle
+ * handles are closed when there are too many, and handles which have been idle for more than
+ * maxIdleMillis are closed. While the cache is active, a daemon thread calls closeIdle()
+ * periodically, so idle handles are closed even if the cache gets no more requests.
+ *
+ * <p>By default (maxOpenFiles=0), the cache is inactive: open() just calls NcHelper.openFile() and
+ * release() just closes the file.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * NetcdfFile ncFile = NcFileCache.open(fullName);
+ * try {
+ *   ...
+ * } finally {
+ *   NcFileCache.release(ncFile);
+ * }
+ * </pre>
+ */
+public class NcFileCache {
+
+  private static volatile int maxOpenFiles = 0; // max number of idle handles. 0 = inactive
+  private static volatile long maxIdleMillis = 60000;
+
+  /** One cached handle. */
+  private static class Entry {
+    final String fullName;
+    final long lastModified;
+    final NetcdfFile ncFile;
+    long releasedAt;
+
+    Entry(String tFullName, long tLastModified, NetcdfFile tNcFile) {
+      fullName = tFullName;
+      lastModified = tLastModified;
+      ncFile = tNcFile;
+    }
+  }
+
+  // all guarded by NcFileCache.class
+  private static final HashMap<String, ArrayDeque<Entry>> idleMap = new HashMap<>();
+  private static final LinkedHashSet<Entry> idleLru = new LinkedHashSet<>(); // oldest first
+  private static final IdentityHashMap<NetcdfFile, Entry> checkedOut = new IdentityHashMap<>();
+  private static long nHits = 0, nMisses = 0, nEvicted = 0;
+  private static ScheduledFuture<?> sweep = null; // the periodic closeIdle(), if active
+
+  /** The daemon thread which periodically closes idle handles. */
+  private static final ScheduledExecutorService sweeper =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "NcFileCache sweeper");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * This sets the cache's limits. Setting tMaxOpenFiles to 0 makes the cache inactive and closes
+   * the idle handles. While the cache is active, idle handles are checked every maxIdleMillis/2
+   * (but not more often than once a second).
+   *
+   * @param tMaxOpenFiles the maximum number of idle open handles (0 = inactive)
+   * @param tMaxIdleMillis idle handles are closed after this many milliseconds
+   */
+  public static void setLimits(int tMaxOpenFiles, long tMaxIdleMillis) {
+    ArrayList<Entry> toClose = new ArrayList<>();
+    synchronized (NcFileCache.class) {
+      maxOpenFiles = Math.max(0, tMaxOpenFiles);
+      maxIdleMillis = Math.max(0, tMaxIdleMillis);
+      evict(System.currentTimeMillis(), toClose);
+      if (sweep != null) sweep.cancel(false);
+      sweep = null;
+      if (maxOpenFiles > 0) {
+        long period = Math.max(1000, maxIdleMillis / 2);
+        sweep =
+            sweeper.scheduleWithFixedDelay(
+                NcFileCache::closeIdle, period, period, TimeUnit.MILLISECONDS);
+      }
+    }
+    closeAll(toClose);
+  }
+
+  /**
+   * This gets an open NetcdfFile for exclusive use by the caller. The caller must call release()
+   * when done with it.
+   *
+   * @param fullName the full name of the file (.nc, .hdf, .ncml, ...)
+   * @return an open NetcdfFile
+   * @throws Exception if trouble
+   */
+  public static NetcdfFile open(String fullName) throws Exception {
+    if (maxOpenFiles <= 0) return NcHelper.openFile(fullName);
+
+    long lastModified = File2.getLastModified(fullName);
+    ArrayList<Entry> toClose = new ArrayList<>();
+    try {
+      synchronized (NcFileCache.class) {
+        evict(System.currentTimeMillis(), toClose);
+        ArrayDeque<Entry> deque = idleMap.get(fullName);
+        while (deque != null && !deque.isEmpty()) {
+          Entry entry = deque.pollFirst(); // most recently released
+          idleLru.remove(entry);
+          if (entry.lastModified == lastModified) {
+            if (deque.isEmpty()) idleMap.remove(fullName);
+            checkedOut.put(entry.ncFile, entry);
+            nHits++;
+            return entry.ncFile;
+          }
+          toClose.add(entry); // the file has changed
+        }
+        idleMap.remove(fullName);
+        nMisses++;
+      }
+    } finally {
+      closeAll(toClose);
+    }
+
+    NetcdfFile ncFile = NcHelper.openFile(fullName);
+    synchronized (NcFileCache.class) {
+      checkedOut.put(ncFile, new Entry(fullName, lastModified, ncFile));
+    }
+    return ncFile;
+  }
+
+  /**
+   * This returns a NetcdfFile from open() to the cache.
+   *
+   * @param ncFile the NetcdfFile from open(). If null, nothing is done.
+   */
+  public static void release(NetcdfFile ncFile) {
+    release(ncFile, true);
+  }
+
+  /**
+   * This returns a NetcdfFile from open() to the cache, or closes it.
+   *
+   * @param ncFile the NetcdfFile from open(). If null, nothing is done.
+   * @param reusable use false if there was trouble reading from the file, so that the handle is
+   *     closed, not reused.
+   */
+  public static void release(NetcdfFile ncFile, boolean reusable) {
+    if (ncFile == null) return;
+    ArrayList<Entry> toClose = new ArrayList<>();
+    synchronized (NcFileCache.class) {
+      Entry entry = checkedOut.remove(ncFile);
+      if (entry != null && reusable && maxOpenFiles > 0) {
+        long now = System.currentTimeMillis();
+        entry.releasedAt = now;
+        idleMap.computeIfAbsent(entry.fullName, k -> new ArrayDeque<>()).addFirst(entry);
+        idleLru.add(entry);
+        evict(now, toClose);
+        ncFile = null; // don't close it
+      }
+    }
+    closeAll(toClose);
+    if (ncFile != null) {
+      try {
+        ncFile.close();
+      } catch (Exception e) {
+        String2.log("NcFileCache.release caught:\n" + MustBe.throwableToString(e));
+      }
+    }
+  }
+
+  /**
+   * This removes the idle entries which are too old or which exceed maxOpenFiles. The caller must
+   * be synchronized on NcFileCache.class.
+   *
+   * @param now the current time in millis
+   * @param toClose receives the entries which need to be closed
+   */
+  private static void evict(long now, ArrayList<Entry> toClose) {
+    Iterator<Entry> it = idleLru.iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      if (idleLru.size() <= maxOpenFiles && now - entry.releasedAt <= maxIdleMillis) break;
+      it.remove();
+      ArrayDeque<Entry> deque = idleMap.get(entry.fullName);
+      if (deque != null) {
+        deque.remove(entry);
+        if (deque.isEmpty()) idleMap.remove(entry.fullName);
+      }
+      toClose.add(entry);
+      nEvicted++;
+    }
+  }
+
+  /**
+   * This closes the idle handles which have been idle for more than maxIdleMillis (or which exceed
+   * maxOpenFiles). While the cache is active, the sweeper thread calls this periodically.
+   *
+   * @return the number of handles which were closed
+   */
+  public static int closeIdle() {
+    ArrayList<Entry> toClose = new ArrayList<>();
+    synchronized (NcFileCache.class) {
+      evict(System.currentTimeMillis(), toClose);
+    }
+    closeAll(toClose);
+    return toClose.size();
+  }
+
+  /** This closes the files (outside of the synchronized block). */
+  private static void closeAll(ArrayList<Entry> toClose) {
+    for (Entry entry : toClose) {
+      try {
+        entry.ncFile.close();
+      } catch (Exception e) {
+        String2.log("NcFileCache caught:\n" + MustBe.throwableToString(e));
+      }
+    }
+  }
+
+  /** This closes all of the idle handles. Checked out handles are closed when released. */
+  public static void clear() {
+    ArrayList<Entry> toClose;
+    synchronized (NcFileCache.class) {
+      toClose = new ArrayList<>(idleLru);
+      idleLru.clear();
+      idleMap.clear();
+    }
+    closeAll(toClose);
+  }
+
+  /**
+   * This returns a one line status report for the status page.
+   *
+   * @return the status string (with a trailing newline), or "" if the cache is inactive.
+   */
+  public static synchronized String statusString() {
+    if (maxOpenFiles <= 0) return "";
+    return "NcFileCache: maxOpenFiles="
+        + maxOpenFiles
+        + " idle="
+        + idleLru.size()
+        + " checkedOut="
+        + checkedOut.size()
+        + " hits="
+        + nHits
+        + " misses="
+        + nMisses
+        + " evicted="
+        + nEvicted
+        + "\n";
+  }
+}
@@ -75,6 +75,12 @@ public class NcHelper {
   /** If saving longs or ulongs as Strings, this is the maxStringLength. */
   public static final int LONG_MAXSTRINGLENGTH = 20;
 
+  /**
+   * getPrimitiveArray(variable, keep) reads the keep=true rows separately if they are in at most
+   * this many ranges.
+   */
+  public static final int MAX_READ_RANGES = 100;
+
   /**
    * For my purposes (not part of NetCDF system), this is the character used to separate a
    * structureName|memberName so that structure members can be handled like other variables.
@@ -1754,6 +1760,51 @@ public class NcHelper {
     return pa;
   }
 
+  /**
+   * This reads the keep=true rows of a variable, e.g., the observations of some of the features in
+   * a CF DSG ragged array file. If the rows are in a few ranges (e.g., one station's observations
+   * in a contiguous ragged array file), just those ranges are read, so the other rows aren't read
+   * from the file. Otherwise, the entire variable is read and the other rows are removed.
+   *
+   * @param variable the variable to be read from. See getPrimitiveArray(variable, firstRow,
+   *     lastRow) for the allowed shapes.
+   * @param keep indicates which rows (of the leftmost dimension) to keep
+   * @return the values of the keep=true rows, in order
+   * @throws Exception if trouble
+   */
+  public static PrimitiveArray getPrimitiveArray(Variable variable, BitSet keep) throws Exception {
+
+    int nRows = variable.getRank() == 0 ? 1 : variable.getShape(0);
+    int nKeep = keep.get(0, nRows).cardinality();
+    int nRanges = 0;
+    int first = keep.nextSetBit(0);
+    while (first >= 0 && first < nRows && nRanges <= MAX_READ_RANGES) {
+      nRanges++;
+      first = keep.nextSetBit(keep.nextClearBit(first));
+    }
+    if (nRows == 0 || nKeep > nRows / 2 || nRanges > MAX_READ_RANGES) {
+      PrimitiveArray pa = getPrimitiveArray(variable);
+      pa.justKeep(keep);
+      return pa;
+    }
+
+    PrimitiveArray pa = null;
+    if (nKeep == 0) {
+      pa = getPrimitiveArray(variable, 0, 0); // to get the right type
+      pa.clear();
+      return pa;
+    }
+    first = keep.nextSetBit(0);
+    while (first >= 0 && first < nRows) {
+      int last = Math.min(keep.nextClearBit(first), nRows) - 1;
+      PrimitiveArray rangePA = getPrimitiveArray(variable, first, last);
+      if (pa == null) pa = rangePA;
+      else pa.append(rangePA);
+      first = keep.nextSetBit(last + 1);
+    }
+    return pa;
+  }
+
   /**
    * This reads a 1D range of values from a 4D variable (or 5D if it holds strings, so 5th dimension
    * DataType is CHAR) in a NetcdfFile.
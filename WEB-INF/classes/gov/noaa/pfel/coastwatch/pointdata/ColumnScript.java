@@ -0,0 +1,451 @@
+/*
+ * ColumnScript Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.pointdata;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.ScriptMath;
+import com.cohort.util.ScriptMath2;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This compiles simple JEXL scripts for script columns (e.g., unit conversions like
+ * =row.columnDouble("tempC")*9/5+32) so that they can be evaluated for all of the rows of a table
+ * at once, with primitive doubles, instead of being interpreted by JEXL (with boxed numbers) for
+ * each row.
+ *
+ * <p>The supported scripts have numeric literals, NaN, row.columnDouble("name"),
+ * row.columnFloat("name"), +, -, *, /, unary -, parentheses, and some Math and Math2 functions of
+ * doubles (see FUNCTIONS1 and FUNCTIONS2). The results are the same as JEXL's, except that x/0 is
+ * NaN here, whereas JEXL throws an exception (which EDDTable.convertScriptColumnsToDataColumns
+ * stores as a missing value). That includes float operands of +, -, *, and /, which JEXL converts
+ * to double via their String representation (e.g., 1.1f becomes 1.1, not 1.100000023841858), and
+ * float function parameters, which Java widens directly. compile() returns null for other scripts,
+ * which need to be run by JEXL row by row.
+ */
+public class ColumnScript {
+
+  /** The maximum number of compiled scripts in the cache. */
+  public static final int MAX_CACHED = 1000;
+
+  /** The Math and Math2 functions with 1 double parameter. See ScriptMath and ScriptMath2. */
+  private static final Map<String, DoubleUnaryOperator> FUNCTIONS1 =
+      Map.ofEntries(
+          Map.entry("Math.abs", ScriptMath::abs),
+          Map.entry("Math.acos", ScriptMath::acos),
+          Map.entry("Math.asin", ScriptMath::asin),
+          Map.entry("Math.atan", ScriptMath::atan),
+          Map.entry("Math.cbrt", ScriptMath::cbrt),
+          Map.entry("Math.ceil", ScriptMath::ceil),
+          Map.entry("Math.cos", ScriptMath::cos),
+          Map.entry("Math.cosh", ScriptMath::cosh),
+          Map.entry("Math.exp", ScriptMath::exp),
+          Map.entry("Math.expm1", ScriptMath::expm1),
+          Map.entry("Math.floor", ScriptMath::floor),
+          Map.entry("Math.log", ScriptMath::log),
+          Map.entry("Math.log10", ScriptMath::log10),
+          Map.entry("Math.log1p", ScriptMath::log1p),
+          Map.entry("Math.rint", ScriptMath::rint),
+          Map.entry("Math.signum", ScriptMath::signum),
+          Map.entry("Math.sin", ScriptMath::sin),
+          Map.entry("Math.sinh", ScriptMath::sinh),
+          Map.entry("Math.sqrt", ScriptMath::sqrt),
+          Map.entry("Math.tan", ScriptMath::tan),
+          Map.entry("Math.tanh", ScriptMath::tanh),
+          Map.entry("Math.toDegrees", ScriptMath::toDegrees),
+          Map.entry("Math.toRadians", ScriptMath::toRadians),
+          Map.entry("Math2.angle0360", ScriptMath2::angle0360),
+          Map.entry("Math2.anglePM180", ScriptMath2::anglePM180),
+          Map.entry("Math2.compassToMathDegrees", ScriptMath2::compassToMathDegrees),
+          Map.entry("Math2.frac", ScriptMath2::frac),
+          Map.entry("Math2.looserAngle0360", ScriptMath2::looserAngle0360),
+          Map.entry("Math2.looserAnglePM180", ScriptMath2::looserAnglePM180),
+          Map.entry("Math2.mathToCompassDegrees", ScriptMath2::mathToCompassDegrees),
+          Map.entry("Math2.roundToDouble", ScriptMath2::roundToDouble),
+          Map.entry("Math2.trunc", ScriptMath2::trunc));
+
+  /** The Math functions with 2 double parameters. See ScriptMath. */
+  private static final Map<String, DoubleBinaryOperator> FUNCTIONS2 =
+      Map.of(
+          "Math.atan2", ScriptMath::atan2,
+          "Math.hypot", ScriptMath::hypot,
+          "Math.max", ScriptMath::max,
+          "Math.min", ScriptMath::min,
+          "Math.pow", ScriptMath::pow);
+
+  /**
+   * These functions also have float (and int or long) versions, which JEXL would use for float
+   * (or int or long) parameters, so they are only supported for double parameters.
+   */
+  private static final String OVERLOADED[] = {"Math.abs", "Math.signum", "Math.max", "Math.min"};
+
+  private static final ColumnScript UNSUPPORTED = new ColumnScript(null);
+  private static final ConcurrentHashMap<String, ColumnScript> cache = new ConcurrentHashMap<>();
+
+  // the data types of values in the script (as JEXL would see them)
+  private static final int INT = 0;
+  private static final int FLOAT = 1;
+  private static final int DOUBLE = 2;
+
+  private final Node root;
+
+  private ColumnScript(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * This returns the compiled version of a script (from the cache, if possible).
+   *
+   * @param script the script (without the initial '=')
+   * @return the compiled script, or null if the script isn't supported (so it needs to be run by
+   *     JEXL)
+   */
+  public static ColumnScript compile(String script) {
+    ColumnScript columnScript = cache.get(script);
+    if (columnScript == null) {
+      if (cache.size() >= MAX_CACHED) cache.clear();
+      Node tRoot = new Parser(script).parse();
+      columnScript = tRoot == null ? UNSUPPORTED : new ColumnScript(tRoot);
+      cache.put(script, columnScript);
+    }
+    return columnScript == UNSUPPORTED ? null : columnScript;
+  }
+
+  /**
+   * This evaluates the script for all of the rows of a table.
+   *
+   * @param table the table with the columns referenced by the script. Columns which aren't in the
+   *     table are treated as all NaN (like ScriptRow).
+   * @return the results (one per row)
+   */
+  public double[] evaluate(Table table) {
+    return root.evaluate(table, table.nRows());
+  }
+
+  /** A part of a script. evaluate() always returns a new array which the caller can modify. */
+  private abstract static class Node {
+    int type;
+
+    abstract double[] evaluate(Table table, int nRows);
+  }
+
+  private static class Constant extends Node {
+    final double value;
+
+    Constant(double value, int type) {
+      this.value = value;
+      this.type = type;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double values[] = new double[nRows];
+      Arrays.fill(values, value);
+      return values;
+    }
+  }
+
+  /** row.columnDouble(name) or row.columnFloat(name). */
+  private static class Column extends Node {
+    final String name;
+
+    Column(String name, int type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double values[] = new double[nRows];
+      int col = table.findColumnNumber(name);
+      if (col < 0) {
+        Arrays.fill(values, Double.NaN);
+        return values;
+      }
+      PrimitiveArray pa = table.getColumn(col);
+      if (type == FLOAT) {
+        if (pa instanceof FloatArray fa) {
+          for (int row = 0; row < nRows; row++) values[row] = fa.array[row];
+        } else {
+          for (int row = 0; row < nRows; row++) values[row] = pa.getFloat(row);
+        }
+      } else {
+        if (pa instanceof DoubleArray da) {
+          System.arraycopy(da.array, 0, values, 0, nRows);
+        } else {
+          for (int row = 0; row < nRows; row++) values[row] = pa.getDouble(row);
+        }
+      }
+      return values;
+    }
+  }
+
+  private static class Negate extends Node {
+    final Node node;
+
+    Negate(Node node) {
+      this.node = node;
+      type = node.type;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double values[] = node.evaluate(table, nRows);
+      for (int row = 0; row < nRows; row++) values[row] = -values[row];
+      return values;
+    }
+  }
+
+  private static class Arithmetic extends Node {
+    final char op;
+    final Node left;
+    final Node right;
+
+    Arithmetic(char op, Node left, Node right) {
+      this.op = op;
+      this.left = left;
+      this.right = right;
+      type = DOUBLE;
+    }
+
+    /**
+     * This evaluates an operand. Like JexlArithmetic.toDouble, this converts float values to double
+     * via their String representation.
+     */
+    static double[] operand(Node node, Table table, int nRows) {
+      double values[] = node.evaluate(table, nRows);
+      if (node.type == FLOAT) {
+        for (int row = 0; row < nRows; row++)
+          values[row] = Double.parseDouble(String.valueOf((float) values[row]));
+      }
+      return values;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double a[] = operand(left, table, nRows);
+      double b[] = operand(right, table, nRows);
+      switch (op) {
+        case '+' -> {
+          for (int row = 0; row < nRows; row++) a[row] += b[row];
+        }
+        case '-' -> {
+          for (int row = 0; row < nRows; row++) a[row] -= b[row];
+        }
+        case '*' -> {
+          for (int row = 0; row < nRows; row++) a[row] *= b[row];
+        }
+        default -> { // '/'
+          for (int row = 0; row < nRows; row++)
+            a[row] = b[row] == 0 ? Double.NaN : a[row] / b[row];
+        }
+      }
+      return a;
+    }
+  }
+
+  private static class Function1 extends Node {
+    final DoubleUnaryOperator function;
+    final Node node;
+
+    Function1(DoubleUnaryOperator function, Node node) {
+      this.function = function;
+      this.node = node;
+      type = DOUBLE;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double values[] = node.evaluate(table, nRows);
+      for (int row = 0; row < nRows; row++) values[row] = function.applyAsDouble(values[row]);
+      return values;
+    }
+  }
+
+  private static class Function2 extends Node {
+    final DoubleBinaryOperator function;
+    final Node left;
+    final Node right;
+
+    Function2(DoubleBinaryOperator function, Node left, Node right) {
+      this.function = function;
+      this.left = left;
+      this.right = right;
+      type = DOUBLE;
+    }
+
+    @Override
+    double[] evaluate(Table table, int nRows) {
+      double a[] = left.evaluate(table, nRows);
+      double b[] = right.evaluate(table, nRows);
+      for (int row = 0; row < nRows; row++) a[row] = function.applyAsDouble(a[row], b[row]);
+      return a;
+    }
+  }
+
+  /**
+   * A recursive descent parser for the supported subset of JEXL. The parse methods return null if
+   * the script isn't supported.
+   */
+  private static class Parser {
+    final String s;
+    int po = 0;
+
+    Parser(String s) {
+      this.s = s;
+    }
+
+    /** This returns the compiled script (or null if not supported). */
+    Node parse() {
+      Node node = expression();
+      skipWhite();
+      if (po < s.length() && s.charAt(po) == ';') po++;
+      skipWhite();
+      // the result must be a double (as JEXL would see it)
+      return node == null || po < s.length() || node.type != DOUBLE ? null : node;
+    }
+
+    void skipWhite() {
+      while (po < s.length() && Character.isWhitespace(s.charAt(po))) po++;
+    }
+
+    /** This skips whitespace and returns the next char (or \uffff if at the end). */
+    char peek() {
+      skipWhite();
+      return po < s.length() ? s.charAt(po) : '\uffff';
+    }
+
+    Node expression() {
+      Node node = term();
+      while (node != null) {
+        char ch = peek();
+        if (ch != '+' && ch != '-') break;
+        po++;
+        node = arithmetic(ch, node, term());
+      }
+      return node;
+    }
+
+    Node term() {
+      Node node = unary();
+      while (node != null) {
+        char ch = peek();
+        if (ch != '*' && ch != '/') break;
+        po++;
+        node = arithmetic(ch, node, unary());
+      }
+      return node;
+    }
+
+    Node arithmetic(char op, Node left, Node right) {
+      // JEXL does integer arithmetic if both are ints
+      if (right == null || (left.type == INT && right.type == INT)) return null;
+      return new Arithmetic(op, left, right);
+    }
+
+    Node unary() {
+      if (peek() == '-') {
+        po++;
+        Node node = unary();
+        return node == null ? null : new Negate(node);
+      }
+      return primary();
+    }
+
+    Node primary() {
+      char ch = peek();
+      if (ch == '(') {
+        po++;
+        Node node = expression();
+        if (node == null || peek() != ')') return null;
+        po++;
+        return node;
+      }
+      if (ch >= '0' && ch <= '9') return number();
+      String name = name();
+      if (name == null) return null;
+      if (name.equals("NaN")) return new Constant(Double.NaN, DOUBLE);
+      if (peek() != '.') return null;
+      po++;
+      String member = name();
+      if (member == null || peek() != '(') return null;
+      po++;
+      if (name.equals("row")) {
+        int type =
+            member.equals("columnDouble") ? DOUBLE : member.equals("columnFloat") ? FLOAT : -1;
+        String colName = string();
+        if (type < 0 || colName == null || peek() != ')') return null;
+        po++;
+        return new Column(colName, type);
+      }
+      if (!name.equals("Math") && !name.equals("Math2")) return null;
+      String function = name + "." + member;
+      Node arg1 = expression();
+      if (arg1 == null) return null;
+      boolean overloaded = false;
+      for (String o : OVERLOADED) if (o.equals(function)) overloaded = true;
+      if (overloaded && arg1.type != DOUBLE) return null;
+      if (peek() == ')') {
+        po++;
+        DoubleUnaryOperator f = FUNCTIONS1.get(function);
+        return f == null ? null : new Function1(f, arg1);
+      }
+      if (peek() != ',') return null;
+      po++;
+      Node arg2 = expression();
+      if (arg2 == null || peek() != ')') return null;
+      po++;
+      if (overloaded && arg2.type != DOUBLE) return null;
+      DoubleBinaryOperator f = FUNCTIONS2.get(function);
+      return f == null ? null : new Function2(f, arg1, arg2);
+    }
+
+    /** This parses an int or a double literal (without an exponent or a suffix). */
+    Node number() {
+      int start = po;
+      boolean isDouble = false;
+      po = digits(po);
+      if (po < s.length() && s.charAt(po) == '.') {
+        int end = digits(po + 1);
+        if (end == po + 1) return null;
+        isDouble = true;
+        po = end;
+      }
+      // reject exponents and suffixes (e.g., 1.5f or 10L), which have other data types
+      if (po < s.length() && (Character.isLetterOrDigit(s.charAt(po)) || s.charAt(po) == '.'))
+        return null;
+      return new Constant(Double.parseDouble(s.substring(start, po)), isDouble ? DOUBLE : INT);
+    }
+
+    int digits(int from) {
+      while (from < s.length() && s.charAt(from) >= '0' && s.charAt(from) <= '9') from++;
+      return from;
+    }
+
+    String name() {
+      peek();
+      int start = po;
+      while (po < s.length() && Character.isLetterOrDigit(s.charAt(po))) po++;
+      return po == start || Character.isDigit(s.charAt(start)) ? null : s.substring(start, po);
+    }
+
+    /** This parses a quoted string without escaped characters. */
+    String string() {
+      char quote = peek();
+      if (quote != '"' && quote != '\'') return null;
+      int end = s.indexOf(quote, po + 1);
+      if (end < 0) return null;
+      String value = s.substring(po + 1, end);
+      if (value.indexOf('\\') >= 0) return null;
+      po = end + 1;
+      return value;
+    }
+  }
+}
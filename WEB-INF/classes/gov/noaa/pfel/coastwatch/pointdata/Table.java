@@ -10,6 +10,7 @@ import dods.dap.*;
 import gov.noaa.pfel.coastwatch.griddata.DataHelper;
 import gov.noaa.pfel.coastwatch.griddata.FileNameUtility;
 import gov.noaa.pfel.coastwatch.griddata.Matlab;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.util.HtmlWidgets;
@@ -122,6 +123,12 @@ public class Table {
    */
   public boolean allowRaggedRightInReadASCII = false;
 
+  /**
+   * When readASCII reads typed columns, the Strings are converted to the loadColumnTypes in chunks
+   * of this many rows.
+   */
+  public static final int READ_ASCII_CHUNK_SIZE = 10000;
+
   /** If true, readOpendap requestes compressed data. I think this should always be true. */
   public boolean opendapAcceptDeflate = true;
 
@@ -2583,9 +2590,53 @@ public class Table {
         testMin,
         testMax,
         loadColumns,
+        null,
         simplify);
   }
 
+  /**
+   * This variant of readASCII reads the loadColumns into columns of the specified data types. See
+   * readASCII(fileName, linesReader, ...).
+   *
+   * @param fullFileName
+   * @param charset e.g., ISO-8859-1 (used if charset is null or "") or UTF-8.
+   * @param loadColumns the names of the columns to be loaded (perhaps in different order than in
+   *     the file). This mustn't be null.
+   * @param loadColumnTypes the data types for the loadColumns, e.g., "String" or "float".
+   *     "boolean" indicates the data should be interpreted as boolean, but stored as bytes.
+   * @throws Exception if trouble
+   */
+  public void readASCII(
+      String fullFileName,
+      String charset,
+      String skipHeaderToRegex,
+      String skipLinesRegex,
+      int columnNamesLine,
+      int dataStartLine,
+      String tColSeparator,
+      String testColumns[],
+      double testMin[],
+      double testMax[],
+      String loadColumns[],
+      String loadColumnTypes[])
+      throws Exception {
+
+    readASCII(
+        fullFileName,
+        File2.getDecompressedBufferedFileReader(fullFileName, charset),
+        skipHeaderToRegex,
+        skipLinesRegex,
+        columnNamesLine,
+        dataStartLine,
+        tColSeparator,
+        testColumns,
+        testMin,
+        testMax,
+        loadColumns,
+        loadColumnTypes,
+        false);
+  }
+
   /**
    * Another variant. This uses simplify=true.
    *
@@ -2669,6 +2720,52 @@ public class Table {
       boolean simplify)
       throws Exception {
 
+    readASCII(
+        fileName,
+        linesReader,
+        skipHeaderToRegex,
+        skipLinesRegex,
+        columnNamesLine,
+        dataStartLine,
+        tColSeparator,
+        testColumns,
+        testMin,
+        testMax,
+        loadColumns,
+        null,
+        simplify);
+  }
+
+  /**
+   * This variant of readASCII can read the loadColumns into columns of the specified data types.
+   * The values are converted in chunks of READ_ASCII_CHUNK_SIZE rows as the file is read, so only
+   * one chunk of each column is ever stored as Strings. For lines without double quotes (or if
+   * colSeparator isn't ',' or ' '), Strings are only made for the items in the load and test
+   * columns.
+   *
+   * @param loadColumnTypes the data types for the loadColumns, e.g., "String" or "float".
+   *     "boolean" indicates the data should be interpreted as boolean, but stored as bytes. If
+   *     loadColumnTypes is null, all columns are read as Strings (then see simplify). If not null,
+   *     loadColumns mustn't be null, simplify is ignored, and testColumns which aren't in the file
+   *     are ignored.
+   * @throws Exception if trouble (e.g., a specified testColumn or loadColumn not found)
+   */
+  public void readASCII(
+      String fileName,
+      BufferedReader linesReader,
+      String skipHeaderToRegex,
+      String skipLinesRegex,
+      int columnNamesLine,
+      int dataStartLine,
+      String tColSeparator,
+      String testColumns[],
+      double testMin[],
+      double testMax[],
+      String loadColumns[],
+      String loadColumnTypes[],
+      boolean simplify)
+      throws Exception {
+
     try {
 
       // clear everything
@@ -2678,6 +2775,14 @@ public class Table {
       // if (reallyVerbose) String2.log("Table.readASCII " + fileName);
       long time = System.currentTimeMillis();
       String errorInMethod = String2.ERROR + " in Table.readASCII(" + fileName + "):\n";
+      if (loadColumnTypes != null) {
+        Test.ensureTrue(loadColumns != null, errorInMethod + "loadColumns is null.");
+        Test.ensureEqual(
+            loadColumnTypes.length,
+            loadColumns.length,
+            errorInMethod + "loadColumnTypes.length != loadColumns.length.");
+        simplify = false;
+      }
       if (testColumns == null) testColumns = new String[0];
       else {
         Test.ensureEqual(
@@ -2807,6 +2912,9 @@ public class Table {
       int testColumnNumbers[] = null;
       int loadColumnNumbers[] = null;
       StringArray loadColumnSA[] = null;
+      PrimitiveArray loadColumnPA[] = null; // if loadColumnTypes != null
+      boolean itemIsNeeded[] = null; // [fileColumn#]; null=all are needed
+      int nRowsInChunk = 0;
       boolean missingItemNoted = false;
       StringBuilder warnings = new StringBuilder();
       ArrayList<String> items = new ArrayList(16);
@@ -2834,7 +2942,12 @@ public class Table {
 
         try {
           // break the lines into items
-          if (colSeparator == ',') {
+          if (colSeparator != ' '
+              && colSeparator != '\u0000'
+              && (colSeparator != ',' || (oneLine.length() > 0 && oneLine.indexOf('"') < 0))) {
+            // no quoted phrases, so just split, and just make Strings for needed items
+            splitNeededItems(oneLine, colSeparator, itemIsNeeded, items);
+          } else if (colSeparator == ',') {
             StringArray.arrayListFromCSV(
                 oneLine, ",", true, true,
                 items); // trim=true keep=true   //does handle "'d phrases, but leaves them quoted
@@ -2866,10 +2979,10 @@ public class Table {
           testColumnNumbers = new int[testColumns.length];
           for (int col = 0; col < testColumns.length; col++) {
             int po = fileColumnNames.indexOf(testColumns[col], 0);
-            if (po < 0)
+            if (po < 0 && loadColumnTypes == null)
               throw new IllegalArgumentException(
                   errorInMethod + "testColumn '" + testColumns[col] + "' not found.");
-            testColumnNumbers[col] = po;
+            testColumnNumbers[col] = po; // -1 is ignored
           }
 
           // loadColumnNumbers[sourceColumn#] -> outputColumn#
@@ -2886,11 +2999,29 @@ public class Table {
           } else {
             loadColumnNumbers = new int[loadColumns.length];
             loadColumnSA = new StringArray[loadColumns.length];
+            if (loadColumnTypes != null) loadColumnPA = new PrimitiveArray[loadColumns.length];
             for (int col = 0; col < loadColumns.length; col++) {
               loadColumnNumbers[col] = fileColumnNames.indexOf(loadColumns[col], 0);
               loadColumnSA[col] = new StringArray();
-              addColumn(loadColumns[col], loadColumnSA[col]);
+              if (loadColumnTypes == null || loadColumnTypes[col].equals("String")) {
+                addColumn(loadColumns[col], loadColumnSA[col]);
+                if (loadColumnPA != null) loadColumnPA[col] = loadColumnSA[col];
+              } else {
+                loadColumnPA[col] =
+                    loadColumnTypes[col].equals("boolean")
+                        ? new ByteArray()
+                        : PrimitiveArray.factory(
+                            PAType.fromCohortString(loadColumnTypes[col]), 8, false);
+                addColumn(loadColumns[col], loadColumnPA[col]);
+              }
             }
+
+            // from now on, just make Strings for the items in the test and load columns
+            itemIsNeeded = new boolean[fileColumnNames.size()];
+            for (int col = 0; col < testColumnNumbers.length; col++)
+              if (testColumnNumbers[col] >= 0) itemIsNeeded[testColumnNumbers[col]] = true;
+            for (int col = 0; col < loadColumnNumbers.length; col++)
+              if (loadColumnNumbers[col] >= 0) itemIsNeeded[loadColumnNumbers[col]] = true;
           }
           // if (reallyVerbose) String2.log("loadColumnNumbers=" +
           // String2.toCSSVString(loadColumnNumbers));
@@ -2957,7 +3088,14 @@ public class Table {
             loadColumnSA[col].add(""); // missing value
           } // else incorrect nItems added to warnings above
         }
+
+        // convert a chunk of Strings to loadColumnTypes
+        if (loadColumnPA != null && ++nRowsInChunk == READ_ASCII_CHUNK_SIZE) {
+          appendStrings(loadColumnTypes, loadColumnSA, loadColumnPA);
+          nRowsInChunk = 0;
+        }
       }
+      if (loadColumnPA != null) appendStrings(loadColumnTypes, loadColumnSA, loadColumnPA);
       // if (debugMode) String2.log(">> partial table:\n" + dataToString(4));
 
       if (warnings.length() > 0)
@@ -2994,6 +3132,63 @@ public class Table {
     }
   }
 
+  /**
+   * This splits a line (which has no quoted phrases) at colSeparator, like
+   * String2.splitToArrayList(line, colSeparator, true, items), but just makes Strings for the
+   * needed items. The other items are null.
+   *
+   * @param line the line
+   * @param colSeparator the separator
+   * @param itemIsNeeded itemIsNeeded[item#] is true if the item is needed. Items beyond the end of
+   *     itemIsNeeded aren't needed. If null, all items are needed.
+   * @param items receives the (trim'd) items. It is initially clear()'d.
+   */
+  static void splitNeededItems(
+      String line, char colSeparator, boolean itemIsNeeded[], ArrayList<String> items) {
+    items.clear();
+    int lineLength = line.length();
+    int start = 0;
+    while (true) {
+      int end = line.indexOf(colSeparator, start);
+      if (end < 0) end = lineLength;
+      int item = items.size();
+      if (itemIsNeeded == null || (item < itemIsNeeded.length && itemIsNeeded[item])) {
+        // trim like String.trim()
+        int first = start;
+        int last = end;
+        while (first < last && line.charAt(first) <= ' ') first++;
+        while (last > first && line.charAt(last - 1) <= ' ') last--;
+        items.add(line.substring(first, last));
+      } else {
+        items.add(null);
+      }
+      if (end == lineLength) return;
+      start = end + 1;
+    }
+  }
+
+  /**
+   * This converts the Strings in the non-String loadColumnSA's to the loadColumnTypes, appends them
+   * to the loadColumnPA's, and clears those loadColumnSA's.
+   */
+  private static void appendStrings(
+      String loadColumnTypes[], StringArray loadColumnSA[], PrimitiveArray loadColumnPA[]) {
+    for (int col = 0; col < loadColumnSA.length; col++) {
+      StringArray sa = loadColumnSA[col];
+      PrimitiveArray pa = loadColumnPA[col];
+      if (pa == sa) continue;
+      if (loadColumnTypes[col].equals("boolean")) {
+        pa.append(ByteArray.toBooleanToByte(sa));
+      } else if (pa instanceof CharArray) {
+        int n = sa.size();
+        for (int i = 0; i < n; i++) pa.addString(sa.get(i));
+      } else {
+        pa.append(sa);
+      }
+      sa.clear();
+    }
+  }
+
   /**
    * This is like the other readStandardTabbedASCII, but this one actually reads the data from the
    * file.
@@ -5675,7 +5870,8 @@ public class Table {
     String msg = "  Table.readNcMetadata " + fullName;
     long time = System.currentTimeMillis();
     Attributes gridMappingAtts = null;
-    NetcdfFile netcdfFile = NcHelper.openFile(fullName);
+    NetcdfFile netcdfFile = NcFileCache.open(fullName);
+    boolean ncFileOk = false;
     try {
       // fill the table
       clear();
@@ -5721,11 +5917,9 @@ public class Table {
                 + " TIME="
                 + (System.currentTimeMillis() - time)
                 + "ms";
+      ncFileOk = true;
     } finally {
-      try {
-        if (netcdfFile != null) netcdfFile.close();
-      } catch (Exception e9) {
-      }
+      NcFileCache.release(netcdfFile, ncFileOk);
     }
   }
 
@@ -6114,7 +6308,8 @@ public class Table {
     // get information
     Attributes gridMappingAtts = null;
     StringArray varsNotFound = new StringArray();
-    NetcdfFile ncFile = NcHelper.openFile(fullName);
+    NetcdfFile ncFile = NcFileCache.open(fullName);
+    boolean ncFileOk = false;
     try {
       // load the global metadata
       NcHelper.getGroupAttributes(ncFile.getRootGroup(), globalAttributes());
@@ -6487,11 +6682,9 @@ public class Table {
                 + " time="
                 + (System.currentTimeMillis() - time)
                 + "ms");
+      ncFileOk = true;
     } finally {
-      try {
-        if (ncFile != null) ncFile.close();
-      } catch (Exception e9) {
-      }
+      NcFileCache.release(ncFile, ncFileOk);
     }
   }
 
@@ -7747,14 +7940,15 @@ public class Table {
             if (debugMode)
               String2.log("  Debug: nObsRows=" + tnRows + " nObsKeep=" + indexVarPA.size());
 
-            // read all of requested variable[obs]
-            // With indexed, we have to read entire var then apply obsKeep.
+            // read the obsKeep rows of requested variable[obs]
+            // With indexed, the rows are usually scattered, so the entire var is read
+            // then obsKeep is applied.
             for (int v = 0; v < nVars; v++) {
               if (varInLoadOrConVariables[v]
                   && varNDims[v] == 1
                   && varUsesDim[v][obsDim]) { // ensure correct dim
-                PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v]);
-                pa.justKeep(obsKeep); // as each var read in, to save memory
+                // just read the obsKeep rows (if they are in a few ranges)
+                PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v], obsKeep);
                 pa.trimToSize();
                 addColumn(nColumns(), varNames[v], pa, varAtts[v]);
                 standardizeLastColumn(standardizeWhat);
@@ -7867,8 +8061,8 @@ public class Table {
               if (varInLoadOrConVariables[v]
                   && varNDims[v] == 1
                   && varUsesDim[v][obsDim]) { // ensure correct dim
-                PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v]);
-                pa.justKeep(obsKeep); // as each var read in, to save memory
+                // just read the obsKeep rows (if they are in a few ranges)
+                PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v], obsKeep);
                 pa.trimToSize();
                 addColumn(nColumns(), varNames[v], pa, varAtts[v]);
                 standardizeLastColumn(standardizeWhat);
@@ -8478,8 +8672,8 @@ public class Table {
           if (varInLoadOrConVariables[v]
               && varNDims[v] == 1
               && varUsesDim[v][obsDim]) { // ensure correct dim
-            PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v]);
-            pa.justKeep(obsKeep); // as each var read in, to save memory
+            // just read the obsKeep rows (if they are in a few ranges)
+            PrimitiveArray pa = NcHelper.getPrimitiveArray(vars[v], obsKeep);
             pa.trimToSize();
             addColumn(nColumns(), varNames[v], pa, varAtts[v]);
             standardizeLastColumn(standardizeWhat);
@@ -36,6 +36,7 @@ public class SimpleXMLReader {
   private String endWhiteSpace = "";
   private StringBuilder tagBuffer = new StringBuilder();
   private long lineNumber = 1, tagNumber = 0;
+  private StringBuilder capture = null; // if not null, raw xml is appended as it is read
 
   /**
    * This constructor ensures that the first tag starts with "&lt;?xml " and ends with "?&gt;", and
@@ -339,13 +340,13 @@ public class SimpleXMLReader {
         tagBuffer.setLength(0); // must be inside the do loop
 
         // read 'content' to start of tag "<"
-        int iCh = reader.read();
+        int iCh = read();
         if (iCh < 0) throw new Exception("end of file");
         else if (iCh == 10) lineNumber++;
         char ch = (char) iCh;
         while (ch != '<') {
           if (ch != '\r') contentBuffer.append(ch);
-          iCh = reader.read();
+          iCh = read();
           if (iCh < 0) throw new Exception("end of file");
           else if (iCh == 10) lineNumber++;
           ch = (char) iCh;
@@ -354,13 +355,13 @@ public class SimpleXMLReader {
         // read to end of tag ">", or end of comment tag "-->", or end of cdata <![CDATA[  ]]>
         boolean done = false;
         while (!done) {
-          iCh = reader.read();
+          iCh = read();
           if (iCh < 0) throw new Exception("end of file");
           else if (iCh == 10) lineNumber++;
           ch = (char) iCh;
           while (ch != '>') {
             if (ch != '\r') tagBuffer.append(ch);
-            iCh = reader.read();
+            iCh = read();
             if (iCh < 0) throw new Exception("end of file");
             else if (iCh == 10) lineNumber++;
             ch = (char) iCh;
@@ -555,6 +556,37 @@ public class SimpleXMLReader {
     content = XML.decodeEntities(contentBuffer.toString());
   }
 
+  /** This reads the next char (or -1 at end of file) and appends it to capture (if active). */
+  private int read() throws java.io.IOException {
+    int iCh = reader.read();
+    if (capture != null && iCh >= 0) capture.append((char) iCh);
+    return iCh;
+  }
+
+  /**
+   * This starts capturing the raw xml, starting with the most recently read tag (which must be a
+   * start tag, e.g., &lt;dataset type="..." datasetID="..."&gt;). Call stopCapture() after the
+   * matching end tag has been read. The captured xml (e.g., a &lt;dataset&gt; from datasets.xml)
+   * can be parsed later by another SimpleXMLReader.
+   */
+  public void startCapture() {
+    capture = new StringBuilder();
+    capture.append('<').append(tagBuffer);
+    if (itsOwnEndTag) capture.append('/');
+    capture.append('>');
+  }
+
+  /**
+   * This stops capturing the raw xml.
+   *
+   * @return the raw xml captured since startCapture() (or null if capture wasn't active)
+   */
+  public String stopCapture() {
+    String s = capture == null ? null : capture.toString();
+    capture = null;
+    return s;
+  }
+
   /**
    * This skips efficiently until the stackSize is toStackSize. E.g., call this after an opening tag
    * is read in order to skip efficiently to the matching closing tag by calling
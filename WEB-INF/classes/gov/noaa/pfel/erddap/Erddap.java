@@ -187,6 +187,9 @@ public class Erddap extends HttpServlet {
   public ConcurrentHashMap<String, int[]> failedLogins = new ConcurrentHashMap(16, 0.75f, 4);
   public ConcurrentHashMap<String, ConcurrentHashMap> categoryInfo =
       new ConcurrentHashMap(16, 0.75f, 4);
+
+  /** The original search engine's index of the datasets' searchBytes. */
+  public final SearchIndex searchIndex = new SearchIndex();
   public long lastClearedFailedLogins = System.currentTimeMillis();
 
   /**
@@ -971,6 +974,9 @@ public class Erddap extends HttpServlet {
 
     } finally {
 
+      // stop the read ahead of GridDataAccessors which the request stopped using early
+      GridDataAccessor.releaseThreadReadAheads();
+
       try {
         // remove requestNumber from activeRequests
         EDStatic.activeRequests.remove(requestNumber + ""); // shouldn't ever fail
@@ -5814,6 +5820,7 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       String queryString)
       throws Throwable {
 
+    long startMillis = System.currentTimeMillis();
     String tErddapUrl = EDStatic.erddapUrl(loggedInAs, language);
     String requestUrl = request.getRequestURI(); // post EDStatic.baseUrl, pre "?"
     String fileTypeName = "";
@@ -6278,6 +6285,16 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
         String2.log(MustBe.throwableToString(e2));
       } // essential, to end compression  //hard to put in finally {}
     }
+
+    // the response was successful
+    RequestMetrics.response(
+        protocol,
+        id,
+        fileTypeName,
+        System.currentTimeMillis() - startMillis,
+        outputStreamSource instanceof OutputStreamFromHttpResponse osfhr
+            ? osfhr.bytesWritten()
+            : -1);
   }
 
   /**
@@ -16187,6 +16204,8 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       searchWordsB[w] = String2.stringToUtf8Bytes(sw);
       jumpB[w] = String2.makeJumpTable(searchWordsB[w]);
     }
+    // the datasets which may match (so the others needn't be searched)
+    SearchIndex.Candidates candidates = searchIndex.candidates(isNegative, searchWordsB);
 
     for (int i = 0; i < ntDatasetIDs; i++) {
       String tId = tDatasetIDs.get(i);
@@ -16198,6 +16217,7 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
           && !edd.isAccessibleTo(roles)
           && !edd.graphsAccessibleToPublic()) // search for datasets is always a metadata request
       continue;
+      if (!searchIndex.isCandidate(candidates, tId, edd.searchBytes())) continue;
       nDatasetsSearched++;
       int rank = edd.searchRank(isNegative, searchWordsB, jumpB);
       if (rank < Integer.MAX_VALUE) {
@@ -23699,6 +23719,12 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       for (int av = 0; av < na; av++)
         categorizeVariableAtts(add, catInfo, eddGrid.axisVariables()[av], id);
     }
+
+    // the original search engine's index (Lucene doesn't cache searchBytes)
+    if (!EDStatic.useLuceneSearchEngine) {
+      if (add) searchIndex.add(id, edd.searchBytes());
+      else searchIndex.remove(id, edd.searchBytes());
+    }
   }
 
   /**
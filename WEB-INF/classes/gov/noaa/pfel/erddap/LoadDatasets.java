@@ -22,6 +22,7 @@ import gov.noaa.pfel.erddap.util.*;
 import gov.noaa.pfel.erddap.variable.EDV;
 import java.awt.Color;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
@@ -50,7 +51,9 @@ import java.util.regex.Pattern;
  *   <li>Loading datasets takes time, but is done in a separate thread so it never slows down
  *       requests for a dataset.
  *   <li>Only one thread is used to load all the datasets, so loading datasets never becomes a drain
- *       of computer resources.
+ *       of computer resources. (Unless setup.xml's &lt;loadDatasetsNThreads&gt; is 2+. Then
+ *       independent datasets are built on a bounded pool (see ParallelDatasetLoader), but they are
+ *       still registered one-by-one, in datasets.xml order, by this thread.)
  *   <li>The datasets.xml file is read anew each time this is run, so you can make changes to the
  *       file (e.g., add datasets or change metadata) and the results take effect without restarting
  *       Erddap.
@@ -454,7 +457,14 @@ public class LoadDatasets extends Thread {
       HashMap tUserHashMap) {
     SimpleXMLReader xmlReader = null;
     int nTry = 0, nDatasets = 0;
+    byte[] datasetsXml = null; // only used (briefly) if loadDatasetsNThreads > 1
+    ParallelDatasetLoader parallelLoader = null;
     try {
+      if (EDStatic.loadDatasetsNThreads > 1) {
+        datasetsXml = inputStream.readAllBytes();
+        inputStream.close();
+        inputStream = new ByteArrayInputStream(datasetsXml);
+      }
       xmlReader = new SimpleXMLReader(inputStream, "erddapDatasets");
       String startError = "datasets.xml error on line #";
       while (true) {
@@ -483,6 +493,20 @@ public class LoadDatasets extends Thread {
                     + "This <dataset> doesn't have a datasetID!");
           if (majorLoad) orphanIDSet.remove(tId);
 
+          // first dataset? start building datasets in parallel
+          if (datasetsXml != null) {
+            try {
+              parallelLoader =
+                  new ParallelDatasetLoader(
+                      erddap, datasetsXml, datasetsRegex, EDStatic.loadDatasetsNThreads);
+            } catch (Throwable t) {
+              ParallelDatasetLoader.logSetupError(t);
+            }
+            datasetsXml = null;
+          }
+          ParallelDatasetLoader.Candidate prebuilt =
+              parallelLoader == null ? null : parallelLoader.claim(tId);
+
           // Looking for reasons to skip loading this dataset.
           // Test first: skip dataset because it is a duplicate datasetID?
           //  If isDuplicate, act as if this doesn't even occur in datasets.xml.
@@ -505,11 +529,19 @@ public class LoadDatasets extends Thread {
           }
 
           // Test third: look at flag/age  or active=false
+          boolean flagged = false;
           if (!skip) {
             // always check both flag locations
             boolean isFlagged = File2.delete(EDStatic.fullResetFlagDirectory + tId);
             boolean isBadFilesFlagged = File2.delete(EDStatic.fullBadFilesFlagDirectory + tId);
             boolean isHardFlagged = File2.delete(EDStatic.fullHardFlagDirectory + tId);
+            flagged = isFlagged || isBadFilesFlagged || isHardFlagged;
+            // a dataset built in parallel can't be used if it was flagged since it was built.
+            // Discard it now, so that a build in progress stops before the cached info is deleted.
+            if (prebuilt != null && flagged) {
+              parallelLoader.discard(prebuilt);
+              prebuilt = null;
+            }
             if (isFlagged) {
               String2.log(
                   "*** reloading datasetID=" + tId + " because it was in the flag directory.");
@@ -597,6 +629,12 @@ public class LoadDatasets extends Thread {
           //    !tId.startsWith("etopo"))
           //    skip = true;
 
+          // a dataset built in parallel can't be used if it will be skipped
+          if (prebuilt != null && skip) {
+            parallelLoader.discard(prebuilt);
+            prebuilt = null;
+          }
+
           if (skip) {
             // skip over the tags for this dataset
             while (!tags.equals("<erddapDatasets></dataset>")) {
@@ -614,7 +652,14 @@ public class LoadDatasets extends Thread {
             EDStatic.cldStartMillis = timeToLoadThisDataset;
             EDStatic.cldDatasetID = tId;
             try {
-              dataset = EDD.fromXml(erddap, xmlReader.attributeValue("type"), xmlReader);
+              if (prebuilt == null) {
+                dataset = EDD.fromXml(erddap, xmlReader.attributeValue("type"), xmlReader);
+              } else {
+                // it was built by parallelLoader, so just skip over its tags here
+                while (!xmlReader.allTags().equals("<erddapDatasets></dataset>"))
+                  xmlReader.nextTag();
+                dataset = parallelLoader.getDataset(prebuilt);
+              }
 
               // check for interruption right before making changes to Erddap
               if (isInterrupted()) { // this is a likely place to catch interruption
@@ -1185,6 +1230,7 @@ public class LoadDatasets extends Thread {
         EDStatic.email(EDStatic.emailEverythingToCsv, subject, content);
       }
     } finally {
+      if (parallelLoader != null) parallelLoader.finish();
       if (xmlReader != null)
         try {
           xmlReader.close();
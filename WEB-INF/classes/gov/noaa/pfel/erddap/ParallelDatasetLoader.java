@@ -0,0 +1,418 @@
+/*
+ * ParallelDatasetLoader Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap;
+
+import com.cohort.util.File2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.util.SimpleXMLReader;
+import gov.noaa.pfel.erddap.dataset.EDD;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This builds datasets from datasets.xml on a bounded pool of threads (if
+ * EDStatic.loadDatasetsNThreads &gt; 1), ahead of LoadDatasets, which still processes datasets.xml
+ * one dataset at a time. When LoadDatasets reaches a dataset that was built here, it just waits for
+ * (usually already finished) the result, then registers the dataset (the hashMaps,
+ * addRemoveDatasetInfo, Lucene, subscriptions) exactly as before. So datasets are still registered
+ * in datasets.xml order and by just one thread.
+ *
+ * <p>Only datasets which LoadDatasets would certainly (re)load with a plain EDD.fromXml are built
+ * here: top-level, not a duplicate, matching datasetsRegex, not active="false", not flagged, and
+ * not young. Datasets which have child datasets (e.g., EDDGridSideBySide, EDDTableFromEDDGrid,
+ * EDDGridAggregateExistingDimension, EDDGridCopy) may depend on the datasets before them in
+ * datasets.xml (e.g., a localChildDatasetID), so they are never built here: LoadDatasets builds
+ * them itself when it gets to them, after all of the datasets before them have been registered.
+ * For the same reason, EDDGridFromErddap and EDDTableFromErddap datasets whose sourceUrl refers to
+ * this ERDDAP (e.g., http://localhost:8080/erddap/...) are never built here.
+ *
+ * <p>If LoadDatasets discards a dataset which is already being built (e.g., because it was flagged
+ * after the pool started building it), the build is interrupted and LoadDatasets waits for it to
+ * stop, so the build doesn't change the dataset's cached files while LoadDatasets deletes them or
+ * builds the dataset again.
+ *
+ * <p>Tags in datasets.xml that change settings (e.g., &lt;standardLicense&gt;) should be before
+ * the first &lt;dataset&gt; (as usual), since the pool starts building datasets when LoadDatasets
+ * reaches the first &lt;dataset&gt;.
+ *
+ * <p>At most 2*nThreads datasets are built ahead of LoadDatasets, so at most a few new datasets
+ * are in memory (alongside the old versions) while waiting to be registered.
+ */
+public class ParallelDatasetLoader {
+
+  // statistics for the status page (only changed by the LoadDatasets thread)
+  private static volatile String lastStatus = "";
+  private static volatile long totalSavedMillis = 0; // since startup
+
+  private final Map<String, ? extends EDD> gridDatasets;
+  private final Map<String, ? extends EDD> tableDatasets;
+  private final Maker maker;
+  private final ExecutorService executor;
+  private final int nThreads;
+  private final int window;
+  private final ArrayList<Candidate> candidates = new ArrayList<>();
+  private final HashMap<String, Integer> candidateIndex = new HashMap<>();
+  private final long startMillis = System.currentTimeMillis();
+  private int nSubmitted = 0;
+  private int nUsed = 0;
+  private long buildMillis = 0; // sum of the build times of the datasets that were used
+  private long waitMillis = 0; // time LoadDatasets spent waiting for them
+
+  /** This builds a candidate's dataset (in a pool thread). */
+  interface Maker {
+    EDD make(Candidate candidate) throws Exception;
+  }
+
+  /** A dataset which will be built by the pool. */
+  static class Candidate {
+    static final int WAITING = 0, BUILDING = 1, FINISHED = 2, DISCARDED = 3;
+
+    final String type;
+    String xml; // set to null once the pool starts building the dataset
+    Future<EDD> future; // null until submitted
+    volatile long buildMillis;
+    final AtomicInteger state = new AtomicInteger(WAITING);
+    private final CountDownLatch stopped = new CountDownLatch(1); // when BUILDING ends
+
+    Candidate(String type, String xml) {
+      this.type = type;
+      this.xml = xml;
+    }
+
+    /**
+     * A pool thread calls this to build the dataset, unless it was discarded.
+     *
+     * @param maker makes the dataset
+     * @return the dataset
+     * @throws Exception if trouble, or CancellationException if the candidate was discarded
+     */
+    EDD build(Callable<EDD> maker) throws Exception {
+      if (!state.compareAndSet(WAITING, BUILDING))
+        throw new CancellationException("The dataset was discarded.");
+      long time = System.currentTimeMillis();
+      try {
+        return maker.call();
+      } finally {
+        buildMillis = System.currentTimeMillis() - time;
+        state.set(FINISHED);
+        stopped.countDown();
+      }
+    }
+
+    /**
+     * This ensures the dataset won't be built. If it is being built, this interrupts the build and
+     * waits for it to stop.
+     */
+    void discard() {
+      if (state.compareAndSet(WAITING, DISCARDED)) {
+        if (future != null) future.cancel(false);
+        return;
+      }
+      if (future != null) future.cancel(true); // interrupt the build
+      try {
+        stopped.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt(); // so LoadDatasets notices
+      }
+    }
+  }
+
+  /**
+   * This finds the datasets that can be built in parallel and starts building the first few.
+   *
+   * @param erddap the erddap (for the hashMaps of the current datasets)
+   * @param datasetsXml the bytes of the datasets.xml file
+   * @param datasetsRegex the regex of the datasetIDs to be loaded
+   * @param tNThreads the number of threads (2+)
+   * @throws Exception if trouble (e.g., datasets.xml is invalid). Then LoadDatasets should just
+   *     load the datasets sequentially (as usual) and report the error.
+   */
+  public ParallelDatasetLoader(
+      Erddap erddap, byte[] datasetsXml, String datasetsRegex, int tNThreads) throws Exception {
+    this(
+        erddap.gridDatasetHashMap,
+        erddap.tableDatasetHashMap,
+        datasetsXml,
+        datasetsRegex,
+        tNThreads,
+        candidate -> build(erddap, candidate));
+  }
+
+  /**
+   * This is like the public constructor, but the current datasets and the way the candidates are
+   * built are specified (e.g., for tests).
+   *
+   * @param tGridDatasets the current grid datasets (to see if a dataset is young)
+   * @param tTableDatasets the current table datasets
+   * @param tMaker builds a candidate's dataset
+   */
+  ParallelDatasetLoader(
+      Map<String, ? extends EDD> tGridDatasets,
+      Map<String, ? extends EDD> tTableDatasets,
+      byte[] datasetsXml,
+      String datasetsRegex,
+      int tNThreads,
+      Maker tMaker)
+      throws Exception {
+    gridDatasets = tGridDatasets;
+    tableDatasets = tTableDatasets;
+    maker = tMaker;
+    nThreads = Math.max(1, tNThreads);
+    window = 2 * nThreads;
+    findCandidates(datasetsXml, datasetsRegex);
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadFactory factory =
+        runnable -> {
+          Thread thread =
+              new Thread(runnable, "LoadDatasets parallel " + threadNumber.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        };
+    executor =
+        new ThreadPoolExecutor(
+            nThreads, nThreads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+    submitThrough(window - 1);
+    String2.log(
+        "ParallelDatasetLoader: nThreads="
+            + nThreads
+            + " nCandidates="
+            + candidates.size()
+            + " findCandidatesTime="
+            + (System.currentTimeMillis() - startMillis)
+            + "ms");
+  }
+
+  /** This reads datasets.xml and gathers the datasets which can be built in parallel. */
+  private void findCandidates(byte[] datasetsXml, String datasetsRegex) throws Exception {
+    HashSet<String> datasetIDSet = new HashSet<>();
+    SimpleXMLReader xmlReader =
+        new SimpleXMLReader(new ByteArrayInputStream(datasetsXml), "erddapDatasets");
+    try {
+      while (true) {
+        xmlReader.nextTag();
+        String tags = xmlReader.allTags();
+        if (tags.equals("</erddapDatasets>")) break;
+        if (!tags.equals("<erddapDatasets><dataset>")) continue;
+
+        String tId = xmlReader.attributeValue("datasetID");
+        String tType = xmlReader.attributeValue("type");
+        String tActive = xmlReader.attributeValue("active");
+        boolean ok =
+            String2.isSomething(tId)
+                && datasetIDSet.add(tId)
+                && tId.matches(datasetsRegex)
+                && tType != null
+                && !"false".equals(tActive)
+                && !File2.isFile(EDStatic.fullResetFlagDirectory + tId)
+                && !File2.isFile(EDStatic.fullBadFilesFlagDirectory + tId)
+                && !File2.isFile(EDStatic.fullHardFlagDirectory + tId)
+                && !isYoung(tId);
+
+        // read to the end of this dataset, noting whether it has child datasets
+        // or is a FromErddap dataset which refers to a dataset in this ERDDAP
+        if (ok) xmlReader.startCapture();
+        boolean hasChild = false;
+        boolean isLocalFromErddap = false;
+        while (!xmlReader.allTags().equals("<erddapDatasets></dataset>")) {
+          xmlReader.nextTag();
+          if (xmlReader.stackSize() > 2 && xmlReader.topTag().equals("dataset")) hasChild = true;
+          if (xmlReader.allTags().equals("<erddapDatasets><dataset></sourceUrl>")
+              && (tType.equals("EDDGridFromErddap") || tType.equals("EDDTableFromErddap"))
+              && isLocalErddapUrl(xmlReader.content())) isLocalFromErddap = true;
+        }
+        String xml = xmlReader.stopCapture();
+        if (ok && !hasChild && !isLocalFromErddap) {
+          candidateIndex.put(tId, candidates.size());
+          candidates.add(new Candidate(tType, xml));
+        }
+      }
+    } finally {
+      xmlReader.close();
+    }
+  }
+
+  /**
+   * This returns true if the url refers to this ERDDAP (or to another ERDDAP on this computer).
+   *
+   * @param url a FromErddap dataset's sourceUrl
+   * @return true if the url refers to this ERDDAP
+   */
+  static boolean isLocalErddapUrl(String url) {
+    if (url == null) return false;
+    url = url.trim();
+    return (EDStatic.erddapUrl != null && url.startsWith(EDStatic.erddapUrl + "/"))
+        || (EDStatic.erddapHttpsUrl != null && url.startsWith(EDStatic.erddapHttpsUrl + "/"))
+        || url.matches("(?i)https?://(localhost|127\\.0\\.0\\.1)([:/].*)?");
+  }
+
+  /**
+   * This returns true if the pool will build the dataset (if LoadDatasets claims it).
+   *
+   * @param tId the datasetID
+   * @return true if the dataset is a candidate which hasn't been claimed
+   */
+  boolean isCandidate(String tId) {
+    return candidateIndex.containsKey(tId);
+  }
+
+  /** This returns true if the dataset exists and is younger than its reloadEveryNMinutes. */
+  private boolean isYoung(String tId) {
+    EDD oldEdd = gridDatasets.get(tId);
+    if (oldEdd == null) oldEdd = tableDatasets.get(tId);
+    if (oldEdd == null || oldEdd.creationTimeMillis() <= 0) return false;
+    long minutesOld = (System.currentTimeMillis() - oldEdd.creationTimeMillis()) / 60000;
+    return minutesOld < oldEdd.getReloadEveryNMinutes();
+  }
+
+  /** This submits the candidates up to and including index. */
+  private void submitThrough(int index) {
+    index = Math.min(index, candidates.size() - 1);
+    while (nSubmitted <= index) {
+      Candidate candidate = candidates.get(nSubmitted++);
+      candidate.future = executor.submit(() -> candidate.build(() -> maker.make(candidate)));
+    }
+  }
+
+  /** This builds a dataset from its xml (in a pool thread). */
+  private static EDD build(Erddap erddap, Candidate candidate) throws Exception {
+    String xml = candidate.xml;
+    candidate.xml = null;
+    SimpleXMLReader xmlReader =
+        new SimpleXMLReader(
+            new ByteArrayInputStream(
+                String2.stringToUtf8Bytes(
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<erddapDatasets>"
+                        + xml
+                        + "</erddapDatasets>\n")),
+            "erddapDatasets");
+    try {
+      xmlReader.nextTag(); // <erddapDatasets><dataset>
+      return EDD.fromXml(erddap, candidate.type, xmlReader);
+    } finally {
+      xmlReader.close();
+    }
+  }
+
+  /**
+   * LoadDatasets calls this when it reaches a dataset in datasets.xml. If the dataset is being
+   * built by the pool, this returns its candidate (see getDataset), else null.
+   *
+   * @param tId the datasetID
+   * @return the candidate, or null if LoadDatasets must build the dataset itself
+   */
+  Candidate claim(String tId) {
+    Integer index = candidateIndex.remove(tId);
+    if (index == null) return null;
+    submitThrough(index + window);
+    return candidates.get(index);
+  }
+
+  /**
+   * LoadDatasets calls this if it won't use a claimed dataset (e.g., because it was flagged after
+   * this started). If the pool hasn't started building it yet, it won't. If the pool is building
+   * it, this interrupts the build and waits for it to stop.
+   *
+   * @param candidate a candidate from claim()
+   */
+  void discard(Candidate candidate) {
+    candidate.discard();
+  }
+
+  /**
+   * This waits for the pool to finish building a claimed dataset.
+   *
+   * @param candidate a candidate from claim()
+   * @return the dataset
+   * @throws Throwable the exception thrown while making the dataset (as if LoadDatasets had called
+   *     EDD.fromXml)
+   */
+  EDD getDataset(Candidate candidate) throws Throwable {
+    long time = System.currentTimeMillis();
+    try {
+      return candidate.future.get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt(); // so LoadDatasets notices
+      throw e;
+    } finally {
+      waitMillis += System.currentTimeMillis() - time;
+      if (candidate.future.isDone() && !candidate.future.isCancelled()) {
+        buildMillis += candidate.buildMillis;
+        nUsed++;
+      }
+    }
+  }
+
+  /**
+   * This shuts down the pool (datasets not yet claimed are abandoned) and notes the time saved for
+   * the status page. The time saved is the time it would have taken LoadDatasets to build the
+   * datasets that it got from the pool, minus the time it spent waiting for them.
+   */
+  void finish() {
+    executor.shutdownNow();
+    long savedMillis = Math.max(0, buildMillis - waitMillis);
+    totalSavedMillis += savedMillis;
+    lastStatus =
+        "nThreads="
+            + nThreads
+            + " nDatasetsBuiltInParallel="
+            + nUsed
+            + " buildTime="
+            + buildMillis / 1000
+            + "s waitTime="
+            + waitMillis / 1000
+            + "s timeSaved="
+            + savedMillis / 1000
+            + "s";
+    String2.log("ParallelDatasetLoader finished: " + lastStatus);
+  }
+
+  /**
+   * This returns a one line status report for the status page, e.g., "Parallel LoadDatasets (last
+   * major or minor load): nThreads=4 nDatasetsBuiltInParallel=120 buildTime=300s waitTime=80s
+   * timeSaved=220s (timeSaved since startup=1500s)".
+   *
+   * @return the status string (with a trailing newline), or "" if parallel loading isn't active
+   */
+  public static String statusString() {
+    String tStatus = lastStatus;
+    if (tStatus.isEmpty()) return "";
+    return "Parallel LoadDatasets (last load): "
+        + tStatus
+        + " (timeSaved since startup="
+        + totalSavedMillis / 1000
+        + "s)\n";
+  }
+
+  /**
+   * This logs an unexpected error while setting up parallel loading.
+   *
+   * @param t the error
+   */
+  static void logSetupError(Throwable t) {
+    String2.log(
+        String2.ERROR
+            + " in ParallelDatasetLoader, so datasets will be loaded sequentially:\n"
+            + MustBe.throwableToString(t));
+  }
+}
@@ -101,6 +101,10 @@ public class RunLoadDatasets extends Thread {
                 System.currentTimeMillis() - EDStatic.cacheMillis,
                 true,
                 false); // false: important not to delete empty dirs
+        // then, if the cache is still too big, delete the least recently used files
+        if (EDStatic.cacheMaxMB > 0)
+          ResponseCache.trim(
+              EDStatic.fullCacheDirectory, EDStatic.cacheMaxMB * (long) Math2.BytesPerMB);
         int nPublicFiles =
             File2.deleteIfOld(
                 EDStatic.fullPublicDirectory,
@@ -0,0 +1,191 @@
+/*
+ * SearchIndex Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This is an in-memory inverted index of the datasets' searchBytes (see EDD.searchBytes()) for the
+ * original search engine, so a search doesn't have to scan every dataset's searchBytes.
+ *
+ * <p>The original search engine matches search words as substrings (not just whole words) and
+ * ranks datasets by where the words are found, so this indexes the trigrams (3 consecutive bytes)
+ * of the searchBytes. Each trigram is hashed into one of N_BUCKETS buckets, and each bucket has a
+ * BitSet of the datasets (by an internal int id) which have a trigram in the bucket. So memory use
+ * is fixed (N_BUCKETS bits per dataset) and adding or removing a dataset just sets or clears one
+ * bit per distinct trigram. A dataset can only match a search word (of 3 or more bytes) if it has
+ * all of the word's trigrams, so the datasets which have bits set in all of the word's buckets are
+ * the candidates. The candidates are a superset of the matching datasets (because of hash
+ * collisions), so Erddap still calls EDD.searchRank() for each candidate, which finds the real
+ * matches and their ranks exactly as before.
+ *
+ * <p>Negative search words and words with fewer than 3 bytes can't eliminate datasets. A dataset
+ * which isn't in the index (or whose searchBytes changed, or if the index changed since the
+ * candidates were found) is always treated as a candidate, so the results are always the same as
+ * a linear search.
+ *
+ * <p>This is thread-safe.
+ */
+public class SearchIndex {
+
+  /** The number of buckets (a power of 2). */
+  public static final int N_BUCKETS = 1 << 14;
+
+  private static final int BUCKET_SHIFT = 32 - Integer.numberOfTrailingZeros(N_BUCKETS);
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final BitSet buckets[] = new BitSet[N_BUCKETS]; // null until used
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final BitSet freeIds = new BitSet();
+  private int nextId = 0;
+  // This is changed at the start of every add or remove (so before the entries or buckets change).
+  private volatile long version = 0;
+
+  /** A dataset in the index. */
+  private static class Entry {
+    final int id;
+    final byte searchBytes[];
+
+    Entry(int id, byte searchBytes[]) {
+      this.id = id;
+      this.searchBytes = searchBytes;
+    }
+  }
+
+  /** The datasets which may match a search (see candidates()). */
+  public static class Candidates {
+    final BitSet ids;
+    final long version;
+
+    Candidates(BitSet ids, long version) {
+      this.ids = ids;
+      this.version = version;
+    }
+  }
+
+  /** This returns the bucket for the trigram starting at bytes[po]. */
+  private static int bucket(byte bytes[], int po) {
+    int trigram =
+        ((bytes[po] & 0xff) << 16) | ((bytes[po + 1] & 0xff) << 8) | (bytes[po + 2] & 0xff);
+    return (trigram * 0x9E3779B1) >>> BUCKET_SHIFT;
+  }
+
+  /** This returns the set of buckets of the trigrams in bytes. */
+  private static BitSet bucketsOf(byte bytes[]) {
+    BitSet bs = new BitSet(N_BUCKETS);
+    int n = bytes.length - 2;
+    for (int po = 0; po < n; po++) bs.set(bucket(bytes, po));
+    return bs;
+  }
+
+  /**
+   * This adds a dataset to the index (or replaces the dataset with the same datasetID).
+   *
+   * @param datasetID the datasetID
+   * @param searchBytes the dataset's searchBytes (which must not be changed later)
+   */
+  public void add(String datasetID, byte searchBytes[]) {
+    BitSet newBuckets = bucketsOf(searchBytes); // outside of lock
+    lock.writeLock().lock();
+    try {
+      version++;
+      Entry old = entries.get(datasetID);
+      if (old != null) clear(old);
+      int id = freeIds.nextSetBit(0);
+      if (id >= 0) freeIds.clear(id);
+      else id = nextId++;
+      for (int b = newBuckets.nextSetBit(0); b >= 0; b = newBuckets.nextSetBit(b + 1)) {
+        if (buckets[b] == null) buckets[b] = new BitSet();
+        buckets[b].set(id);
+      }
+      entries.put(datasetID, new Entry(id, searchBytes));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * This removes a dataset from the index, if the index has this version of the dataset (so
+   * removing an old version of a dataset after the new version was added does nothing).
+   *
+   * @param datasetID the datasetID
+   * @param searchBytes the searchBytes of the version of the dataset to be removed
+   */
+  public void remove(String datasetID, byte searchBytes[]) {
+    lock.writeLock().lock();
+    try {
+      Entry old = entries.get(datasetID);
+      if (old == null || old.searchBytes != searchBytes) return;
+      version++;
+      clear(old);
+      entries.remove(datasetID);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** This clears an entry's bits and frees its id. The caller must have the write lock. */
+  private void clear(Entry entry) {
+    BitSet oldBuckets = bucketsOf(entry.searchBytes);
+    for (int b = oldBuckets.nextSetBit(0); b >= 0; b = oldBuckets.nextSetBit(b + 1))
+      buckets[b].clear(entry.id);
+    freeIds.set(entry.id);
+  }
+
+  /**
+   * This returns the number of datasets in the index.
+   *
+   * @return the number of datasets in the index
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * This finds the datasets which may match all of the positive search words.
+   *
+   * @param isNegative for each word, true if it is a negative search word
+   * @param words the search words (lowercase) as UTF-8 bytes
+   * @return the candidates, or null if the words can't eliminate any datasets
+   */
+  public Candidates candidates(boolean isNegative[], byte words[][]) {
+    BitSet ids = null;
+    lock.readLock().lock();
+    try {
+      for (int w = 0; w < words.length; w++) {
+        if (isNegative[w]) continue;
+        int n = words[w].length - 2;
+        for (int po = 0; po < n; po++) {
+          BitSet bucket = buckets[bucket(words[w], po)];
+          if (bucket == null) return new Candidates(new BitSet(), version);
+          if (ids == null) ids = (BitSet) bucket.clone();
+          else ids.and(bucket);
+        }
+      }
+      return ids == null ? null : new Candidates(ids, version);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * This indicates if a dataset may match the search.
+   *
+   * @param candidates from candidates() (may be null)
+   * @param datasetID the datasetID
+   * @param searchBytes the dataset's current searchBytes
+   * @return false if the dataset certainly doesn't match the search
+   */
+  public boolean isCandidate(Candidates candidates, String datasetID, byte searchBytes[]) {
+    if (candidates == null) return true;
+    Entry entry = entries.get(datasetID);
+    // check version after getting entry, since add and remove change version first
+    if (candidates.version != version || entry == null || entry.searchBytes != searchBytes)
+      return true;
+    return candidates.ids.get(entry.id);
+  }
+}
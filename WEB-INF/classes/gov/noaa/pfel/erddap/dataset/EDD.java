@@ -405,6 +405,12 @@ public abstract class EDD {
   protected ReentrantLock updateLock = null; // setUpdateEveryNMillis creates this if needed
   protected long cumulativeUpdateTime = 0, updateCount = 0;
 
+  /**
+   * The version of this dataset's data (see dataVersion()). It starts at the creation time, so a
+   * reloaded dataset has a new version.
+   */
+  private volatile long dataVersion = System.currentTimeMillis();
+
   /* The source of data is files in an S3 bucket. */
   protected boolean filesInS3Bucket = false;
   /* This source of data is files in a private S3 bucket.
@@ -2863,6 +2869,38 @@ public abstract class EDD {
     return false;
   }
 
+  /**
+   * This returns the version of this dataset's data. It increases each time the dataset notices
+   * that its data has changed (see tracksDataVersion and dataVersionChanged). For datasets which
+   * are updated (see updateEveryNMillis), it is part of the names of cached responses, so cached
+   * responses are reused until the data changes.
+   *
+   * @return the version of this dataset's data
+   */
+  public long dataVersion() {
+    return dataVersion;
+  }
+
+  /**
+   * Subclasses call this each time this dataset's data changes (e.g., when lowUpdate changes the
+   * fileTable).
+   */
+  protected synchronized void dataVersionChanged() {
+    dataVersion = Math.max(dataVersion + 1, System.currentTimeMillis());
+  }
+
+  /**
+   * This indicates if this dataset calls dataVersionChanged() every time its data changes (other
+   * than by a reload, which clears the dataset's cache). If false (the default, since most
+   * datasets can't know when the source's data changes), cached responses for datasets which are
+   * updated aren't reused.
+   *
+   * @return true if dataVersion() identifies the current data
+   */
+  public boolean tracksDataVersion() {
+    return false;
+  }
+
   /**
    * This marks this dataset so that it will be reloaded soon (but not as fast as possible -- via
    * requestReloadASAP) by setting the creationTime to 0, making it appear as if the dataset was
@@ -12037,9 +12075,33 @@ public abstract class EDD {
     }
   }
 
+  /**
+   * This returns true if this dataset saves its dirTable and fileTable in the MappedDirFileTable
+   * .bin format instead of the .nc format. EDDGridFromFiles and EDDTableFromFiles do if
+   * !fileTableInMemory, since then the tables are read for every request.
+   *
+   * @return true if the dirTable and fileTable are saved as .bin files
+   */
+  protected boolean useMappedDirFileTable() {
+    return false;
+  }
+
+  /**
+   * This returns the full name of the file which has this dataset's dirTable or fileTable.
+   *
+   * @param ncFileName DIR_TABLE_FILENAME or FILE_TABLE_FILENAME
+   * @return the full name of the .nc file, or of the .bin file if useMappedDirFileTable()
+   */
+  public String dirFileTableFileName(String ncFileName) {
+    return useMappedDirFileTable()
+        ? MappedDirFileTable.binFileName(datasetDir() + ncFileName)
+        : datasetDir() + ncFileName;
+  }
+
   /**
    * This is used by EDDGridFromFiles and EDDTableFromFiles to save all the file information to
-   * disk.
+   * disk. The dirTable and fileTable are saved as .nc files, or as .bin files if
+   * useMappedDirFileTable(). The tables in the other format (if any) are deleted.
    *
    * @param tStandardizeWhat If &gt;=0 and &lt; MAX_VALUE, this will be saved as global attribute
    *     "standardizeWhat" in the dirTable and FileTable.
@@ -12050,8 +12112,13 @@ public abstract class EDD {
       int tStandardizeWhat, Table dirTable, Table fileTable, ConcurrentHashMap badFileMap)
       throws Throwable {
 
-    String dirTableFileName = datasetDir() + DIR_TABLE_FILENAME;
-    String fileTableFileName = datasetDir() + FILE_TABLE_FILENAME;
+    boolean useBin = useMappedDirFileTable();
+    String dirTableNcName = datasetDir() + DIR_TABLE_FILENAME;
+    String fileTableNcName = datasetDir() + FILE_TABLE_FILENAME;
+    String dirTableBinName = MappedDirFileTable.binFileName(dirTableNcName);
+    String fileTableBinName = MappedDirFileTable.binFileName(fileTableNcName);
+    String dirTableFileName = useBin ? dirTableBinName : dirTableNcName;
+    String fileTableFileName = useBin ? fileTableBinName : fileTableNcName;
     String badFilesFileName = badFileMapFileName();
     int random = Math2.random(Integer.MAX_VALUE);
 
@@ -12096,8 +12163,13 @@ public abstract class EDD {
       fileTable.globalAttributes().set("erddapVersion", EDStatic.erddapVersion);
       dirTable.globalAttributes().set(_dirFileTableVersion_, DIR_FILE_TABLE_VERSION);
       fileTable.globalAttributes().set(_dirFileTableVersion_, DIR_FILE_TABLE_VERSION);
-      dirTable.saveAsEnhancedFlatNc(dirTableFileName + random); // throws exceptions
-      fileTable.saveAsEnhancedFlatNc(fileTableFileName + random); // throws exceptions
+      if (useBin) {
+        MappedDirFileTable.write(dirTable, dirTableFileName + random); // throws exceptions
+        MappedDirFileTable.write(fileTable, fileTableFileName + random); // throws exceptions
+      } else {
+        dirTable.saveAsEnhancedFlatNc(dirTableFileName + random); // throws exceptions
+        fileTable.saveAsEnhancedFlatNc(fileTableFileName + random); // throws exceptions
+      }
       if (badFileMap != null
           && !badFileMap.isEmpty()) // only create badMapFile if there are some bad files
       writeBadFileMap(badFilesFileName + random, badFileMap);
@@ -12113,6 +12185,11 @@ public abstract class EDD {
       File2.rename(dirTableFileName + random, dirTableFileName);
       // do fileTable last: more changes, more important
       File2.rename(fileTableFileName + random, fileTableFileName);
+      // delete the tables in the other format (e.g., if fileTableInMemory was changed)
+      File2.delete(useBin ? dirTableNcName : dirTableBinName);
+      File2.delete(useBin ? fileTableNcName : fileTableBinName);
+      MappedDirFileTable.invalidate(dirTableBinName);
+      MappedDirFileTable.invalidate(fileTableBinName);
       if (reallyVerbose) String2.log("save fileTable(first 5 rows)=\n" + fileTable.dataToString(5));
     } catch (Throwable t) {
       String subject =
@@ -26,6 +26,7 @@ import com.cohort.util.XML;
 import gov.noaa.pfel.coastwatch.griddata.DataHelper;
 import gov.noaa.pfel.coastwatch.griddata.Grid;
 import gov.noaa.pfel.coastwatch.griddata.Matlab;
+import gov.noaa.pfel.coastwatch.griddata.Nc3StreamWriter;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -57,6 +58,7 @@ import java.util.Arrays;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -2558,6 +2560,64 @@ public abstract class EDDGrid extends EDD {
       int language, Table tDirTable, Table tFileTable, EDV tDataVariables[], IntArray tConstraints)
       throws Throwable;
 
+  /**
+   * This is used by aggregate datasets (e.g., EDDGridAggregateExistingDimension and
+   * EDDGridSideBySide) to get source data from several child datasets (or several parts of one
+   * child) concurrently (with up to this dataset's nThreads (or EDStatic.nGridThreads) requests at
+   * once, via ThreadedWorkManager, so via the SharedWorkerPool if EDStatic.useSharedWorkerPool).
+   *
+   * @param language the index of the selected language
+   * @param children the child dataset for each request
+   * @param tDataVariables the child's data variables for each request
+   * @param tConstraints the child's constraints for each request
+   * @return the results of each child's getSourceData, in the same order as the requests
+   * @throws Throwable if trouble (notably, WaitThenTryAgainException, as thrown by the child)
+   */
+  protected PrimitiveArray[][] getChildrenSourceData(
+      int language, EDDGrid children[], EDV tDataVariables[][], IntArray tConstraints[])
+      throws Throwable {
+    int nRequests = children.length;
+    PrimitiveArray results[][] = new PrimitiveArray[nRequests][];
+    if (nRequests == 1) {
+      results[0] =
+          children[0].getSourceData(language, null, null, tDataVariables[0], tConstraints[0]);
+      return results;
+    }
+
+    int tnThreads =
+        nThreads >= 1 && nThreads < Integer.MAX_VALUE ? nThreads : EDStatic.nGridThreads;
+    tnThreads = adjustNThreads(tnThreads);
+    int nDone[] = {0};
+    // results are processed in the order the tasks were added
+    ThreadedWorkManager<PrimitiveArray[]> workManager =
+        new ThreadedWorkManager<>(
+            Math.min(tnThreads, nRequests), result -> results[nDone[0]++] = result);
+    try {
+      for (int r = 0; r < nRequests; r++) {
+        EDDGrid child = children[r];
+        EDV childDataVariables[] = tDataVariables[r];
+        IntArray childConstraints = tConstraints[r];
+        workManager.addTask(
+            () -> {
+              try {
+                return child.getSourceData(
+                    language, null, null, childDataVariables, childConstraints);
+              } catch (Throwable t) {
+                throw new ExecutionException(t);
+              }
+            });
+      }
+      workManager.finishedEnqueing();
+      workManager.processResults();
+    } catch (Throwable t) {
+      workManager.forceShutdown();
+      while (t instanceof ExecutionException && t.getCause() != null) // may be doubly wrapped
+        t = t.getCause();
+      throw t;
+    }
+    return results;
+  }
+
   /**
    * This makes a sibling dataset, based on the new sourceUrl.
    *
@@ -3166,11 +3226,23 @@ public abstract class EDDGrid extends EDD {
       }
 
       // *** make a file (then copy it to outputStream)
-      // If update system active or real_time=true, don't cache anything.  Make all files unique.
-      if (updateEveryNMillis > 0 || realTime()) {
+      // If real_time=true, or update system active and the data version isn't known
+      //  or the query uses relative times (now), don't cache anything.  Make all files unique.
+      // If update system active and the data version is known, reuse cached files
+      //  until the data changes.
+      boolean versionedName = false;
+      boolean uniqueName = false;
+      if (realTime()
+          || (updateEveryNMillis > 0
+              && (!tracksDataVersion() || ResponseCache.usesNow(userDapQuery)))) {
         fileName +=
             "_U" + System.currentTimeMillis(); // useful because it identifies time of request
         outputStreamSource.setFileName(fileName);
+        uniqueName = true;
+      } else if (updateEveryNMillis > 0) {
+        fileName += "_V" + dataVersion();
+        outputStreamSource.setFileName(fileName);
+        versionedName = true;
       }
 
       // nc files are handled this way because .ncHeader needs to call
@@ -3191,14 +3263,39 @@ public abstract class EDDGrid extends EDD {
                   : fullName);
       int random = Math2.random(Integer.MAX_VALUE);
 
+      // If streamNcGridResponses, a .nc file that isn't cached is sent to the client as it is made
+      // (and is cached if it is completed). This is done without the lock on cacheFullName, so a
+      // slow client doesn't block other requests for the same file (each makes its own copy).
+      // The downside: an error after the header was sent gives the client a truncated .nc file.
+      if (EDStatic.streamNcGridResponses
+          && fileTypeName.equals(".nc")
+          && EDStatic.awsS3OutputBucketUrl == null
+          && !File2.isFile(cacheFullName)
+          && saveAsNc3Stream(
+              language,
+              ipAddress,
+              requestUrl,
+              userDapQuery,
+              outputStreamSource,
+              cacheFullName)) { // it saves a copy to temp random file first
+        ResponseCache.countMiss(uniqueName);
+        try {
+          outputStreamSource.outputStream("").close();
+        } catch (Exception e) {
+        }
+        return;
+      }
+
       // thread-safe creation of the file
       // (If there are almost simultaneous requests for the same one, only one thread will make it.)
       ReentrantLock lock = String2.canonicalLock(cacheFullName);
       if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
         throw new TimeoutException("Timeout waiting for lock on EDDGrid.cacheFullName.");
       try {
-        if (File2.isFile(cacheFullName)) { // don't 'touch()'; files for latest data will change
+        // don't 'touch()' unversioned files; files for latest data will change
+        if (ResponseCache.isCached(cacheFullName, versionedName, uniqueName)) {
           if (verbose) String2.log("  reusing cached " + cacheFullName);
+          RequestMetrics.cacheHit("griddap", datasetID, fileTypeName);
 
         } else if (fileTypeName.equals(".nc") || fileTypeName.equals(".ncHeader")) {
           // if .ncHeader, make sure the .nc file exists (and it is the better file to cache)
@@ -5787,6 +5884,12 @@ public abstract class EDDGrid extends EDD {
     long tSize = partialGda.totalIndex().size();
     Math2.ensureArraySizeOkay(tSize, "OPeNDAP limit");
 
+    // if >1 data variable, get the data for all of them in one pass through the source
+    GridDataAllAccessor gdaa =
+        readDataVariablesInOnePass(tDataVariables, false)
+            ? new GridDataAllAccessor(gridDataAccessor)
+            : null;
+
     // write the dds    //OPeNDAP 2.0, 7.2.3
     Writer writer =
         File2.getBufferedWriter88591(
@@ -5824,16 +5927,17 @@ public abstract class EDDGrid extends EDD {
       int nDataVariables = tDataVariables.length;
       for (int dv = 0; dv < nDataVariables; dv++) {
         String dvDestName = tDataVariables[dv].destinationName();
-        partialGda =
-            new GridDataAccessor(
-                language,
-                this,
-                requestUrl,
-                dvDestName + arrayQuery,
-                true,
-                false); // rowMajor, convertToNaN
-        int shape[] = partialGda.totalIndex().shape();
-        int current[] = partialGda.totalIndex().getCurrent();
+        if (gdaa == null)
+          partialGda =
+              new GridDataAccessor(
+                  language,
+                  this,
+                  requestUrl,
+                  dvDestName + arrayQuery,
+                  true,
+                  false); // rowMajor, convertToNaN
+        // else the data was already gotten (in one pass for all data variables)
+        int shape[] = gridDataAccessor.totalIndex().shape();
 
         // identify the array
         writer.write(dvDestName + "." + dvDestName);
@@ -5841,13 +5945,43 @@ public abstract class EDDGrid extends EDD {
         for (int av = 0; av < nAv; av++) writer.write("[" + shape[av] + "]");
 
         // send the array data
-        while (partialGda.increment()) {
-          // if last dimension's value is 0, start a new row
-          if (current[nAv - 1] == 0) {
-            writer.write(OpendapHelper.EOL); // see EOL definition for comments
-            for (int av = 0; av < nAv - 1; av++) writer.write("[" + current[av] + "]");
+        if (gdaa == null) {
+          int current[] = partialGda.totalIndex().getCurrent();
+          while (partialGda.increment()) {
+            // if last dimension's value is 0, start a new row
+            if (current[nAv - 1] == 0) {
+              writer.write(OpendapHelper.EOL); // see EOL definition for comments
+              for (int av = 0; av < nAv - 1; av++) writer.write("[" + current[av] + "]");
+            }
+            writer.write(", " + partialGda.getDataValueAsString(0));
+          }
+        } else {
+          NDimensionalIndex index = new NDimensionalIndex(shape);
+          int current[] = index.getCurrent();
+          PrimitiveArray pa =
+              PrimitiveArray.factory(tDataVariables[dv].destinationDataPAType(), 8192, false);
+          int po = 0;
+          long remaining = tSize;
+          DataInputStream dis = gdaa.getDataInputStream(dv);
+          try {
+            while (index.increment()) {
+              if (po == pa.size()) {
+                // read the next chunk of values
+                pa.clear();
+                pa.readDis(dis, (int) Math.min(8192, remaining));
+                remaining -= pa.size();
+                po = 0;
+              }
+              // if last dimension's value is 0, start a new row
+              if (current[nAv - 1] == 0) {
+                writer.write(OpendapHelper.EOL); // see EOL definition for comments
+                for (int av = 0; av < nAv - 1; av++) writer.write("[" + current[av] + "]");
+              }
+              writer.write(", " + pa.getString(po++));
+            }
+          } finally {
+            dis.close();
           }
-          writer.write(", " + partialGda.getDataValueAsString(0));
         }
 
         // send the axis data
@@ -5862,13 +5996,14 @@ public abstract class EDDGrid extends EDD {
                   + shape[av]
                   + "]"
                   + OpendapHelper.EOL); // see EOL definition for comments
-          writer.write(partialGda.axisValues[av].toString());
+          writer.write(gridDataAccessor.axisValues[av].toString());
         }
         writer.write(OpendapHelper.EOL); // see EOL definition for comments
       }
 
       writer.flush(); // essential
     } finally {
+      if (gdaa != null) gdaa.releaseResources();
       gridDataAccessor.releaseResources();
       partialGda.releaseResources();
       writer.close();
@@ -6270,6 +6405,84 @@ public abstract class EDDGrid extends EDD {
           "  EDDGrid.saveAsNcML done. TIME=" + (System.currentTimeMillis() - time) + "ms\n");
   }
 
+  /**
+   * This is used by saveAsAsc and saveAsDODS to decide if they should get the data for all of the
+   * requested data variables in one pass through the source (with a GridDataAllAccessor, which
+   * stores each variable's values in a temporary file), instead of one pass per data variable. One
+   * pass reads each source file (or remote dataset) once, instead of once per data variable. The
+   * response is identical either way.
+   *
+   * <p>The tradeoff is the time to first byte: with one pass, nothing after the DDS is sent until
+   * the data for all of the variables has been gotten from the source (and stored in temporary
+   * files, which also need disk space), whereas with one pass per data variable, the first
+   * variable's data is sent as soon as it is gotten. So one pass is usually faster overall (much
+   * faster if the source has to read the same files for each variable), but a client may wait
+   * longer before getting anything. Admins can set &lt;dapReadDataVariablesInOnePass&gt; to false
+   * in setup.xml to always use one pass per data variable.
+   *
+   * @param tDataVariables the requested data variables
+   * @param forDODS true if for saveAsDODS (which supports fewer data types in one pass)
+   * @return true if the data should be gotten in one pass
+   */
+  protected static boolean readDataVariablesInOnePass(EDV tDataVariables[], boolean forDODS) {
+    if (!EDStatic.dapReadDataVariablesInOnePass || tDataVariables.length < 2) return false;
+    if (forDODS) {
+      for (EDV edv : tDataVariables) {
+        PAType type = edv.destinationDataPAType();
+        if (type != PAType.BYTE
+            && type != PAType.SHORT
+            && type != PAType.CHAR
+            && type != PAType.INT
+            && type != PAType.FLOAT
+            && type != PAType.LONG
+            && type != PAType.DOUBLE) return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * This is used by saveAsDODS to write the values of one data variable (as written by writeDos to
+   * a GridDataAllAccessor's file) in the DODS Array format (without the leading sizes). This
+   * converts the data types which DAP doesn't support (see saveAsDODS).
+   *
+   * @param dis the source of the values
+   * @param type the data variable's destinationDataPAType: BYTE, SHORT, CHAR, INT, FLOAT, LONG, or
+   *     DOUBLE
+   * @param n the number of values
+   * @param dos the destination
+   * @throws Exception if trouble
+   */
+  protected static void writeDodsArrayData(
+      DataInputStream dis, PAType type, long n, DataOutputStream dos) throws Exception {
+    if (type == PAType.BYTE
+        || type == PAType.INT
+        || type == PAType.FLOAT
+        || type == PAType.DOUBLE) {
+      // the bytes are already in the DODS format, so just copy them
+      long nBytes = n * (type == PAType.BYTE ? 1 : type == PAType.DOUBLE ? 8 : 4);
+      byte buffer[] = new byte[(int) Math.min(nBytes, 65536)];
+      while (nBytes > 0) {
+        int tn = (int) Math.min(nBytes, buffer.length);
+        dis.readFully(buffer, 0, tn);
+        dos.write(buffer, 0, tn);
+        nBytes -= tn;
+      }
+      // pad byte array to 4 byte boundary
+      if (type == PAType.BYTE) while (n++ % 4 != 0) dos.writeByte(0);
+      return;
+    }
+
+    // SHORT and CHAR are sent as INT, LONG as DOUBLE (no exact DAP equivalent)
+    PrimitiveArray pa = PrimitiveArray.factory(type, (int) Math.min(n, 8192), false);
+    while (n > 0) {
+      pa.clear();
+      pa.readDis(dis, (int) Math.min(n, 8192));
+      n -= pa.size();
+      (type == PAType.LONG ? new DoubleArray(pa) : new IntArray(pa)).writeDos(dos);
+    }
+  }
+
   /**
    * This gets the data for the userDapQuery and writes the grid data to the outputStream in the
    * DODS DataDDS format (OPeNDAP 2.0, 7.2.3).
@@ -6354,6 +6567,12 @@ public abstract class EDDGrid extends EDD {
     long tSize = partialGda.totalIndex().size();
     Math2.ensureArraySizeOkay(tSize, "OPeNDAP limit");
 
+    // if >1 data variable, get the data for all of them in one pass through the source
+    GridDataAllAccessor gdaa =
+        readDataVariablesInOnePass(tDataVariables, true)
+            ? new GridDataAllAccessor(gridDataAccessor)
+            : null;
+
     // write the dds    //OPeNDAP 2.0, 7.2.3
     OutputStream outputStream = outputStreamSource.outputStream(File2.ISO_8859_1);
     Writer writer =
@@ -6383,6 +6602,22 @@ public abstract class EDDGrid extends EDD {
         // write elements of the array, in dds order
         int nDataVariables = tDataVariables.length;
         for (int dv = 0; dv < nDataVariables; dv++) {
+          if (gdaa != null) {
+            // the data was already gotten (in one pass for all data variables)
+            dos.writeInt((int) tSize); // safe since checked above
+            dos.writeInt((int) tSize); // safe since checked above
+            DataInputStream dis = gdaa.getDataInputStream(dv);
+            try {
+              writeDodsArrayData(dis, tDataVariables[dv].destinationDataPAType(), tSize, dos);
+            } finally {
+              dis.close();
+            }
+            for (int av = 0; av < nAxisVariables; av++)
+              gridDataAccessor.axisValues[av].externalizeForDODS(dos);
+            dos.flush();
+            continue;
+          }
+
           partialGda =
               new GridDataAccessor(
                   language,
@@ -6441,6 +6676,7 @@ public abstract class EDDGrid extends EDD {
         writer = null;
       }
     } finally {
+      if (gdaa != null) gdaa.releaseResources();
       gridDataAccessor.releaseResources();
       partialGda.releaseResources();
       if (writer != null)
@@ -10407,6 +10643,149 @@ public abstract class EDDGrid extends EDD {
     while ((i++ % 8) != 0) stream.write(0); // 0 padded to 8 byte boundary
   }
 
+  /**
+   * This writes the grid data (not axis data) to the outputStream in a netCDF-3 .nc file (like
+   * saveAsNc with keepUnusedAxes=true and lonAdjust=0) as a stream: since the shapes and data types
+   * are known before any data is read, the header is sent first, then each variable's data is sent
+   * chunk by chunk as it is read (one pass through the source per data variable, as with
+   * saveAsDODS). So the client gets the first bytes right away and no complete temporary file is
+   * needed before the response starts.
+   *
+   * <p>respondToDapQuery only uses this if EDStatic.streamNcGridResponses (setup.xml's
+   * &lt;streamNcGridResponses&gt;, default false), because an error after the header has been sent
+   * can't be turned into an error response: the client gets a truncated .nc file (with HTTP status
+   * 200).
+   *
+   * @param language the index of the selected language
+   * @param ipAddress The IP address of the user (for statistics).
+   * @param requestUrl the part of the user's request, after EDStatic.baseUrl, before '?'.
+   * @param userDapQuery an OPeNDAP DAP-style query string, still percentEncoded (shouldn't be
+   *     null). e.g., ATssta[45:1:45][0:1:0][120:10:140][130:10:160]
+   * @param outputStreamSource the source of an outputStream (usually already buffered) to receive
+   *     the results. At the end of this method the outputStream is flushed, not closed.
+   * @param fullFileName if not null, a copy of the file is saved with this name (e.g., the cache
+   *     file). It is written to a temporary file which is only renamed to fullFileName if the whole
+   *     file was written successfully.
+   * @return false (and nothing is written) if this request can't be streamed: axis requests (which
+   *     are small) and requests for String variables (the maximum String length must be known
+   *     before the header is written). Use saveAsNc for those.
+   * @throws Throwable if trouble
+   */
+  public boolean saveAsNc3Stream(
+      int language,
+      String ipAddress,
+      String requestUrl,
+      String userDapQuery,
+      OutputStreamSource outputStreamSource,
+      String fullFileName)
+      throws Throwable {
+    if (isAxisDapQuery(userDapQuery)) return false;
+    long time = System.currentTimeMillis();
+
+    // create gridDataAccessor first, in case of error when parsing query
+    GridDataAccessor gda =
+        new GridDataAccessor(
+            language, this, requestUrl, userDapQuery, true, false); // rowMajor, convertToNaN
+    GridDataAccessor partialGda = null;
+    OutputStream fos = null;
+    int randomInt = Math2.random(Integer.MAX_VALUE);
+    boolean ok = false;
+    try {
+      EDV tDataVariables[] = gda.dataVariables();
+      for (EDV edv : tDataVariables) {
+        if (edv.destinationDataPAType() == PAType.STRING) return false;
+      }
+      if (reallyVerbose) String2.log("  EDDGrid.saveAsNc3Stream");
+
+      // ensure file size < 2GB (see saveAsNc)
+      if (gda.totalNBytes() > 2100000000) // leave some space for axis vars, etc.
+      throw new SimpleException(
+            Math2.memoryTooMuchData
+                + "  "
+                + MessageFormat.format(
+                    EDStatic.errorMoreThan2GBAr[0],
+                    ".nc",
+                    ((gda.totalNBytes() + 100000) / Math2.BytesPerMB) + " MB"));
+
+      if (gda.totalNBytes() > 1000000000) { // 1GB
+        EDStatic.tally.add("Large Request, IP address (since last Major LoadDatasets)", ipAddress);
+        EDStatic.tally.add("Large Request, IP address (since last daily report)", ipAddress);
+        EDStatic.tally.add("Large Request, IP address (since startup)", ipAddress);
+      }
+
+      // define the file
+      Nc3StreamWriter writer = new Nc3StreamWriter();
+      int nAxes = axisVariables.length;
+      int dims[] = new int[nAxes];
+      for (int av = 0; av < nAxes; av++)
+        dims[av] =
+            writer.addDimension(axisVariables[av].destinationName(), gda.axisValues(av).size());
+      for (int av = 0; av < nAxes; av++)
+        writer.addVariable(
+            axisVariables[av].destinationName(),
+            gda.axisValues(av).elementType(),
+            new int[] {dims[av]},
+            gda.axisAttributes(av));
+      for (int dv = 0; dv < tDataVariables.length; dv++)
+        writer.addVariable(
+            tDataVariables[dv].destinationName(),
+            tDataVariables[dv].destinationDataPAType(),
+            dims,
+            gda.dataAttributes(dv));
+      writer.setGlobalAttributes(gda.globalAttributes());
+
+      // write the header and the axis values
+      if (fullFileName != null)
+        fos = new BufferedOutputStream(new FileOutputStream(fullFileName + randomInt));
+      writer.writeHeader(outputStreamSource.outputStream(""), fos);
+      for (int av = 0; av < nAxes; av++) writer.write(gda.axisValues(av));
+
+      // write the data variables, chunk by chunk
+      String arrayQuery = buildDapArrayQuery(gda.constraints());
+      for (int dv = 0; dv < tDataVariables.length; dv++) {
+        GridDataAccessor tGda = gda;
+        if (tDataVariables.length > 1) {
+          partialGda =
+              new GridDataAccessor(
+                  language,
+                  this,
+                  requestUrl,
+                  tDataVariables[dv].destinationName() + arrayQuery,
+                  true,
+                  false); // rowMajor, convertToNaN
+          tGda = partialGda;
+        }
+        PrimitiveArray[] pas = tGda.getPartialDataValues();
+        while (tGda.incrementChunk()) writer.write(pas[0]);
+        if (partialGda != null) {
+          partialGda.releaseResources();
+          partialGda = null;
+        }
+      }
+      writer.finish();
+      ok = true;
+
+    } finally {
+      gda.releaseResources();
+      if (partialGda != null) partialGda.releaseResources();
+      if (fos != null) {
+        try {
+          fos.close();
+        } catch (Exception e) {
+          ok = false;
+        }
+        if (ok) File2.rename(fullFileName + randomInt, fullFileName);
+        else File2.delete(fullFileName + randomInt);
+      }
+    }
+
+    // diagnostic
+    if (reallyVerbose)
+      String2.log(
+          "  EDDGrid.saveAsNc3Stream done.  TIME=" + (System.currentTimeMillis() - time) + "ms\n");
+    return true;
+  }
+
   /**
    * Save the grid data in a netCDF .nc3 file. This overwrites any existing file of the specified
    * name. This makes an effort not to create a partial file if there is an error. If no exception
@@ -26,6 +26,7 @@ import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.*;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class represents a grid dataset created by aggregating for first existing dimension of other
@@ -543,7 +544,6 @@ public class EDDGridAggregateExistingDimension extends EDDGrid {
     int nChildren = childStopsAt.length;
     int nAv = axisVariables.length;
     int nDv = tDataVariables.length;
-    PrimitiveArray[] cumResults = null;
     int index = tConstraints.get(0);
     int stride = tConstraints.get(1);
     int stop = tConstraints.get(2);
@@ -551,7 +551,8 @@ public class EDDGridAggregateExistingDimension extends EDDGrid {
     int currentStart = index;
     int currentDataset = 0;
     while (index > childStopsAt[currentDataset]) currentDataset++;
-    IntArray childConstraints = (IntArray) tConstraints.clone();
+    ArrayList<EDDGrid> children = new ArrayList<>();
+    ArrayList<IntArray> childConstraintsList = new ArrayList<>();
 
     // walk through the requested index values
     while (index <= stop) {
@@ -566,6 +567,7 @@ public class EDDGridAggregateExistingDimension extends EDDGrid {
           index + stride > stop) { // this is last iteration
         // get currentStart:stride:index
         int currentDatasetStartsAt = currentDataset == 0 ? 0 : childStopsAt[currentDataset - 1] + 1;
+        IntArray childConstraints = (IntArray) tConstraints.clone();
         childConstraints.set(0, currentStart - currentDatasetStartsAt);
         childConstraints.set(2, index - currentDatasetStartsAt);
         if (reallyVerbose)
@@ -578,27 +580,8 @@ public class EDDGridAggregateExistingDimension extends EDDGrid {
                   + childConstraints.get(0)
                   + "  localStop="
                   + childConstraints.get(2));
-        PrimitiveArray[] tResults =
-            childDatasets[currentDataset].getSourceData(
-                language, null, null, tDataVariables, childConstraints);
-        // childDataset has already checked that axis values are as *it* expects
-        if (cumResults == null) {
-          if (matchAxisNDigits <= 0) {
-            // make axis values exactly as expected by aggregate dataset
-            for (int av = 1; av < nAv; av++)
-              tResults[av] =
-                  axisVariables[av]
-                      .sourceValues()
-                      .subset(
-                          childConstraints.get(av * 3 + 0),
-                          childConstraints.get(av * 3 + 1),
-                          childConstraints.get(av * 3 + 2));
-          }
-          cumResults = tResults;
-        } else {
-          cumResults[0].append(tResults[0]);
-          for (int dv = 0; dv < nDv; dv++) cumResults[nAv + dv].append(tResults[nAv + dv]);
-        }
+        children.add(childDatasets[currentDataset]);
+        childConstraintsList.add(childConstraints);
 
         currentDataset = nextDataset;
         currentStart = index + stride;
@@ -608,6 +591,43 @@ public class EDDGridAggregateExistingDimension extends EDDGrid {
       index += stride;
     }
 
+    // get the data from the children (concurrently, if nThreads > 1)
+    int nRequests = children.size();
+    EDV childDataVariables[][] = new EDV[nRequests][];
+    Arrays.fill(childDataVariables, tDataVariables);
+    PrimitiveArray[][] childResults =
+        getChildrenSourceData(
+            language,
+            children.toArray(new EDDGrid[nRequests]),
+            childDataVariables,
+            childConstraintsList.toArray(new IntArray[nRequests]));
+
+    // assemble the results in order
+    PrimitiveArray[] cumResults = null;
+    for (int r = 0; r < nRequests; r++) {
+      PrimitiveArray[] tResults = childResults[r];
+      childResults[r] = null; // so it can be gc'd
+      // childDataset has already checked that axis values are as *it* expects
+      if (cumResults == null) {
+        if (matchAxisNDigits <= 0) {
+          // make axis values exactly as expected by aggregate dataset
+          IntArray childConstraints = childConstraintsList.get(0);
+          for (int av = 1; av < nAv; av++)
+            tResults[av] =
+                axisVariables[av]
+                    .sourceValues()
+                    .subset(
+                        childConstraints.get(av * 3 + 0),
+                        childConstraints.get(av * 3 + 1),
+                        childConstraints.get(av * 3 + 2));
+        }
+        cumResults = tResults;
+      } else {
+        cumResults[0].append(tResults[0]);
+        for (int dv = 0; dv < nDv; dv++) cumResults[nAv + dv].append(tResults[nAv + dv]);
+      }
+    }
+
     return cumResults;
   }
 
@@ -969,6 +969,22 @@ public class EDDGridFromDap extends EDDGrid {
     // String errorInMethod = "Error in EDDGridFromDap.getSourceData for " + datasetID + ": ";
     String constraint = buildDapArrayQuery(tConstraints);
 
+    // get the data via the chunk cache?
+    if (EDStatic.useGridChunkCache) {
+      PrimitiveArray results[] =
+          GridChunkCache.getSourceData(
+              language,
+              this,
+              tDataVariables,
+              tConstraints,
+              (edv, chunkConstraints) ->
+                  getPrimitiveArrays(
+                      language,
+                      new DConnect(localSourceUrl, acceptDeflate, 1, 1),
+                      "?" + edv.sourceName() + buildDapArrayQuery(chunkConstraints)));
+      if (results != null) return results;
+    }
+
     DConnect dConnect = new DConnect(localSourceUrl, acceptDeflate, 1, 1);
     PrimitiveArray results[] = new PrimitiveArray[axisVariables.length + tDataVariables.length];
     for (int dv = 0; dv < tDataVariables.length; dv++) {
@@ -977,33 +993,9 @@ public class EDDGridFromDap extends EDDGrid {
       // so breaking into parts avoids the problem.
 
       // get the data
-      PrimitiveArray pa[] = null;
-      try {
-        pa =
-            OpendapHelper.getPrimitiveArrays(
-                dConnect, "?" + tDataVariables[dv].sourceName() + constraint);
-      } catch (Throwable t) {
-        EDStatic.rethrowClientAbortException(t); // first thing in catch{}
-
-        // if OutOfMemoryError or too much data, rethrow t
-        String tToString = t.toString();
-        if (Thread.currentThread().isInterrupted()
-            || t instanceof InterruptedException
-            || t instanceof OutOfMemoryError
-            || tToString.indexOf(Math2.memoryTooMuchData) >= 0
-            || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
-
-        String2.log(MustBe.throwableToString(t));
-        throw t instanceof WaitThenTryAgainException
-            ? t
-            : new WaitThenTryAgainException(
-                EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
-                    + "\n("
-                    + EDStatic.errorFromDataSource
-                    + t.toString()
-                    + ")",
-                t);
-      }
+      PrimitiveArray pa[] =
+          getPrimitiveArrays(
+              language, dConnect, "?" + tDataVariables[dv].sourceName() + constraint);
 
       if (pa.length == 1) {
         // it's a DArray
@@ -1062,6 +1054,43 @@ public class EDDGridFromDap extends EDDGrid {
     return results;
   }
 
+  /**
+   * This gets the response to a DAP query from the source.
+   *
+   * @param language the index of the selected language
+   * @param dConnect a DConnect to the source
+   * @param query the DAP query, e.g., "?sst[0:1:10][0:1:20]"
+   * @return the PrimitiveArrays from OpendapHelper.getPrimitiveArrays
+   * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+   */
+  private PrimitiveArray[] getPrimitiveArrays(int language, DConnect dConnect, String query)
+      throws Throwable {
+    try {
+      return OpendapHelper.getPrimitiveArrays(dConnect, query);
+    } catch (Throwable t) {
+      EDStatic.rethrowClientAbortException(t); // first thing in catch{}
+
+      // if OutOfMemoryError or too much data, rethrow t
+      String tToString = t.toString();
+      if (Thread.currentThread().isInterrupted()
+          || t instanceof InterruptedException
+          || t instanceof OutOfMemoryError
+          || tToString.indexOf(Math2.memoryTooMuchData) >= 0
+          || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
+
+      String2.log(MustBe.throwableToString(t));
+      throw t instanceof WaitThenTryAgainException
+          ? t
+          : new WaitThenTryAgainException(
+              EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
+                  + "\n("
+                  + EDStatic.errorFromDataSource
+                  + t.toString()
+                  + ")",
+              t);
+    }
+  }
+
   /**
    * This does its best to generate a clean, ready-to-use datasets.xml entry for an EDDGridFromDap.
    * The XML can then be edited by hand and added to the datasets.xml file.
@@ -904,40 +904,30 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
     // String errorInMethod = "Error in EDDGridFromErddap.getSourceData for " + datasetID + ": ";
     String constraint = buildDapArrayQuery(tConstraints);
 
+    // get the data via the chunk cache?
+    if (EDStatic.useGridChunkCache) {
+      PrimitiveArray results[] =
+          GridChunkCache.getSourceData(
+              language,
+              this,
+              tDataVariables,
+              tConstraints,
+              (edv, chunkConstraints) ->
+                  getPrimitiveArrays(
+                      language,
+                      new DConnect(localSourceUrl, acceptDeflate, 1, 1),
+                      "?" + edv.sourceName() + buildDapArrayQuery(chunkConstraints)));
+      if (results != null) return results;
+    }
+
     // get results one var at a time (that's how OpendapHelper is set up)
     DConnect dConnect = new DConnect(localSourceUrl, acceptDeflate, 1, 1);
     PrimitiveArray results[] = new PrimitiveArray[axisVariables.length + tDataVariables.length];
     for (int dv = 0; dv < tDataVariables.length; dv++) {
       // get the data
-      PrimitiveArray pa[] = null;
-      try {
-        pa =
-            OpendapHelper.getPrimitiveArrays(
-                dConnect, "?" + tDataVariables[dv].sourceName() + constraint);
-
-      } catch (Throwable t) {
-        EDStatic.rethrowClientAbortException(t); // first thing in catch{}
-
-        // if OutOfMemoryError or too much data, rethrow t
-        String tToString = t.toString();
-        if (Thread.currentThread().isInterrupted()
-            || t instanceof InterruptedException
-            || t instanceof OutOfMemoryError
-            || tToString.indexOf(Math2.memoryTooMuchData) >= 0
-            || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
-
-        // request should be valid, so any other error is trouble with dataset
-        String2.log(MustBe.throwableToString(t));
-        throw t instanceof WaitThenTryAgainException
-            ? t
-            : new WaitThenTryAgainException(
-                EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
-                    + "\n("
-                    + EDStatic.errorFromDataSource
-                    + t.toString()
-                    + ")",
-                t);
-      }
+      PrimitiveArray pa[] =
+          getPrimitiveArrays(
+              language, dConnect, "?" + tDataVariables[dv].sourceName() + constraint);
       if (pa.length != axisVariables.length + 1)
         throw new WaitThenTryAgainException(
             EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
@@ -969,6 +959,45 @@ public class EDDGridFromErddap extends EDDGrid implements FromErddap {
     return results;
   }
 
+  /**
+   * This gets the response to a DAP query from the remote ERDDAP.
+   *
+   * @param language the index of the selected language
+   * @param dConnect a DConnect to the remote dataset
+   * @param query the DAP query, e.g., "?sst[0:1:10][0:1:20]"
+   * @return the PrimitiveArrays from OpendapHelper.getPrimitiveArrays
+   * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+   */
+  private PrimitiveArray[] getPrimitiveArrays(int language, DConnect dConnect, String query)
+      throws Throwable {
+    try {
+      return OpendapHelper.getPrimitiveArrays(dConnect, query);
+
+    } catch (Throwable t) {
+      EDStatic.rethrowClientAbortException(t); // first thing in catch{}
+
+      // if OutOfMemoryError or too much data, rethrow t
+      String tToString = t.toString();
+      if (Thread.currentThread().isInterrupted()
+          || t instanceof InterruptedException
+          || t instanceof OutOfMemoryError
+          || tToString.indexOf(Math2.memoryTooMuchData) >= 0
+          || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
+
+      // request should be valid, so any other error is trouble with dataset
+      String2.log(MustBe.throwableToString(t));
+      throw t instanceof WaitThenTryAgainException
+          ? t
+          : new WaitThenTryAgainException(
+              EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
+                  + "\n("
+                  + EDStatic.errorFromDataSource
+                  + t.toString()
+                  + ")",
+              t);
+    }
+  }
+
   /**
    * This returns a fileTable with valid files (or null if unavailable or any trouble). This is a
    * copy of any internal data, so client can modify the contents.
@@ -1376,7 +1376,7 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
 
     // set creationTimeMillis to fileTable lastModified
     // (either very recent or (if quickRestart) from previous full restart)
-    creationTimeMillis = File2.getLastModified(datasetDir() + FILE_TABLE_FILENAME);
+    creationTimeMillis = File2.getLastModified(dirFileTableFileName(FILE_TABLE_FILENAME));
 
     if (!badFileMap.isEmpty()) {
       StringBuilder emailSB = new StringBuilder();
@@ -2074,6 +2074,7 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
         dirTable = tDirTable;
         fileTable = tFileTable;
       }
+      dataVersionChanged(); // so cached responses for the old data aren't reused
 
       // after changes all in place
       // Currently, update() doesn't trigger these changes.
@@ -2101,6 +2102,17 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
     return nChanges > 0;
   }
 
+  /**
+   * This returns true because each change to the fileTable (see lowUpdate) calls
+   * dataVersionChanged().
+   *
+   * @return true
+   */
+  @Override
+  public boolean tracksDataVersion() {
+    return true;
+  }
+
   /**
    * This does the actual incremental update of this dataset (i.e., for real time datasets).
    *
@@ -2201,7 +2213,7 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
     Table tDirTable =
         fileTableInMemory
             ? dirTable
-            : tryToLoadDirFileTable(datasetDir() + DIR_TABLE_FILENAME); // may be null
+            : tryToLoadDirFileTable(datasetDir() + DIR_TABLE_FILENAME, true); // may be null
     Test.ensureNotNull(tDirTable, "dirTable");
     return tDirTable;
   }
@@ -2216,7 +2228,7 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
     Table tFileTable =
         fileTableInMemory
             ? fileTable
-            : tryToLoadDirFileTable(datasetDir() + FILE_TABLE_FILENAME); // may be null
+            : tryToLoadDirFileTable(datasetDir() + FILE_TABLE_FILENAME, true); // may be null
     Test.ensureNotNull(tFileTable, "fileTable");
     return tFileTable;
   }
@@ -2249,6 +2261,12 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
     return tFileTable;
   }
 
+  /** This returns true if the dirTable and fileTable are saved as .bin files (see EDD). */
+  @Override
+  protected boolean useMappedDirFileTable() {
+    return !fileTableInMemory;
+  }
+
   /**
    * Try to load the dirTable or fileTable.
    *
@@ -2257,14 +2275,31 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
    * @throws Throwable if serious trouble (e.g., Too many open files, out of memory)
    */
   protected Table tryToLoadDirFileTable(String fileName) throws Throwable {
+    return tryToLoadDirFileTable(fileName, false);
+  }
+
+  /**
+   * Try to load the dirTable or fileTable, from the .bin file (see MappedDirFileTable) if there is
+   * one, else from the .nc file.
+   *
+   * @param fileName datasetDir() + DIR_TABLE_FILENAME or FILE_TABLE_FILENAME (the .nc name)
+   * @param readOnly if true, the table may be shared (e.g., for getFileTable()), so the caller must
+   *     not change it
+   * @return the dirTable fileTable (null if minor trouble)
+   * @throws Throwable if serious trouble (e.g., Too many open files, out of memory)
+   */
+  protected Table tryToLoadDirFileTable(String fileName, boolean readOnly) throws Throwable {
     try {
-      if (File2.isFile(fileName)) {
-        Table table = new Table();
+      Table table = MappedDirFileTable.read(MappedDirFileTable.binFileName(fileName), readOnly);
+      if (table == null && File2.isFile(fileName)) {
+        table = new Table();
         //  table.readFlatNc(fileName, null, 0); //standardizeWhat=0
         Test.ensureEqual(
             table.readEnhancedFlatNc(fileName, null), // it logs fileName and nRows=
             Table.ENHANCED_VERSION,
             "old/unsupported enhancedVersion");
+      }
+      if (table != null) {
         Test.ensureEqual(
             table.globalAttributes().getInt(_dirFileTableVersion_),
             DIR_FILE_TABLE_VERSION,
@@ -2288,6 +2323,8 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
       // if minor problem
       File2.delete(datasetDir() + DIR_TABLE_FILENAME);
       File2.delete(datasetDir() + FILE_TABLE_FILENAME);
+      File2.delete(MappedDirFileTable.binFileName(datasetDir() + DIR_TABLE_FILENAME));
+      File2.delete(MappedDirFileTable.binFileName(datasetDir() + FILE_TABLE_FILENAME));
       return null;
     }
   }
@@ -18,6 +18,7 @@ import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import com.cohort.util.Units2;
 import com.cohort.util.XML;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -154,7 +155,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
     String getWhat = "globalAttributes";
     String group = "";
     int groupSlashCount = 0;
-    NetcdfFile ncFile = NcHelper.openFile(tFullName);
+    NetcdfFile ncFile = NcFileCache.open(tFullName);
+    boolean ncFileOk = false;
     try {
 
       // This is cognizant of special axis0
@@ -221,6 +223,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
 
       // get group atts and all higher groups (up to root)
       NcHelper.getGroupAttributes(ncFile.findGroup(group), sourceGlobalAttributes);
+      ncFileOk = true;
 
     } catch (Throwable t) {
       throw new RuntimeException(
@@ -235,10 +238,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
               + MustBe.throwableToShortString(t),
           t);
     } finally {
-      try {
-        if (ncFile != null) ncFile.close();
-      } catch (Exception e9) {
-      }
+      NcFileCache.release(ncFile, ncFileOk);
     }
   }
 
@@ -261,7 +261,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
       String tFullName, StringArray sourceAxisNames, StringArray sourceDataNames) throws Throwable {
 
     String getWhat = "?";
-    NetcdfFile ncFile = NcHelper.openFile(tFullName);
+    NetcdfFile ncFile = NcFileCache.open(tFullName);
+    boolean ncFileOk = false;
     try {
       PrimitiveArray[] avPa = new PrimitiveArray[sourceAxisNames.size()];
 
@@ -298,6 +299,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
         }
       }
 
+      ncFileOk = true;
       return avPa;
 
     } catch (Throwable t) {
@@ -313,10 +315,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
               + MustBe.throwableToShortString(t),
           t);
     } finally {
-      try {
-        if (ncFile != null) ncFile.close();
-      } catch (Exception e9) {
-      }
+      NcFileCache.release(ncFile, ncFileOk);
     }
   }
 
@@ -357,7 +356,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
     int nValues = -1; // not yet calculated
     EDV edv = null;
 
-    NetcdfFile ncFile = NcHelper.openFile(tFullName);
+    NetcdfFile ncFile = NcFileCache.open(tFullName);
+    boolean ncFileOk = false;
     try {
 
       for (int dvi = 0; dvi < ndv; dvi++) {
@@ -449,6 +449,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
       }
 
       // I care about this exception
+      ncFileOk = true;
       return paa;
 
     } catch (Throwable t) {
@@ -460,10 +461,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
               + "] (start:STOP:stride).");
       throw t;
     } finally {
-      try {
-        if (ncFile != null) ncFile.close();
-      } catch (Exception e9) {
-      }
+      NcFileCache.release(ncFile, ncFileOk);
     }
   }
 
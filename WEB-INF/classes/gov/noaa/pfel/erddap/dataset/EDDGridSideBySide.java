@@ -536,7 +536,8 @@ public class EDDGridSideBySide extends EDDGrid {
       throws Throwable {
 
     // simple approach (not most efficient for tiny request, but fine for big requests):
-    //  get results for each tDataVariable, one-by-one
+    //  get results for each tDataVariable separately (but the child requests are made
+    //  concurrently if nThreads > 1)
     // FUTURE: more efficient to gang together all dataVariables from a given child
     int nAv = axisVariables.length;
     int nDv = dataVariables.length;
@@ -557,14 +558,14 @@ public class EDDGridSideBySide extends EDDGrid {
       if (av > 0) nValues1 *= cumResults[av].size();
     }
 
-    // get the data results
+    // plan the data results: for each dv, the sequence of child requests (request number)
+    //  and missing rows (-1)
+    ArrayList<EDDGrid> children = new ArrayList<>();
+    ArrayList<EDV[]> childDataVariables = new ArrayList<>();
+    ArrayList<IntArray> childConstraints = new ArrayList<>();
+    IntArray pieces[] = new IntArray[tnDv];
     for (int tdv = 0; tdv < tnDv; tdv++) {
-
-      // make a PrimitiveArray to hold the results for this dv
-      PrimitiveArray dvResults =
-          PrimitiveArray.factory(tDataVariables[tdv].sourceDataPAType(), nValues, false);
-      cumResults[nAv + tdv] = dvResults;
-      double tdvSourceMissingValue = tDataVariables[tdv].sourceMissingValue();
+      pieces[tdv] = new IntArray();
 
       // what is its dataVariable number in this aggregate dataset?
       // FUTURE: faster search with hash, but this is fast unless huge number of dataVars
@@ -579,7 +580,6 @@ public class EDDGridSideBySide extends EDDGrid {
       // step through constraints for combined axis0,
       //  finding sections in child of constant step size
       // !!!this is tricky code; think about it!!!
-      IntArray ttConstraints = (IntArray) tConstraints.clone();
       int start = tConstraints.get(0);
       int stride = tConstraints.get(1);
       int stop = tConstraints.get(2);
@@ -587,7 +587,7 @@ public class EDDGridSideBySide extends EDDGrid {
       while (start <= stop) {
         // find first non-NaN
         while (start <= stop && atIA.array[start] == Integer.MAX_VALUE) {
-          dvResults.addNDoubles(nValues1, tdvSourceMissingValue);
+          pieces[tdv].add(-1);
           start += stride;
         }
         if (start > stop) break;
@@ -617,17 +617,50 @@ public class EDDGridSideBySide extends EDDGrid {
         int cStop = atIA.array[po - stride]; // last valid value
         // String2.log("***sequence subsequence: cStart=" + cStart + " cStride=" + cStride + "
         // cStop=" + cStop);
+        IntArray ttConstraints = (IntArray) tConstraints.clone();
         ttConstraints.set(0, cStart);
         ttConstraints.set(1, cStride);
         ttConstraints.set(2, cStop);
-        PrimitiveArray[] tResults =
-            childDatasets[cn].getSourceData(
-                language, null, null, new EDV[] {tDataVariables[tdv]}, ttConstraints);
-        dvResults.append(tResults[nAv]); // append the first (and only) data variable's results
+        pieces[tdv].add(children.size());
+        children.add(childDatasets[cn]);
+        childDataVariables.add(new EDV[] {tDataVariables[tdv]});
+        childConstraints.add(ttConstraints);
 
         // increment start
         start = po;
       }
+    }
+
+    // get the data from the children (concurrently, if nThreads > 1)
+    int nRequests = children.size();
+    PrimitiveArray[][] childResults =
+        nRequests == 0
+            ? new PrimitiveArray[0][]
+            : getChildrenSourceData(
+                language,
+                children.toArray(new EDDGrid[nRequests]),
+                childDataVariables.toArray(new EDV[nRequests][]),
+                childConstraints.toArray(new IntArray[nRequests]));
+
+    // assemble the data results
+    for (int tdv = 0; tdv < tnDv; tdv++) {
+
+      // make a PrimitiveArray to hold the results for this dv
+      PrimitiveArray dvResults =
+          PrimitiveArray.factory(tDataVariables[tdv].sourceDataPAType(), nValues, false);
+      cumResults[nAv + tdv] = dvResults;
+      double tdvSourceMissingValue = tDataVariables[tdv].sourceMissingValue();
+      int nPieces = pieces[tdv].size();
+      for (int piece = 0; piece < nPieces; piece++) {
+        int request = pieces[tdv].get(piece);
+        if (request < 0) {
+          dvResults.addNDoubles(nValues1, tdvSourceMissingValue);
+        } else {
+          // append the first (and only) data variable's results
+          dvResults.append(childResults[request][nAv]);
+          childResults[request] = null; // so it can be gc'd
+        }
+      }
 
       // dvResults should be properly filled
       Test.ensureEqual(
@@ -7,6 +7,7 @@ package gov.noaa.pfel.erddap.dataset;
 import com.cohort.array.Attributes;
 import com.cohort.array.CharArray;
 import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
 import com.cohort.array.IntArray;
 import com.cohort.array.LongArray;
 import com.cohort.array.NDimensionalIndex;
@@ -28,6 +29,7 @@ import com.cohort.util.XML;
 import gov.noaa.pfel.coastwatch.griddata.Grid;
 import gov.noaa.pfel.coastwatch.griddata.Matlab;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
+import gov.noaa.pfel.coastwatch.pointdata.ColumnScript;
 import gov.noaa.pfel.coastwatch.pointdata.ScriptRow;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.coastwatch.sgt.CompoundColorMap;
@@ -60,6 +62,7 @@ import java.util.BitSet;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -616,6 +619,9 @@ public abstract class EDDTable extends EDD {
 
   public static String DISTINCT_SUBSET_FILENAME = "distinct.nc";
 
+  /** The in-memory subsetVariables data tables (see subsetIndex()), by subsetVariablesFileName. */
+  private final ConcurrentHashMap<String, SubsetIndex> subsetIndexes = new ConcurrentHashMap<>();
+
   /**
    * These are parallel data structures for use by setSosOfferingTypeAndIndex(). If cdmDataType is
    * sosCdmDataTypes[t], then sosOfferingType is sosOfferingTypes[t] and sosOfferingIndex is var
@@ -3745,10 +3751,22 @@ public abstract class EDDTable extends EDD {
     }
 
     // *** make a file (then copy it to outputStream)
-    // If update system active or real_time=true, don't cache anything.  Make all files unique.
-    if (updateEveryNMillis > 0 || realTime()) {
+    // If real_time=true, or update system active and the data version isn't known
+    //  or the query uses relative times (now), don't cache anything.  Make all files unique.
+    // If update system active and the data version is known, reuse cached files
+    //  until the data changes.
+    boolean versionedName = false;
+    boolean uniqueName = false;
+    if (realTime()
+        || (updateEveryNMillis > 0
+            && (!tracksDataVersion() || ResponseCache.usesNow(userDapQuery)))) {
       fileName += "_U" + System.currentTimeMillis(); // useful because it identifies time of request
       outputStreamSource.setFileName(fileName);
+      uniqueName = true;
+    } else if (updateEveryNMillis > 0) {
+      fileName += "_V" + dataVersion();
+      outputStreamSource.setFileName(fileName);
+      versionedName = true;
     }
 
     // nc files are handled this way because .ncHeader .ncCFHeader, .ncCFMAHeader
@@ -3777,8 +3795,10 @@ public abstract class EDDTable extends EDD {
       throw new TimeoutException("Timeout waiting for lock on EDDTable .ncHeader cacheFullName.");
     try {
 
-      if (File2.isFile(cacheFullName)) { // don't 'touch()'; files for latest data will change
+      // don't 'touch()' unversioned files; files for latest data will change
+      if (ResponseCache.isCached(cacheFullName, versionedName, uniqueName)) {
         if (verbose) String2.log("  reusing cached " + cacheFullName);
+        RequestMetrics.cacheHit("tabledap", datasetID, fileTypeName);
 
       } else if (fileTypeName.equals(".nc") || fileTypeName.equals(".ncHeader")) {
         // if .ncHeader, make sure the .nc file exists
@@ -4404,7 +4424,25 @@ public abstract class EDDTable extends EDD {
         PrimitiveArray pa =
             PrimitiveArray.factory(
                 PAType.fromCohortString(scriptTypes.get(sni)), nRows, false); // active?
-        JexlScript jscript = Script2.jexlEngine().createScript(scriptNames.get(sni).substring(1));
+        String script = scriptNames.get(sni).substring(1);
+
+        // if possible, evaluate the script for all rows at once (without JEXL)
+        ColumnScript columnScript =
+            pa instanceof StringArray || scriptNeedsColumns.get(scriptNames.get(sni)).size() == 0
+                ? null
+                : ColumnScript.compile(script);
+        if (columnScript != null) {
+          double values[] = columnScript.evaluate(table);
+          if (pa instanceof FloatArray fa) {
+            for (int row = 0; row < nRows; row++) fa.add((float) values[row]); // like addObject
+          } else {
+            for (int row = 0; row < nRows; row++) pa.addDouble(values[row]);
+          }
+          table.addColumn(scriptNames.get(sni), pa);
+          continue;
+        }
+
+        JexlScript jscript = Script2.jexlScript(script);
         MapContext jcontext = Script2.jexlMapContext();
         ScriptRow scriptRow = new ScriptRow(fullFileName, table);
         jcontext.set("row", scriptRow);
@@ -13582,8 +13620,9 @@ public abstract class EDDTable extends EDD {
       }
     }
 
-    // make/read all of the subsetVariable data
-    Table subsetTable = subsetVariablesDataTable(language, loggedInAs);
+    // get all of the subsetVariable data (in memory and indexed)
+    SubsetIndex subsetIndex = subsetIndex(language, loggedInAs);
+    Table subsetTable = subsetIndex.table(); // shared, so don't change it
 
     // if either map is possible, make consistent lonLatConstraints (specifies map extent)
     boolean distinctMapIsPossible =
@@ -13646,66 +13685,37 @@ public abstract class EDDTable extends EDD {
     }
 
     // reduce subsetTable to "bigTable"  (as if lastP param was set to ANY)
-    int nRows = subsetTable.nRows();
-    BitSet keep = new BitSet(nRows);
-    keep.set(0, nRows); // set all to true
+    // The index selects rows with bitmaps, so this doesn't look at the values in each row.
+    BitSet bigKeep = subsetIndex.allRows();
     for (int p = 0; p < subsetVariables.length; p++) {
-      String tParam = param[p];
-      if (tParam == null || p == lastP) // don't include lastP param in bigTable
+      if (param[p] == null || p == lastP) // don't include lastP param in bigTable
       continue;
-
-      EDV edv = findDataVariableByDestinationName(subsetVariables[p]);
-      EDVTimeStamp edvTimeStamp = edv instanceof EDVTimeStamp t ? t : null;
-      String tTime_precision = edvTimeStamp == null ? null : edvTimeStamp.time_precision();
-      PrimitiveArray pa = subsetTable.findColumn(subsetVariables[p]);
-      if (edvTimeStamp == null && !(pa instanceof StringArray) && tParam.equals("NaN"))
-        tParam = ""; // e.g., doubleArray.getString() for NaN returns ""
-      for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
-        String value =
-            edvTimeStamp == null
-                ? pa.getString(row)
-                : Calendar2.epochSecondsToLimitedIsoStringT(
-                    tTime_precision, pa.getDouble(row), "NaN");
-        keep.set(row, tParam.equals(value)); // tParam isn't null; pa.getString might be
-      }
+      subsetIndex.and(bigKeep, subsetTable.findColumnNumber(subsetVariables[p]), param[p]);
     }
-    subsetTable.justKeep(keep);
-    nRows = subsetTable.nRows(); // valid params should always yield at least 1, but don't sometimes
-    if (reallyVerbose) String2.log("  bigTable nRows=" + nRows);
+    if (reallyVerbose) String2.log("  bigTable nRows=" + bigKeep.cardinality());
 
     // save lastP column  in a different PrimitiveArray
-    PrimitiveArray lastPPA =
-        lastP < 0 ? null : (PrimitiveArray) subsetTable.findColumn(subsetVariables[lastP]).clone();
+    int lastPCol = lastP < 0 ? -1 : subsetTable.findColumnNumber(subsetVariables[lastP]);
+    PrimitiveArray lastPPA = lastP < 0 ? null : subsetIndex.column(lastPCol, bigKeep);
 
     // reduce subsetTable to "smallTable" (using lastP param to reduce the table size)
+    BitSet keep = bigKeep;
     if (lastP >= 0) {
-      String tParam = param[lastP];
-      keep = new BitSet(nRows);
-      keep.set(0, nRows); // set all to true
-
-      EDV edv = findDataVariableByDestinationName(subsetVariables[lastP]);
-      EDVTimeStamp edvTimeStamp = edv instanceof EDVTimeStamp ts ? ts : null;
-      String tTime_precision = edvTimeStamp == null ? null : edvTimeStamp.time_precision();
-
-      PrimitiveArray pa = subsetTable.findColumn(subsetVariables[lastP]);
-      if (edvTimeStamp == null && !(pa instanceof StringArray) && tParam.equals("NaN"))
-        tParam = ""; // e.g., doubleArray.getString() for NaN returns ""
-      for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
-        String value =
-            edvTimeStamp == null
-                ? pa.getString(row)
-                : Calendar2.epochSecondsToLimitedIsoStringT(
-                    tTime_precision, pa.getDouble(row), "NaN");
-        // if (value.startsWith(" ")) String2.log("value=\"" + value + "\"");
-        keep.set(row, tParam.equals(value)); // tParam isn't null; pa.getString might be
-      }
-      subsetTable.justKeep(keep);
-      nRows =
-          subsetTable.nRows(); // valid params should always yield at least 1, but don't sometimes
+      keep = (BitSet) bigKeep.clone();
+      subsetIndex.and(keep, lastPCol, param[lastP]);
       if (reallyVerbose)
         String2.log(
-            "  smallTable " + subsetVariables[lastP] + "=\"" + tParam + "\" nRows=" + nRows);
+            "  smallTable "
+                + subsetVariables[lastP]
+                + "=\""
+                + param[lastP]
+                + "\" nRows="
+                + keep.cardinality());
     }
+    // a local copy of just the smallTable rows
+    // (valid params should always yield at least 1 row, but don't sometimes)
+    subsetTable = subsetIndex.subsetTable(keep);
+    int nRows = subsetTable.nRows();
 
     String clickPart =
         String2.stringStartsWith(queryParts, ".click=?"); // browser added '?' when user clicked
@@ -13933,7 +13943,8 @@ public abstract class EDDTable extends EDD {
 
         // reset all
         Arrays.fill(param, ANY);
-        subsetTable = subsetVariablesDataTable(language, loggedInAs); // reload all subset data
+        keep = subsetIndex.allRows();
+        subsetTable = subsetIndex.subsetTable(keep); // reload all subset data
         lastP = -1;
         lastPPA = null;
       }
@@ -13965,26 +13976,12 @@ public abstract class EDDTable extends EDD {
         String pName = subsetVariables[p];
         EDV edv = findDataVariableByDestinationName(pName);
         EDVTimeStamp edvTimeStamp = edv instanceof EDVTimeStamp ts ? ts : null;
-        String tTime_precision = edvTimeStamp == null ? null : edvTimeStamp.time_precision();
 
-        // work on a copy
+        // the sorted distinct values in bigTable or smallTable
+        // (EDVTimeStamp values are ISO Strings)
         PrimitiveArray pa =
-            p == lastP
-                ? (PrimitiveArray) lastPPA.clone()
-                : (PrimitiveArray) subsetTable.findColumn(pName).clone();
-        if (edvTimeStamp != null) {
-          int paSize = pa.size();
-          StringArray ta = new StringArray(paSize, false);
-          for (int row = 0; row < paSize; row++)
-            ta.add(
-                Calendar2.epochSecondsToLimitedIsoStringT(
-                    tTime_precision, pa.getDouble(row), "NaN"));
-          pa = ta;
-        }
-        pa.sortIgnoreCase();
-        // int nBefore = pa.size();
-        pa.removeDuplicates();
-        // String2.log("  " + pName + " nBefore=" + nBefore + " nAfter=" + pa.size());
+            subsetIndex.distinctValues(
+                subsetIndex.table().findColumnNumber(pName), p == lastP ? bigKeep : keep);
         pa.atInsertString(
             0, ""); // place holder for ANY (but pa may be numeric so can't take it now)
         String pasa[] = pa.toStringArray();
@@ -15043,6 +15040,10 @@ public abstract class EDDTable extends EDD {
     // The .subset.nc file is made by the constructor.
     //  The file may be made needlessly, but no delay for first user.
 
+    // is subsetTable in memory?
+    SubsetIndex index = subsetIndexes.get(subsetFileName);
+    if (index != null && index.isCurrent()) return index.subsetTable(null);
+
     // read subsetTable from cached file?
     Table table = null;
     if (File2.isFile(datasetDir() + subsetFileName)) {
@@ -15050,7 +15051,7 @@ public abstract class EDDTable extends EDD {
       int enhVer = table.readEnhancedFlatNc(datasetDir() + subsetFileName, subsetVariables);
       if (enhVer == Table.ENHANCED_VERSION) {
         // String2.log(">>subsetVariablesDataTable as read:\n" + table.toCSVString());
-        return table;
+        return cacheSubsetTable(subsetFileName, table);
       }
       // trouble. Fall through to creating a new table and storing in a file.
       String2.log(
@@ -15222,7 +15223,7 @@ public abstract class EDDTable extends EDD {
                 + ") in time="
                 + (System.currentTimeMillis() - time)
                 + "ms");
-      return table;
+      return cacheSubsetTable(subsetFileName, table);
     }
 
     // avoid recursion leading to stack overflow from
@@ -15279,7 +15280,63 @@ public abstract class EDDTable extends EDD {
               + "ms");
 
     // done
-    return table;
+    return cacheSubsetTable(subsetFileName, table);
+  }
+
+  /**
+   * This keeps a subsetVariables data table (which was just read from or saved in the subset file)
+   * in memory, so later calls to subsetVariablesDataTable() and subsetIndex() don't read the file.
+   *
+   * @param subsetFileName the name of the subset file (see subsetVariablesFileName())
+   * @param table the subsetVariables data table. It becomes the property of the SubsetIndex.
+   * @return a copy of the table, which the caller can change
+   */
+  private Table cacheSubsetTable(String subsetFileName, Table table) {
+    SubsetIndex index = makeSubsetIndex(datasetDir() + subsetFileName, table);
+    subsetIndexes.put(subsetFileName, index);
+    return index.subsetTable(null);
+  }
+
+  /**
+   * This makes a SubsetIndex for a subsetVariables data table.
+   *
+   * @param fullFileName the full name of the subset file (or null if the table isn't from a file)
+   * @param table the subsetVariables data table. It becomes the property of the SubsetIndex.
+   * @return the SubsetIndex
+   */
+  private SubsetIndex makeSubsetIndex(String fullFileName, Table table) {
+    int nCols = table.nColumns();
+    boolean isTimeStamp[] = new boolean[nCols];
+    String timePrecisions[] = new String[nCols];
+    for (int col = 0; col < nCols; col++) {
+      EDV edv = findDataVariableByDestinationName(table.getColumnName(col));
+      if (edv instanceof EDVTimeStamp edvTimeStamp) {
+        isTimeStamp[col] = true;
+        timePrecisions[col] = edvTimeStamp.time_precision();
+      }
+    }
+    return new SubsetIndex(fullFileName, table, isTimeStamp, timePrecisions);
+  }
+
+  /**
+   * This returns the in-memory, indexed subsetVariables data table. It stays in memory until the
+   * subset file changes (e.g., the dataset is reloaded), so the .subset web page doesn't read the
+   * file or copy the table for each request.
+   *
+   * @param language the index of the selected language
+   * @param loggedInAs This is used, e.g., for POST data (where the distinct subsetVariables table
+   *     is different for each loggedInAs!) and for EDDTableFromAllDatasets.
+   * @return the SubsetIndex. Don't change its table().
+   * @throws Throwable if trouble (e.g., not accessibleViaSubset())
+   */
+  public SubsetIndex subsetIndex(int language, String loggedInAs) throws Throwable {
+    String subsetFileName = subsetVariablesFileName(loggedInAs);
+    SubsetIndex index = subsetIndexes.get(subsetFileName);
+    if (index != null && index.isCurrent()) return index;
+    Table table = subsetVariablesDataTable(language, loggedInAs); // this usually caches it
+    index = subsetIndexes.get(subsetFileName);
+    if (index != null && index.isCurrent()) return index;
+    return makeSubsetIndex(null, table); // e.g., EDDTableFromAllDatasets doesn't use a file
   }
 
   /**
@@ -15304,6 +15361,30 @@ public abstract class EDDTable extends EDD {
     String fullDistinctFileName = datasetDir() + distinctSubsetVariablesFileName(loggedInAs);
     Table distinctTable = null;
 
+    // get from the in-memory subsetVariables data table? (distinct.nc is made from it)
+    SubsetIndex index = subsetIndexes.get(subsetVariablesFileName(loggedInAs));
+    if (index != null && index.isCurrent() && File2.isFile(fullDistinctFileName)) {
+      Table indexTable = index.table();
+      String names[] = loadVars == null ? indexTable.getColumnNames() : loadVars;
+      distinctTable = new Table();
+      for (String name : names) {
+        int col = indexTable.findColumnNumber(name);
+        if (col < 0) {
+          distinctTable = null;
+          break;
+        }
+        distinctTable.addColumn(
+            distinctTable.nColumns(),
+            name,
+            index.distinctSourceValues(col),
+            new Attributes(findDataVariableByDestinationName(name).combinedAttributes()));
+      }
+      if (distinctTable != null) {
+        distinctTable.globalAttributes().add(combinedGlobalAttributes());
+        return distinctTable;
+      }
+    }
+
     // read from cached distinct.nc file?
     if (File2.isFile(fullDistinctFileName)) {
       distinctTable = new Table();
@@ -5,8 +5,6 @@
 package gov.noaa.pfel.erddap.dataset;
 
 import com.cohort.array.Attributes;
-import com.cohort.array.ByteArray;
-import com.cohort.array.CharArray;
 import com.cohort.array.DoubleArray;
 import com.cohort.array.PAType;
 import com.cohort.array.PrimitiveArray;
@@ -262,6 +260,10 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
       // Just return a table with columns but no rows. There is never any metadata.
       return Table.makeEmptyTable(sourceDataNames.toArray(), sourceDataTypes);
 
+    // if the sortedColumn has min,max constraints, just keep those rows
+    boolean testSorted = sortedSpacing >= 0 && !Double.isNaN(minSorted);
+
+    // read the requested columns as the desired sourceDataTypes
     Table table = new Table();
     table.allowRaggedRightInReadASCII = true;
     table.readASCII(
@@ -272,37 +274,11 @@ public class EDDTableFromAsciiFiles extends EDDTableFromFiles {
         columnNamesRow - 1,
         firstDataRow - 1,
         columnSeparator,
-        null,
-        null,
-        null, // testColumns, testMin, testMax,
+        testSorted ? new String[] {sortedColumnSourceName} : null,
+        testSorted ? new double[] {minSorted} : null,
+        testSorted ? new double[] {maxSorted} : null,
         sourceDataNames.toArray(), // loadColumns,
-        false); // don't simplify; just get the strings
-
-    // convert to desired sourceDataTypes
-    int nCols = table.nColumns();
-    for (int tc = 0; tc < nCols; tc++) {
-      int sd = sourceDataNames.indexOf(table.getColumnName(tc));
-      if (sd >= 0) {
-        PrimitiveArray pa = table.getColumn(tc);
-        String tType = sourceDataTypes[sd];
-        if (tType.equals("String")) { // do nothing
-        } else if (tType.equals("boolean")) {
-          table.setColumn(tc, ByteArray.toBooleanToByte(pa));
-        } else {
-          PrimitiveArray newPa;
-          if (tType.equals("char")) {
-            CharArray ca = new CharArray();
-            int n = pa.size();
-            for (int i = 0; i < n; i++) ca.addString(pa.getString(i));
-            newPa = ca;
-          } else {
-            newPa = PrimitiveArray.factory(PAType.fromCohortString(sourceDataTypes[sd]), 1, false);
-            newPa.append(pa);
-          }
-          table.setColumn(tc, newPa);
-        }
-      }
-    }
+        sourceDataTypes);
 
     // unpack
     table.standardize(standardizeWhat);
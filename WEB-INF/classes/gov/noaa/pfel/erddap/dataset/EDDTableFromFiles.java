@@ -50,6 +50,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.*;
+import ucar.nc2.NetcdfFile;
 
 /**
  * This class represents a virtual table of data from by aggregating a collection of data files.
@@ -145,6 +146,8 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
   protected static final int dv0 = 5;
   int fileTableSortColumns[]; // null if not active
   boolean fileTableSortAscending[]; // size matches fileTableSortcolumns, all true
+  // the FileTableJournal.BASE_ID of the fileTable this instance last saved (null if none)
+  private volatile String fileTableBaseId = null;
 
   protected int sortedDVI = -1;
   protected String filesChanged = "";
@@ -161,6 +164,8 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
   protected boolean fileTableInMemory = false;
   protected Table dirTable; // one column with dir names
   protected Table fileTable;
+  // index of fileTable min/max columns (only if fileTableInMemory). See getFileTableIndex().
+  protected volatile FileTableIndex fileTableIndex;
 
   // things just for EDDTableFromHttpGet
   public static final String HTTP_GET_REQUIRED_VARIABLES = "httpGetRequiredVariables";
@@ -1976,6 +1981,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
           removeCumTime -= System.currentTimeMillis();
           fileTable.removeRow(fileListPo); // may be slow
           removeCumTime += System.currentTimeMillis();
+          fileRemoved(dirList.get(dirI) + fileS);
           // tFileListPo isn't incremented, so it will be considered again in next
           // iteration
           continue;
@@ -2173,7 +2179,13 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
 
     // set creationTimeMillis to fileTable lastModified
     // (either very recent or (if quickRestart) from previous full restart)
-    creationTimeMillis = File2.getLastModified(datasetDir() + FILE_TABLE_FILENAME);
+    // or to the journal's lastModified if it is newer (journaled changes don't touch the fileTable)
+    creationTimeMillis = File2.getLastModified(dirFileTableFileName(FILE_TABLE_FILENAME));
+    String journalName = datasetDir() + FileTableJournal.FILENAME;
+    if (FileTableJournal.nChanges(
+            journalName, fileTable.globalAttributes().getString(FileTableJournal.BASE_ID))
+        >= 0)
+      creationTimeMillis = Math.max(creationTimeMillis, File2.getLastModified(journalName));
 
     // send email with bad file info
     if (!badFileMap.isEmpty()) {
@@ -2558,7 +2570,9 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     // " type=" + edv.sourceDataType() + " min=" + edv.destinationMinDouble());
 
     // dirTable and fileTable InMemory?
-    if (!fileTableInMemory) {
+    if (fileTableInMemory) {
+      getFileTableIndex(fileTable); // make it now, not during the first request
+    } else {
       dirTable = null;
       fileTable = null;
     }
@@ -2900,6 +2914,15 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     return eName;
   }
 
+  /**
+   * This is called by the constructor and lowUpdate when a data file which no longer exists is
+   * removed from the fileTable. Subclasses which store information about a data file (e.g., a
+   * processed copy) can override this to delete it. This implementation does nothing.
+   *
+   * @param fullFileName the full name of the data file which no longer exists
+   */
+  protected void fileRemoved(String fullFileName) {}
+
   /**
    * This is used by the constructor and lowUpdate to ensure that a new file's attributes are
    * compatible with the expected attributes.
@@ -3133,6 +3156,280 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     return minMaxTable;
   }
 
+  /**
+   * This is used by handleEventContexts to make a new minMaxTable from the old one and just the
+   * fileTable rows which changed, instead of from the whole fileTable (see makeMinMaxTable). A
+   * variable's min (or max or hasNaN) is only recalculated from the whole fileTable if a removed or
+   * changed row had the old min (or max or hasNaN) value, since then the new value can't be found
+   * from the changed rows.
+   *
+   * @param oldMinMaxTable the current minMaxTable (it isn't changed). If null, this calls
+   *     makeMinMaxTable.
+   * @param dirList the up-to-date dirList
+   * @param fileTable the new fileTable
+   * @param oldRows the fileTable rows which were removed or changed (with their old values)
+   * @param newRows the fileTable rows which were added or changed (with their new values)
+   * @return the new minMaxTable
+   */
+  protected Table updateMinMaxTable(
+      Table oldMinMaxTable, StringArray dirList, Table fileTable, Table oldRows, Table newRows) {
+    if (oldMinMaxTable == null) return makeMinMaxTable(dirList, fileTable);
+
+    Table tMinMaxTable = (Table) oldMinMaxTable.clone();
+    int ndv = sourceDataTypes.length;
+    int nRecalculated = 0;
+    for (int dv = 0; dv < ndv; dv++) {
+      PrimitiveArray minMaxPa = tMinMaxTable.getColumn(dv);
+      for (int which = 0; which < 2; which++) { // 0=min, 1=max
+        int col = dv0 + dv * 3 + which;
+        boolean maxIsMV = fileTable.getColumn(col).getMaxIsMV();
+
+        // did a removed or changed row have a value <= the old min (or >= the old max)?
+        // getNMinMaxIndex returns the last index if there are ties, so the old min (or max) is
+        // only at index 0 if all of the old rows' values are greater (or less).
+        PrimitiveArray pa = oldRows.getColumn(col);
+        PrimitiveArray probe = PrimitiveArray.factory(minMaxPa.elementType(), pa.size() + 1, false);
+        probe.setMaxIsMV(maxIsMV);
+        probe.addString(minMaxPa.getString(which));
+        for (int row = 0; row < pa.size(); row++) probe.addString(pa.getString(row));
+        String nMinMax[];
+        if (probe.getNMinMaxIndex()[1 + which] > 0) {
+          nRecalculated++;
+          nMinMax = fileTable.getColumn(col).getNMinMax();
+        } else {
+          // the new min (or max) is the old one or one of the new rows' values
+          pa = newRows.getColumn(col);
+          probe.removeRange(1, probe.size());
+          for (int row = 0; row < pa.size(); row++) probe.addString(pa.getString(row));
+          nMinMax = probe.getNMinMax();
+        }
+        minMaxPa.setString(which, String2.parseInt(nMinMax[0]) > 0 ? nMinMax[1 + which] : "");
+      }
+
+      // hasNaN
+      int col = dv0 + dv * 3 + 2;
+      if (newRows.getColumn(col).indexOf("1") >= 0) {
+        minMaxPa.setInt(2, 1);
+      } else if (minMaxPa.getInt(2) == 1 && oldRows.getColumn(col).indexOf("1") >= 0) {
+        nRecalculated++;
+        minMaxPa.setInt(2, fileTable.getColumn(col).indexOf("1") >= 0 ? 1 : 0);
+      }
+    }
+    if (verbose)
+      String2.log(
+          "updateMinMaxTable nOldRows="
+              + oldRows.nRows()
+              + " nNewRows="
+              + newRows.nRows()
+              + " nRecalculated="
+              + nRecalculated
+              + " minMaxTable=\n"
+              + tMinMaxTable.dataToString());
+    return tMinMaxTable;
+  }
+
+  /** This returns a table with the same columns as tFileTable, but no rows. */
+  private static Table emptyCopy(Table tFileTable) {
+    Table table = new Table();
+    int nCols = tFileTable.nColumns();
+    for (int col = 0; col < nCols; col++) {
+      PrimitiveArray pa = tFileTable.getColumn(col);
+      PrimitiveArray tPa = PrimitiveArray.factory(pa.elementType(), 8, false);
+      tPa.setMaxIsMV(pa.getMaxIsMV());
+      table.addColumn(tFileTable.getColumnName(col), tPa);
+    }
+    return table;
+  }
+
+  /** This adds a copy of a row of tFileTable to the end of rows. */
+  private static void addRow(Table rows, Table tFileTable, int row) {
+    int nCols = tFileTable.nColumns();
+    for (int col = 0; col < nCols; col++)
+      rows.getColumn(col).addFromPA(tFileTable.getColumn(col), row);
+  }
+
+  /**
+   * This is like EDD.removeFromFileTable, but also adds the removed row to oldRows and removedRows.
+   *
+   * @return true if it was in the fileTable and thus was removed
+   */
+  private static boolean removeFileTableRow(
+      int dirIndex,
+      String fileName,
+      Table tFileTable,
+      ShortArray ftDirIndex,
+      StringArray ftFileList,
+      Table oldRows,
+      Table removedRows) {
+    int fileListPo = findInFileTable(dirIndex, fileName, tFileTable, ftDirIndex, ftFileList);
+    if (fileListPo < 0) return false;
+    addRow(oldRows, tFileTable, fileListPo);
+    addRow(removedRows, tFileTable, fileListPo);
+    tFileTable.removeRow(fileListPo);
+    return true;
+  }
+
+  /**
+   * This is used by handleEventContexts to append the changes to the fileTable journal (see
+   * FileTableJournal), instead of saving the whole dirTable and fileTable. If the journal gets big
+   * (EDStatic.fileTableJournalMaxChanges), this starts compacting it in the background.
+   *
+   * @param msg the start of the log message
+   * @param tDirTable the new dirTable
+   * @param tFileTable the new fileTable (the saved fileTable plus the journal plus these changes)
+   * @param removedRows the fileTable rows which were removed
+   * @param newRows the fileTable rows which were added or changed (with their new values)
+   * @param badFileMap the new badFileMap if it changed, else null
+   * @return true if the changes were journaled, or false if the caller must save the dirTable and
+   *     fileTable (e.g., journaling is disabled or there was trouble)
+   */
+  private boolean journalChanges(
+      String msg,
+      Table tDirTable,
+      Table tFileTable,
+      Table removedRows,
+      Table newRows,
+      ConcurrentHashMap badFileMap) {
+    if (EDStatic.fileTableJournalMaxChanges <= 0) return false;
+    String journalName = datasetDir() + FileTableJournal.FILENAME;
+    try {
+      long time = System.currentTimeMillis();
+      String baseId;
+      int nJournaled;
+      synchronized (FileTableJournal.lock(journalName)) {
+        baseId = fileTableBaseId;
+        if (baseId == null)
+          baseId = tFileTable.globalAttributes().getString(FileTableJournal.BASE_ID);
+        if (baseId == null) return false; // the saved fileTable is from before journals
+        // if baseId is stale, this throws an exception (so the caller saves the whole fileTable)
+        nJournaled =
+            FileTableJournal.append(
+                journalName, savedFileTableBaseId(), baseId, removedRows, newRows);
+        if (badFileMap != null) {
+          String badFilesFileName = badFileMapFileName();
+          if (badFileMap.isEmpty()) {
+            File2.delete(badFilesFileName);
+          } else {
+            int random = Math2.random(Integer.MAX_VALUE);
+            writeBadFileMap(badFilesFileName + random, badFileMap);
+            File2.rename(badFilesFileName + random, badFilesFileName);
+          }
+        }
+      }
+      if (reallyVerbose)
+        String2.log(
+            msg
+                + "journaled nRemoved="
+                + removedRows.nRows()
+                + " nChanged="
+                + newRows.nRows()
+                + " nInJournal="
+                + nJournaled
+                + " time="
+                + (System.currentTimeMillis() - time)
+                + "ms");
+      if (nJournaled >= EDStatic.fileTableJournalMaxChanges) {
+        // save copies of these tables, not the instance's tables, which may not be swapped in yet
+        String tBaseId = baseId;
+        Table cDirTable = (Table) tDirTable.clone();
+        Table cFileTable = (Table) tFileTable.clone();
+        FileTableJournal.compactInBackground(
+            journalName,
+            () -> compactFileTableJournal(tBaseId, nJournaled, cDirTable, cFileTable));
+      }
+      return true;
+    } catch (Throwable t) {
+      String2.log(
+          String2.ERROR
+              + " while journaling fileTable changes for datasetID="
+              + datasetID
+              + " (so the fileTable will be saved):\n"
+              + MustBe.throwableToString(t));
+      return false;
+    }
+  }
+
+  /**
+   * This reads the FileTableJournal.BASE_ID of the fileTable which is currently saved on disk (just
+   * the global attributes are read). The caller should synchronize on FileTableJournal.lock().
+   *
+   * @return the BASE_ID, or null if there is no saved fileTable or it doesn't have a BASE_ID
+   * @throws Exception if trouble
+   */
+  private String savedFileTableBaseId() throws Exception {
+    String binName = MappedDirFileTable.binFileName(datasetDir() + FILE_TABLE_FILENAME);
+    Attributes gAtts = MappedDirFileTable.readGlobalAttributes(binName);
+    if (gAtts == null) {
+      String ncName = datasetDir() + FILE_TABLE_FILENAME;
+      if (!File2.isFile(ncName)) return null;
+      gAtts = new Attributes();
+      try (NetcdfFile ncFile = NcHelper.openFile(ncName)) {
+        NcHelper.getGroupAttributes(ncFile.getRootGroup(), gAtts);
+      }
+    }
+    return gAtts.getString(FileTableJournal.BASE_ID);
+  }
+
+  /**
+   * This compacts the fileTable journal (in the background thread): it saves the dirTable and the
+   * fileTable (with the journal applied), which deletes the journal. This does nothing if the
+   * journal changed since the compaction was requested (e.g., the dataset was reloaded or more
+   * changes were journaled), so the tables are still the ones the journal describes.
+   *
+   * @param baseId the BASE_ID of the journal
+   * @param nChanges the number of changes in the journal when the compaction was requested
+   * @param tDirTable a private copy of the dirTable when the compaction was requested
+   * @param tFileTable a private copy of the fileTable (with the journal applied) when the
+   *     compaction was requested
+   */
+  private void compactFileTableJournal(
+      String baseId, int nChanges, Table tDirTable, Table tFileTable) {
+    String journalName = datasetDir() + FileTableJournal.FILENAME;
+    try {
+      synchronized (FileTableJournal.lock(journalName)) {
+        if (FileTableJournal.nChanges(journalName, baseId) != nChanges) return;
+        long time = System.currentTimeMillis();
+        saveDirTableFileTableBadFiles(
+            standardizeWhat, tDirTable, tFileTable, null); // throws Throwable
+        if (verbose)
+          String2.log(
+              "compacted the fileTable journal for datasetID="
+                  + datasetID
+                  + " nChanges="
+                  + nChanges
+                  + " time="
+                  + (System.currentTimeMillis() - time)
+                  + "ms");
+      }
+    } catch (Throwable t) {
+      String2.log(
+          String2.ERROR
+              + " while compacting the fileTable journal for datasetID="
+              + datasetID
+              + ":\n"
+              + MustBe.throwableToString(t));
+    }
+  }
+
+  /**
+   * This saves the dirTable, fileTable, and badFileMap (see EDD) with a new
+   * FileTableJournal.BASE_ID, then deletes the fileTable journal (since the saved fileTable
+   * includes its changes).
+   */
+  @Override
+  public void saveDirTableFileTableBadFiles(
+      int tStandardizeWhat, Table tDirTable, Table tFileTable, ConcurrentHashMap badFileMap)
+      throws Throwable {
+    String journalName = datasetDir() + FileTableJournal.FILENAME;
+    synchronized (FileTableJournal.lock(journalName)) {
+      String baseId = FileTableJournal.newBaseId();
+      tFileTable.globalAttributes().set(FileTableJournal.BASE_ID, baseId);
+      super.saveDirTableFileTableBadFiles(tStandardizeWhat, tDirTable, tFileTable, badFileMap);
+      fileTableBaseId = baseId;
+      FileTableJournal.delete(journalName);
+    }
+  }
+
   @Override
   public void doReload() {
     requestReloadASAP();
@@ -3208,6 +3505,13 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     LongArray ftSize = (LongArray) tFileTable.getColumn(FT_SIZE_COL); // 3
     DoubleArray ftSortedSpacing = (DoubleArray) tFileTable.getColumn(FT_SORTED_SPACING_COL); // 4
 
+    // the fileTable rows that change (for the journal and to update minMaxTable incrementally)
+    Table oldRows = emptyCopy(tFileTable); // removed or changed rows, with their old values
+    Table removedRows = emptyCopy(tFileTable); // removed rows
+    Table newRows = emptyCopy(tFileTable); // added or changed rows, with their new values
+    boolean dirTableChanged = false;
+    boolean badFileMapChanged = false;
+
     // for each changed file
     int nChanges = 0; // BadFiles or FileTable
     for (int evi = 0; evi < nEvents; evi++) {
@@ -3272,6 +3576,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             // But I do need to add dir to dirList.
             dirIndex = dirList.size();
             dirList.add(dirName);
+            dirTableChanged = true;
             if (reallyVerbose)
               String2.log(msg + "added a new dir to dirList (" + dirName + ") and ...");
             // another msg is always for this file printed below
@@ -3279,6 +3584,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             // Remove from BadFileMap if it is present
             if (badFileMap.remove(dirIndex + "/" + fileName) != null) {
               // It was in badFileMap
+              badFileMapChanged = true;
               if (verbose)
                 String2.log(
                     msg + "removed from badFileMap a file that now exists and is valid, and ...");
@@ -3306,8 +3612,10 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             // insert row at end of fileTable (sort below)
             fileListPo = ftFileList.size();
             tFileTable.insertBlankRow(fileListPo);
-          } // else use same row it was on before (can be inappropriate, but will sort
-          // below)
+          } else { // else use same row it was on before (can be inappropriate, but will sort
+            // below)
+            addRow(oldRows, tFileTable, fileListPo);
+          }
           setFileTableRow(
               tFileTable,
               fileListPo,
@@ -3317,6 +3625,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
               File2.length(fullName),
               tTable,
               debugMode ? evi : -1);
+          addRow(newRows, tFileTable, fileListPo);
 
         } else {
 
@@ -3325,7 +3634,8 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
           // File exists and is bad.
           // Remove from tFileTable if it is there.
           if (dirIndex >= 0) { // it might be in tFileTable
-            if (removeFromFileTable(dirIndex, fileName, tFileTable, ftDirIndex, ftFileList)) {
+            if (removeFileTableRow(
+                dirIndex, fileName, tFileTable, ftDirIndex, ftFileList, oldRows, removedRows)) {
               nChanges++;
               if (verbose)
                 String2.log(
@@ -3355,6 +3665,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
         // Remove from badFileMap if it's there.
         if (badFileMap.remove(dirIndex + "/" + fileName) != null) {
           // Yes, it was in badFileMap
+          badFileMapChanged = true;
           nChanges++;
           if (reallyVerbose)
             String2.log(msg + "removed from badFileMap a now non-existent file:\n  " + fullName);
@@ -3363,8 +3674,10 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
           // Remove it from tFileTable if it's there.
           // Don't take shortcut, e.g., by searching with tMin.
           // It is possible file had wrong name/wrong value before.
-          if (removeFromFileTable(dirIndex, fileName, tFileTable, ftDirIndex, ftFileList)) {
+          if (removeFileTableRow(
+              dirIndex, fileName, tFileTable, ftDirIndex, ftFileList, oldRows, removedRows)) {
             nChanges++;
+            fileRemoved(fullName);
             if (verbose)
               String2.log(
                   msg + "removed from fileTable a file that now doesn't exist:\n  " + fullName);
@@ -3394,23 +3707,34 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
           String2.log(
               msg + "sorted tFileTable, time=" + (System.currentTimeMillis() - sortTime) + "ms");
       }
-      // make the new minMaxTable
-      Table tMinMaxTable = makeMinMaxTable(dirList, tFileTable);
+      // make the new minMaxTable (from just the changed rows, if possible)
+      Table tMinMaxTable = updateMinMaxTable(minMaxTable, dirList, tFileTable, oldRows, newRows);
 
       // then, change secondary parts of instance variables
       // e.g., update all variable destinationMinMax
       updateDestinationMinMax(tMinMaxTable);
 
       // finally: make the important instance changes that use the changes above
-      // as quickly/atomically as possible
-      saveDirTableFileTableBadFiles(
-          standardizeWhat, tDirTable, tFileTable, badFileMap); // throws Throwable
+      // as quickly/atomically as possible.
+      // Usually, just append the changes to the fileTable journal.
+      if (dirTableChanged
+          || !journalChanges(
+              msg,
+              tDirTable,
+              tFileTable,
+              removedRows,
+              newRows,
+              badFileMapChanged ? badFileMap : null))
+        saveDirTableFileTableBadFiles(
+            standardizeWhat, tDirTable, tFileTable, badFileMap); // throws Throwable
       minMaxTable = tMinMaxTable;
       if (fileTableInMemory) {
         // quickly swap into place
         dirTable = tDirTable;
         fileTable = tFileTable;
+        getFileTableIndex(tFileTable);
       }
+      dataVersionChanged(); // so cached responses for the old data aren't reused
 
       // after changes all in place
       // Currently, update() doesn't trigger these changes.
@@ -3438,6 +3762,17 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     return nChanges > 0;
   }
 
+  /**
+   * This returns true because each change to the fileTable (see lowUpdate) calls
+   * dataVersionChanged().
+   *
+   * @return true
+   */
+  @Override
+  public boolean tracksDataVersion() {
+    return true;
+  }
+
   /**
    * This does the actual incremental update of this dataset (i.e., for real time datasets).
    *
@@ -3547,9 +3882,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     Table tDirTable =
         fileTableInMemory
             ? dirTable
-            : tryToLoadDirFileTable(datasetDir() + DIR_TABLE_FILENAME); // may
-    // be
-    // null
+            : tryToLoadDirFileTable(datasetDir() + DIR_TABLE_FILENAME, true); // may be null
     Test.ensureNotNull(tDirTable, "dirTable");
     return tDirTable;
   }
@@ -3563,13 +3896,39 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     Table tFileTable =
         fileTableInMemory
             ? fileTable
-            : tryToLoadDirFileTable(datasetDir() + FILE_TABLE_FILENAME); // may
-    // be
-    // null
+            : tryToLoadDirFileTable(datasetDir() + FILE_TABLE_FILENAME, true); // may be null
     Test.ensureNotNull(tFileTable, "fileTable");
     return tFileTable;
   }
 
+  /**
+   * This gets the FileTableIndex for the in-memory fileTable, making it if needed. The index is
+   * only used if fileTableInMemory, since otherwise the fileTable is reloaded for each request.
+   * EDDTableFromHttpGet changes its fileTable in place, so it doesn't use the index.
+   *
+   * @param tFileTable the fileTable that will be used for a request
+   * @return the index for tFileTable, or null if not available
+   */
+  protected FileTableIndex getFileTableIndex(Table tFileTable) {
+    if (!fileTableInMemory || tFileTable == null || "EDDTableFromHttpGet".equals(className))
+      return null;
+    FileTableIndex tIndex = fileTableIndex;
+    if (tIndex == null || !tIndex.isFor(tFileTable)) {
+      long tTime = System.currentTimeMillis();
+      tIndex = new FileTableIndex(tFileTable, dv0, dataVariables);
+      fileTableIndex = tIndex;
+      if (reallyVerbose)
+        String2.log(
+            datasetID
+                + " made FileTableIndex for nFiles="
+                + tFileTable.nRows()
+                + " in time="
+                + (System.currentTimeMillis() - tTime)
+                + "ms");
+    }
+    return tIndex;
+  }
+
   /**
    * This gets a copy of the dirTable (not the private copy) for read/write use.
    *
@@ -3600,6 +3959,12 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     return tFileTable;
   }
 
+  /** This returns true if the dirTable and fileTable are saved as .bin files (see EDD). */
+  @Override
+  protected boolean useMappedDirFileTable() {
+    return !fileTableInMemory;
+  }
+
   /**
    * Try to load the dirTable or fileTable. fileTable PrimitiveArrays: 0=ftDirIndex 1=ftFileList
    * 2=ftLastMod 3=ftSize 4=ftSortedSpacing, then sourceMin, sourceMax, hasNaN columns for each dv.
@@ -3609,14 +3974,31 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
    * @throws Throwable if serious trouble (e.g., Too many open files, out of memory)
    */
   protected Table tryToLoadDirFileTable(String fileName) throws Throwable {
+    return tryToLoadDirFileTable(fileName, false);
+  }
+
+  /**
+   * Try to load the dirTable or fileTable, from the .bin file (see MappedDirFileTable) if there is
+   * one, else from the .nc file.
+   *
+   * @param fileName dirTableFileName or fileTableFileName (the .nc name)
+   * @param readOnly if true, the table may be shared (e.g., for getFileTable()), so the caller must
+   *     not change it
+   * @return the dirTable fileTable (null if minor trouble, eg no such file)
+   * @throws Throwable if serious trouble (e.g., Too many open files, out of memory)
+   */
+  protected Table tryToLoadDirFileTable(String fileName, boolean readOnly) throws Throwable {
     try {
-      if (File2.isFile(fileName)) {
-        Table table = new Table();
+      Table table = MappedDirFileTable.read(MappedDirFileTable.binFileName(fileName), readOnly);
+      if (table == null && File2.isFile(fileName)) {
+        table = new Table();
         // table.readFlatNc(fileName, null, 0); //standardizeWhat=0
         Test.ensureEqual(
             table.readEnhancedFlatNc(fileName, null), // it logs fileName and nRows=
             Table.ENHANCED_VERSION,
             "old/unsupported enhancedVersion");
+      }
+      if (table != null) {
         int oldVersion = table.globalAttributes().getInt(_dirFileTableVersion_);
         Test.ensureEqual(
             oldVersion, DIR_FILE_TABLE_VERSION, "old/unsupported " + _dirFileTableVersion_);
@@ -3634,6 +4016,15 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
         String tErddapVersion = table.globalAttributes().getString("erddapVersion");
         if (tErddapVersion == null) tErddapVersion = "1.82";
 
+        // apply the changes in the fileTable journal (if any)
+        if (fileName.equals(datasetDir() + FILE_TABLE_FILENAME))
+          table =
+              FileTableJournal.apply(
+                  datasetDir() + FileTableJournal.FILENAME,
+                  table,
+                  readOnly,
+                  fileTableSortColumns,
+                  fileTableSortAscending);
         return table;
 
       } else {
@@ -3653,6 +4044,9 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
       // if minor problem
       File2.delete(datasetDir() + DIR_TABLE_FILENAME);
       File2.delete(datasetDir() + FILE_TABLE_FILENAME);
+      File2.delete(MappedDirFileTable.binFileName(datasetDir() + DIR_TABLE_FILENAME));
+      File2.delete(MappedDirFileTable.binFileName(datasetDir() + FILE_TABLE_FILENAME));
+      File2.delete(datasetDir() + FileTableJournal.FILENAME);
       return null;
     }
   }
@@ -4606,6 +5000,32 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     Table distinctTable = null;
     int task = 0; // number for next task to be created
     long nNotRead = 0; // either don't have matching data or do ('distinct' and 1 value matches)
+
+    // use the fileTableIndex to find the candidate files (null = all files)
+    // Candidate files are still tested below.
+    FileTableIndex tIndex = getFileTableIndex(tFileTable);
+    BitSet candidateFiles = null;
+    if (tIndex != null) {
+      for (int con = 0; con < nCon; con++) {
+        int dv = cdvi[con];
+        EDV edv = dataVariables[dv];
+        BitSet conCandidates =
+            tIndex.candidates(
+                dv,
+                edv instanceof EDVTimeStamp ? PAType.STRING : edv.sourceDataPAType(),
+                conOps.get(con),
+                conValuesD[con]);
+        if (conCandidates == null) continue;
+        if (candidateFiles == null) candidateFiles = conCandidates;
+        else candidateFiles.and(conCandidates);
+      }
+      if (candidateFiles != null) {
+        nNotRead += nFiles - candidateFiles.cardinality();
+        if (reallyVerbose)
+          String2.log(
+              "FileTableIndex found " + candidateFiles.cardinality() + " of " + nFiles + " files");
+      }
+    }
     ResultStatisticsAccumulator accumulator = new ResultStatisticsAccumulator();
     int tnThreads =
         nThreads >= 1 && nThreads < Integer.MAX_VALUE ? nThreads : EDStatic.nTableThreads;
@@ -4635,7 +5055,9 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
 
     try {
       FILE_LOOP:
-      for (int f = 0; f < nFiles; f++) {
+      for (int f = candidateFiles == null ? 0 : candidateFiles.nextSetBit(0);
+          f >= 0 && f < nFiles;
+          f = candidateFiles == null ? f + 1 : candidateFiles.nextSetBit(f + 1)) {
         if (Thread.interrupted()) {
           if (workManager != null) workManager.forceShutdown();
           throw new InterruptedException(); // consume the interrupted status
@@ -4690,10 +5112,16 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
 
             } else {
               // numeric timestamp, or yyyy... String timestamp
+              // (the index has the already parsed values)
+              boolean indexed = tIndex != null && tIndex.isIndexed(dv);
               double fMin =
-                  tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 0, f));
+                  indexed
+                      ? tIndex.min(dv, f)
+                      : tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 0, f));
               double fMax =
-                  tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 1, f));
+                  indexed
+                      ? tIndex.max(dv, f)
+                      : tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 1, f));
               int fNaN = tFileTable.getIntData(dv0 + dv * 3 + 2, f);
               // if min/max String times are invalid, act as if far in past/future
               if (Double.isNaN(fMin)) fMin = -1e100;
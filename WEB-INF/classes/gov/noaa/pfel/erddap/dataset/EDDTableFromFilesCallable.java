@@ -10,6 +10,7 @@ import com.cohort.util.MustBe;
 import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.RequestMetrics;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
@@ -184,6 +185,8 @@ public class EDDTableFromFilesCallable implements Callable<Table> {
         }
       }
 
+      RequestMetrics.sourceRead(
+          eddTableFromFiles.datasetID(), System.currentTimeMillis() - startTime);
       if (Thread.currentThread().interrupted()) // consume the interrupted status
       throw new InterruptedException();
       if (table.nRows() == 0) {
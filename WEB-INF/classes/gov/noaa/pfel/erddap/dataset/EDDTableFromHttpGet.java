@@ -36,6 +36,10 @@ import java.util.BitSet;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -66,6 +70,29 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       "numericTimestamp\":(\\d\\.\\d{2,12}E9),?\\n";
   public static final Pattern NUMERIC_TIMESTAMP_PATTERN = Pattern.compile(NUMERIC_TIMESTAMP_REGEX);
 
+  /**
+   * The subdirectory of datasetDir() with the compacted (processed, columnar) versions of data
+   * files which haven't been changed for httpGetCompactAfterMinutes.
+   */
+  public static final String COMPACTED_DIR = "compacted/";
+
+  /** Global attributes of a compacted file which identify the version of the source file. */
+  public static final String COMPACTED_LAST_MOD = "sourceLastModified";
+
+  public static final String COMPACTED_LENGTH = "sourceLength";
+
+  /** The full names of the data files which are being compacted. */
+  private static final Set<String> compacting = ConcurrentHashMap.newKeySet();
+
+  /** The thread which compacts data files. */
+  private static final ExecutorService compactor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "EDDTableFromHttpGet compactor");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   protected String columnNames[]; // all, not just NEC
   protected String columnUnits[];
   protected PAType columnPATypes[];
@@ -396,6 +423,15 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       }
     }
 
+    // A compacted file has the processed data as of its last change,
+    // so it can only be used if all of the history is to be applied.
+    if (process
+        && maxTimestampSeconds == Double.MAX_VALUE
+        && EDStatic.httpGetCompactAfterMinutes > 0) {
+      Table table = readCompacted(tFileDir + tFileName, sourceDataNames, sourceDataTypes);
+      if (table != null) return table;
+    }
+
     return readFile(
         tFileDir + tFileName,
         sourceDataNames,
@@ -406,6 +442,161 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
         maxTimestampSeconds);
   }
 
+  /**
+   * This returns the full name of the compacted version of a data file.
+   *
+   * @param fullFileName the full name of a jsonlCSV data file
+   * @return the full name of the compacted (.bin) version of the file
+   */
+  protected String compactedFileName(String fullFileName) {
+    return datasetDir()
+        + COMPACTED_DIR
+        + String2.md5Hex12(fullFileName)
+        + "_"
+        + File2.getNameNoExtension(fullFileName)
+        + ".bin";
+  }
+
+  /**
+   * This reads the requested columns from the compacted version of a data file, if there is a
+   * compacted version which matches the current version of the data file. If there isn't, and the
+   * data file hasn't been changed for httpGetCompactAfterMinutes, this starts compacting it in the
+   * background so later requests are faster. Appending to a compacted data file (e.g., late data)
+   * makes its compacted version obsolete until the data file is compacted again.
+   *
+   * @param fullFileName the full name of a jsonlCSV data file
+   * @param sourceDataNames the requested columns
+   * @param sourceDataTypes the types of the requested columns
+   * @return the processed data (with just the requested columns), or null if there is no valid
+   *     compacted version of the file (so the caller should use readFile())
+   */
+  protected Table readCompacted(
+      String fullFileName, StringArray sourceDataNames, String sourceDataTypes[]) {
+    File file = new File(fullFileName);
+    long lastMod = file.lastModified();
+    long length = file.length();
+    if (lastMod == 0) { // it doesn't exist
+      fileRemoved(fullFileName);
+      return null;
+    }
+    String compactedName = compactedFileName(fullFileName);
+    if (File2.isFile(compactedName)) {
+      try {
+        // just the requested columns are decoded
+        Table compacted = MappedDirFileTable.read(compactedName, sourceDataNames.toArray());
+        Attributes gAtts = compacted.globalAttributes();
+        if (gAtts.getLong(COMPACTED_LAST_MOD) == lastMod
+            && gAtts.getLong(COMPACTED_LENGTH) == length) {
+          Table table = new Table();
+          int nNames = sourceDataNames.size();
+          for (int i = 0; i < nNames; i++) {
+            String name = sourceDataNames.get(i);
+            int col = compacted.findColumnNumber(name);
+            // if the dataset's variables changed, use the data file
+            if (col < 0
+                || !compacted.getColumn(col).elementTypeString().equals(sourceDataTypes[i])) {
+              table = null;
+              break;
+            }
+            table.addColumn(name, compacted.getColumn(col));
+          }
+          if (table != null) return table;
+        }
+      } catch (Throwable t) {
+        String2.log(
+            String2.WARNING
+                + " while reading "
+                + compactedName
+                + " (so it will be deleted):\n"
+                + MustBe.throwableToString(t));
+        File2.delete(compactedName);
+      }
+    }
+
+    if (System.currentTimeMillis() - lastMod >= EDStatic.httpGetCompactAfterMinutes * 60000L)
+      compactInBackground(fullFileName, compactedName);
+    return null;
+  }
+
+  /**
+   * This deletes the compacted version (if any) of a data file which no longer exists.
+   *
+   * @param fullFileName the full name of a jsonlCSV data file
+   */
+  @Override
+  protected void fileRemoved(String fullFileName) {
+    String compactedName = compactedFileName(fullFileName);
+    if (File2.isFile(compactedName)) {
+      File2.delete(compactedName);
+      if (verbose) String2.log("EDDTableFromHttpGet deleted " + compactedName);
+    }
+  }
+
+  /**
+   * This compacts a data file in the background: it stores the processed data (all of the
+   * dataset's source columns, with the edits and deletes applied) in a columnar file which
+   * readCompacted() can read much faster than the jsonlCSV file can be read and processed. The
+   * jsonlCSV file (with the full history) is unchanged, so requests with timestamp constraints
+   * still work. This does nothing if the file is already being compacted.
+   *
+   * @param fullFileName the full name of a jsonlCSV data file
+   * @param compactedName the full name of the compacted version
+   */
+  protected void compactInBackground(String fullFileName, String compactedName) {
+    if (!compacting.add(fullFileName)) return;
+    StringArray names = new StringArray();
+    StringArray types = new StringArray();
+    for (int col = 0; col < columnNames.length; col++) {
+      if (columnNames[col].startsWith("=")) continue; // not in the file
+      names.add(columnNames[col]);
+      types.add(PAType.toCohortString(columnPATypes[col]));
+    }
+    compactor.submit(
+        () -> {
+          try {
+            // get the version info before reading, so appended data makes it obsolete
+            File file = new File(fullFileName);
+            long lastMod = file.lastModified();
+            long length = file.length();
+            if (lastMod == 0) return;
+            long time = System.currentTimeMillis();
+            Table table =
+                readFile(
+                    fullFileName,
+                    names,
+                    types.toArray(),
+                    httpGetRequiredVariableNames,
+                    httpGetRequiredVariableTypes,
+                    true,
+                    Double.MAX_VALUE);
+            table.globalAttributes().set(COMPACTED_LAST_MOD, lastMod);
+            table.globalAttributes().set(COMPACTED_LENGTH, length);
+            File2.makeDirectory(datasetDir() + COMPACTED_DIR);
+            String tempName = compactedName + Math2.random(Integer.MAX_VALUE);
+            MappedDirFileTable.write(table, tempName);
+            File2.rename(tempName, compactedName);
+            if (verbose)
+              String2.log(
+                  "EDDTableFromHttpGet compacted "
+                      + fullFileName
+                      + " nRows="
+                      + table.nRows()
+                      + " time="
+                      + (System.currentTimeMillis() - time)
+                      + "ms");
+          } catch (Throwable t) {
+            String2.log(
+                String2.ERROR
+                    + " while compacting "
+                    + fullFileName
+                    + ":\n"
+                    + MustBe.throwableToString(t));
+          } finally {
+            compacting.remove(fullFileName);
+          }
+        });
+  }
+
   /**
    * This gets the data from one file and perhaps processes it (edits and deletes are applied) up to
    * and including rows with the specified timestampSeconds value.
@@ -814,6 +1005,7 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       dirTable = tDirTable;
       fileTable = tFileTable;
     }
+    dataVersionChanged(); // so cached responses for the old data aren't reused
 
     return response;
   }
@@ -1207,19 +1399,13 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
     // append each input row to the appropriate file
     int row = 0;
     ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
-    String columnMinString[] = new String[nColumns];
-    String columnMaxString[] = new String[nColumns];
-    long columnMinLong[] = new long[nColumns];
-    long columnMaxLong[] = new long[nColumns];
-    BigInteger columnMinULong[] = new BigInteger[nColumns];
-    BigInteger columnMaxULong[] = new BigInteger[nColumns];
-    double columnMinDouble[] = new double[nColumns];
-    double columnMaxDouble[] = new double[nColumns];
-    boolean columnHasNaN[] = new boolean[nColumns];
+    final Table tDirTable = dirTable;
+    final Table tFileTable = fileTable;
     while (row < maxSize) {
       // figure out which file
       // EFFICIENT: Code below handles all rows that use this fullFileName.
-      String fullFileName = fullFileNames.get(row);
+      // fullFileName is canonical (see HttpGetGroupCommit)
+      final String fullFileName = String2.canonical(fullFileNames.get(row));
       // String2.log(">> writing to " + fullFileName);
 
       // figure out which rows go to this fullFileName
@@ -1227,268 +1413,210 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       while (row < maxSize && fullFileNames.get(row).equals(fullFileName)) row++;
       int stopRow = row; // 1 past end
 
-      // connect info for this file
+      // As much as possible is done ahead of time
+      //  so HttpGetGroupCommit can write the rows from many requests in 1 blast.
+      // the column names (written if the file doesn't exist yet)
       baos.reset();
-      boolean fileIsNew = false;
-
-      try {
-
-        if (!File2.isFile(fullFileName)) {
-          // if file doesn't exist, create it
-          fileIsNew = true; // first
-          File2.makeDirectory(File2.getDirectory(fullFileName)); // throws exception if trouble
+      Writer writer = File2.getBufferedWriterUtf8(baos);
+      boolean somethingWritten = false;
+      for (int col = 0; col < nColumns; col++) {
+        if (!columnIsFixed[col]) {
+          writer.write(somethingWritten ? ',' : '[');
+          writer.write(String2.toJson(columnNames[col]));
+          somethingWritten = true;
         }
-        Writer writer = File2.getBufferedWriterUtf8(baos);
+      }
+      writer.write("]\n");
+      writer.flush();
+      byte header[] = baos.toByteArray();
 
-        if (fileIsNew) {
-          // write the column names to the writer
-          boolean somethingWritten = false;
-          for (int col = 0; col < nColumns; col++) {
-            if (!columnIsFixed[col]) {
-              writer.write(somethingWritten ? ',' : '[');
-              writer.write(String2.toJson(columnNames[col]));
-              somethingWritten = true;
-            }
+      // the data
+      baos.reset();
+      for (int tRow = startRow; tRow < stopRow; tRow++) {
+        somethingWritten = false;
+        for (int col = 0; col < nColumns; col++) {
+          if (!columnIsFixed[col]) {
+            writer.write(somethingWritten ? ',' : '[');
+            writer.write(columnValues[col].getJsonString(tRow));
+            somethingWritten = true;
           }
-          writer.write("]\n");
         }
-
-        // write the data to the writer
+        writer.write("]\n");
+      }
+      writer.flush();
+      byte bar[] = baos.toByteArray();
+
+      // adjust min/max in fileTable
+      // (only .insert because only it adds values (and .delete only has required variables))
+      HttpGetGroupCommit.FileTableUpdate fileTableUpdate = null;
+      if (tFileTable != null) {
+
+        // prepare to calculate statistics
+        String columnMinString[] = new String[nColumns];
+        String columnMaxString[] = new String[nColumns];
+        long columnMinLong[] = new long[nColumns];
+        long columnMaxLong[] = new long[nColumns];
+        BigInteger columnMinULong[] = new BigInteger[nColumns];
+        BigInteger columnMaxULong[] = new BigInteger[nColumns];
+        double columnMinDouble[] = new double[nColumns];
+        double columnMaxDouble[] = new double[nColumns];
+        boolean columnHasNaN[] = new boolean[nColumns];
+        Arrays.fill(columnMinString, "\uFFFF");
+        Arrays.fill(columnMaxString, "\u0000");
+        Arrays.fill(columnMinLong, Long.MAX_VALUE);
+        Arrays.fill(columnMaxLong, Long.MIN_VALUE);
+        Arrays.fill(columnMinDouble, Double.MAX_VALUE);
+        Arrays.fill(columnMaxDouble, -Double.MAX_VALUE);
+
+        // calculate statistics
         for (int tRow = startRow; tRow < stopRow; tRow++) {
-          boolean somethingWritten = false;
           for (int col = 0; col < nColumns; col++) {
-            if (!columnIsFixed[col]) {
-              writer.write(somethingWritten ? ',' : '[');
-              writer.write(columnValues[col].getJsonString(tRow));
-              somethingWritten = true;
-            }
-          }
-          writer.write("]\n");
-        }
-
-        // prepare to write everything to the file
-        writer.flush(); // should do nothing because already done
-        byte bar[] = baos.toByteArray();
-
-        // As much as possible has been done ahead of time
-        //  so write info to file is 1 blast
-        // synchronized is ESSENTIAL: avoid problems with 2+ threads
-        //  writing or reading same file at same time
-        // synchronized is ESSENTIAL: fullFileName is canonical
-        //  (since from StringArray) so same object in different threads
-        // There were rare problems when writing to file with 4+ threads
-        //  before switching to this system of full prep, then full write.
-        fullFileName = String2.canonical(fullFileName);
-        ReentrantLock lock = String2.canonicalLock(fullFileName);
-        if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
-          throw new TimeoutException(
-              "Timeout waiting for lock on fullFileName in EDDTableFromHttpGet.");
-        try {
-          BufferedOutputStream fos =
-              new BufferedOutputStream(new FileOutputStream(fullFileName, !fileIsNew)); // append?
-          try {
-            fos.write(bar, 0, bar.length); // entire write in 1 low level command
-            fos.close(); // explicitly now, not by finalize() at some time in future
-          } catch (Exception e) {
-            try {
-              fos.close();
-            } catch (Exception e2) {
+            if (columnIsFixed[col]) {
+              // do nothing
+            } else if (columnIsString[col]) {
+              String s = columnValues[col].getString(tRow);
+              if (s.length() == 0 || (columnMvFv[col] != null && columnMvFv[col].indexOf(s) >= 0))
+                columnHasNaN[col] = true;
+              else {
+                if (s.compareTo(columnMinString[col]) < 0) columnMinString[col] = s;
+                if (s.compareTo(columnMaxString[col]) > 0) columnMaxString[col] = s;
+              }
+            } else if (columnIsLong[col]) {
+              long d = columnValues[col].getLong(tRow);
+              if (d == Long.MAX_VALUE
+                  || (columnMvFv[col] != null
+                      && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
+                columnHasNaN[col] = true;
+              else {
+                if (d < columnMinLong[col]) columnMinLong[col] = d;
+                if (d > columnMaxLong[col]) columnMaxLong[col] = d;
+              }
+            } else if (columnIsULong[col]) {
+              BigInteger d = columnValues[col].getULong(tRow);
+              if (d.equals(Math2.ULONG_MAX_VALUE)
+                  || (columnMvFv[col] != null
+                      && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
+                columnHasNaN[col] = true;
+              else {
+                if (d.compareTo(columnMinULong[col]) < 0) columnMinULong[col] = d;
+                if (d.compareTo(columnMaxULong[col]) > 0) columnMaxULong[col] = d;
+              }
+            } else {
+              double d = columnValues[col].getDouble(tRow);
+              if (Double.isNaN(d)
+                  || (columnMvFv[col] != null
+                      && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
+                columnHasNaN[col] = true;
+              else {
+                if (d < columnMinDouble[col]) columnMinDouble[col] = d;
+                if (d > columnMaxDouble[col]) columnMaxDouble[col] = d;
+              }
             }
-            String2.log(
-                String2.ERROR
-                    + " in EDDTableFromHttpGet while writing to "
-                    + fullFileName
-                    + ":\n"
-                    + MustBe.throwableToString(e));
-            throw e;
           }
-        } finally {
-          lock.unlock();
         }
 
-        // adjust min/max in fileTable
-        // (only .insert because only it adds values (and .delete only has required variables))
-        if (fileTable != null) {
-
-          // prepare to calculate statistics
-          Arrays.fill(columnMinString, "\uFFFF");
-          Arrays.fill(columnMaxString, "\u0000");
-          Arrays.fill(columnMinLong, Long.MAX_VALUE);
-          Arrays.fill(columnMaxLong, Long.MIN_VALUE);
-          Arrays.fill(columnMinDouble, Double.MAX_VALUE);
-          Arrays.fill(columnMaxDouble, -Double.MAX_VALUE);
-          Arrays.fill(columnHasNaN, false);
-
-          // calculate statistics
-          for (int tRow = startRow; tRow < stopRow; tRow++) {
-            for (int col = 0; col < nColumns; col++) {
-              if (columnIsFixed[col]) {
-                // do nothing
-              } else if (columnIsString[col]) {
-                String s = columnValues[col].getString(tRow);
-                if (s.length() == 0 || (columnMvFv[col] != null && columnMvFv[col].indexOf(s) >= 0))
-                  columnHasNaN[col] = true;
-                else {
-                  if (s.compareTo(columnMinString[col]) < 0) columnMinString[col] = s;
-                  if (s.compareTo(columnMaxString[col]) > 0) columnMaxString[col] = s;
-                }
-              } else if (columnIsLong[col]) {
-                long d = columnValues[col].getLong(tRow);
-                if (d == Long.MAX_VALUE
-                    || (columnMvFv[col] != null
-                        && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
-                  columnHasNaN[col] = true;
-                else {
-                  if (d < columnMinLong[col]) columnMinLong[col] = d;
-                  if (d > columnMaxLong[col]) columnMaxLong[col] = d;
-                }
-              } else if (columnIsULong[col]) {
-                BigInteger d = columnValues[col].getULong(tRow);
-                if (d.equals(Math2.ULONG_MAX_VALUE)
-                    || (columnMvFv[col] != null
-                        && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
-                  columnHasNaN[col] = true;
-                else {
-                  if (d.compareTo(columnMinULong[col]) < 0) columnMinULong[col] = d;
-                  if (d.compareTo(columnMaxULong[col]) > 0) columnMaxULong[col] = d;
-                }
-              } else {
-                double d = columnValues[col].getDouble(tRow);
-                if (Double.isNaN(d)
-                    || (columnMvFv[col] != null
-                        && columnMvFv[col].indexOf(columnValues[col].getString(tRow)) >= 0))
-                  columnHasNaN[col] = true;
-                else {
-                  if (d < columnMinDouble[col]) columnMinDouble[col] = d;
-                  if (d > columnMaxDouble[col]) columnMaxDouble[col] = d;
-                }
+        // save statistics to fileTable
+        // (HttpGetGroupCommit calls this with the fileTable locked, after the rows are written)
+        fileTableUpdate =
+            (tLastMod, tLength) -> {
+              String fileDir = File2.getDirectory(fullFileName);
+              String fileName = File2.getNameAndExtension(fullFileName);
+
+              // which row in dirTable?
+              int dirTableRow = ((StringArray) tDirTable.getColumn(0)).indexOf(fileDir);
+              if (dirTableRow < 0) {
+                dirTableRow = tDirTable.getColumn(0).size();
+                tDirTable.getColumn(0).addString(fileDir);
               }
-            }
-          }
 
-          // save statistics to fileTable
-          ReentrantLock lock2 = String2.canonicalLock(fileTable);
-          if (!lock2.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
-            throw new TimeoutException(
-                "Timeout waiting for lock on fileTable in EDDTableFromHttpGet.");
-          try {
-            String fileDir = File2.getDirectory(fullFileName);
-            String fileName = File2.getNameAndExtension(fullFileName);
-
-            // which row in dirTable?
-            int dirTableRow = ((StringArray) dirTable.getColumn(0)).indexOf(fileDir);
-            if (dirTableRow < 0) {
-              dirTableRow = dirTable.getColumn(0).size();
-              dirTable.getColumn(0).addString(fileDir);
-            }
-
-            // which row in the fileTable?
-            int fileTableRow = 0;
-            ShortArray fileTableDirPA = (ShortArray) fileTable.getColumn(FT_DIR_INDEX_COL);
-            StringArray fileTableNamePA = (StringArray) fileTable.getColumn(FT_FILE_LIST_COL);
-            int fileTableNRows = fileTable.nRows();
-            while (fileTableRow < fileTableNRows
-                && (fileTableDirPA.get(fileTableRow) != dirTableRow
-                    || !fileTableNamePA.get(fileTableRow).equals(fileName))) {
-              fileTableRow++;
-            }
-
-            if (fileTableRow == fileTableNRows) {
-              // add row to fileTable
-              fileTableDirPA.addInt(dirTableRow);
-              fileTableNamePA.add(fileName);
-              fileTable.getColumn(FT_LAST_MOD_COL).addLong(0); // will be updated below
-              fileTable.getColumn(FT_SIZE_COL).addLong(0); // will be updated below
-              fileTable.getColumn(FT_SORTED_SPACING_COL).addDouble(1); // irrelevant
-              for (int col = 0; col < nColumns; col++) {
-                int baseFTC =
-                    dv0 + col * 3; // first of 3 File Table Columns (min, max, hasNaN) for this col
-                if (columnIsFixed[col]) {
-                  fileTable.getColumn(baseFTC).addString(columnNames[col].substring(1)); // ???
-                  fileTable.getColumn(baseFTC + 1).addString(columnNames[col].substring(1));
-                } else if (columnIsString[col]) {
-                  fileTable.getColumn(baseFTC).addString(columnMinString[col]);
-                  fileTable.getColumn(baseFTC + 1).addString(columnMaxString[col]);
-                } else if (columnIsLong[col]) {
-                  fileTable.getColumn(baseFTC).addLong(columnMinLong[col]);
-                  fileTable.getColumn(baseFTC + 1).addLong(columnMaxLong[col]);
-                } else {
-                  fileTable.getColumn(baseFTC).addDouble(columnMinDouble[col]);
-                  fileTable.getColumn(baseFTC + 1).addDouble(columnMaxDouble[col]);
-                }
-                fileTable.getColumn(baseFTC + 2).addInt(columnHasNaN[col] ? 1 : 0);
+              // which row in the fileTable?
+              int fileTableRow = 0;
+              ShortArray fileTableDirPA = (ShortArray) tFileTable.getColumn(FT_DIR_INDEX_COL);
+              StringArray fileTableNamePA = (StringArray) tFileTable.getColumn(FT_FILE_LIST_COL);
+              int fileTableNRows = tFileTable.nRows();
+              while (fileTableRow < fileTableNRows
+                  && (fileTableDirPA.get(fileTableRow) != dirTableRow
+                      || !fileTableNamePA.get(fileTableRow).equals(fileName))) {
+                fileTableRow++;
               }
 
-            } else {
-              // adjust current row:
-              // dir unchanged
-              // name unchanged
-              // lastMod will be updated below
-              // size be updated below
-              // spacing unchanged/irrelevant
-              for (int col = 0; col < nColumns; col++) {
-                int baseFTC =
-                    dv0 + col * 3; // first of 3 File Table Columns (min, max, hasNaN) for this col
-                PrimitiveArray minColPA = fileTable.getColumn(baseFTC);
-                PrimitiveArray maxColPA = fileTable.getColumn(baseFTC + 1);
-                if (columnIsFixed[col]) {
-                  // already has fixed value
-                } else if (columnIsString[col]) {
-                  String tt = columnMinString[col];
-                  if (!tt.equals("\uFFFF")) { // has data
-                    if (tt.compareTo(minColPA.getString(fileTableRow)) < 0)
-                      minColPA.setString(fileTableRow, tt);
-                    tt = columnMaxString[col];
-                    if (tt.compareTo(maxColPA.getString(fileTableRow)) > 0)
-                      maxColPA.setString(fileTableRow, tt);
+              if (fileTableRow == fileTableNRows) {
+                // add row to fileTable
+                fileTableDirPA.addInt(dirTableRow);
+                fileTableNamePA.add(fileName);
+                tFileTable.getColumn(FT_LAST_MOD_COL).addLong(0); // will be updated below
+                tFileTable.getColumn(FT_SIZE_COL).addLong(0); // will be updated below
+                tFileTable.getColumn(FT_SORTED_SPACING_COL).addDouble(1); // irrelevant
+                for (int col = 0; col < nColumns; col++) {
+                  // first of 3 File Table Columns (min, max, hasNaN) for this col
+                  int baseFTC = dv0 + col * 3;
+                  if (columnIsFixed[col]) {
+                    tFileTable.getColumn(baseFTC).addString(columnNames[col].substring(1)); // ???
+                    tFileTable.getColumn(baseFTC + 1).addString(columnNames[col].substring(1));
+                  } else if (columnIsString[col]) {
+                    tFileTable.getColumn(baseFTC).addString(columnMinString[col]);
+                    tFileTable.getColumn(baseFTC + 1).addString(columnMaxString[col]);
+                  } else if (columnIsLong[col]) {
+                    tFileTable.getColumn(baseFTC).addLong(columnMinLong[col]);
+                    tFileTable.getColumn(baseFTC + 1).addLong(columnMaxLong[col]);
+                  } else {
+                    tFileTable.getColumn(baseFTC).addDouble(columnMinDouble[col]);
+                    tFileTable.getColumn(baseFTC + 1).addDouble(columnMaxDouble[col]);
                   }
-                } else if (columnIsLong[col]) {
-                  long tt = columnMinLong[col];
-                  if (tt != Long.MAX_VALUE) { // has data
-                    if (tt < minColPA.getLong(fileTableRow)) minColPA.setLong(fileTableRow, tt);
-                    if (tt > maxColPA.getLong(fileTableRow)) maxColPA.setLong(fileTableRow, tt);
-                  }
-                } else {
-                  double tt = columnMinDouble[col];
-                  if (!Double.isNaN(tt)) { // has data
-                    if (tt < minColPA.getDouble(fileTableRow)) minColPA.setDouble(fileTableRow, tt);
-                    if (tt > maxColPA.getDouble(fileTableRow)) maxColPA.setDouble(fileTableRow, tt);
+                  tFileTable.getColumn(baseFTC + 2).addInt(columnHasNaN[col] ? 1 : 0);
+                }
+
+              } else {
+                // adjust current row:
+                // dir unchanged
+                // name unchanged
+                // lastMod will be updated below
+                // size be updated below
+                // spacing unchanged/irrelevant
+                for (int col = 0; col < nColumns; col++) {
+                  // first of 3 File Table Columns (min, max, hasNaN) for this col
+                  int baseFTC = dv0 + col * 3;
+                  PrimitiveArray minColPA = tFileTable.getColumn(baseFTC);
+                  PrimitiveArray maxColPA = tFileTable.getColumn(baseFTC + 1);
+                  if (columnIsFixed[col]) {
+                    // already has fixed value
+                  } else if (columnIsString[col]) {
+                    String tt = columnMinString[col];
+                    if (!tt.equals("\uFFFF")) { // has data
+                      if (tt.compareTo(minColPA.getString(fileTableRow)) < 0)
+                        minColPA.setString(fileTableRow, tt);
+                      tt = columnMaxString[col];
+                      if (tt.compareTo(maxColPA.getString(fileTableRow)) > 0)
+                        maxColPA.setString(fileTableRow, tt);
+                    }
+                  } else if (columnIsLong[col]) {
+                    long tt = columnMinLong[col];
+                    if (tt != Long.MAX_VALUE) { // has data
+                      if (tt < minColPA.getLong(fileTableRow)) minColPA.setLong(fileTableRow, tt);
+                      if (tt > maxColPA.getLong(fileTableRow)) maxColPA.setLong(fileTableRow, tt);
+                    }
+                  } else {
+                    double tt = columnMinDouble[col];
+                    if (!Double.isNaN(tt)) { // has data
+                      if (tt < minColPA.getDouble(fileTableRow))
+                        minColPA.setDouble(fileTableRow, tt);
+                      if (tt > maxColPA.getDouble(fileTableRow))
+                        maxColPA.setDouble(fileTableRow, tt);
+                    }
                   }
+                  if (columnHasNaN[col]) tFileTable.getColumn(baseFTC + 2).setInt(fileTableRow, 1);
                 }
-                if (columnHasNaN[col]) fileTable.getColumn(baseFTC + 2).setInt(fileTableRow, 1);
               }
-            }
 
-            // update file's lastMod and size
-            long tLastMod = -1;
-            long tLength = -1;
-            try {
-              File file = new File(fullFileName);
-              tLastMod = file.lastModified();
-              tLength = file.length();
-            } catch (Exception e) {
-              String2.log(
-                  String2.ERROR
-                      + " in EDDTableFromHttpGet while getting lastModified and length of "
-                      + fullFileName);
-            }
-            fileTable.getColumn(FT_LAST_MOD_COL).setLong(fileTableRow, tLastMod);
-            fileTable.getColumn(FT_SIZE_COL).setLong(fileTableRow, tLength);
-          } finally {
-            lock2.unlock();
-          }
-        }
-
-      } catch (Throwable t) {
-        if (fileIsNew) File2.delete(fullFileName);
-        String2.log(
-            String2.ERROR
-                + " while "
-                + (fileIsNew ? "creating" : "adding to")
-                + " "
-                + fullFileName);
-        throw t;
+              // update file's lastMod and size
+              tFileTable.getColumn(FT_LAST_MOD_COL).setLong(fileTableRow, tLastMod);
+              tFileTable.getColumn(FT_SIZE_COL).setLong(fileTableRow, tLength);
+            };
       }
+
+      // write the rows (perhaps along with rows from other requests) and update the fileTable
+      HttpGetGroupCommit.commit(
+          fullFileName, header, bar, stopRow - startRow, tFileTable, fileTableUpdate);
     }
 
     // Don't ever change any of this (except adding something new to the end).
@@ -0,0 +1,361 @@
+/*
+ * ExternalTableSorter Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.SimpleException;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * This is used by TableWriterOrderBy and TableWriterDistinct to sort a result table which may be
+ * too big to fit in memory (an external merge sort). Rows are gathered in an in-memory run until it
+ * holds about runBytes; then the run is sorted and spilled to disk (as a TableWriterAll, i.e., one
+ * file per column). At the end, the runs are merged (k-way) and the sorted rows are written to
+ * another TableWriter in chunks, so memory use is bounded regardless of the size of the result.
+ *
+ * <p>If all of the rows fit in one run, nothing is written to disk and the sorted table is passed
+ * to the other TableWriter's writeAllAndFinish, as before.
+ *
+ * <p>Like Table.sort, this sort is stable: runs are in the order the rows arrived, each run is
+ * sorted stably, and the merge takes rows with equal keys from the earlier run first.
+ */
+public class ExternalTableSorter {
+
+  /** Each run gets at least this many rows (so there aren't too many tiny runs). */
+  public static final int MIN_RUN_NROWS = 10000;
+
+  /** The merge writes the sorted rows to the other TableWriter in chunks of this many rows. */
+  public static final int OUTPUT_CHUNK_NROWS = 10000;
+
+  // set by constructor
+  private final TableWriterAll owner;
+  private final long runBytes;
+  private final String keyNames[]; // null = all columns, left to right
+  private final boolean ignoreCase;
+  private final boolean removeDuplicates;
+
+  private Table pending; // the current in-memory run
+  private final ArrayList<TableWriterAll> runs = new ArrayList<>();
+  private int runNRows = 0; // the nRows in the first spilled run
+
+  /**
+   * The constructor.
+   *
+   * @param tOwner the TableWriterAll which is gathering the rows. Its dir and fileNameNoExt are the
+   *     basis for the run files and its makeEmptyTable() is used to make the tables.
+   * @param tRunBytes the approximate maximum number of bytes in each in-memory run
+   * @param tKeyNames the names of the key columns (most to least important). If null, all of the
+   *     columns are keys (left to right).
+   * @param tIgnoreCase if true, String and char keys are compared case insensitively (as with
+   *     Table.sortIgnoreCase)
+   * @param tRemoveDuplicates if true, duplicate rows are removed (as with Table.removeDuplicates)
+   */
+  public ExternalTableSorter(
+      TableWriterAll tOwner,
+      long tRunBytes,
+      String tKeyNames[],
+      boolean tIgnoreCase,
+      boolean tRemoveDuplicates) {
+    owner = tOwner;
+    runBytes = tRunBytes;
+    keyNames = tKeyNames;
+    ignoreCase = tIgnoreCase;
+    removeDuplicates = tRemoveDuplicates;
+  }
+
+  /**
+   * This adds the rows of table to the current run. If the run is then big enough, it is sorted and
+   * spilled to disk. The owner must have already called ensureCompatible(table).
+   *
+   * @param table a chunk of data. The data is copied, so the caller may reuse the table.
+   * @throws Throwable if trouble
+   */
+  public void add(Table table) throws Throwable {
+    if (table.nRows() == 0) return;
+    if (pending == null) pending = emptyTable();
+    pending.append(table);
+    int nRows = pending.nRows();
+    if (nRows >= MIN_RUN_NROWS && (long) nRows * pending.estimatedBytesPerRow() >= runBytes)
+      spillRun();
+  }
+
+  /** This returns the number of runs that have been spilled to disk. */
+  public int nRuns() {
+    return runs.size();
+  }
+
+  /** This makes an empty table (with owner's columns and metadata) with no rows. */
+  private Table emptyTable() {
+    Table table = owner.makeEmptyTable();
+    table.removeAllRows();
+    return table;
+  }
+
+  /**
+   * This sets maxIsMV for the table's columns from the owner (once true for a column, it stays
+   * true).
+   */
+  private void setMaxIsMV(Table table) {
+    for (int col = 0; col < table.nColumns(); col++)
+      table.getColumn(col).setMaxIsMV(owner.columnMaxIsMV(col));
+  }
+
+  /**
+   * This sorts a table (and perhaps removes duplicate rows).
+   *
+   * @param table the table to be sorted
+   * @param keys the key column numbers
+   */
+  private void sortTable(Table table, int keys[]) {
+    boolean ascending[] = new boolean[keys.length];
+    Arrays.fill(ascending, true);
+    if (ignoreCase) table.sortIgnoreCase(keys, ascending);
+    else table.sort(keys, ascending);
+    if (removeDuplicates) table.removeDuplicates();
+  }
+
+  /**
+   * This finds the key column numbers.
+   *
+   * @param table a table with the owner's columns
+   * @return the key column numbers
+   */
+  private int[] keys(Table table) {
+    if (keyNames == null) {
+      int keys[] = new int[table.nColumns()];
+      for (int col = 0; col < keys.length; col++) keys[col] = col;
+      return keys;
+    }
+    int keys[] = new int[keyNames.length];
+    for (int k = 0; k < keyNames.length; k++) {
+      keys[k] = table.findColumnNumber(keyNames[k]);
+      if (keys[k] < 0)
+        throw new SimpleException(
+            "Internal error in ExternalTableSorter: key column="
+                + keyNames[k]
+                + " isn't in the results table.");
+    }
+    return keys;
+  }
+
+  /**
+   * This sorts the current run and writes it to disk.
+   *
+   * @throws Throwable if trouble
+   */
+  private void spillRun() throws Throwable {
+    setMaxIsMV(pending);
+    sortTable(pending, keys(pending));
+    TableWriterAll run =
+        new TableWriterAll(
+            owner.language,
+            null,
+            null,
+            owner.dir,
+            owner.fileNameNoExt + "." + owner.randomInt + ".run" + runs.size());
+    runs.add(run); // so it is released even if trouble
+    run.writeSome(pending);
+    run.finish();
+    if (runNRows == 0) runNRows = pending.nRows();
+    if (TableWriter.verbose)
+      String2.log(
+          "ExternalTableSorter spilled run#"
+              + (runs.size() - 1)
+              + " nRows="
+              + pending.nRows()
+              + " to "
+              + run.columnFileName(0));
+    pending = null;
+  }
+
+  /**
+   * This sorts all of the rows and writes them to otherTableWriter (and calls its finish()).
+   *
+   * @param otherTableWriter the TableWriter which receives the sorted rows
+   * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+   */
+  public void finish(TableWriter otherTableWriter) throws Throwable {
+    // everything fit in memory?
+    if (runs.isEmpty()) {
+      if (pending == null || pending.nRows() == 0)
+        throw new SimpleException(MustBe.THERE_IS_NO_DATA + " (nRows = 0)");
+      Table table = pending;
+      pending = null;
+      setMaxIsMV(table);
+      sortTable(table, keys(table));
+      otherTableWriter.writeAllAndFinish(table);
+      return;
+    }
+
+    if (pending != null && pending.nRows() > 0) spillRun();
+    pending = null;
+    merge(otherTableWriter);
+  }
+
+  /**
+   * This merges the runs and writes the sorted rows to otherTableWriter.
+   *
+   * @param otherTableWriter the TableWriter which receives the sorted rows
+   * @throws Throwable if trouble
+   */
+  private void merge(TableWriter otherTableWriter) throws Throwable {
+    long time = System.currentTimeMillis();
+    int nRuns = runs.size();
+    int chunkNRows = Math.max(1000, runNRows / nRuns);
+    RunReader readers[] = new RunReader[nRuns];
+    try {
+      PriorityQueue<RunReader> queue = new PriorityQueue<>(nRuns, this::compareHeads);
+      for (int r = 0; r < nRuns; r++) {
+        readers[r] = new RunReader(r, runs.get(r), chunkNRows);
+        if (readers[r].hasRow()) queue.add(readers[r]);
+      }
+
+      Table out = emptyTable();
+      int nColumns = out.nColumns();
+      Table previous = null; // a copy of the last row written (for removeDuplicates)
+      long nRowsOut = 0;
+      while (!queue.isEmpty()) {
+        RunReader reader = queue.poll();
+        Table from = reader.table;
+        int row = reader.row;
+
+        boolean duplicate = false;
+        if (removeDuplicates) {
+          if (out.nRows() > 0) duplicate = rowsEqual(from, row, out, out.nRows() - 1);
+          else if (previous != null) duplicate = rowsEqual(from, row, previous, 0);
+        }
+        if (!duplicate) {
+          for (int col = 0; col < nColumns; col++)
+            out.getColumn(col).addFromPA(from.getColumn(col), row, 1);
+        }
+        if (reader.next()) queue.add(reader);
+
+        if (out.nRows() >= OUTPUT_CHUNK_NROWS) {
+          if (removeDuplicates) previous = lastRow(out);
+          nRowsOut += out.nRows();
+          otherTableWriter.writeSome(out);
+          out.removeAllRows();
+          if (otherTableWriter.noMoreDataPlease) break;
+        }
+      }
+      if (out.nRows() > 0 && !otherTableWriter.noMoreDataPlease) {
+        nRowsOut += out.nRows();
+        otherTableWriter.writeSome(out);
+      }
+      otherTableWriter.finish();
+      if (TableWriter.verbose)
+        String2.log(
+            "ExternalTableSorter merged nRuns="
+                + nRuns
+                + " nRowsOut="
+                + nRowsOut
+                + " TIME="
+                + (System.currentTimeMillis() - time)
+                + "ms");
+    } finally {
+      for (RunReader reader : readers) if (reader != null) reader.close();
+    }
+  }
+
+  /** This returns a 1-row copy of the last row of table. */
+  private static Table lastRow(Table table) {
+    return table.subset(table.nRows() - 1, 1, table.nRows() - 1);
+  }
+
+  /** This tests if the rows are exactly equal (as Table.removeDuplicates does). */
+  private static boolean rowsEqual(Table table1, int row1, Table table2, int row2) {
+    int nColumns = table1.nColumns();
+    for (int col = 0; col < nColumns; col++)
+      if (table1.getColumn(col).compare(row1, table2.getColumn(col), row2) != 0) return false;
+    return true;
+  }
+
+  /** This compares the current rows of two RunReaders (ties go to the earlier run). */
+  private int compareHeads(RunReader reader1, RunReader reader2) {
+    int keys[] = reader1.keys;
+    for (int k = 0; k < keys.length; k++) {
+      PrimitiveArray pa1 = reader1.table.getColumn(keys[k]);
+      PrimitiveArray pa2 = reader2.table.getColumn(keys[k]);
+      int result =
+          ignoreCase
+              ? pa1.compareIgnoreCase(reader1.row, pa2, reader2.row)
+              : pa1.compare(reader1.row, pa2, reader2.row);
+      if (result != 0) return result;
+    }
+    return Integer.compare(reader1.runIndex, reader2.runIndex);
+  }
+
+  /** This reads the rows of one run, a chunk at a time. */
+  private class RunReader {
+    final int runIndex;
+    final int chunkNRows;
+    final DataInputStream dis[];
+    final Table table; // the current chunk
+    final int keys[];
+    long nRowsLeft; // not yet read from the files
+    int row = 0; // the current row in table
+
+    RunReader(int tRunIndex, TableWriterAll run, int tChunkNRows) throws Throwable {
+      runIndex = tRunIndex;
+      chunkNRows = tChunkNRows;
+      table = emptyTable();
+      keys = keys(table);
+      int nColumns = table.nColumns();
+      dis = new DataInputStream[nColumns];
+      for (int col = 0; col < nColumns; col++) dis[col] = run.dataInputStream(col);
+      nRowsLeft = run.nRows();
+      readChunk();
+    }
+
+    /** This reads the next chunk of rows into table. */
+    private void readChunk() throws Throwable {
+      table.removeAllRows();
+      row = 0;
+      int n = Math2.narrowToInt(Math.min(chunkNRows, nRowsLeft));
+      for (int col = 0; col < dis.length; col++) table.getColumn(col).readDis(dis[col], n);
+      nRowsLeft -= n;
+    }
+
+    boolean hasRow() {
+      return row < table.nRows();
+    }
+
+    /**
+     * This moves to the next row.
+     *
+     * @return true if there is another row
+     */
+    boolean next() throws Throwable {
+      row++;
+      if (row < table.nRows()) return true;
+      if (nRowsLeft <= 0) return false;
+      readChunk();
+      return hasRow();
+    }
+
+    void close() {
+      for (int col = 0; col < dis.length; col++) {
+        try {
+          if (dis[col] != null) dis[col].close();
+        } catch (Exception e) {
+        }
+      }
+    }
+  }
+
+  /** This deletes the run files. This won't throw an exception. */
+  public void releaseResources() {
+    pending = null;
+    for (TableWriterAll run : runs) run.releaseResources();
+    runs.clear();
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * FileTableIndex Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.Math2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.variable.EDV;
+import gov.noaa.pfel.erddap.variable.EDVTimeStamp;
+import java.util.BitSet;
+
+/**
+ * This is a read-only index of the per-file min and max values in an EDDTableFromFiles fileTable.
+ * For each numeric dataVariable (and each timeStamp variable that can be tested via its min and
+ * max), the file rows are sorted by min and by max, so the files which may have data matching a
+ * constraint (e.g., time&gt;=2020-01-01) can be found with a binary search, instead of testing
+ * every row of the fileTable.
+ *
+ * <p>The candidate files are always a superset of the files which pass EDDTableFromFiles.isOK(),
+ * so the caller should still test each candidate file.
+ *
+ * <p>Since the fileTable isn't copied, this is only valid as long as the fileTable isn't changed.
+ * Since EDDTableFromFiles swaps in a new fileTable when it changes, use isFor() to check.
+ */
+public class FileTableIndex {
+
+  private final Table fileTable; // just used for isFor()
+  private final int nRows;
+
+  // For each dataVariable (null if not indexed):
+  // the file min and max values (for timeStamps: epochSeconds), by fileTable row
+  private final double[][] mins;
+  private final double[][] maxs;
+  // the rows (without rows where min or max is NaN) sorted by min and by max
+  private final int[][] rowsByMin;
+  private final int[][] rowsByMax;
+  private final double[][] sortedMins;
+  private final double[][] sortedMaxs;
+  // the rows where min or max is NaN (they are always candidates)
+  private final int[][] nanRows;
+
+  /**
+   * This constructs the index.
+   *
+   * @param tFileTable the fileTable, with the standard EDDTableFromFiles layout: dv0 columns, then
+   *     sourceMin, sourceMax, hasNaN columns for each dataVariable.
+   * @param dv0 the column number of the first dataVariable's min column
+   * @param dataVariables the dataset's dataVariables
+   */
+  public FileTableIndex(Table tFileTable, int dv0, EDV[] dataVariables) {
+    fileTable = tFileTable;
+    nRows = tFileTable.nRows();
+    int ndv = dataVariables.length;
+    mins = new double[ndv][];
+    maxs = new double[ndv][];
+    rowsByMin = new int[ndv][];
+    rowsByMax = new int[ndv][];
+    sortedMins = new double[ndv][];
+    sortedMaxs = new double[ndv][];
+    nanRows = new int[ndv][];
+
+    for (int dv = 0; dv < ndv; dv++) {
+      EDV edv = dataVariables[dv];
+      PAType paType = edv.sourceDataPAType();
+      PrimitiveArray minPA = tFileTable.getColumn(dv0 + dv * 3 + 0);
+      PrimitiveArray maxPA = tFileTable.getColumn(dv0 + dv * 3 + 1);
+      double tMins[] = new double[nRows];
+      double tMaxs[] = new double[nRows];
+
+      if (edv instanceof EDVTimeStamp tdv) {
+        // This mimics the tests in EDDTableFromFiles.getDataForDapQuery.
+        // Strings are sorted incorrectly by e.g., MM/dd/yyyy, so those aren't indexed.
+        if (paType == PAType.STRING && !tdv.sourceTimeFormat().toLowerCase().startsWith("yyyy"))
+          continue;
+        for (int row = 0; row < nRows; row++) {
+          // if min/max String times are invalid, act as if far in past/future
+          double d = tdv.sourceTimeToEpochSeconds(minPA.getString(row));
+          tMins[row] = Double.isNaN(d) ? -1e100 : d;
+          d = tdv.sourceTimeToEpochSeconds(maxPA.getString(row));
+          tMaxs[row] = Double.isNaN(d) ? 1e100 : d;
+        }
+      } else if (paType == PAType.STRING || paType == PAType.CHAR) {
+        continue;
+      } else {
+        for (int row = 0; row < nRows; row++) {
+          tMins[row] = minPA.getDouble(row);
+          tMaxs[row] = maxPA.getDouble(row);
+        }
+      }
+
+      // gather the rows with valid min and max
+      int nValid = 0;
+      for (int row = 0; row < nRows; row++)
+        if (!Double.isNaN(tMins[row]) && !Double.isNaN(tMaxs[row])) nValid++;
+      int valid[] = new int[nValid];
+      int nan[] = new int[nRows - nValid];
+      int vi = 0, ni = 0;
+      for (int row = 0; row < nRows; row++) {
+        if (!Double.isNaN(tMins[row]) && !Double.isNaN(tMaxs[row])) valid[vi++] = row;
+        else nan[ni++] = row;
+      }
+
+      int byMin[] = valid.clone();
+      sortRows(byMin, tMins);
+      int byMax[] = valid;
+      sortRows(byMax, tMaxs);
+      double sMins[] = new double[nValid];
+      double sMaxs[] = new double[nValid];
+      for (int i = 0; i < nValid; i++) {
+        sMins[i] = tMins[byMin[i]];
+        sMaxs[i] = tMaxs[byMax[i]];
+      }
+
+      mins[dv] = tMins;
+      maxs[dv] = tMaxs;
+      rowsByMin[dv] = byMin;
+      rowsByMax[dv] = byMax;
+      sortedMins[dv] = sMins;
+      sortedMaxs[dv] = sMaxs;
+      nanRows[dv] = nan;
+    }
+  }
+
+  /**
+   * This indicates if this index was made from the specified fileTable.
+   *
+   * @param tFileTable a fileTable
+   * @return true if this index was made from tFileTable
+   */
+  public boolean isFor(Table tFileTable) {
+    return fileTable == tFileTable && nRows == tFileTable.nRows();
+  }
+
+  /**
+   * This indicates if the specified dataVariable is indexed.
+   *
+   * @param dv the dataVariable number
+   * @return true if the dataVariable is indexed
+   */
+  public boolean isIndexed(int dv) {
+    return mins[dv] != null;
+  }
+
+  /**
+   * For an indexed timeStamp variable, this returns the file's min value in epochSeconds (or
+   * -1e100 if invalid), so callers don't have to parse the source time again.
+   *
+   * @param dv the dataVariable number
+   * @param row the fileTable row
+   * @return the min value
+   */
+  public double min(int dv, int row) {
+    return mins[dv][row];
+  }
+
+  /**
+   * For an indexed timeStamp variable, this returns the file's max value in epochSeconds (or 1e100
+   * if invalid), so callers don't have to parse the source time again.
+   *
+   * @param dv the dataVariable number
+   * @param row the fileTable row
+   * @return the max value
+   */
+  public double max(int dv, int row) {
+    return maxs[dv][row];
+  }
+
+  /**
+   * This finds the fileTable rows which may have data matching a numeric constraint. Since
+   * EDDTableFromFiles.isOK() uses almostEqual tests, the constraint is loosened slightly so that
+   * the result is always a superset of the files that pass isOK().
+   *
+   * @param dv the dataVariable number
+   * @param precisionPAType the PAType used to determine isOK's precision (for timeStamp
+   *     variables, use PAType.STRING, as EDDTableFromFiles does)
+   * @param op the constraint operator
+   * @param value the constraint value (a source value, or epochSeconds for timeStamps)
+   * @return a BitSet with the candidate rows, or null if this constraint can't be tested via the
+   *     index (e.g., the variable isn't indexed, op is != or regex, or value is NaN).
+   */
+  public BitSet candidates(int dv, PAType precisionPAType, String op, double value) {
+    if (mins[dv] == null || Double.isNaN(value) || Double.isInfinite(value)) return null;
+    boolean testMin, testMax;
+    switch (op) {
+      case "<", "<=" -> {
+        testMin = true;
+        testMax = false;
+      }
+      case ">", ">=" -> {
+        testMin = false;
+        testMax = true;
+      }
+      case "=" -> {
+        testMin = true;
+        testMax = true;
+      }
+      default -> {
+        return null;
+      }
+    }
+
+    // loosen the test by more than the precision of isOK's almostEqual tests
+    double slack =
+        precisionPAType == PAType.FLOAT
+            ? Math.abs(value) * 1e-4
+            : precisionPAType == PAType.DOUBLE ? Math.abs(value) * 1e-8 : Math.abs(value) * 1e-15;
+    slack += precisionPAType == PAType.LONG ? 1 : 1e-12; // LONG min/max are floor/ceil'd
+    // almostEqual treats any two values closer to 0 than its eps as equal
+    slack += 2 * (precisionPAType == PAType.FLOAT ? Math2.fEps : Math2.dEps);
+    double hi = value + slack; // candidates have min <= hi
+    double lo = value - slack; // candidates have max >= lo
+
+    // number of rows with min <= hi, and number of rows with max >= lo
+    int nByMin = testMin ? upperBound(sortedMins[dv], hi) : -1;
+    int nByMax = testMax ? sortedMaxs[dv].length - lowerBound(sortedMaxs[dv], lo) : -1;
+
+    BitSet bitSet = new BitSet(nRows);
+    if (testMin && (!testMax || nByMin <= nByMax)) {
+      // walk the rows with min <= hi
+      int rows[] = rowsByMin[dv];
+      double tMaxs[] = maxs[dv];
+      for (int i = 0; i < nByMin; i++) {
+        int row = rows[i];
+        if (!testMax || tMaxs[row] >= lo) bitSet.set(row);
+      }
+    } else {
+      // walk the rows with max >= lo
+      int rows[] = rowsByMax[dv];
+      double tMins[] = mins[dv];
+      for (int i = rows.length - nByMax; i < rows.length; i++) {
+        int row = rows[i];
+        if (!testMin || tMins[row] <= hi) bitSet.set(row);
+      }
+    }
+    for (int row : nanRows[dv]) bitSet.set(row);
+    return bitSet;
+  }
+
+  /** This returns the number of values in the sorted array which are &lt;= value. */
+  private static int upperBound(double[] sorted, double value) {
+    int lo = 0, hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sorted[mid] <= value) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  /** This returns the index of the first value in the sorted array which is &gt;= value. */
+  private static int lowerBound(double[] sorted, double value) {
+    int lo = 0, hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sorted[mid] < value) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  /**
+   * This sorts the row numbers (stably) by their key values. It is a merge sort on primitive
+   * arrays, so rows aren't boxed.
+   *
+   * @param rows the row numbers, which will be sorted
+   * @param keys the key for each row number (no NaNs)
+   */
+  static void sortRows(int[] rows, double[] keys) {
+    int n = rows.length;
+    int temp[] = new int[n];
+    int[] from = rows, to = temp;
+    for (int width = 1; width < n; width *= 2) {
+      for (int start = 0; start < n; start += 2 * width) {
+        int mid = Math.min(start + width, n);
+        int end = Math.min(start + 2 * width, n);
+        int i = start, j = mid, k = start;
+        while (i < mid && j < end) to[k++] = keys[from[j]] < keys[from[i]] ? from[j++] : from[i++];
+        while (i < mid) to[k++] = from[i++];
+        while (j < end) to[k++] = from[j++];
+      }
+      int[] swap = from;
+      from = to;
+      to = swap;
+    }
+    if (from != rows) System.arraycopy(from, 0, rows, 0, n);
+  }
+}
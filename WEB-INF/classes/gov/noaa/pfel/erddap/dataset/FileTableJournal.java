@@ -0,0 +1,394 @@
+/*
+ * FileTableJournal Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * This is an append-only journal of changes (added, changed, and removed files) to an
+ * EDDTableFromFiles fileTable, so that an update (see EDDTableFromFiles.handleEventContexts) which
+ * changes a few files doesn't have to rewrite the whole fileTable. The journal is in the dataset's
+ * datasetDir() next to the fileTable. Whenever the fileTable is read from disk, the journal is
+ * applied to it (see apply()). When the journal gets big, it is compacted (the fileTable is saved
+ * and the journal is deleted) in the background.
+ *
+ * <p>Each fileTable that is saved gets a new random BASE_ID global attribute, and the journal's
+ * header has the BASE_ID of the fileTable that it applies to. So a journal left over from before
+ * the fileTable was last saved (e.g., because ERDDAP stopped just after saving the fileTable) is
+ * ignored.
+ *
+ * <p>Format (big endian): int MAGIC, UTF baseID, then batches. Each batch (one update) is: int
+ * nBytes, the bytes, and the long CRC32 of the bytes. A batch's bytes are: int nRemoved, then
+ * (short dirIndex, UTF fileName) for each removed file, int nColumns, int nChanged, then the row
+ * for each added or changed file (the fileTable's columns, in order, written with writeDos). An
+ * incomplete or damaged last batch (e.g., ERDDAP stopped while writing it) is ignored and is
+ * overwritten by the next batch.
+ */
+public class FileTableJournal {
+
+  /** The name of the journal file in the datasetDir(). */
+  public static final String FILENAME = "fileTable.journal";
+
+  /** The name of the fileTable global attribute with the id of the saved fileTable. */
+  public static final String BASE_ID = "_fileTableJournalBase_";
+
+  public static final int MAGIC = 0x45444a4c; // "EDJL"
+
+  /** The locks (one per journal file name) for changing the fileTable files and the journal. */
+  private static final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+  /** The tables with the journal applied, for read-only use, by journal file name. */
+  private static final ConcurrentHashMap<String, Cached> cache = new ConcurrentHashMap<>();
+
+  /** The thread which compacts journals. */
+  private static final ExecutorService compactor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "FileTableJournal compactor");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static class Cached {
+    final Table base;
+    final long length;
+    final long lastModified;
+    final SoftReference<Table> table;
+
+    Cached(Table base, long length, long lastModified, Table table) {
+      this.base = base;
+      this.length = length;
+      this.lastModified = lastModified;
+      this.table = new SoftReference<>(table);
+    }
+  }
+
+  /**
+   * This returns the object to synchronize on while saving the fileTable or changing the journal.
+   * It is shared by all instances of a dataset (e.g., the old and new instance during a reload).
+   *
+   * @param journalName the full name of the journal file
+   * @return the lock
+   */
+  public static Object lock(String journalName) {
+    return locks.computeIfAbsent(journalName, k -> new Object());
+  }
+
+  /**
+   * This returns a new random id for a fileTable that is about to be saved.
+   *
+   * @return a new base id
+   */
+  public static String newBaseId() {
+    return Long.toHexString(System.currentTimeMillis())
+        + "_"
+        + Integer.toHexString(Math2.random(Integer.MAX_VALUE));
+  }
+
+  /**
+   * This appends a batch of changes to the journal (starting a new journal if there is no journal
+   * or if it is for a different fileTable). The caller must synchronize on lock(journalName) (the
+   * same lock that is held while the fileTable is saved), so that savedBaseId stays correct.
+   *
+   * @param journalName the full name of the journal file
+   * @param savedBaseId the BASE_ID of the fileTable which is currently saved on disk (or null if
+   *     there is none)
+   * @param baseId the BASE_ID of the fileTable that the caller's changes apply to
+   * @param removed the rows of the files which were removed from the fileTable (only the dirIndex
+   *     and fileName columns are used)
+   * @param changed the new rows of the files which were added or changed (with all of the
+   *     fileTable's columns)
+   * @return the number of changes (removed or changed files) in the journal, including these
+   * @throws Exception if trouble, notably if baseId isn't savedBaseId (e.g., the caller's fileTable
+   *     is from before the fileTable was last saved), in which case the journal isn't changed and
+   *     the caller must save the whole fileTable
+   */
+  public static int append(
+      String journalName, String savedBaseId, String baseId, Table removed, Table changed)
+      throws Exception {
+    if (baseId == null || !baseId.equals(savedBaseId))
+      throw new RuntimeException(
+          "The fileTable changes are for BASE_ID="
+              + baseId
+              + ", but the saved fileTable has BASE_ID="
+              + savedBaseId
+              + ".");
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(baos);
+    int nRemoved = removed.nRows();
+    dos.writeInt(nRemoved);
+    for (int row = 0; row < nRemoved; row++) {
+      dos.writeShort(removed.getColumn(EDDTableFromFiles.FT_DIR_INDEX_COL).getInt(row));
+      dos.writeUTF(removed.getColumn(EDDTableFromFiles.FT_FILE_LIST_COL).getString(row));
+    }
+    int nColumns = changed.nColumns();
+    int nChanged = changed.nRows();
+    dos.writeInt(nColumns);
+    dos.writeInt(nChanged);
+    for (int row = 0; row < nChanged; row++)
+      for (int col = 0; col < nColumns; col++) changed.getColumn(col).writeDos(dos, row);
+    dos.flush();
+    byte[] bytes = baos.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+
+    try (RandomAccessFile raf = new RandomAccessFile(journalName, "rw")) {
+      long[] validLengthNChanges = scan(raf, baseId);
+      if (validLengthNChanges[0] < 0) {
+        // no journal, or it's for a different fileTable
+        raf.setLength(0);
+        raf.writeInt(MAGIC);
+        raf.writeUTF(baseId);
+        validLengthNChanges[0] = raf.getFilePointer();
+        validLengthNChanges[1] = 0;
+      }
+      raf.setLength(validLengthNChanges[0]); // remove an incomplete last batch
+      raf.seek(validLengthNChanges[0]);
+      ByteArrayOutputStream batch = new ByteArrayOutputStream(bytes.length + 12);
+      DataOutputStream batchDos = new DataOutputStream(batch);
+      batchDos.writeInt(bytes.length);
+      batchDos.write(bytes);
+      batchDos.writeLong(crc.getValue());
+      raf.write(batch.toByteArray()); // one write
+      return Math.toIntExact(validLengthNChanges[1] + nRemoved + nChanged);
+    }
+  }
+
+  /**
+   * This finds the end of the last valid batch in the journal.
+   *
+   * @return [0]=the length of the valid part of the journal (or -1 if it is empty or is for a
+   *     different fileTable), [1]=the number of changes in the valid batches
+   */
+  private static long[] scan(RandomAccessFile raf, String baseId) throws Exception {
+    long length = raf.length();
+    raf.seek(0);
+    try {
+      if (length == 0 || raf.readInt() != MAGIC || !raf.readUTF().equals(baseId))
+        return new long[] {-1, 0};
+    } catch (EOFException e) {
+      return new long[] {-1, 0};
+    }
+    long validLength = raf.getFilePointer();
+    long nChanges = 0;
+    while (validLength + 4 <= length) {
+      raf.seek(validLength);
+      int nBytes = raf.readInt();
+      if (nBytes < 0 || validLength + 4 + nBytes + 8 > length) break;
+      byte[] bytes = new byte[nBytes];
+      raf.readFully(bytes);
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      if (raf.readLong() != crc.getValue()) break;
+      DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+      int nRemoved = dis.readInt();
+      for (int i = 0; i < nRemoved; i++) {
+        dis.readShort();
+        dis.readUTF();
+      }
+      dis.readInt(); // nColumns
+      nChanges += nRemoved + dis.readInt();
+      validLength += 4 + nBytes + 8;
+    }
+    return new long[] {validLength, nChanges};
+  }
+
+  /**
+   * This applies the journal (if any) to a fileTable which was just read from disk.
+   *
+   * @param journalName the full name of the journal file
+   * @param fileTable the fileTable, as read from disk
+   * @param readOnly if true, fileTable may be shared (see MappedDirFileTable), so it isn't changed,
+   *     and the result (if different) is shared, too
+   * @param sortColumns the fileTable's sort columns (or null if not sorted)
+   * @param sortAscending the sort directions for the sortColumns
+   * @return fileTable (if there is no valid journal for it), or fileTable with the journal applied
+   * @throws Exception if trouble (e.g., the journal is for a fileTable with different columns)
+   */
+  public static Table apply(
+      String journalName,
+      Table fileTable,
+      boolean readOnly,
+      int sortColumns[],
+      boolean sortAscending[])
+      throws Exception {
+    String baseId = fileTable.globalAttributes().getString(BASE_ID);
+    if (baseId == null || !File2.isFile(journalName)) return fileTable;
+    long length = File2.length(journalName);
+    long lastModified = File2.getLastModified(journalName);
+    if (readOnly) {
+      Cached cached = cache.get(journalName);
+      if (cached != null
+          && cached.base == fileTable
+          && cached.length == length
+          && cached.lastModified == lastModified) {
+        Table table = cached.table.get();
+        if (table != null) return table;
+      }
+    }
+
+    long time = System.currentTimeMillis();
+    byte[] journal;
+    long validLength;
+    synchronized (lock(journalName)) {
+      try (RandomAccessFile raf = new RandomAccessFile(journalName, "r")) {
+        validLength = scan(raf, baseId)[0];
+        if (validLength < 0) return fileTable; // journal is for a different fileTable
+        journal = new byte[Math.toIntExact(validLength)];
+        raf.seek(0);
+        raf.readFully(journal);
+      }
+    }
+
+    Table table = readOnly ? (Table) fileTable.clone() : fileTable;
+    ShortArray ftDirIndex = (ShortArray) table.getColumn(EDDTableFromFiles.FT_DIR_INDEX_COL);
+    StringArray ftFileList = (StringArray) table.getColumn(EDDTableFromFiles.FT_FILE_LIST_COL);
+    int nColumns = table.nColumns();
+    int nRows = table.nRows();
+    HashMap<String, Integer> rowOf = new HashMap<>(Math.max(16, nRows * 2));
+    for (int row = 0; row < nRows; row++)
+      rowOf.put(ftDirIndex.get(row) + "/" + ftFileList.get(row), row);
+    BitSet removed = new BitSet();
+    Table newRow = new Table();
+    for (int col = 0; col < nColumns; col++)
+      newRow.addColumn(
+          table.getColumnName(col),
+          PrimitiveArray.factory(table.getColumn(col).elementType(), 1, false));
+
+    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(journal));
+    dis.readInt(); // MAGIC
+    dis.readUTF(); // baseId
+    int nBatches = 0;
+    while (dis.available() > 0) {
+      int nBytes = dis.readInt();
+      DataInputStream batch = new DataInputStream(new ByteArrayInputStream(dis.readNBytes(nBytes)));
+      dis.readLong(); // crc (checked by scan)
+      nBatches++;
+      int nRemoved = batch.readInt();
+      for (int i = 0; i < nRemoved; i++) {
+        Integer row = rowOf.remove(batch.readShort() + "/" + batch.readUTF());
+        if (row != null) removed.set(row);
+      }
+      int tNColumns = batch.readInt();
+      if (tNColumns != nColumns)
+        throw new RuntimeException(
+            "The fileTable journal has nColumns=" + tNColumns + " (expected " + nColumns + ").");
+      int nChanged = batch.readInt();
+      for (int i = 0; i < nChanged; i++) {
+        for (int col = 0; col < nColumns; col++) {
+          PrimitiveArray pa = newRow.getColumn(col);
+          pa.clear();
+          pa.readDis(batch, 1);
+        }
+        String key = newRow.getColumn(0).getInt(0) + "/" + newRow.getColumn(1).getString(0);
+        Integer row = rowOf.get(key);
+        if (row == null) {
+          row = table.nRows();
+          for (int col = 0; col < nColumns; col++)
+            table.getColumn(col).addFromPA(newRow.getColumn(col), 0);
+          rowOf.put(key, row);
+        } else {
+          for (int col = 0; col < nColumns; col++)
+            table.getColumn(col).setFromPA(row, newRow.getColumn(col), 0);
+        }
+        removed.clear(row);
+      }
+    }
+    if (!removed.isEmpty()) {
+      BitSet keep = new BitSet();
+      keep.set(0, table.nRows());
+      keep.andNot(removed);
+      table.justKeep(keep);
+    }
+    if (sortColumns != null) table.sort(sortColumns, sortAscending);
+    if (EDD.reallyVerbose)
+      String2.log(
+          "FileTableJournal.apply "
+              + journalName
+              + " nBatches="
+              + nBatches
+              + " nRows="
+              + table.nRows()
+              + " time="
+              + (System.currentTimeMillis() - time)
+              + "ms");
+    if (readOnly) cache.put(journalName, new Cached(fileTable, length, lastModified, table));
+    return table;
+  }
+
+  /**
+   * This returns the number of changes in the journal if it is for the specified fileTable.
+   *
+   * @param journalName the full name of the journal file
+   * @param baseId the BASE_ID of the fileTable
+   * @return the number of changes (or -1 if there is no journal for that fileTable)
+   */
+  public static int nChanges(String journalName, String baseId) {
+    if (baseId == null || !File2.isFile(journalName)) return -1;
+    synchronized (lock(journalName)) {
+      try (RandomAccessFile raf = new RandomAccessFile(journalName, "r")) {
+        long[] validLengthNChanges = scan(raf, baseId);
+        return validLengthNChanges[0] < 0 ? -1 : Math.toIntExact(validLengthNChanges[1]);
+      } catch (Exception e) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * This deletes the journal and the shared table with it applied. The caller must synchronize on
+   * lock(journalName).
+   *
+   * @param journalName the full name of the journal file
+   */
+  public static void delete(String journalName) {
+    File2.delete(journalName);
+    cache.remove(journalName);
+  }
+
+  /**
+   * This compacts the journal in the background. The task is responsible for checking (while
+   * synchronized on lock(journalName)) that the journal is still the one it expects, then saving
+   * the fileTable (which deletes the journal).
+   *
+   * @param journalName the full name of the journal file
+   * @param task the task which saves the fileTable
+   */
+  public static void compactInBackground(String journalName, Runnable task) {
+    compactor.submit(
+        () -> {
+          try {
+            task.run();
+          } catch (Throwable t) {
+            String2.log(
+                String2.ERROR
+                    + " while compacting "
+                    + journalName
+                    + ":\n"
+                    + MustBe.throwableToString(t));
+          }
+        });
+  }
+}
@@ -0,0 +1,472 @@
+/*
+ * GridChunkCache Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
+import gov.noaa.pfel.erddap.variable.EDV;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This is a local cache of chunks of the source data of remote grid datasets (EDDGridFromDap and
+ * EDDGridFromErddap, if EDStatic.useGridChunkCache), so many users requesting the same region
+ * (e.g., the latest time of a popular dataset) don't each cause the same requests to the remote
+ * server.
+ *
+ * <p>The source data is divided into chunks on a fixed grid: 1 index of each axis except the last
+ * 2, and CHUNK_LENGTH indices of the last 2 axes (usually latitude and longitude). A request (with
+ * stride=1 for all axes) is answered by getting the chunks which it overlaps (from the cache, or
+ * from the source, concurrently, via the dataset's nThreads) and copying the requested values from
+ * them. Requests with stride &gt; 1, requests which would get much more data (MAX_FETCH_RATIO) than
+ * they need, and requests which overlap more than MAX_CHUNKS chunks (e.g., a whole global grid,
+ * which would otherwise become hundreds of requests to the remote server instead of 1) aren't
+ * cached.
+ *
+ * <p>Chunks are stored in the dataset's cacheDirectory() (so they are deleted when the dataset is
+ * reloaded, deleted when they are older than cacheMinutes, and limited by cacheMaxMB, like cached
+ * responses) and, if EDStatic.gridChunkCacheMemoryMB &gt; 0, in memory. A chunk's name includes the
+ * dataset's dataVersion() and a hash of the chunk's axis values, so a chunk is never used after
+ * the axis values it covers have changed (e.g., after the last time value was replaced by an
+ * update).
+ */
+public class GridChunkCache {
+
+  /** The number of indices of each of the last 2 axes in a chunk. */
+  public static final int CHUNK_LENGTH = 64;
+
+  /** Requests which would get more than this times the requested values aren't cached. */
+  public static final int MAX_FETCH_RATIO = 4;
+
+  /** Requests which overlap more than this many chunks (per data variable) aren't cached. */
+  public static final int MAX_CHUNKS = 16;
+
+  /** Gets the source data for one data variable and one chunk (stride=1 on all axes). */
+  @FunctionalInterface
+  public interface ChunkSource {
+    /**
+     * @param dataVariable the data variable
+     * @param chunkConstraints the chunk's constraints (start, stride=1, stop for each axis)
+     * @return the source's response: [0]=the data values and (optionally) [1..nAxes]=the axis
+     *     values
+     * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+     */
+    PrimitiveArray[] get(EDV dataVariable, IntArray chunkConstraints) throws Throwable;
+  }
+
+  /** A chunk in the memory cache. */
+  private static class Entry {
+    final PrimitiveArray pa;
+    final long bytes;
+    final long createdMillis;
+
+    Entry(PrimitiveArray pa, long createdMillis) {
+      this.pa = pa;
+      this.bytes = (long) pa.size() * pa.elementSize() + 64;
+      this.createdMillis = createdMillis;
+    }
+  }
+
+  // the memory cache, in least recently used order
+  private static final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(256, 0.75f, true);
+  private static long memoryBytes = 0; // guarded by memory
+
+  /**
+   * This gets source data via the chunk cache.
+   *
+   * @param language the index of the selected language
+   * @param eddGrid the dataset
+   * @param tDataVariables the requested data variables
+   * @param tConstraints the request's constraints (start, stride, stop for each axis)
+   * @param source gets chunks from the source
+   * @return the same as EDDGrid.getSourceData(), or null if this request shouldn't be cached (so
+   *     the caller should get the data directly from the source)
+   * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+   */
+  public static PrimitiveArray[] getSourceData(
+      int language,
+      EDDGrid eddGrid,
+      EDV tDataVariables[],
+      IntArray tConstraints,
+      ChunkSource source)
+      throws Throwable {
+
+    // get each axis's sourceValues once (it may be read from a file)
+    int nAxes = eddGrid.axisVariables().length;
+    PrimitiveArray axisValues[] = new PrimitiveArray[nAxes];
+    int axisSizes[] = new int[nAxes];
+    for (int av = 0; av < nAxes; av++) {
+      axisValues[av] = eddGrid.axisVariables()[av].sourceValues();
+      axisSizes[av] = axisValues[av].size();
+    }
+    int plan[][] = plan(tConstraints, axisSizes);
+    if (plan == null) return null;
+    int chunkLength[] = plan[0];
+    int firstChunk[] = plan[1];
+    int lastChunk[] = plan[2];
+    int nRequested = 1;
+    for (int av = 0; av < nAxes; av++)
+      nRequested *= tConstraints.get(av * 3 + 2) - tConstraints.get(av * 3) + 1;
+
+    // get the chunks (in row-major order), concurrently
+    int nChunks = 1;
+    for (int av = 0; av < nAxes; av++) nChunks *= lastChunk[av] - firstChunk[av] + 1;
+    int nDv = tDataVariables.length;
+    PrimitiveArray chunks[][] = new PrimitiveArray[nDv][nChunks];
+    int tnThreads =
+        eddGrid.nThreads >= 1 && eddGrid.nThreads < Integer.MAX_VALUE
+            ? eddGrid.nThreads
+            : EDStatic.nGridThreads;
+    tnThreads = EDD.adjustNThreads(tnThreads);
+    ThreadedWorkManager<Object[]> workManager =
+        new ThreadedWorkManager<>(
+            Math.min(tnThreads, nDv * nChunks),
+            result ->
+                chunks[(Integer) result[0]][(Integer) result[1]] = (PrimitiveArray) result[2]);
+    try {
+      int chunk[] = firstChunk.clone();
+      for (int c = 0; c < nChunks; c++) {
+        IntArray chunkConstraints = new IntArray(nAxes * 3, false);
+        for (int av = 0; av < nAxes; av++) {
+          chunkConstraints.add(chunk[av] * chunkLength[av]);
+          chunkConstraints.add(1);
+          chunkConstraints.add(
+              chunk[av] * chunkLength[av] + chunkSize(axisValues, chunkLength, av, chunk[av]) - 1);
+        }
+        for (int dv = 0; dv < nDv; dv++) {
+          int tDv = dv;
+          int tC = c;
+          workManager.addTask(
+              () -> {
+                try {
+                  return new Object[] {
+                    tDv,
+                    tC,
+                    getChunk(
+                        language,
+                        eddGrid,
+                        tDataVariables[tDv],
+                        chunkConstraints,
+                        axisValues,
+                        source)
+                  };
+                } catch (Throwable t) {
+                  throw new ExecutionException(t);
+                }
+              });
+        }
+        // next chunk
+        for (int av = nAxes - 1; av >= 0; av--) {
+          if (++chunk[av] <= lastChunk[av]) break;
+          chunk[av] = firstChunk[av];
+        }
+      }
+      workManager.finishedEnqueing();
+      workManager.processResults();
+    } catch (ExecutionException ee) {
+      workManager.forceShutdown();
+      Throwable t = ee;
+      while (t instanceof ExecutionException && t.getCause() != null) t = t.getCause();
+      throw t;
+    } catch (Throwable t) {
+      workManager.forceShutdown();
+      throw t;
+    }
+
+    // copy the requested values from the chunks
+    PrimitiveArray results[] = new PrimitiveArray[nAxes + nDv];
+    for (int av = 0; av < nAxes; av++)
+      results[av] =
+          axisValues[av].subset(tConstraints.get(av * 3), 1, tConstraints.get(av * 3 + 2));
+    for (int dv = 0; dv < nDv; dv++) {
+      PrimitiveArray pa = PrimitiveArray.factory(chunks[dv][0].elementType(), nRequested, false);
+      pa.setMaxIsMV(chunks[dv][0].getMaxIsMV());
+      copy(chunks[dv], tConstraints, axisValues, chunkLength, firstChunk, lastChunk, pa);
+      results[nAxes + dv] = pa;
+    }
+    return results;
+  }
+
+  /**
+   * This decides if a request should use the chunk cache and, if so, which chunks it needs.
+   *
+   * @param tConstraints the request's constraints (start, stride, stop for each axis)
+   * @param axisSizes the number of values of each axis
+   * @return null if the request shouldn't use the chunk cache (stride &gt; 1, more than
+   *     MAX_FETCH_RATIO times the requested values, or more than MAX_CHUNKS chunks). Otherwise,
+   *     [0]=the chunkLength, [1]=the firstChunk, and [2]=the lastChunk for each axis.
+   */
+  static int[][] plan(IntArray tConstraints, int axisSizes[]) {
+    int nAxes = axisSizes.length;
+    int chunkLength[] = new int[nAxes];
+    int firstChunk[] = new int[nAxes];
+    int lastChunk[] = new int[nAxes];
+    double nRequested = 1;
+    double nFetched = 1;
+    double nChunks = 1;
+    for (int av = 0; av < nAxes; av++) {
+      int start = tConstraints.get(av * 3);
+      int stop = tConstraints.get(av * 3 + 2);
+      if (tConstraints.get(av * 3 + 1) != 1) return null;
+      chunkLength[av] = av >= nAxes - 2 ? CHUNK_LENGTH : 1;
+      firstChunk[av] = start / chunkLength[av];
+      lastChunk[av] = stop / chunkLength[av];
+      nRequested *= stop - start + 1;
+      nFetched *=
+          Math.min((lastChunk[av] + 1) * chunkLength[av], axisSizes[av])
+              - firstChunk[av] * chunkLength[av];
+      nChunks *= lastChunk[av] - firstChunk[av] + 1;
+    }
+    if (nFetched > MAX_FETCH_RATIO * nRequested || nChunks > MAX_CHUNKS) return null;
+    return new int[][] {chunkLength, firstChunk, lastChunk};
+  }
+
+  /**
+   * This appends the requested values to pa, in row-major order. Each run of values along the last
+   * axis within one chunk is copied at once.
+   */
+  static void copy(
+      PrimitiveArray chunks[],
+      IntArray tConstraints,
+      PrimitiveArray axisValues[],
+      int chunkLength[],
+      int firstChunk[],
+      int lastChunk[],
+      PrimitiveArray pa) {
+    int nAxes = chunkLength.length;
+    int last = nAxes - 1;
+    int lastStart = tConstraints.get(last * 3);
+    int lastStop = tConstraints.get(last * 3 + 2);
+    int index[] = new int[nAxes]; // the current source index on each axis (except the last)
+    for (int av = 0; av < last; av++) index[av] = tConstraints.get(av * 3);
+    while (true) {
+      // the chunk number (without the last axis) and the offset in the chunk
+      int chunkNumber = 0;
+      int offset = 0;
+      for (int av = 0; av < last; av++) {
+        int c = index[av] / chunkLength[av];
+        chunkNumber = chunkNumber * (lastChunk[av] - firstChunk[av] + 1) + c - firstChunk[av];
+        offset =
+            offset * chunkSize(axisValues, chunkLength, av, c) + index[av] - c * chunkLength[av];
+      }
+      int nLastChunks = lastChunk[last] - firstChunk[last] + 1;
+      for (int c = firstChunk[last]; c <= lastChunk[last]; c++) {
+        int cStart = c * chunkLength[last];
+        int cSize = chunkSize(axisValues, chunkLength, last, c);
+        int from = Math.max(lastStart, cStart);
+        int to = Math.min(lastStop, cStart + cSize - 1);
+        pa.addFromPA(
+            chunks[chunkNumber * nLastChunks + c - firstChunk[last]],
+            offset * cSize + from - cStart,
+            to - from + 1);
+      }
+
+      // next row
+      int av = last - 1;
+      while (av >= 0) {
+        if (++index[av] <= tConstraints.get(av * 3 + 2)) break;
+        index[av] = tConstraints.get(av * 3);
+        av--;
+      }
+      if (av < 0) return;
+    }
+  }
+
+  /** This returns the number of indices of an axis in a chunk (less at the end of the axis). */
+  private static int chunkSize(
+      PrimitiveArray axisValues[], int chunkLength[], int av, int chunk) {
+    return Math.min((chunk + 1) * chunkLength[av], axisValues[av].size())
+        - chunk * chunkLength[av];
+  }
+
+  /** This gets one chunk of one data variable from the memory cache, disk cache, or source. */
+  private static PrimitiveArray getChunk(
+      int language,
+      EDDGrid eddGrid,
+      EDV edv,
+      IntArray chunkConstraints,
+      PrimitiveArray axisValues[],
+      ChunkSource source)
+      throws Throwable {
+
+    // the chunk's name
+    StringBuilder sb = new StringBuilder();
+    sb.append(eddGrid.datasetID())
+        .append('\n')
+        .append(eddGrid.dataVersion())
+        .append('\n')
+        .append(edv.sourceName());
+    PrimitiveArray expectedAxes[] = new PrimitiveArray[axisValues.length];
+    for (int av = 0; av < axisValues.length; av++) {
+      expectedAxes[av] =
+          axisValues[av].subset(chunkConstraints.get(av * 3), 1, chunkConstraints.get(av * 3 + 2));
+      sb.append('\n').append(chunkConstraints.get(av * 3)).append(':').append(expectedAxes[av]);
+    }
+    String name = String2.md5Hex12(sb.toString());
+    String fullName = eddGrid.cacheDirectory() + "chunk_" + name + ".bin";
+
+    PrimitiveArray pa = fromMemory(name);
+    if (pa != null) return pa;
+
+    // only one thread gets a given chunk
+    ReentrantLock lock = String2.canonicalLock(fullName);
+    if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException("Timeout waiting for lock on GridChunkCache chunk.");
+    try {
+      pa = fromMemory(name);
+      if (pa != null) return pa;
+      if (File2.getLastModified(fullName) > System.currentTimeMillis() - EDStatic.cacheMillis) {
+        try {
+          pa = read(fullName);
+        } catch (Exception e) {
+          String2.log("GridChunkCache caught while reading " + fullName + ":\n" + e.toString());
+          File2.delete(fullName);
+        }
+      }
+      if (pa == null) {
+        pa = fetch(language, edv, chunkConstraints, expectedAxes, source);
+        write(pa, fullName);
+      }
+      toMemory(name, pa);
+      return pa;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** This gets a chunk from the source and checks the axis values. */
+  private static PrimitiveArray fetch(
+      int language,
+      EDV edv,
+      IntArray chunkConstraints,
+      PrimitiveArray expectedAxes[],
+      ChunkSource source)
+      throws Throwable {
+    PrimitiveArray pa[] = source.get(edv, chunkConstraints);
+    int nAxes = expectedAxes.length;
+    if (pa.length == nAxes + 1) {
+      // it's a DGrid; the axis values must be the ones the chunk's name is based on
+      for (int av = 0; av < nAxes; av++) {
+        String tError = expectedAxes[av].almostEqual(pa[av + 1]);
+        if (tError.length() > 0)
+          throw new WaitThenTryAgainException(
+              EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
+                  + "\n(Details: The source's axis values for axis="
+                  + av
+                  + " don't equal the expected axis values.\n"
+                  + tError
+                  + ")");
+      }
+    } else if (pa.length != 1) {
+      throw new WaitThenTryAgainException(
+          EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
+              + "\n(Details: An unexpected data structure was returned from the source.)");
+    }
+    int expectedSize = 1;
+    for (int av = 0; av < nAxes; av++) expectedSize *= expectedAxes[av].size();
+    if (pa[0].size() != expectedSize)
+      throw new WaitThenTryAgainException(
+          EDStatic.simpleBilingual(language, EDStatic.waitThenTryAgainAr)
+              + "\n(Details: The source returned "
+              + pa[0].size()
+              + " values, not the expected "
+              + expectedSize
+              + ".)");
+    return pa[0];
+  }
+
+  /** This returns a chunk from the memory cache (or null). */
+  private static PrimitiveArray fromMemory(String name) {
+    if (EDStatic.gridChunkCacheMemoryMB <= 0) return null;
+    synchronized (memory) {
+      Entry entry = memory.get(name);
+      if (entry == null) return null;
+      if (entry.createdMillis <= System.currentTimeMillis() - EDStatic.cacheMillis) {
+        memory.remove(name);
+        memoryBytes -= entry.bytes;
+        return null;
+      }
+      return entry.pa;
+    }
+  }
+
+  /** This adds a chunk to the memory cache, removing the least recently used chunks if needed. */
+  private static void toMemory(String name, PrimitiveArray pa) {
+    long maxBytes = EDStatic.gridChunkCacheMemoryMB * (long) Math2.BytesPerMB;
+    if (maxBytes <= 0) return;
+    Entry entry = new Entry(pa, System.currentTimeMillis());
+    if (entry.bytes > maxBytes / 4) return;
+    synchronized (memory) {
+      Entry old = memory.put(name, entry);
+      if (old != null) memoryBytes -= old.bytes;
+      memoryBytes += entry.bytes;
+      Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+      while (memoryBytes > maxBytes && it.hasNext()) {
+        memoryBytes -= it.next().getValue().bytes;
+        it.remove();
+      }
+    }
+  }
+
+  /** This removes all chunks from the memory cache. */
+  public static void clearMemory() {
+    synchronized (memory) {
+      memory.clear();
+      memoryBytes = 0;
+    }
+  }
+
+  /**
+   * This writes a chunk to a file (via a temporary file, so readers never see a partial file). This
+   * won't throw an exception if trouble (the chunk just isn't cached on disk).
+   */
+  static void write(PrimitiveArray pa, String fullName) {
+    String tmpName = fullName + Math2.random(Integer.MAX_VALUE) + ".tmp";
+    try {
+      try (DataOutputStream dos =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpName)))) {
+        dos.writeUTF(PAType.toCohortString(pa.elementType()));
+        dos.writeBoolean(pa.getMaxIsMV());
+        dos.writeInt(pa.size());
+        pa.writeDos(dos);
+      }
+      File2.rename(tmpName, fullName);
+    } catch (Exception e) {
+      String2.log("GridChunkCache caught while writing " + fullName + ":\n" + e.toString());
+      File2.delete(tmpName);
+    }
+  }
+
+  /** This reads a chunk from a file made by write(). */
+  static PrimitiveArray read(String fullName) throws Exception {
+    try (DataInputStream dis =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(fullName)))) {
+      PAType paType = PAType.fromCohortString(dis.readUTF());
+      boolean maxIsMV = dis.readBoolean();
+      int size = dis.readInt();
+      PrimitiveArray pa = PrimitiveArray.factory(paType, size, false);
+      pa.readDis(dis, size);
+      pa.setMaxIsMV(maxIsMV);
+      return pa;
+    }
+  }
+}
@@ -21,11 +21,18 @@ import com.cohort.util.MustBe;
 import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.RequestMetrics;
 import gov.noaa.pfel.erddap.variable.EDV;
 import gov.noaa.pfel.erddap.variable.EDVGridAxis;
 import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides sequential access to the grid data requested by a grid data query to an
@@ -41,6 +48,14 @@ import java.util.concurrent.ExecutionException;
  * <p>The constructor does not get any data from the source. The first call to increment() causes
  * the first partial response to be obtained from the source.
  *
+ * <p>If EDStatic.gridReadAheadNChunks &gt; 0, a background thread gets the next few partial
+ * responses from the source while the caller is processing (e.g., writing) the current one. The
+ * number of chunks read ahead is limited so that they use at most EDStatic.partialRequestMaxBytes.
+ * The read ahead stops after the last chunk is requested, if there is an error, when
+ * releaseGetResources() is called, or when the thread which started it calls
+ * releaseThreadReadAheads() (Erddap.doGet does that at the end of each request, so read ahead
+ * stops even if a request stopped using a GridDataAccessor early, e.g., the client disconnected).
+ *
  * @author Bob Simons (was bob.simons@noaa.gov, now BobSimons2.00@gmail.com) 2007-07-06
  */
 public class GridDataAccessor {
@@ -89,6 +104,16 @@ public class GridDataAccessor {
 
   protected Table tDirTable, tFileTable; // null, unless eddGrid is EDDGridFromFiles
 
+  // read ahead (if readAheadNChunks > 0)
+  protected int readAheadNChunks = 0;
+  protected NDimensionalIndex readAheadIndex; // the driverIndex of the last chunk requested
+  protected ArrayDeque<Future<PrimitiveArray[]>> readAheadQueue; // in driverIndex order
+  protected ThreadPoolExecutor readAheadExecutor;
+
+  /** The read ahead executors started by each thread. See releaseThreadReadAheads(). */
+  private static final ThreadLocal<ArrayList<ThreadPoolExecutor>> threadReadAheadExecutors =
+      new ThreadLocal<>();
+
   /**
    * This is the constructor. This constructor sets everything up, but doesn't get any grid data.
    *
@@ -358,6 +383,15 @@ public class GridDataAccessor {
     Math2.ensureArraySizeOkay(
         partialIndex.size(), "GridDataAccessor"); // ensure each chunk size() is ok
     totalNBytes = driverIndex.size() * nBytesPerPartialRequest; // driverIndex.size() is a long
+
+    // read ahead? limit the memory used by chunks which are waiting to be used
+    if (EDStatic.gridReadAheadNChunks > 0 && driverIndex.size() > 1) {
+      readAheadNChunks =
+          (int)
+              Math.min(
+                  Math.min(EDStatic.gridReadAheadNChunks, driverIndex.size() - 1),
+                  tPartialRequestMaxBytes / Math.max(1, nBytesPerPartialRequest));
+    }
     if (reallyVerbose)
       String2.log(
           "      getAllOfNAxes="
@@ -373,7 +407,9 @@ public class GridDataAccessor {
               + "\n      nBytesPerPartialRequest="
               + nBytesPerPartialRequest
               + " totalNBytes="
-              + totalNBytes);
+              + totalNBytes
+              + " readAheadNChunks="
+              + readAheadNChunks);
   }
 
   /**
@@ -597,7 +633,7 @@ public class GridDataAccessor {
 
     try {
       System.arraycopy(
-          getChunk(this, driverIndex.getCurrent()),
+          readAheadNChunks > 0 ? getReadAheadChunk() : getChunk(this, driverIndex.getCurrent()),
           0,
           partialDataValues,
           0,
@@ -606,6 +642,7 @@ public class GridDataAccessor {
     } catch (Throwable t) {
       // throwable while getting a chunk
       // shut everything down
+      cancelReadAhead();
 
       while (t instanceof ExecutionException) // may be doubly wrapped
       t = t.getCause();
@@ -640,6 +677,99 @@ public class GridDataAccessor {
     // String2.pressEnterToContinue("chunk=" + chunk + " task=" + task + " at end of getChunk.");
   }
 
+  /**
+   * This returns the chunk for the current driverIndex from the readAheadQueue, after making sure
+   * that the following readAheadNChunks chunks have been requested (in order) from the background
+   * thread.
+   *
+   * @return the partialDataValues for the current driverIndex
+   * @throws Throwable if trouble (e.g., ExecutionException) while getting the chunk
+   */
+  private PrimitiveArray[] getReadAheadChunk() throws Throwable {
+    if (readAheadQueue == null) {
+      // first time: readAheadIndex just before driverIndex
+      readAheadQueue = new ArrayDeque<>();
+      readAheadIndex = new NDimensionalIndex(driverIndex.shape());
+      // a single thread gets the chunks in order; it ends soon after it is idle
+      readAheadExecutor =
+          new ThreadPoolExecutor(
+              0,
+              1,
+              5,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "GridDataAccessor readAhead " + eddGrid.datasetID());
+                thread.setDaemon(true);
+                return thread;
+              });
+      ArrayList<ThreadPoolExecutor> started = threadReadAheadExecutors.get();
+      if (started == null) {
+        started = new ArrayList<>();
+        threadReadAheadExecutors.set(started);
+      }
+      started.removeIf(ThreadPoolExecutor::isShutdown); // e.g., if the thread never releases them
+      started.add(readAheadExecutor);
+    }
+
+    // request chunks up to readAheadNChunks beyond the current chunk
+    // (the queue's size, not the index, since the index jumps around if !rowMajor)
+    while (!readAheadExecutor.isShutdown() && readAheadQueue.size() <= readAheadNChunks) {
+      if (!(rowMajor ? readAheadIndex.increment() : readAheadIndex.incrementCM())) {
+        // all chunks have been requested: the thread ends when it has gotten them
+        readAheadExecutor.shutdown();
+        break;
+      }
+      int[] tDriverCurrent = readAheadIndex.getCurrent().clone();
+      readAheadQueue.add(readAheadExecutor.submit(() -> getChunk(this, tDriverCurrent)));
+    }
+
+    // the head of the queue is for the current driverIndex
+    Future<PrimitiveArray[]> future = readAheadQueue.poll();
+    if (future == null)
+      throw new RuntimeException(
+          "GridDataAccessor.getReadAheadChunk: no chunk for driverIndex.current="
+              + String2.toCSSVString(driverIndex.getCurrent()));
+    return future.get();
+  }
+
+  /**
+   * This cancels (and interrupts) any pending read ahead chunks and stops the read ahead thread.
+   */
+  protected void cancelReadAhead() {
+    ArrayDeque<Future<PrimitiveArray[]>> tQueue = readAheadQueue;
+    if (tQueue != null) {
+      Future<PrimitiveArray[]> future;
+      while ((future = tQueue.poll()) != null) future.cancel(true);
+    }
+    ThreadPoolExecutor tExecutor = readAheadExecutor;
+    if (tExecutor != null) tExecutor.shutdownNow();
+  }
+
+  /**
+   * This stops the read ahead (if any) of all of the GridDataAccessors whose read ahead was started
+   * by the current thread and which are still reading ahead. Erddap.doGet calls this at the end of
+   * each request, since most users of GridDataAccessor don't call releaseGetResources() if they
+   * stop early (e.g., because of an exception while writing the response).
+   *
+   * @return the number of read ahead threads which were stopped
+   */
+  public static int releaseThreadReadAheads() {
+    ArrayList<ThreadPoolExecutor> started = threadReadAheadExecutors.get();
+    if (started == null) return 0;
+    threadReadAheadExecutors.remove();
+    int n = 0;
+    for (ThreadPoolExecutor executor : started) {
+      if (executor.isTerminated()) continue;
+      // cancel the chunks which weren't started, so nothing waits for them
+      for (Runnable runnable : executor.shutdownNow())
+        if (runnable instanceof Future<?> future) future.cancel(false);
+      n++;
+    }
+    return n;
+  }
+
   private PrimitiveArray[] getChunk(GridDataAccessor gda, int[] driverCurrent) throws Exception {
     try {
       long time = System.currentTimeMillis();
@@ -664,9 +794,12 @@ public class GridDataAccessor {
 
       // get the data
       PrimitiveArray[] partialResults = null;
+      long readStartMillis = System.currentTimeMillis();
       partialResults =
           gda.eddGrid.getSourceData(
               language, gda.tDirTable, gda.tFileTable, gda.dataVariables, partialConstraints);
+      RequestMetrics.sourceRead(
+          gda.eddGrid.datasetID(), System.currentTimeMillis() - readStartMillis);
 
       // there is similar code in GridDataAccessor and Table.decodeCharsAndStrings()
       for (int dv = 0; dv < gda.dataVariables.length; dv++) {
@@ -888,6 +1021,7 @@ public class GridDataAccessor {
    * threads).
    */
   public void releaseGetResources() {
+    cancelReadAhead();
     tDirTable = null;
     tFileTable = null;
   }
@@ -0,0 +1,138 @@
+/*
+ * GroupKeyMap Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This assigns a group number (0, 1, 2, ... in order of first appearance) to each distinct
+ * combination of key values, e.g., for the stationID,time/1day groups in orderByMean. Each key
+ * value is stored as a long: numeric values via setDouble (their exact bits), and Strings via
+ * setString (as the String's number in a per-key dictionary, so each distinct String is stored
+ * once). The groups are found with an open-addressing hash table of primitive longs, so no objects
+ * are made per row.
+ *
+ * <p>Usage: for each row, call setDouble or setString for each key, then call group().
+ *
+ * <p>This is not thread-safe.
+ */
+public class GroupKeyMap {
+
+  private final int nKeys;
+  private final long[] current; // the key values being assembled
+  private final HashMap<String, Integer>[] dictionaries;
+
+  private long[] groupKeys; // nKeys values per group
+  private int[] slots; // group number + 1, or 0 if empty. Length is a power of 2.
+  private int nGroups = 0;
+
+  /**
+   * The constructor.
+   *
+   * @param tNKeys the number of key values (0 or more) in each group's key
+   */
+  @SuppressWarnings("unchecked")
+  public GroupKeyMap(int tNKeys) {
+    nKeys = tNKeys;
+    current = new long[nKeys];
+    dictionaries = new HashMap[nKeys];
+    groupKeys = new long[Math.max(1, 64 * nKeys)];
+    slots = new int[128];
+  }
+
+  /**
+   * This sets one of the current key values to a numeric value. Different values (including 0.0
+   * and -0.0) are different keys, but all NaNs are the same key.
+   *
+   * @param key the key number (0..nKeys-1)
+   * @param value the value
+   */
+  public void setDouble(int key, double value) {
+    current[key] = Double.doubleToLongBits(value); // all NaNs -> the canonical NaN
+  }
+
+  /**
+   * This sets one of the current key values to a String value.
+   *
+   * @param key the key number (0..nKeys-1)
+   * @param value the value (null is treated like "")
+   */
+  public void setString(int key, String value) {
+    HashMap<String, Integer> dictionary = dictionaries[key];
+    if (dictionary == null) {
+      dictionary = new HashMap<>();
+      dictionaries[key] = dictionary;
+    }
+    if (value == null) value = "";
+    Integer number = dictionary.get(value);
+    if (number == null) {
+      number = dictionary.size();
+      dictionary.put(value, number);
+    }
+    current[key] = number;
+  }
+
+  /**
+   * This returns the group number for the current key values. If this is a new combination of key
+   * values, it is added, and its group number is the previous size().
+   *
+   * @return the group number (0..)
+   */
+  public int group() {
+    int mask = slots.length - 1;
+    int slot = hash(current, 0) & mask;
+    while (true) {
+      int g = slots[slot] - 1;
+      if (g < 0) break;
+      if (equalsCurrent(g)) return g;
+      slot = (slot + 1) & mask;
+    }
+
+    // add a new group
+    int g = nGroups++;
+    if ((long) nGroups * nKeys > groupKeys.length)
+      groupKeys =
+          Arrays.copyOf(groupKeys, (int) Math.min(Integer.MAX_VALUE - 8, 2L * nGroups * nKeys));
+    System.arraycopy(current, 0, groupKeys, g * nKeys, nKeys);
+    slots[slot] = g + 1;
+    if (nGroups > slots.length / 2) rehash();
+    return g;
+  }
+
+  /** This returns the number of groups. */
+  public int size() {
+    return nGroups;
+  }
+
+  /** This tests if group g's key values equal the current key values. */
+  private boolean equalsCurrent(int g) {
+    int po = g * nKeys;
+    for (int k = 0; k < nKeys; k++) if (groupKeys[po + k] != current[k]) return false;
+    return true;
+  }
+
+  /** This returns a well mixed hash of the nKeys values starting at ar[po]. */
+  private int hash(long[] ar, int po) {
+    long h = 0x9E3779B97F4A7C15L;
+    for (int k = 0; k < nKeys; k++) {
+      h ^= ar[po + k];
+      h *= 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+    }
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** This doubles the size of the hash table. */
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int g = 0; g < nGroups; g++) {
+      int slot = hash(groupKeys, g * nKeys) & mask;
+      while (slots[slot] != 0) slot = (slot + 1) & mask;
+      slots[slot] = g + 1;
+    }
+  }
+}
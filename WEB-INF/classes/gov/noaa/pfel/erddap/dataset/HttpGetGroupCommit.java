@@ -0,0 +1,348 @@
+/*
+ * HttpGetGroupCommit Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.File2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This appends the rows from EDDTableFromHttpGet .insert and .delete requests to the dataset's
+ * jsonlCSV data files with group commit: the rows for a file are added to that file's queue, and
+ * one thread (the leader) writes everything that is in the queue with one open/write/close of the
+ * file and one fsync, then updates the fileTable's min/max values for all of those requests with
+ * one lock of the fileTable. While a file is being written, other requests for that file just join
+ * the queue, so with many concurrent requests, there are far fewer file opens, fsyncs, and lock
+ * acquisitions than requests. A request's commit() only returns after its rows have been written
+ * and synced (i.e., they are durable). The fsync can be turned off with EDStatic.httpGetSyncWrites
+ * (e.g., if the data directory is on a battery-backed or temporary file system), but then the rows
+ * may be lost if the computer crashes soon after the requests were acknowledged.
+ *
+ * <p>If EDStatic.httpGetGroupCommitMillis &gt; 0, the leader waits until the oldest request in the
+ * queue has waited that long (or the queue has httpGetGroupCommitMaxKB of data) before writing, so
+ * batches are bigger, at the cost of some latency. The default (0) never waits.
+ */
+public class HttpGetGroupCommit {
+
+  /** This updates the fileTable for one request's rows, after they have been written. */
+  @FunctionalInterface
+  public interface FileTableUpdate {
+    /**
+     * @param lastMod the file's lastModified time after the write
+     * @param length the file's length after the write
+     */
+    void update(long lastMod, long length);
+  }
+
+  /** One request's rows for one file. */
+  private static class Pending {
+    final byte header[]; // the column names line, written only if the file doesn't exist yet
+    final byte data[];
+    final int nRows;
+    final Table fileTable; // may be null
+    final FileTableUpdate fileTableUpdate; // may be null
+    final long enqueuedMillis = System.currentTimeMillis();
+    boolean batched; // true once a leader has taken this
+    boolean done;
+    Throwable error;
+
+    Pending(byte header[], byte data[], int nRows, Table fileTable, FileTableUpdate update) {
+      this.header = header;
+      this.data = data;
+      this.nRows = nRows;
+      this.fileTable = fileTable;
+      this.fileTableUpdate = update;
+    }
+  }
+
+  /** The requests waiting to be written to one file. */
+  private static class FileQueue {
+    ArrayList<Pending> pending = new ArrayList<>();
+    long pendingNBytes = 0;
+    boolean flushing = false;
+  }
+
+  private static final ConcurrentHashMap<String, FileQueue> queues = new ConcurrentHashMap<>();
+
+  private static boolean metricsRegistered = false;
+
+  // statistics (since startup)
+  private static final long startMillis = System.currentTimeMillis();
+  private static final LongAdder nRequests = new LongAdder();
+  private static final LongAdder nRows = new LongAdder();
+  private static final LongAdder nBytes = new LongAdder();
+  private static final LongAdder nFlushes = new LongAdder();
+  private static final LongAdder nSyncedRequests = new LongAdder();
+  private static final LongAdder flushMillis = new LongAdder();
+  private static final AtomicLong maxFlushMillis = new AtomicLong();
+
+  /**
+   * This registers the Prometheus metrics. EDStatic calls this when setup.xml is read (if
+   * usePrometheusMetrics). Ingest throughput is the rate() of the rows counter, and the average
+   * flush latency is the rate() of the flush seconds counter divided by the rate() of the flushes
+   * counter.
+   */
+  public static synchronized void registerMetrics() {
+    if (metricsRegistered) return;
+    metricsRegistered = true;
+    CounterWithCallback.builder()
+        .name("erddap_httpget_ingest_requests")
+        .help("Number of EDDTableFromHttpGet .insert and .delete requests (per file) written.")
+        .callback(callback -> callback.call(nRequests.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_httpget_ingest_rows")
+        .help("Number of rows written to EDDTableFromHttpGet data files.")
+        .callback(callback -> callback.call(nRows.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_httpget_ingest_bytes")
+        .help("Number of bytes written to EDDTableFromHttpGet data files.")
+        .callback(callback -> callback.call(nBytes.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_httpget_ingest_flushes")
+        .help("Number of group commit writes to EDDTableFromHttpGet data files.")
+        .callback(callback -> callback.call(nFlushes.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_httpget_ingest_flush_seconds")
+        .help("Total time spent in group commit writes to EDDTableFromHttpGet data files.")
+        .callback(callback -> callback.call(flushMillis.sum() / 1000.0))
+        .register();
+  }
+
+  /**
+   * This adds one request's rows to a file's queue and waits until they have been written and the
+   * fileTable has been updated.
+   *
+   * @param fullFileName the canonical full name of the data file
+   * @param header the column names line, which is written first if the file doesn't exist yet
+   * @param data the rows, as jsonlCSV lines
+   * @param tNRows the number of rows (for statistics)
+   * @param fileTable the fileTable to be locked while fileTableUpdate is called (or null if none)
+   * @param fileTableUpdate is called (by whichever thread writes the rows) after the rows have been
+   *     written (or null if none)
+   * @throws Throwable if trouble (e.g., the rows couldn't be written or the timeout was reached)
+   */
+  public static void commit(
+      String fullFileName,
+      byte header[],
+      byte data[],
+      int tNRows,
+      Table fileTable,
+      FileTableUpdate fileTableUpdate)
+      throws Throwable {
+
+    Pending pending = new Pending(header, data, tNRows, fileTable, fileTableUpdate);
+    long maxBytes = EDStatic.httpGetGroupCommitMaxKB * 1024L;
+    long timeoutMillis = String2.longTimeoutSeconds * 1000L;
+    FileQueue queue = queues.computeIfAbsent(fullFileName, k -> new FileQueue());
+    ArrayList<Pending> batch;
+    synchronized (queue) {
+      queue.pending.add(pending);
+      queue.pendingNBytes += data.length;
+      queue.notifyAll(); // in case the leader is waiting for more data
+      while (true) {
+        if (pending.done) {
+          if (pending.error != null) throw pending.error;
+          return;
+        }
+        if (pending.batched) {
+          queue.wait(1000); // another thread is writing this request's rows
+          continue;
+        }
+        long now = System.currentTimeMillis();
+        if (now - pending.enqueuedMillis > timeoutMillis) {
+          queue.pending.remove(pending);
+          queue.pendingNBytes -= data.length;
+          throw new TimeoutException(
+              "Timeout waiting to write to fullFileName in EDDTableFromHttpGet.");
+        }
+        if (queue.flushing) {
+          queue.wait(1000); // another thread is writing
+          continue;
+        }
+
+        // this thread is the leader
+        long delay =
+            queue.pending.get(0).enqueuedMillis + EDStatic.httpGetGroupCommitMillis - now;
+        if (delay > 0 && queue.pendingNBytes < maxBytes) {
+          queue.wait(delay);
+          continue;
+        }
+        batch = queue.pending;
+        for (Pending p : batch) p.batched = true;
+        queue.pending = new ArrayList<>();
+        queue.pendingNBytes = 0;
+        queue.flushing = true;
+        break;
+      }
+    }
+
+    // write the batch (not synchronized on queue, so other requests can join the queue)
+    Throwable error = null;
+    try {
+      flush(fullFileName, batch);
+    } catch (Throwable t) {
+      error = t;
+    }
+
+    synchronized (queue) {
+      for (Pending p : batch) {
+        p.done = true;
+        p.error = error;
+      }
+      queue.flushing = false;
+      if (queue.pending.isEmpty()) queues.remove(fullFileName, queue);
+      queue.notifyAll();
+    }
+    if (error != null) throw error;
+  }
+
+  /** This writes a batch to the file, then updates the fileTable(s). */
+  private static void flush(String fullFileName, ArrayList<Pending> batch) throws Throwable {
+    long time = System.currentTimeMillis();
+    long tNBytes = 0;
+    int tNRows = 0;
+
+    // the file lock also keeps readFile from reading a partially written file
+    ReentrantLock lock = String2.canonicalLock(fullFileName);
+    if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException("Timeout waiting for lock on fullFileName in EDDTableFromHttpGet.");
+    long tLastMod = -1;
+    long tLength = -1;
+    try {
+      boolean fileIsNew = !File2.isFile(fullFileName);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      if (fileIsNew) {
+        File2.makeDirectory(File2.getDirectory(fullFileName)); // throws exception if trouble
+        baos.write(batch.get(0).header);
+      }
+      for (Pending p : batch) {
+        baos.write(p.data);
+        tNRows += p.nRows;
+      }
+      tNBytes = baos.size();
+
+      try {
+        FileOutputStream fos = new FileOutputStream(fullFileName, !fileIsNew); // append?
+        try {
+          baos.writeTo(fos); // entire write in 1 low level command
+          if (EDStatic.httpGetSyncWrites) {
+            fos.getFD().sync(); // before any of the requests are acknowledged
+            nSyncedRequests.add(batch.size());
+          }
+        } finally {
+          fos.close(); // explicitly now, not by finalize() at some time in future
+        }
+      } catch (Throwable t) {
+        if (fileIsNew) File2.delete(fullFileName);
+        String2.log(
+            String2.ERROR
+                + " in EDDTableFromHttpGet while "
+                + (fileIsNew ? "creating" : "adding to")
+                + " "
+                + fullFileName
+                + ":\n"
+                + MustBe.throwableToString(t));
+        throw t;
+      }
+
+      try {
+        File file = new File(fullFileName);
+        tLastMod = file.lastModified();
+        tLength = file.length();
+      } catch (Exception e) {
+        String2.log(
+            String2.ERROR
+                + " in EDDTableFromHttpGet while getting lastModified and length of "
+                + fullFileName);
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    // update each fileTable (usually just 1) with 1 lock
+    IdentityHashMap<Table, ArrayList<Pending>> byFileTable = new IdentityHashMap<>();
+    for (Pending p : batch) {
+      if (p.fileTable != null && p.fileTableUpdate != null)
+        byFileTable.computeIfAbsent(p.fileTable, k -> new ArrayList<>()).add(p);
+    }
+    for (Table fileTable : byFileTable.keySet()) {
+      ReentrantLock lock2 = String2.canonicalLock(fileTable);
+      if (!lock2.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+        throw new TimeoutException("Timeout waiting for lock on fileTable in EDDTableFromHttpGet.");
+      try {
+        for (Pending p : byFileTable.get(fileTable))
+          p.fileTableUpdate.update(tLastMod, tLength);
+      } finally {
+        lock2.unlock();
+      }
+    }
+
+    // statistics
+    time = System.currentTimeMillis() - time;
+    nRequests.add(batch.size());
+    nRows.add(tNRows);
+    nBytes.add(tNBytes);
+    nFlushes.increment();
+    flushMillis.add(time);
+    maxFlushMillis.accumulateAndGet(time, Math::max);
+  }
+
+  /**
+   * This returns the number of requests whose rows were synced to disk (since startup).
+   *
+   * @return the number of synced requests
+   */
+  static long nSyncedRequests() {
+    return nSyncedRequests.sum();
+  }
+
+  /**
+   * This returns a one line status report for the status page, e.g., "HttpGet ingest:
+   * requests=1200 rows=5000 flushes=300 requestsPerFlush=4.0 rowsPerSecond=2.5 avgFlushMs=3
+   * maxFlushMs=40".
+   *
+   * @return the status string (with a trailing newline), or "" if nothing has been written
+   */
+  public static String statusString() {
+    long tFlushes = nFlushes.sum();
+    if (tFlushes == 0) return "";
+    long tRequests = nRequests.sum();
+    long tRows = nRows.sum();
+    long seconds = Math.max(1, (System.currentTimeMillis() - startMillis) / 1000);
+    return "HttpGet ingest (since startup): requests="
+        + tRequests
+        + " rows="
+        + tRows
+        + " flushes="
+        + tFlushes
+        + " requestsPerFlush="
+        + String2.genEFormat6(tRequests / (double) tFlushes)
+        + " rowsPerSecond="
+        + String2.genEFormat6(tRows / (double) seconds)
+        + " avgFlushMs="
+        + flushMillis.sum() / tFlushes
+        + " maxFlushMs="
+        + maxFlushMillis.get()
+        + "\n";
+  }
+}
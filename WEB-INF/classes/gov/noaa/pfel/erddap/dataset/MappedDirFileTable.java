@@ -0,0 +1,391 @@
+/*
+ * MappedDirFileTable Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.ByteArray;
+import com.cohort.array.CharArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.array.UByteArray;
+import com.cohort.array.UIntArray;
+import com.cohort.array.ULongArray;
+import com.cohort.array.UShortArray;
+import com.cohort.util.File2;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This reads and writes dirTables and fileTables (see EDDGridFromFiles and EDDTableFromFiles) in a
+ * simple columnar binary format (.bin) which is used instead of the .nc format if the dataset's
+ * fileTableInMemory is false (so the tables are read for every request).
+ *
+ * <p>The file is read via FileChannel.map (except on Windows), and each column is read with one
+ * bulk get() from the mapped buffer (no NetCDF parsing). String columns are stored as nRows+1 int
+ * offsets followed by the UTF-8 bytes, so long min/max strings don't make the file bigger for every
+ * row. The resulting Table is shared (for read-only use, see getFileTable()) via a SoftReference
+ * until the file changes, so repeated requests usually don't read the file at all, and the garbage
+ * collector can still reclaim the table if memory is needed.
+ *
+ * <p>Format (big endian): int MAGIC, int FORMAT_VERSION, int headerNBytes, then the header (written
+ * by a DataOutputStream: int nColumns, int nRows, the global attributes, then for each column: its
+ * name, its PAType, its maxIsMV, and its attributes), then the data for each column.
+ *
+ * <p>EDDTableFromHttpGet also uses this format for the compacted versions of its data files.
+ */
+public class MappedDirFileTable {
+
+  /** The file name extension (instead of .nc). */
+  public static final String EXTENSION = ".bin";
+
+  public static final int MAGIC = 0x45444654; // "EDFT"
+  public static final int FORMAT_VERSION = 1;
+
+  /** The shared read-only tables, by file name. */
+  private static final ConcurrentHashMap<String, Cached> cache = new ConcurrentHashMap<>();
+
+  private static class Cached {
+    final long lastModified;
+    final long length;
+    final SoftReference<Table> table;
+
+    Cached(long lastModified, long length, Table table) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.table = new SoftReference<>(table);
+    }
+  }
+
+  /**
+   * This returns the .bin file name corresponding to a .nc dirTable or fileTable file name.
+   *
+   * @param ncFileName e.g., datasetDir() + FILE_TABLE_FILENAME
+   * @return e.g., datasetDir() + "fileTable.bin"
+   */
+  public static String binFileName(String ncFileName) {
+    return File2.removeExtension(ncFileName) + EXTENSION;
+  }
+
+  /**
+   * This writes the table to a file. The table isn't changed.
+   *
+   * @param table a dirTable or fileTable
+   * @param fileName the full name of the file to be created (usually a temporary name, which the
+   *     caller renames into place, then calls invalidate()).
+   * @throws Exception if trouble
+   */
+  public static void write(Table table, String fileName) throws Exception {
+    int nColumns = table.nColumns();
+    int nRows = table.nRows();
+    ByteArrayOutputStream headerBaos = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(headerBaos);
+    header.writeInt(nColumns);
+    header.writeInt(nRows);
+    writeAttributes(header, table.globalAttributes());
+    for (int col = 0; col < nColumns; col++) {
+      PrimitiveArray pa = table.getColumn(col);
+      header.writeUTF(table.getColumnName(col));
+      header.writeUTF(pa.elementTypeString());
+      header.writeBoolean(pa.getMaxIsMV());
+      writeAttributes(header, table.columnAttributes(col));
+    }
+    header.flush();
+
+    try (DataOutputStream dos =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+      dos.writeInt(MAGIC);
+      dos.writeInt(FORMAT_VERSION);
+      dos.writeInt(headerBaos.size());
+      headerBaos.writeTo(dos);
+      for (int col = 0; col < nColumns; col++) {
+        PrimitiveArray pa = table.getColumn(col);
+        if (pa instanceof StringArray sa) {
+          byte[][] bytes = new byte[nRows][];
+          int offset = 0;
+          dos.writeInt(offset);
+          for (int row = 0; row < nRows; row++) {
+            bytes[row] = String2.stringToUtf8Bytes(sa.get(row));
+            offset += bytes[row].length;
+            dos.writeInt(offset);
+          }
+          for (int row = 0; row < nRows; row++) dos.write(bytes[row]);
+        } else if (pa instanceof CharArray ca) {
+          for (int row = 0; row < nRows; row++) dos.writeChar(ca.get(row));
+        } else {
+          pa.writeDos(dos); // fixed size, big endian
+        }
+      }
+    }
+  }
+
+  /** This writes the attributes to a DataOutputStream. */
+  private static void writeAttributes(DataOutputStream dos, Attributes atts) throws Exception {
+    String names[] = atts.getNames();
+    dos.writeInt(names.length);
+    for (String name : names) {
+      PrimitiveArray pa = atts.get(name);
+      dos.writeUTF(name);
+      dos.writeUTF(pa.elementTypeString());
+      dos.writeInt(pa.size());
+      pa.writeDos(dos);
+    }
+  }
+
+  /** This reads attributes from a DataInputStream. */
+  private static void readAttributes(DataInputStream dis, Attributes atts) throws Exception {
+    int nAtts = dis.readInt();
+    for (int i = 0; i < nAtts; i++) {
+      String name = dis.readUTF();
+      PAType paType = PAType.fromCohortString(dis.readUTF());
+      int n = dis.readInt();
+      PrimitiveArray pa = PrimitiveArray.factory(paType, n, false);
+      pa.readDis(dis, n);
+      atts.add(name, pa);
+    }
+  }
+
+  /**
+   * This reads a dirTable or fileTable from a .bin file.
+   *
+   * @param fileName the full name of the .bin file
+   * @param readOnly If true, the table may be shared with other callers (so it must not be
+   *     changed). If false, the caller gets a private table which it can change.
+   * @return the table, or null if the file doesn't exist
+   * @throws Exception if trouble (e.g., the file isn't a valid .bin file)
+   */
+  public static Table read(String fileName, boolean readOnly) throws Exception {
+    File file = new File(fileName);
+    long lastModified = file.lastModified();
+    long length = file.length();
+    if (lastModified == 0) return null; // it doesn't exist
+    if (readOnly) {
+      Cached cached = cache.get(fileName);
+      if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+        Table table = cached.table.get();
+        if (table != null) return table;
+      }
+    }
+
+    Table table = read(file, null);
+    if (readOnly) cache.put(fileName, new Cached(lastModified, length, table));
+    return table;
+  }
+
+  /**
+   * This reads some of the columns of a table from a .bin file. The data for the other columns is
+   * skipped (not decoded). The table is always a new private table (it isn't shared).
+   *
+   * @param fileName the full name of the .bin file
+   * @param columnNames the names of the columns to be read. Names which aren't in the file are
+   *     ignored.
+   * @return the table (with the requested columns which are in the file, in the file's order), or
+   *     null if the file doesn't exist
+   * @throws Exception if trouble (e.g., the file isn't a valid .bin file)
+   */
+  public static Table read(String fileName, String columnNames[]) throws Exception {
+    File file = new File(fileName);
+    if (file.lastModified() == 0) return null; // it doesn't exist
+    return read(file, columnNames);
+  }
+
+  /**
+   * This reads a table from a .bin file.
+   *
+   * @param file the .bin file
+   * @param columnNames the names of the columns to be read, or null for all columns
+   * @return a new table
+   * @throws Exception if trouble
+   */
+  private static Table read(File file, String columnNames[]) throws Exception {
+    String fileName = file.getPath();
+    long time = System.currentTimeMillis();
+    Table table = new Table();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer;
+      if (String2.OSIsWindows) {
+        // Windows can't replace a file while it is mapped (until the buffer is garbage collected)
+        buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+        buffer.flip();
+      } else {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buffer.getInt() != MAGIC)
+        throw new RuntimeException("Invalid dir/file table .bin file: " + fileName);
+      int version = buffer.getInt();
+      if (version != FORMAT_VERSION)
+        throw new RuntimeException(
+            "Unsupported dir/file table .bin format version=" + version + ": " + fileName);
+      byte[] headerBytes = new byte[buffer.getInt()];
+      buffer.get(headerBytes);
+      DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+      int nColumns = header.readInt();
+      int nRows = header.readInt();
+      readAttributes(header, table.globalAttributes());
+      for (int col = 0; col < nColumns; col++) {
+        String name = header.readUTF();
+        PAType paType = PAType.fromCohortString(header.readUTF());
+        boolean maxIsMV = header.readBoolean();
+        Attributes atts = new Attributes();
+        readAttributes(header, atts);
+        if (columnNames != null && String2.indexOf(columnNames, name) < 0) {
+          skipColumn(buffer, paType, nRows);
+          continue;
+        }
+        PrimitiveArray pa = readColumn(buffer, paType, nRows);
+        pa.setMaxIsMV(maxIsMV);
+        table.addColumn(table.nColumns(), name, pa, atts);
+      }
+    }
+    if (EDD.reallyVerbose)
+      String2.log(
+          "MappedDirFileTable.read "
+              + fileName
+              + " nRows="
+              + table.nRows()
+              + " time="
+              + (System.currentTimeMillis() - time)
+              + "ms");
+    return table;
+  }
+
+  /**
+   * This reads just the global attributes from a .bin file (just the start of the header is read).
+   *
+   * @param fileName the full name of the .bin file
+   * @return the global attributes, or null if the file doesn't exist
+   * @throws Exception if trouble (e.g., the file isn't a valid .bin file)
+   */
+  public static Attributes readGlobalAttributes(String fileName) throws Exception {
+    if (!File2.isFile(fileName)) return null;
+    try (DataInputStream dis =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+      if (dis.readInt() != MAGIC)
+        throw new RuntimeException("Invalid dir/file table .bin file: " + fileName);
+      int version = dis.readInt();
+      if (version != FORMAT_VERSION)
+        throw new RuntimeException(
+            "Unsupported dir/file table .bin format version=" + version + ": " + fileName);
+      dis.readInt(); // headerNBytes
+      dis.readInt(); // nColumns
+      dis.readInt(); // nRows
+      Attributes atts = new Attributes();
+      readAttributes(dis, atts);
+      return atts;
+    }
+  }
+
+  /** This moves the buffer's position past one column's data (without reading it). */
+  private static void skipColumn(ByteBuffer buffer, PAType paType, int nRows) {
+    if (paType == PAType.STRING) {
+      int stringsNBytes = buffer.getInt(buffer.position() + 4 * nRows); // offsets[nRows]
+      buffer.position(buffer.position() + 4 * (nRows + 1) + stringsNBytes);
+    } else {
+      buffer.position(buffer.position() + nRows * elementSize(paType));
+    }
+  }
+
+  /** This returns the number of bytes per element in a fixed size column. */
+  private static int elementSize(PAType paType) {
+    return switch (paType) {
+      case BYTE, UBYTE -> 1;
+      case SHORT, USHORT, CHAR -> 2;
+      case INT, UINT, FLOAT -> 4;
+      case LONG, ULONG, DOUBLE -> 8;
+      default -> throw new RuntimeException("Unsupported PAType=" + paType);
+    };
+  }
+
+  /** This reads one column's data from the buffer with bulk gets. */
+  private static PrimitiveArray readColumn(ByteBuffer buffer, PAType paType, int nRows) {
+    switch (paType) {
+      case BYTE, UBYTE -> {
+        byte[] ar = new byte[nRows];
+        buffer.get(ar);
+        return paType == PAType.BYTE ? new ByteArray(ar) : new UByteArray(ar);
+      }
+      case SHORT, USHORT -> {
+        short[] ar = new short[nRows];
+        buffer.asShortBuffer().get(ar);
+        buffer.position(buffer.position() + 2 * nRows);
+        return paType == PAType.SHORT ? new ShortArray(ar) : new UShortArray(ar);
+      }
+      case CHAR -> {
+        char[] ar = new char[nRows];
+        buffer.asCharBuffer().get(ar);
+        buffer.position(buffer.position() + 2 * nRows);
+        return new CharArray(ar);
+      }
+      case INT, UINT -> {
+        int[] ar = new int[nRows];
+        buffer.asIntBuffer().get(ar);
+        buffer.position(buffer.position() + 4 * nRows);
+        return paType == PAType.INT ? new IntArray(ar) : new UIntArray(ar);
+      }
+      case LONG, ULONG -> {
+        long[] ar = new long[nRows];
+        buffer.asLongBuffer().get(ar);
+        buffer.position(buffer.position() + 8 * nRows);
+        return paType == PAType.LONG ? new LongArray(ar) : new ULongArray(ar);
+      }
+      case FLOAT -> {
+        float[] ar = new float[nRows];
+        buffer.asFloatBuffer().get(ar);
+        buffer.position(buffer.position() + 4 * nRows);
+        return new FloatArray(ar);
+      }
+      case DOUBLE -> {
+        double[] ar = new double[nRows];
+        buffer.asDoubleBuffer().get(ar);
+        buffer.position(buffer.position() + 8 * nRows);
+        return new DoubleArray(ar);
+      }
+      case STRING -> {
+        int[] offsets = new int[nRows + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + 4 * (nRows + 1));
+        byte[] bytes = new byte[offsets[nRows]];
+        buffer.get(bytes);
+        StringArray sa = new StringArray(nRows, false);
+        for (int row = 0; row < nRows; row++)
+          sa.add(
+              new String(
+                  bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8));
+        return sa;
+      }
+      default -> throw new RuntimeException("Unsupported PAType=" + paType);
+    }
+  }
+
+  /**
+   * This removes the shared table for a file. Call this after the file is replaced or deleted.
+   *
+   * @param fileName the full name of the .bin file
+   */
+  public static void invalidate(String fileName) {
+    cache.remove(fileName);
+  }
+}
@@ -5,9 +5,11 @@
 package gov.noaa.pfel.erddap.dataset;
 
 import com.cohort.util.String2;
+import gov.noaa.pfel.erddap.util.RequestMetrics;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -37,6 +39,7 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
   private String extension;
   private String usingCompression = ""; // not yet set
   private OutputStream outputStream;
+  private RequestMetrics.CountingOutputStream countingOutputStream; // the response's, counted
   private boolean hasRangeRequest;
 
   /**
@@ -872,7 +875,7 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
       // Currently, never set Content-Length. But Erddap.doTransfer() sometimes does.
       // if (!hasRangeRequest && tLength > 0)
       //    response.setContentLengthLong(tLength);
-      outputStream = new BufferedOutputStream(response.getOutputStream()); // after all setHeader
+      outputStream = new BufferedOutputStream(countedResponseOutputStream()); // after all setHeader
 
       // ZipOutputStream too finicky.  outputStream.closeEntry() MUST be called at end or it fails
       // } else if (acceptEncoding.indexOf("compress") >= 0) {
@@ -885,7 +888,7 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
     } else if (acceptEncoding.indexOf("gzip") >= 0) {
       usingCompression = "gzip";
       response.setHeader("Content-Encoding", usingCompression);
-      outputStream = new GZIPOutputStream(new BufferedOutputStream(response.getOutputStream()));
+      outputStream = new GZIPOutputStream(new BufferedOutputStream(countedResponseOutputStream()));
 
       // "deflate" is troublesome. Don't support it? Apache just supports gzip. But it hasn't been
       // trouble.
@@ -893,7 +896,8 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
     } else if (acceptEncoding.indexOf("deflate") >= 0) {
       usingCompression = "deflate";
       response.setHeader("Content-Encoding", usingCompression);
-      outputStream = new DeflaterOutputStream(new BufferedOutputStream(response.getOutputStream()));
+      outputStream =
+          new DeflaterOutputStream(new BufferedOutputStream(countedResponseOutputStream()));
 
     } else /**/ {
       // no compression  (see DODSServlet comments above (for .gif))
@@ -902,7 +906,7 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
       // Currently, never set Content-Length. But Erddap.doTransfer() sometimes does.
       // if (tLength > 0)
       //    response.setContentLengthLong(tLength);
-      outputStream = new BufferedOutputStream(response.getOutputStream()); // after all setHeader
+      outputStream = new BufferedOutputStream(countedResponseOutputStream()); // after all setHeader
     }
 
     if (verbose) {
@@ -948,4 +952,19 @@ public class OutputStreamFromHttpResponse implements OutputStreamSource {
   public OutputStream existingOutputStream() {
     return outputStream;
   }
+
+  /** This returns the response's outputStream, wrapped so the bytes written are counted. */
+  private OutputStream countedResponseOutputStream() throws IOException {
+    countingOutputStream = new RequestMetrics.CountingOutputStream(response.getOutputStream());
+    return countingOutputStream;
+  }
+
+  /**
+   * This returns the number of bytes (after compression) written to the response so far.
+   *
+   * @return the number of bytes written (0 if outputStream() hasn't been called)
+   */
+  public long bytesWritten() {
+    return countingOutputStream == null ? 0 : countingOutputStream.nBytes();
+  }
 }
@@ -0,0 +1,245 @@
+/*
+ * SubsetIndex Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.io.File;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * This keeps an EDDTable's subsetVariables data table (see EDDTable.subsetVariablesDataTable) in
+ * memory, so .subset pages and distinct() requests don't have to read the subset.nc and
+ * distinct.nc files.
+ *
+ * <p>Each column is dictionary encoded (lazily, when first needed): the dictionary has the column's
+ * distinct values, sorted the way the .subset web page sorts them (for EDVTimeStamp columns, as
+ * ISO Strings with the variable's time_precision), and each row has the int code of its value. A
+ * selection of rows is a BitSet, so selecting a value for a variable (and()) and finding the
+ * distinct values of a variable in the selected rows (distinctValues()) just look at the codes of
+ * the selected rows (no String conversions and no table copies).
+ *
+ * <p>The table must not be changed after it is given to the constructor. This is thread-safe.
+ */
+public class SubsetIndex {
+
+  private final String fileName;
+  private final long lastModified;
+  private final long length;
+  private final Table table;
+  private final String timePrecisions[];
+  private final boolean isTimeStamp[];
+  private final Column columns[];
+  private final PrimitiveArray distinctColumns[];
+
+  /** The dictionary encoding of one column. */
+  private static class Column {
+    final PrimitiveArray dictionary;
+    final HashMap<String, Integer> codeOf;
+    final int codes[];
+
+    Column(PrimitiveArray dictionary, HashMap<String, Integer> codeOf, int codes[]) {
+      this.dictionary = dictionary;
+      this.codeOf = codeOf;
+      this.codes = codes;
+    }
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param fileName the full name of the subset.nc file that the table is from (or null if the
+   *     table isn't from a file, so isCurrent() is always false)
+   * @param table the subsetVariables data table. It becomes the property of this SubsetIndex.
+   * @param isTimeStamp for each column, true if the variable is an EDVTimeStamp
+   * @param timePrecisions for each EDVTimeStamp column, the variable's time_precision (may be null)
+   */
+  public SubsetIndex(String fileName, Table table, boolean isTimeStamp[], String timePrecisions[]) {
+    this.fileName = fileName;
+    File file = fileName == null ? null : new File(fileName);
+    lastModified = file == null ? 0 : file.lastModified();
+    length = file == null ? 0 : file.length();
+    this.table = table;
+    this.isTimeStamp = isTimeStamp;
+    this.timePrecisions = timePrecisions;
+    columns = new Column[table.nColumns()];
+    distinctColumns = new PrimitiveArray[table.nColumns()];
+  }
+
+  /**
+   * This indicates if the subset.nc file is unchanged since this was made.
+   *
+   * @return true if the file still has the same lastModified and length
+   */
+  public boolean isCurrent() {
+    if (lastModified == 0) return false;
+    File file = new File(fileName);
+    return file.lastModified() == lastModified && file.length() == length;
+  }
+
+  /**
+   * This returns the shared table. Don't change it.
+   *
+   * @return the shared table
+   */
+  public Table table() {
+    return table;
+  }
+
+  /**
+   * This returns a BitSet with all of the rows set.
+   *
+   * @return a new BitSet with all of the rows set
+   */
+  public BitSet allRows() {
+    BitSet keep = new BitSet(table.nRows());
+    keep.set(0, table.nRows());
+    return keep;
+  }
+
+  /**
+   * This clears the bits in keep for the rows where the column's value isn't value.
+   *
+   * @param keep the selected rows. This is changed.
+   * @param col the column number
+   * @param value the value as it appears in the .subset web page (e.g., "NaN" for a numeric
+   *     missing value and an ISO String for an EDVTimeStamp)
+   */
+  public void and(BitSet keep, int col, String value) {
+    Column column = encoding(col);
+    if (!isTimeStamp[col] && !(table.getColumn(col) instanceof StringArray) && value.equals("NaN"))
+      value = ""; // e.g., doubleArray.getString() for NaN returns ""
+    Integer code = column.codeOf.get(value);
+    if (code == null) {
+      keep.clear();
+      return;
+    }
+    int target = code;
+    int codes[] = column.codes;
+    for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1))
+      if (codes[row] != target) keep.clear(row);
+  }
+
+  /**
+   * This returns the distinct values of a column in the selected rows, sorted the way the .subset
+   * web page sorts them.
+   *
+   * @param col the column number
+   * @param keep the selected rows
+   * @return a new PrimitiveArray with the distinct values (a StringArray of ISO Strings for an
+   *     EDVTimeStamp column)
+   */
+  public PrimitiveArray distinctValues(int col, BitSet keep) {
+    Column column = encoding(col);
+    int codes[] = column.codes;
+    BitSet keepCodes = new BitSet(column.dictionary.size());
+    for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1))
+      if (codes[row] >= 0) keepCodes.set(codes[row]);
+    PrimitiveArray pa = (PrimitiveArray) column.dictionary.clone();
+    pa.justKeep(keepCodes);
+    return pa;
+  }
+
+  /**
+   * This returns the distinct values of a column, as stored in the distinct.nc file (see
+   * EDDTable.distinctSubsetVariablesDataTable), e.g., epochSeconds for an EDVTimeStamp column.
+   *
+   * @param col the column number
+   * @return a new PrimitiveArray with the distinct values
+   */
+  public PrimitiveArray distinctSourceValues(int col) {
+    return (PrimitiveArray) distinct(col).clone();
+  }
+
+  /**
+   * This returns the selected rows of one column.
+   *
+   * @param col the column number
+   * @param keep the selected rows
+   * @return a new PrimitiveArray with the values from the selected rows
+   */
+  public PrimitiveArray column(int col, BitSet keep) {
+    PrimitiveArray pa = table.getColumn(col);
+    PrimitiveArray result = PrimitiveArray.factory(pa.elementType(), keep.cardinality(), false);
+    for (int row = keep.nextSetBit(0); row >= 0; ) {
+      int end = keep.nextClearBit(row);
+      result.addFromPA(pa, row, end - row);
+      row = keep.nextSetBit(end);
+    }
+    result.setMaxIsMV(pa.getMaxIsMV());
+    return result;
+  }
+
+  /**
+   * This returns a new table (with copies of the metadata) with the selected rows.
+   *
+   * @param keep the selected rows (or null for all rows)
+   * @return a new table which the caller can change
+   */
+  public Table subsetTable(BitSet keep) {
+    if (keep == null) keep = allRows();
+    Table result = new Table();
+    result.globalAttributes().add(table.globalAttributes());
+    int nCols = table.nColumns();
+    for (int col = 0; col < nCols; col++)
+      result.addColumn(
+          col,
+          table.getColumnName(col),
+          column(col, keep),
+          new Attributes(table.columnAttributes(col)));
+    return result;
+  }
+
+  /** This returns a column's sorted distinct source values, making them if needed. */
+  private synchronized PrimitiveArray distinct(int col) {
+    if (distinctColumns[col] == null) {
+      PrimitiveArray pa = (PrimitiveArray) table.getColumn(col).clone();
+      pa.sortIgnoreCase();
+      pa.removeDuplicates(false);
+      distinctColumns[col] = pa;
+    }
+    return distinctColumns[col];
+  }
+
+  /** This returns a column's dictionary encoding, making it if needed. */
+  private synchronized Column encoding(int col) {
+    if (columns[col] != null) return columns[col];
+
+    // the dictionary: the distinct values, as they appear in the .subset web page
+    PrimitiveArray pa = table.getColumn(col);
+    PrimitiveArray dictionary = distinct(col);
+    if (isTimeStamp[col]) {
+      int n = dictionary.size();
+      StringArray sa = new StringArray(n, false);
+      for (int i = 0; i < n; i++) sa.add(timeString(col, dictionary.getDouble(i)));
+      sa.sortIgnoreCase();
+      sa.removeDuplicates(false);
+      dictionary = sa;
+    }
+    int nCodes = dictionary.size();
+    HashMap<String, Integer> codeOf = new HashMap<>(Math.max(16, nCodes * 2));
+    for (int i = 0; i < nCodes; i++) codeOf.putIfAbsent(dictionary.getString(i), i);
+
+    // the code for each row
+    int nRows = pa.size();
+    int codes[] = new int[nRows];
+    for (int row = 0; row < nRows; row++) {
+      Integer code =
+          codeOf.get(isTimeStamp[col] ? timeString(col, pa.getDouble(row)) : pa.getString(row));
+      codes[row] = code == null ? -1 : code;
+    }
+    columns[col] = new Column(dictionary, codeOf, codes);
+    return columns[col];
+  }
+
+  /** This returns an EDVTimeStamp column's value as it appears in the .subset web page. */
+  private String timeString(int col, double epochSeconds) {
+    return Calendar2.epochSecondsToLimitedIsoStringT(timePrecisions[col], epochSeconds, "NaN");
+  }
+}
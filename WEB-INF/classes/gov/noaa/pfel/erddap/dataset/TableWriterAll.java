@@ -12,6 +12,7 @@ import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -45,6 +46,27 @@ public class TableWriterAll extends TableWriter {
 
   protected Table cumulativeTable; // set by writeAllAndFinish, if used
 
+  /**
+   * Subclasses which reduce the data (e.g., TableWriterOrderByMax) hold the reduced rows in memory
+   * (see writeSomeReduced) until there are more than this many bytes, then write them to disk. This
+   * is setup.xml's &lt;reducedTableMaxMB&gt;.
+   */
+  public static final long reducedTableMaxBytes =
+      (long) EDStatic.reducedTableMaxMB * Math2.BytesPerMB;
+
+  // set by writeSomeReduced
+  protected Table reducedTable;
+  protected int reducedTableNRows; // nRows after the last reduction
+  protected long reducedTableReservedBytes; // reserved via EDStatic.reserveMemory
+
+  /**
+   * This reduces a table in place, e.g., via table.orderByMax(orderBy). Reducing a table of reduced
+   * rows must give the same result as reducing all of the original rows.
+   */
+  public interface Reducer {
+    void reduce(Table table) throws Throwable;
+  }
+
   /**
    * The constructor. TableWriterAll will create several temporary files using the dir+name as the
    * starting point. TableWriterAll will delete all of the files when garbage-collected.
@@ -79,6 +101,17 @@ public class TableWriterAll extends TableWriter {
    */
   @Override
   public void writeSome(Table table) throws Throwable {
+    writeSomeToDisk(table);
+  }
+
+  /**
+   * This is the TableWriterAll implementation of writeSome (which subclasses may call even if they
+   * override writeSome).
+   *
+   * @param table with destinationValues
+   * @throws Throwable if trouble
+   */
+  protected void writeSomeToDisk(Table table) throws Throwable {
     if (table.nRows() == 0) return;
 
     // ensure the table's structure is the same as before
@@ -130,7 +163,16 @@ public class TableWriterAll extends TableWriter {
   @Override
   public void finish() throws Throwable {
     if (ignoreFinish) return;
+    closeColumnStreams();
+  }
 
+  /**
+   * This is the TableWriterAll implementation of finish() (which subclasses may call even if they
+   * override finish()), without the ignoreFinish test.
+   *
+   * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+   */
+  protected void closeColumnStreams() throws Throwable {
     // check for MustBe.THERE_IS_NO_DATA
     if (columnStreams == null) throw new SimpleException(MustBe.THERE_IS_NO_DATA + " (nRows = 0)");
     // String2.log("TableWriterAll.finish  n columnStreams=" + columnStreams.length);
@@ -150,6 +192,89 @@ public class TableWriterAll extends TableWriter {
       String2.log("TableWriterAll done. TIME=" + (System.currentTimeMillis() - time) + "ms\n");
   }
 
+  /**
+   * For subclasses which reduce the data (e.g., TableWriterOrderByMax), this adds an already reduced
+   * chunk of data to reducedTable, which is held in memory (not written to disk). Each time
+   * reducedTable has doubled in size, it is reduced again, so it stays about as small as the final
+   * result. If the reduced rows still need more than reducedTableMaxBytes, or if the memory for
+   * them can't be reserved via EDStatic.reserveMemory (e.g., because other requests hold lots of
+   * memory), they are written to disk (as by writeSome) and reducedTable starts over.
+   *
+   * @param table a reduced chunk of data, with destinationValues. The data is copied, so the caller
+   *     may reuse the table.
+   * @param reducer reduces reducedTable in place. If null, reducedTable is never reduced or
+   *     written to disk.
+   * @throws Throwable if trouble
+   */
+  protected void writeSomeReduced(Table table, Reducer reducer) throws Throwable {
+    if (table.nRows() == 0) return;
+    ensureCompatible(table);
+    if (reducedTable == null) {
+      reducedTable = makeEmptyTable();
+      reducedTable.removeAllRows();
+    }
+    reducedTable.append(table);
+
+    int nRows = reducedTable.nRows();
+    if (reducer == null || nRows < Math.max(1000, 2 * reducedTableNRows)) return;
+    setMaxIsMV(reducedTable);
+    reducer.reduce(reducedTable);
+    reducedTableNRows = reducedTable.nRows();
+    long nBytes = (long) reducedTableNRows * reducedTable.estimatedBytesPerRow();
+    // reserve enough for reducedTable to double in size before it is reduced again
+    if (nBytes > reducedTableMaxBytes || !reserveReducedTableBytes(2 * nBytes)) {
+      writeSomeToDisk(reducedTable);
+      reducedTable.removeAllRows();
+      reducedTableNRows = 0;
+      reserveReducedTableBytes(0);
+    }
+  }
+
+  /**
+   * This changes this instance's memory reservation (see EDStatic.reserveMemory) for reducedTable.
+   *
+   * @param nBytes the desired number of reserved bytes (0 releases the reservation)
+   * @return true if successful. If false, the reservation is unchanged.
+   */
+  protected synchronized boolean reserveReducedTableBytes(long nBytes) {
+    long change = nBytes - reducedTableReservedBytes;
+    if (change > 0 && !EDStatic.reserveMemory(change)) return false;
+    if (change < 0) EDStatic.releaseMemory(-change);
+    reducedTableReservedBytes = nBytes;
+    return true;
+  }
+
+  /**
+   * For subclasses which use writeSomeReduced, this finishes the reduction and returns the result.
+   * If all of the reduced rows are in memory, nothing is read from disk.
+   *
+   * @param reducer reduces the table in place. If null, the table isn't reduced.
+   * @return the reduced cumulative table
+   * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+   */
+  protected Table finishReduced(Reducer reducer) throws Throwable {
+    Table table;
+    if (columnStreams == null && reducedTable != null) {
+      // everything is in memory
+      table = reducedTable;
+      totalNRows = table.nRows();
+    } else {
+      if (reducedTable != null) writeSomeToDisk(reducedTable);
+      closeColumnStreams(); // this throws Throwable if no data
+      table = cumulativeTable();
+    }
+    reducedTable = null;
+    setMaxIsMV(table);
+    if (reducer != null) reducer.reduce(table);
+    return table;
+  }
+
+  /** This sets maxIsMV for each of the table's columns, as column() does. */
+  private void setMaxIsMV(Table table) {
+    int nColumns = table.nColumns();
+    for (int col = 0; col < nColumns; col++) table.getColumn(col).setMaxIsMV(columnMaxIsMV[col]);
+  }
+
   /**
    * Call this after finish() to get a PrimitiveArray with all of the data for one of the columns.
    * Since this may be a large object, destroy this immediately when done. Call this after finish()
@@ -291,6 +416,8 @@ public class TableWriterAll extends TableWriter {
   public void releaseResources() {
     try {
       cumulativeTable = null;
+      reducedTable = null;
+      reserveReducedTableBytes(0);
 
       // delete columnStreams (if it was still saving data)
       if (columnStreams != null) {
@@ -4,14 +4,19 @@
  */
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
 
 /**
  * TableWriterDistinct provides a way to gather just the unique rows, sort them, then write to some
  * other TableWriter. This functions like SQL's DISTINCT.
  *
+ * <p>If EDStatic.externalSortRunMB &gt; 0, the rows are sorted with an ExternalTableSorter (sorted
+ * runs are spilled to disk, then merged), so big results don't have to fit in memory.
+ *
  * <p>This doesn't do anything to missing values and doesn't assume they are stored as NaN or fake
  * missing values.
  *
@@ -25,6 +30,7 @@ public class TableWriterDistinct extends TableWriterAll {
 
   // set by constructor
   protected TableWriter otherTableWriter;
+  protected ExternalTableSorter externalSorter; // null if sorting in memory
 
   /**
    * The constructor.
@@ -47,6 +53,10 @@ public class TableWriterDistinct extends TableWriterAll {
 
     super(tLanguage, tEdd, tNewHistory, tDir, tFileNameNoExt);
     otherTableWriter = tOtherTableWriter;
+    if (EDStatic.externalSortRunMB > 0)
+      externalSorter =
+          new ExternalTableSorter(
+              this, EDStatic.externalSortRunMB * (long) Math2.BytesPerMB, null, true, true);
   }
 
   /**
@@ -68,6 +78,13 @@ public class TableWriterDistinct extends TableWriterAll {
     //  and leaves perfect job to finish()
     sortAndRemoveDuplicates(table);
 
+    if (externalSorter != null) {
+      ensureCompatible(table);
+      totalNRows += table.nRows();
+      externalSorter.add(table);
+      return;
+    }
+
     // ensure the table's structure is the same as before
     // and write to dataOutputStreams
     super.writeSome(table);
@@ -83,6 +100,18 @@ public class TableWriterDistinct extends TableWriterAll {
   public void finish() throws Throwable {
     if (ignoreFinish) return;
 
+    // sort the runs and merge them to otherTableWriter
+    if (externalSorter != null) {
+      try {
+        externalSorter.finish(otherTableWriter);
+      } finally {
+        externalSorter.releaseResources();
+        releaseResources();
+      }
+      otherTableWriter = null;
+      return;
+    }
+
     // close the dataOutputStreams
     super.finish(); // this throws Throwable if no data
 
@@ -4,6 +4,7 @@
  */
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.util.Math2;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -15,6 +16,9 @@ import gov.noaa.pfel.erddap.util.EDStatic;
  *
  * <p>This sort is stable: equal elements will not be reordered as a result of the sort.
  *
+ * <p>If EDStatic.externalSortRunMB &gt; 0, the rows are sorted with an ExternalTableSorter (sorted
+ * runs are spilled to disk, then merged), so big results don't have to fit in memory.
+ *
  * <p>This doesn't do anything to missing values and doesn't assume they are stored as NaN or fake
  * missing values.
  *
@@ -29,6 +33,7 @@ public class TableWriterOrderBy extends TableWriterAll {
   // set by constructor
   protected TableWriter otherTableWriter;
   public String orderBy[];
+  protected ExternalTableSorter externalSorter; // null if sorting in memory
 
   /**
    * The constructor.
@@ -66,6 +71,31 @@ public class TableWriterOrderBy extends TableWriterAll {
                 + "'orderBy' doesn't support '/' ("
                 + orderBy[i]
                 + ").");
+    if (EDStatic.externalSortRunMB > 0)
+      externalSorter =
+          new ExternalTableSorter(
+              this, EDStatic.externalSortRunMB * (long) Math2.BytesPerMB, orderBy, false, false);
+  }
+
+  /**
+   * This adds the current contents of table (a chunk of data) to the columnStreams (or, if using
+   * the externalSorter, to the current sorted run).
+   *
+   * @param table with destinationValues. The table should have missing values stored as
+   *     destinationMissingValues or destinationFillValues. This implementation doesn't change them.
+   * @throws Throwable if trouble
+   */
+  @Override
+  public void writeSome(Table table) throws Throwable {
+    if (externalSorter == null) {
+      super.writeSome(table);
+      return;
+    }
+    if (table.nRows() == 0) return;
+    ensureCompatible(table);
+    if (totalNRows == 0) keys(table); // ensure orderBy columns are present in results table
+    totalNRows += table.nRows();
+    externalSorter.add(table);
   }
 
   /**
@@ -78,6 +108,17 @@ public class TableWriterOrderBy extends TableWriterAll {
   public void finish() throws Throwable {
     if (ignoreFinish) return;
 
+    if (externalSorter != null) {
+      try {
+        externalSorter.finish(otherTableWriter);
+      } finally {
+        externalSorter.releaseResources();
+        releaseResources();
+      }
+      otherTableWriter = null;
+      return;
+    }
+
     super.finish();
 
     Table cumulativeTable = cumulativeTable();
@@ -107,12 +148,25 @@ public class TableWriterOrderBy extends TableWriterAll {
   }
 
   private void sort(Table table) {
+    int[] keys = keys(table);
+    boolean[] ascending = new boolean[orderBy.length];
+    for (int ob = 0; ob < orderBy.length; ob++) ascending[ob] = true;
+
+    table.sort(keys, ascending);
+  }
+
+  /**
+   * This finds the orderBy column numbers.
+   *
+   * @param table the results table
+   * @return the orderBy column numbers
+   * @throws SimpleException if an orderBy column isn't in the results table
+   */
+  private int[] keys(Table table) {
     // ensure orderBy columns are present in results table
     int[] keys = new int[orderBy.length];
-    boolean[] ascending = new boolean[orderBy.length];
     for (int ob = 0; ob < orderBy.length; ob++) {
       keys[ob] = table.findColumnNumber(orderBy[ob]);
-      ascending[ob] = true;
       if (keys[ob] < 0)
         throw new SimpleException(
             EDStatic.simpleBilingual(language, EDStatic.queryErrorAr)
@@ -120,7 +174,6 @@ public class TableWriterOrderBy extends TableWriterAll {
                 + orderBy[ob]
                 + " isn't in the results table.");
     }
-
-    table.sort(keys, ascending);
+    return keys;
   }
 }
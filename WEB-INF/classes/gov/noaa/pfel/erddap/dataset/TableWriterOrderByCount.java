@@ -77,14 +77,14 @@ public class TableWriterOrderByCount extends TableWriterAll {
   public void writeSome(Table table) throws Throwable {
     if (table.nRows() == 0) return;
 
-    // to save time and disk space, this just does a partial job
-    //  (remove non-max rows from this partial table)
+    // to save time and memory, this just does a partial job
+    //  (count the rows in each group in this partial table)
     //  and leaves perfect job to finish()
     table.orderByCount(orderBy); // this handles missingValues and _FillValues permanently
 
     // ensure the table's structure is the same as before
-    // and write to dataOutputStreams
-    super.writeSome(table);
+    // and add to the in-memory reducedTable
+    writeSomeReduced(table, this::combine);
   }
 
   /**
@@ -97,34 +97,14 @@ public class TableWriterOrderByCount extends TableWriterAll {
   public void finish() throws Throwable {
     if (ignoreFinish) return;
 
-    super.finish();
-
-    Table cumTable = cumulativeTable();
+    Table cumTable = finishReduced(this::combine);
     releaseResources();
 
-    // combine results
-    // missing_value and _FillValue are all done. All data are counts.
-    int nRows = cumTable.nRows();
-    int nCols = cumTable.nColumns();
-    int keyCols[] =
-        cumTable.keyColumnNamesToNumbers(
-            "orderByCount",
-            // just get the column names, ignoring rounding e.g. time not time/1day
-            Arrays.stream(orderBy).map((s) -> s.split("/")[0]).toArray(size -> new String[size]));
-    int nKeyCols = keyCols.length;
-
-    // sort based on keys
-    if (nKeyCols > 0) cumTable.ascendingSort(keyCols);
-    // String2.log(dataToString());
-
-    // note which are keyCol
-    boolean isKeyCol[] = new boolean[nCols]; // all false
-    for (int kc = 0; kc < nKeyCols; kc++) isKeyCol[keyCols[kc]] = true;
-
-    // get pas and set units to "count"
-    PrimitiveArray pas[] = new PrimitiveArray[nCols];
-    for (int col = 0; col < nCols; col++) {
-      pas[col] = cumTable.getColumn(col);
+    // set units to "count"
+    int keyCols[] = keyCols(cumTable);
+    boolean isKeyCol[] = new boolean[cumTable.nColumns()]; // all false
+    for (int kc = 0; kc < keyCols.length; kc++) isKeyCol[keyCols[kc]] = true;
+    for (int col = 0; col < isKeyCol.length; col++) {
       if (!isKeyCol[col]) {
         Attributes atts = cumTable.columnAttributes(col);
         atts.set("_FillValue", Integer.MAX_VALUE);
@@ -141,6 +121,53 @@ public class TableWriterOrderByCount extends TableWriterAll {
       }
     }
 
+    // send results to otherTableWriter;
+    otherTableWriter.writeAllAndFinish(cumTable);
+    otherTableWriter = null;
+  }
+
+  // This uses super.writeAllAndFinish() because writeSome stores processed info
+
+  /**
+   * This finds the key column numbers.
+   *
+   * @param table a table with this tableWriter's columns
+   * @return the key column numbers
+   */
+  private int[] keyCols(Table table) {
+    return table.keyColumnNamesToNumbers(
+        "orderByCount",
+        // just get the column names, ignoring rounding e.g. time not time/1day
+        Arrays.stream(orderBy).map((s) -> s.split("/")[0]).toArray(size -> new String[size]));
+  }
+
+  /**
+   * This combines the rows of a table of counts (e.g., from several partial tables) so that there
+   * is one row per group.
+   *
+   * @param cumTable a table of counts. missing_value and _FillValue are all done. It is sorted and
+   *     combined in place.
+   */
+  private void combine(Table cumTable) {
+    // combine results
+    // missing_value and _FillValue are all done. All data are counts.
+    int nRows = cumTable.nRows();
+    int nCols = cumTable.nColumns();
+    int keyCols[] = keyCols(cumTable);
+    int nKeyCols = keyCols.length;
+
+    // sort based on keys
+    if (nKeyCols > 0) cumTable.ascendingSort(keyCols);
+    // String2.log(dataToString());
+
+    // note which are keyCol
+    boolean isKeyCol[] = new boolean[nCols]; // all false
+    for (int kc = 0; kc < nKeyCols; kc++) isKeyCol[keyCols[kc]] = true;
+
+    // get pas
+    PrimitiveArray pas[] = new PrimitiveArray[nCols];
+    for (int col = 0; col < nCols; col++) pas[col] = cumTable.getColumn(col);
+
     // walk through the table
     int resultsRow = -1;
     BitSet keep = new BitSet(nRows); // all false
@@ -180,12 +207,5 @@ public class TableWriterOrderByCount extends TableWriterAll {
 
     // just keep new group
     cumTable.justKeep(keep);
-
-    // send results to otherTableWriter;
-    otherTableWriter.writeAllAndFinish(cumTable);
-    otherTableWriter = null;
   }
-
-  // This uses super.writeAllAndFinish() because writeSome stores processed info
-
 }
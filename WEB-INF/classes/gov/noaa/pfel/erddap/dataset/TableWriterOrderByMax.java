@@ -76,14 +76,14 @@ public class TableWriterOrderByMax extends TableWriterAll {
   public void writeSome(Table table) throws Throwable {
     if (table.nRows() == 0) return;
 
-    // to save time and disk space, this just does a partial job
+    // to save time and memory, this just does a partial job
     //  (remove non-max rows from this partial table)
     //  and leaves perfect job to finish()
     table.orderByMax(orderBy); // this handles missingValues and _FillValues temporarily
 
     // ensure the table's structure is the same as before
-    // and write to dataOutputStreams
-    super.writeSome(table);
+    // and add to the in-memory reducedTable
+    writeSomeReduced(table, t -> t.orderByMax(orderBy));
   }
 
   /**
@@ -96,11 +96,9 @@ public class TableWriterOrderByMax extends TableWriterAll {
   public void finish() throws Throwable {
     if (ignoreFinish) return;
 
-    super.finish();
-
-    Table cumulativeTable = cumulativeTable();
+    // this handles missingValues and _FillValues temporarily
+    Table cumulativeTable = finishReduced(t -> t.orderByMax(orderBy));
     releaseResources();
-    cumulativeTable.orderByMax(orderBy); // this handles missingValues and _FillValues temporarily
     otherTableWriter.writeAllAndFinish(cumulativeTable);
 
     // clean up
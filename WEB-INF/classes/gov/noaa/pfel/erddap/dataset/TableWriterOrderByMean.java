@@ -7,7 +7,6 @@ package gov.noaa.pfel.erddap.dataset;
 import com.cohort.array.Attributes;
 import com.cohort.array.PAType;
 import com.cohort.array.PrimitiveArray;
-import com.cohort.array.StringArray;
 import com.cohort.util.Calendar2;
 import com.cohort.util.Math2;
 import com.cohort.util.SimpleException;
@@ -39,13 +38,13 @@ public class TableWriterOrderByMean extends TableWriterAll {
   // set by constructor
   protected final TableWriter otherTableWriter;
   public String orderBy[];
-  // maintains count of the number of values in average
-  protected final Map<String, int[]> counts = new HashMap<String, int[]>();
-  protected final Map<String, Integer> rowmap = new HashMap<String, Integer>();
-  // used when calculating degree means at the end, one key for each row.
-  protected final StringArray keymap = new StringArray();
-  protected final Map<String, DegreesAccumulator> degreesMap =
-      new HashMap<String, DegreesAccumulator>();
+  // the group number (i.e., the row in meansTable) for each combination of key values
+  protected GroupKeyMap groups;
+  // maintains count of the number of values in average, one int[nCols] for each group
+  protected final ArrayList<int[]> counts = new ArrayList<int[]>();
+  // used when calculating degree means at the end, one DegreesAccumulator[nCols] for each group
+  protected final ArrayList<DegreesAccumulator[]> degreesAccumulators =
+      new ArrayList<DegreesAccumulator[]>();
 
   protected Attributes oColumnAtts[] = null; // from incoming table or edd
 
@@ -142,12 +141,10 @@ public class TableWriterOrderByMean extends TableWriterAll {
       // note that metadata hasn't been changed yet
     }
 
-    StringBuilder sbKey = new StringBuilder();
     double[] roundedValue = new double[nCols];
     BitSet isRounded = new BitSet(nCols);
     ROW:
     for (int row = 0; row < nRows; row++) {
-      sbKey.setLength(0);
       for (int i = 0; i < keyCols.length; i++) {
         int col = keyCols[i];
         PrimitiveArray column = table.getColumn(col);
@@ -163,27 +160,23 @@ public class TableWriterOrderByMean extends TableWriterAll {
             isRounded.set(col);
             roundedValue[col] = value;
           }
-          sbKey.append(value);
+          groups.setDouble(i, value);
         } else {
-          sbKey.append(column.getString(row));
+          groups.setString(i, column.getString(row));
         }
-        sbKey.append(":");
       }
-      String key = sbKey.toString();
-      int[] tCounts = counts.get(key);
-      if (tCounts == null) {
-        tCounts = new int[nCols];
-        int idx = counts.size();
-        counts.put(key, tCounts);
+      int idx = groups.group();
+      if (idx == counts.size()) {
+        // a new group
+        counts.add(new int[nCols]);
         for (int col = 0; col < nCols; col++) {
           PrimitiveArray column = table.getColumn(col);
           String value = column.getRawString(row);
           meansTable.getColumn(col).addString(value);
         }
-        rowmap.put(key, idx);
-        keymap.add(key);
+        degreesAccumulators.add(null);
       }
-      int idx = rowmap.get(key);
+      int[] tCounts = counts.get(idx);
       for (int col = 0; col < nCols; col++) {
         PrimitiveArray column = table.getColumn(col);
         if (cannotMeanCol.get(col)) {
@@ -205,11 +198,11 @@ public class TableWriterOrderByMean extends TableWriterAll {
         }
         // String2.log(">> row=" + row + " col=" + col + " val=" + value + " mean=" + mean);
         if (degreesTrueCol.get(col)) {
-          accumulateDegreesTrue(key + ":" + col, value);
+          accumulateDegrees(idx, col, true, value);
           continue;
         }
         if (degreesCol.get(col)) {
-          accumulateDegrees(key + ":" + col, value);
+          accumulateDegrees(idx, col, false, value);
           continue;
         }
         tCounts[col] += 1;
@@ -274,6 +267,7 @@ public class TableWriterOrderByMean extends TableWriterAll {
               }
             });
     keyCols = tKeyCols.stream().mapToInt(i -> i).toArray();
+    groups = new GroupKeyMap(keyCols.length);
     String colName[] = new String[ncols];
     String dataType[] = new String[ncols];
     oColumnAtts = new Attributes[ncols];
@@ -340,23 +334,18 @@ public class TableWriterOrderByMean extends TableWriterAll {
     */
   }
 
-  private void accumulateDegrees(String key, double value) {
-    DegreesAccumulator accum = degreesMap.get(key);
-    if (accum == null) {
-      accum = new DegreesAccumulator(false); // not degrees true
-      degreesMap.put(key, accum);
+  private void accumulateDegrees(int idx, int col, boolean isDegreesTrue, double value) {
+    DegreesAccumulator accums[] = degreesAccumulators.get(idx);
+    if (accums == null) {
+      accums = new DegreesAccumulator[meansTable.nColumns()];
+      degreesAccumulators.set(idx, accums);
     }
-    // String2.log(">> accumulateDegrees " + key + " value=" + value);
-    accum.add(value);
-  }
-
-  private void accumulateDegreesTrue(String key, double value) {
-    DegreesAccumulator accum = degreesMap.get(key);
+    DegreesAccumulator accum = accums[col];
     if (accum == null) {
-      accum = new DegreesAccumulator(true); // is degrees true
-      degreesMap.put(key, accum);
+      accum = new DegreesAccumulator(isDegreesTrue);
+      accums[col] = accum;
     }
-    // String2.log(">> accumulateDegrees " + key + " value=" + value);
+    // String2.log(">> accumulateDegrees idx=" + idx + " col=" + col + " value=" + value);
     accum.add(value);
   }
 
@@ -369,8 +358,9 @@ public class TableWriterOrderByMean extends TableWriterAll {
       if (degreesCol.get(col) || degreesTrueCol.get(col)) {
         int nRows = meansTable.nRows();
         for (int row = 0; row < nRows; row++) {
-          String key = keymap.get(row) + ":" + col;
-          DegreesAccumulator accum = degreesMap.get(key); // will be null if 0 values for that group
+          DegreesAccumulator accums[] = degreesAccumulators.get(row);
+          // will be null if 0 values for that group
+          DegreesAccumulator accum = accums == null ? null : accums[col];
           meansTable.setDoubleData(col, row, accum == null ? Double.NaN : accum.getMean());
           // String2.log(">> " + key + " row=" + row + (accum == null? " null" : " mean=" +
           // accum.getMean()));
@@ -429,11 +419,10 @@ public class TableWriterOrderByMean extends TableWriterAll {
       calculateDegreeMeans();
       useIntegersWhereSensible();
       if (keyCols.length > 0) meansTable.sort(keyCols);
-      super.writeSome(meansTable);
+      writeSomeReduced(meansTable, null); // kept in memory
     }
-    super.finish(); // this ensures there is data and thus configured=true
-
-    Table cumulativeTable = cumulativeTable();
+    // this ensures there is data and thus configured=true
+    Table cumulativeTable = finishReduced(null);
     releaseResources();
 
     // improve metadata
@@ -455,9 +444,9 @@ public class TableWriterOrderByMean extends TableWriterAll {
 
     // clean up
     meansTable = null;
-    degreesMap.clear();
+    groups = null;
+    degreesAccumulators.clear();
     counts.clear();
-    rowmap.clear();
   }
 
   /**
@@ -37,9 +37,10 @@ public class TableWriterOrderBySum extends TableWriterAll {
   // set by constructor
   protected final TableWriter otherTableWriter;
   public String orderBy[];
-  // maintains count of the number of values in sum
-  protected final Map<String, int[]> counts = new HashMap<String, int[]>();
-  protected final Map<String, Integer> rowmap = new HashMap<String, Integer>();
+  // the group number (i.e., the row in sumsTable) for each combination of key values
+  protected GroupKeyMap groups;
+  // maintains count of the number of values in sum, one int[nCols] for each group
+  protected final ArrayList<int[]> counts = new ArrayList<int[]>();
 
   protected Attributes oColumnAtts[] = null; // from incoming table or edd
 
@@ -134,12 +135,10 @@ public class TableWriterOrderBySum extends TableWriterAll {
       // note that metadata hasn't been changed yet
     }
 
-    StringBuilder sbKey = new StringBuilder();
     double[] roundedValue = new double[nCols];
     BitSet isRounded = new BitSet(nCols);
     ROW:
     for (int row = 0; row < nRows; row++) {
-      sbKey.setLength(0);
       for (int i = 0; i < keyCols.length; i++) {
         int col = keyCols[i];
         PrimitiveArray column = table.getColumn(col);
@@ -155,18 +154,15 @@ public class TableWriterOrderBySum extends TableWriterAll {
             isRounded.set(col);
             roundedValue[col] = value;
           }
-          sbKey.append(value);
+          groups.setDouble(i, value);
         } else {
-          sbKey.append(column.getString(row));
+          groups.setString(i, column.getString(row));
         }
-        sbKey.append(":");
       }
-      String key = sbKey.toString();
-      int[] tCounts = counts.get(key);
-      if (tCounts == null) {
-        tCounts = new int[nCols];
-        int idx = counts.size();
-        counts.put(key, tCounts);
+      int idx = groups.group();
+      if (idx == counts.size()) {
+        // a new group
+        counts.add(new int[nCols]);
         for (int col = 0; col < nCols; col++) {
           PrimitiveArray column = table.getColumn(col);
           String value =
@@ -177,9 +173,8 @@ public class TableWriterOrderBySum extends TableWriterAll {
           // if (table.getColumnName(col).equals("wd"))  String2.log(">>wd addString=" + value);
           sumsTable.getColumn(col).addString(value);
         }
-        rowmap.put(key, idx);
       }
-      int idx = rowmap.get(key);
+      int[] tCounts = counts.get(idx);
       for (int col = 0; col < nCols; col++) {
         PrimitiveArray column = table.getColumn(col);
         if (cannotSumCol.get(col)) {
@@ -256,6 +251,7 @@ public class TableWriterOrderBySum extends TableWriterAll {
               }
             });
     keyCols = tKeyCols.stream().mapToInt(i -> i).toArray();
+    groups = new GroupKeyMap(keyCols.length);
     String colName[] = new String[ncols];
     String dataType[] = new String[ncols];
     oColumnAtts = new Attributes[ncols];
@@ -332,11 +328,10 @@ public class TableWriterOrderBySum extends TableWriterAll {
     if (keyCols != null) {
       useIntegersWhereSensible();
       if (keyCols.length > 0) sumsTable.sort(keyCols);
-      super.writeSome(sumsTable);
+      writeSomeReduced(sumsTable, null); // kept in memory
     }
-    super.finish(); // this ensures there is data and thus configured=true
-
-    Table cumulativeTable = cumulativeTable();
+    // this ensures there is data and thus configured=true
+    Table cumulativeTable = finishReduced(null);
     releaseResources();
 
     // improve metadata
@@ -358,8 +353,8 @@ public class TableWriterOrderBySum extends TableWriterAll {
 
     // clean up
     sumsTable = null;
+    groups = null;
     counts.clear();
-    rowmap.clear();
   }
 
   /**
@@ -24,6 +24,7 @@ import com.cohort.util.Units2;
 import com.cohort.util.XML;
 import com.google.common.io.Resources;
 import com.sun.management.UnixOperatingSystemMXBean;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -41,6 +42,7 @@ import gov.noaa.pfel.coastwatch.util.SSR;
 import gov.noaa.pfel.coastwatch.util.Tally;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.LoadDatasets;
+import gov.noaa.pfel.erddap.ParallelDatasetLoader;
 import gov.noaa.pfel.erddap.RunLoadDatasets;
 import gov.noaa.pfel.erddap.dataset.AxisDataAccessor;
 import gov.noaa.pfel.erddap.dataset.EDD;
@@ -48,6 +50,7 @@ import gov.noaa.pfel.erddap.dataset.EDDGrid;
 import gov.noaa.pfel.erddap.dataset.EDDTable;
 import gov.noaa.pfel.erddap.dataset.EDDTableFromCassandra;
 import gov.noaa.pfel.erddap.dataset.GridDataAccessor;
+import gov.noaa.pfel.erddap.dataset.HttpGetGroupCommit;
 import gov.noaa.pfel.erddap.dataset.OutputStreamFromHttpResponse;
 import gov.noaa.pfel.erddap.dataset.TableWriterHtmlTable;
 import gov.noaa.pfel.erddap.variable.EDV;
@@ -84,6 +87,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -272,6 +276,8 @@ public class EDStatic {
   public static int touchThreadSucceededDistributionTotal[] = new int[String2.TimeDistributionSize];
   public static volatile AtomicInteger requestsShed =
       new AtomicInteger(0); // since last Major LoadDatasets
+  // the bytes reserved by requests via reserveMemory()
+  private static final AtomicLong reservedMemoryBytes = new AtomicLong();
   public static volatile AtomicInteger dangerousMemoryEmails =
       new AtomicInteger(0); // since last Major LoadDatasets
   public static volatile AtomicInteger dangerousMemoryFailures =
@@ -1806,6 +1812,34 @@ public class EDStatic {
 
   private static HashMap<String, String> gdxAcronymsHashMap, gdxVariableNamesHashMap;
   public static boolean useSharedWatchService = false;
+  public static boolean useSharedWorkerPool = false;
+  public static int sharedWorkerPoolNThreads = Runtime.getRuntime().availableProcessors();
+  public static boolean sharedWorkerPoolUseVirtualThreads = false;
+  public static int gridReadAheadNChunks = 0; // 0 = no read ahead in GridDataAccessor
+  public static int ncFileCacheMaxOpenFiles = 0; // 0 = NcFileCache is inactive
+  public static int ncFileCacheMaxIdleSeconds = 60;
+  public static int externalSortRunMB = 0; // 0 = orderBy and distinct() sort in memory
+  // the most MB of reduced rows (e.g., orderByMax) one request may keep in memory (0 = use disk)
+  public static int reducedTableMaxMB = 100;
+  // 0 = cached responses are only deleted by age (cacheMinutes). Otherwise, once per major
+  // LoadDatasets cycle (see RunLoadDatasets), the least recently used ones are trimmed to this.
+  public static int cacheMaxMB = 0;
+  public static int loadDatasetsNThreads = 1; // 1 = LoadDatasets builds datasets one at a time
+  // 0 = each change to an EDDTableFromFiles fileTable saves the whole fileTable
+  public static int fileTableJournalMaxChanges = 0;
+  // 0 = an EDDTableFromHttpGet group commit never waits for more requests to join it
+  public static int httpGetGroupCommitMillis = 0;
+  public static int httpGetGroupCommitMaxKB = 1024;
+  // true = each EDDTableFromHttpGet group commit is fsynced before its requests are acknowledged
+  public static boolean httpGetSyncWrites = true;
+  // 0 = EDDTableFromHttpGet data files are never compacted
+  public static int httpGetCompactAfterMinutes = 0;
+  public static boolean useGridChunkCache = false; // for EDDGridFromDap and EDDGridFromErddap
+  // false = .nc grid responses are made in a file, then sent (so errors get an error response)
+  public static boolean streamNcGridResponses = false;
+  public static int gridChunkCacheMemoryMB = 0; // 0 = GridChunkCache chunks are only on disk
+  // false = .dods and .asc grid responses get the data variables one at a time (sooner first byte)
+  public static boolean dapReadDataVariablesInOnePass = true;
 
   /**
    * This static block reads this class's static String values from contentDirectory, which must
@@ -2276,6 +2310,53 @@ public class EDStatic {
           getSetupEVBoolean(setup, ev, "variablesMustHaveIoosCategory", true);
       warName = getSetupEVString(setup, ev, "warName", "erddap");
       useSharedWatchService = getSetupEVBoolean(setup, ev, "useSharedWatchService", false);
+      useSharedWorkerPool = getSetupEVBoolean(setup, ev, "useSharedWorkerPool", false);
+      if (useSharedWorkerPool) {
+        sharedWorkerPoolNThreads =
+            Math2.minMax(
+                1,
+                1000,
+                getSetupEVInt(
+                    setup,
+                    ev,
+                    "sharedWorkerPoolNThreads",
+                    Runtime.getRuntime().availableProcessors()));
+        sharedWorkerPoolUseVirtualThreads =
+            getSetupEVBoolean(setup, ev, "sharedWorkerPoolUseVirtualThreads", false);
+        SharedWorkerPool.initialize(sharedWorkerPoolNThreads, sharedWorkerPoolUseVirtualThreads);
+      }
+      gridReadAheadNChunks =
+          Math2.minMax(0, 100, getSetupEVInt(setup, ev, "gridReadAheadNChunks", 0));
+      ncFileCacheMaxOpenFiles =
+          Math2.minMax(0, 100000, getSetupEVInt(setup, ev, "ncFileCacheMaxOpenFiles", 0));
+      ncFileCacheMaxIdleSeconds =
+          Math2.minMax(1, 86400, getSetupEVInt(setup, ev, "ncFileCacheMaxIdleSeconds", 60));
+      NcFileCache.setLimits(ncFileCacheMaxOpenFiles, ncFileCacheMaxIdleSeconds * 1000L);
+      externalSortRunMB =
+          Math2.minMax(0, 100000, getSetupEVInt(setup, ev, "externalSortRunMB", 0));
+      reducedTableMaxMB =
+          Math2.minMax(0, 100000, getSetupEVInt(setup, ev, "reducedTableMaxMB", 100));
+      cacheMaxMB = Math2.minMax(0, 100000000, getSetupEVInt(setup, ev, "cacheMaxMB", 0));
+      if (usePrometheusMetrics) ResponseCache.registerMetrics();
+      loadDatasetsNThreads =
+          Math2.minMax(1, 100, getSetupEVInt(setup, ev, "loadDatasetsNThreads", 1));
+      fileTableJournalMaxChanges =
+          Math2.minMax(0, 1000000, getSetupEVInt(setup, ev, "fileTableJournalMaxChanges", 0));
+      httpGetGroupCommitMillis =
+          Math2.minMax(0, 10000, getSetupEVInt(setup, ev, "httpGetGroupCommitMillis", 0));
+      httpGetGroupCommitMaxKB =
+          Math2.minMax(1, 1000000, getSetupEVInt(setup, ev, "httpGetGroupCommitMaxKB", 1024));
+      httpGetSyncWrites = getSetupEVBoolean(setup, ev, "httpGetSyncWrites", true);
+      httpGetCompactAfterMinutes =
+          Math2.minMax(0, 10000000, getSetupEVInt(setup, ev, "httpGetCompactAfterMinutes", 0));
+      useGridChunkCache = getSetupEVBoolean(setup, ev, "useGridChunkCache", false);
+      gridChunkCacheMemoryMB =
+          Math2.minMax(0, 1000000, getSetupEVInt(setup, ev, "gridChunkCacheMemoryMB", 0));
+      streamNcGridResponses = getSetupEVBoolean(setup, ev, "streamNcGridResponses", false);
+      dapReadDataVariablesInOnePass =
+          getSetupEVBoolean(setup, ev, "dapReadDataVariablesInOnePass", true);
+      if (usePrometheusMetrics) HttpGetGroupCommit.registerMetrics();
+      if (usePrometheusMetrics) RequestMetrics.registerMetrics();
 
       // use Lucence?
       if (searchEngine.equals("lucene")) {
@@ -5215,6 +5296,12 @@ public class EDStatic {
     sb.append(
         String2.getBriefTimeDistributionStatistics(taskThreadSucceededDistributionTotal) + "\n");
 
+    sb.append(SharedWorkerPool.statusString()); // "" if not active
+    sb.append(NcFileCache.statusString()); // "" if not active
+    sb.append(ResponseCache.statusString());
+    sb.append(ParallelDatasetLoader.statusString()); // "" if not active
+    sb.append(HttpGetGroupCommit.statusString()); // "" if not active
+
     synchronized (emailList) {
       ensureEmailThreadIsRunningIfNeeded(); // clients (like this class) are responsible for
       // checking on it
@@ -5984,6 +6071,12 @@ public class EDStatic {
       // shutdown Cassandra clusters/sessions
       EDDTableFromCassandra.shutdown();
 
+      // shutdown the shared worker pool
+      SharedWorkerPool.shutdown();
+
+      // close the cached NetcdfFiles
+      NcFileCache.clear();
+
       // interrupt all of them
       for (int i = 0; i < names.length; i++) {
         try {
@@ -7248,6 +7341,45 @@ public class EDStatic {
     return nFilesToDownload;
   }
 
+  /**
+   * This tries to reserve memory for data which a request would like to keep in memory instead of
+   * writing it to disk (e.g., TableWriterAll's reduced rows). This succeeds only if all of the
+   * reservations together stay below maxSafeMemory/4 and the memory in use plus nBytes stays below
+   * Math2.highMemory, so many simultaneous requests can't use up the memory. If this returns true,
+   * the caller must call releaseMemory(nBytes) when the data is no longer held.
+   *
+   * @param nBytes the number of bytes to be reserved
+   * @return true if the bytes were reserved, or false if the caller should use disk instead
+   */
+  public static boolean reserveMemory(long nBytes) {
+    if (nBytes <= 0) return true;
+    if (Math2.getMemoryInUse() + nBytes > Math2.highMemory) return false;
+    long limit = Math2.maxSafeMemory / 4;
+    while (true) {
+      long reserved = reservedMemoryBytes.get();
+      if (reserved + nBytes > limit) return false;
+      if (reservedMemoryBytes.compareAndSet(reserved, reserved + nBytes)) return true;
+    }
+  }
+
+  /**
+   * This releases memory which was reserved via reserveMemory.
+   *
+   * @param nBytes the number of bytes which were reserved
+   */
+  public static void releaseMemory(long nBytes) {
+    if (nBytes > 0) reservedMemoryBytes.addAndGet(-nBytes);
+  }
+
+  /**
+   * This returns the number of bytes currently reserved via reserveMemory.
+   *
+   * @return the number of reserved bytes
+   */
+  public static long reservedMemoryBytes() {
+    return reservedMemoryBytes.get();
+  }
+
   /**
    * This checks if this request should be shed because not much free memory available. Note that
    * shedThisRequest is more eager to reject a request, than Math2.ensureMemoryAvailable is to cause
@@ -0,0 +1,317 @@
+/*
+ * RequestMetrics Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import io.prometheus.metrics.core.metrics.SummaryWithCallback;
+import io.prometheus.metrics.model.snapshots.Quantile;
+import io.prometheus.metrics.model.snapshots.Quantiles;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This collects per-dataset request statistics (since startup): for each (protocol, datasetID,
+ * fileType), a histogram of the response times, the number of bytes sent, and the number of
+ * responses served from the response cache (see ResponseCache); and for each datasetID, a histogram
+ * of the time spent reading the source data. They are exposed as Prometheus metrics (at /metrics,
+ * see EDStatic.usePrometheusMetrics).
+ *
+ * <p>The histograms are log-linear (like HdrHistogram): each power of 2 (in milliseconds) is split
+ * into 4 buckets, so a quantile is within 25% of the true value. Every bucket is a LongAdder, so
+ * many request threads can record times without locking or contention.
+ *
+ * <p>The number of series is limited to MAX_SERIES. Beyond that, requests are recorded with
+ * datasetID=OTHER.
+ */
+public class RequestMetrics {
+
+  /** The maximum number of (protocol, datasetID, fileType) series. */
+  public static final int MAX_SERIES = 10000;
+
+  /** The datasetID used for requests recorded after there are MAX_SERIES series. */
+  public static final String OTHER = "(other)";
+
+  private static final double QUANTILES[] = {0.5, 0.9, 0.99};
+
+  private static boolean metricsRegistered = false;
+  private static final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Histogram> sourceReads =
+      new ConcurrentHashMap<>();
+
+  /**
+   * A thread-safe log-linear histogram of times (in milliseconds). Times above MAX_MILLIS are
+   * recorded in the last bucket.
+   */
+  public static class Histogram {
+    static final int SUB_BITS = 2;
+    static final int N_SUB = 1 << SUB_BITS;
+    static final int MAX_BITS = 23;
+
+    /** The largest time which is recorded accurately (about 2.3 hours). */
+    public static final long MAX_MILLIS = (1L << MAX_BITS) - 1;
+
+    static final int N_BUCKETS = bucket(MAX_MILLIS) + 1;
+
+    private final LongAdder counts[] = new LongAdder[N_BUCKETS];
+    private final LongAdder sumMillis = new LongAdder();
+
+    public Histogram() {
+      for (int i = 0; i < N_BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    /** This returns the bucket for a time. */
+    static int bucket(long millis) {
+      if (millis < N_SUB) return (int) Math.max(0, millis);
+      if (millis > MAX_MILLIS) millis = MAX_MILLIS;
+      int e = 63 - Long.numberOfLeadingZeros(millis); // >= SUB_BITS
+      int sub = (int) (millis >>> (e - SUB_BITS)) & (N_SUB - 1);
+      return N_SUB * (e - SUB_BITS + 1) + sub;
+    }
+
+    /** This returns the largest time in a bucket. */
+    static long upperBound(int bucket) {
+      if (bucket < N_SUB) return bucket;
+      int e = bucket / N_SUB + SUB_BITS - 1;
+      int sub = bucket % N_SUB;
+      return ((N_SUB + sub + 1L) << (e - SUB_BITS)) - 1;
+    }
+
+    /**
+     * This records a time.
+     *
+     * @param millis the time in milliseconds
+     */
+    public void record(long millis) {
+      if (millis < 0) millis = 0;
+      counts[bucket(millis)].increment();
+      sumMillis.add(millis);
+    }
+
+    /**
+     * This returns the number of recorded times.
+     *
+     * @return the number of recorded times
+     */
+    public long count() {
+      long n = 0;
+      for (int i = 0; i < N_BUCKETS; i++) n += counts[i].sum();
+      return n;
+    }
+
+    /**
+     * This returns the sum of the recorded times.
+     *
+     * @return the sum of the recorded times, in milliseconds
+     */
+    public long sumMillis() {
+      return sumMillis.sum();
+    }
+
+    /**
+     * This returns an upper bound of a quantile of the recorded times. Since other threads may be
+     * recording times, this is approximate.
+     *
+     * @param q the quantile (0 to 1), e.g., 0.99
+     * @return the largest time in the bucket with the quantile (or 0 if there are no times)
+     */
+    public long quantileMillis(double q) {
+      long bucketCounts[] = new long[N_BUCKETS];
+      long n = 0;
+      for (int i = 0; i < N_BUCKETS; i++) {
+        bucketCounts[i] = counts[i].sum();
+        n += bucketCounts[i];
+      }
+      return quantileMillis(q, bucketCounts, n);
+    }
+
+    private static long quantileMillis(double q, long bucketCounts[], long n) {
+      if (n == 0) return 0;
+      long rank = Math.max(1, (long) Math.ceil(q * n));
+      long cum = 0;
+      for (int i = 0; i < N_BUCKETS; i++) {
+        cum += bucketCounts[i];
+        if (cum >= rank) return upperBound(i);
+      }
+      return upperBound(N_BUCKETS - 1);
+    }
+
+    /** This makes the Prometheus quantiles (in seconds) and returns the count. */
+    private long snapshot(Quantile quantiles[]) {
+      long bucketCounts[] = new long[N_BUCKETS];
+      long n = 0;
+      for (int i = 0; i < N_BUCKETS; i++) {
+        bucketCounts[i] = counts[i].sum();
+        n += bucketCounts[i];
+      }
+      for (int q = 0; q < QUANTILES.length; q++)
+        quantiles[q] =
+            new Quantile(QUANTILES[q], quantileMillis(QUANTILES[q], bucketCounts, n) / 1000.0);
+      return n;
+    }
+  }
+
+  /** The statistics for one (protocol, datasetID, fileType). */
+  private static class Series {
+    final String protocol;
+    final String datasetID;
+    final String fileType;
+    final Histogram responseTimes = new Histogram();
+    final LongAdder bytesOut = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+
+    Series(String protocol, String datasetID, String fileType) {
+      this.protocol = protocol;
+      this.datasetID = datasetID;
+      this.fileType = fileType;
+    }
+  }
+
+  /** An OutputStream which counts the bytes written to it. */
+  public static class CountingOutputStream extends FilterOutputStream {
+    private long nBytes = 0;
+
+    public CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      nBytes++;
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+      out.write(b, off, len);
+      nBytes += len;
+    }
+
+    /**
+     * This returns the number of bytes written.
+     *
+     * @return the number of bytes written
+     */
+    public long nBytes() {
+      return nBytes;
+    }
+  }
+
+  /**
+   * This registers the Prometheus metrics. EDStatic calls this when setup.xml is read (if
+   * usePrometheusMetrics).
+   */
+  public static synchronized void registerMetrics() {
+    if (metricsRegistered) return;
+    metricsRegistered = true;
+    SummaryWithCallback.builder()
+        .name("erddap_dataset_request_duration_seconds")
+        .help("Response times of successful griddap and tabledap requests.")
+        .labelNames("protocol", "dataset_id", "file_type")
+        .callback(
+            callback -> {
+              for (Series s : series.values()) {
+                Quantile quantiles[] = new Quantile[QUANTILES.length];
+                long n = s.responseTimes.snapshot(quantiles);
+                callback.call(
+                    n,
+                    s.responseTimes.sumMillis() / 1000.0,
+                    Quantiles.of(quantiles),
+                    s.protocol,
+                    s.datasetID,
+                    s.fileType);
+              }
+            })
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_dataset_response_bytes")
+        .help("Number of bytes (after compression) sent in griddap and tabledap responses.")
+        .labelNames("protocol", "dataset_id", "file_type")
+        .callback(
+            callback -> {
+              for (Series s : series.values())
+                callback.call(s.bytesOut.sum(), s.protocol, s.datasetID, s.fileType);
+            })
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_dataset_response_cache_hits")
+        .help("Number of griddap and tabledap responses which were served from a cached file.")
+        .labelNames("protocol", "dataset_id", "file_type")
+        .callback(
+            callback -> {
+              for (Series s : series.values())
+                callback.call(s.cacheHits.sum(), s.protocol, s.datasetID, s.fileType);
+            })
+        .register();
+    SummaryWithCallback.builder()
+        .name("erddap_dataset_source_read_seconds")
+        .help("Times to read source data (one file or one source request) for a data request.")
+        .labelNames("dataset_id")
+        .callback(
+            callback -> {
+              sourceReads.forEach(
+                  (datasetID, h) -> {
+                    Quantile quantiles[] = new Quantile[QUANTILES.length];
+                    long n = h.snapshot(quantiles);
+                    callback.call(n, h.sumMillis() / 1000.0, Quantiles.of(quantiles), datasetID);
+                  });
+            })
+        .register();
+  }
+
+  /** This returns the series, making it if needed. */
+  private static Series series(String protocol, String datasetID, String fileType) {
+    String key = protocol + "\n" + datasetID + "\n" + fileType;
+    Series s = series.get(key);
+    if (s != null) return s;
+    if (series.size() >= MAX_SERIES && !OTHER.equals(datasetID))
+      return series(protocol, OTHER, fileType);
+    return series.computeIfAbsent(key, k -> new Series(protocol, datasetID, fileType));
+  }
+
+  /**
+   * This records a successful griddap or tabledap response.
+   *
+   * @param protocol "griddap" or "tabledap"
+   * @param datasetID the datasetID
+   * @param fileType the fileTypeName, e.g., ".csv"
+   * @param millis the response time in milliseconds
+   * @param bytesOut the number of bytes sent (or -1 if unknown)
+   */
+  public static void response(
+      String protocol, String datasetID, String fileType, long millis, long bytesOut) {
+    Series s = series(protocol, datasetID, fileType);
+    s.responseTimes.record(millis);
+    if (bytesOut > 0) s.bytesOut.add(bytesOut);
+  }
+
+  /**
+   * This records that a griddap or tabledap response was served from the response cache.
+   *
+   * @param protocol "griddap" or "tabledap"
+   * @param datasetID the datasetID
+   * @param fileType the fileTypeName, e.g., ".csv"
+   */
+  public static void cacheHit(String protocol, String datasetID, String fileType) {
+    series(protocol, datasetID, fileType).cacheHits.increment();
+  }
+
+  /**
+   * This records the time to read some source data for a data request.
+   *
+   * @param datasetID the datasetID
+   * @param millis the time in milliseconds
+   */
+  public static void sourceRead(String datasetID, long millis) {
+    Histogram h = sourceReads.get(datasetID);
+    if (h == null) {
+      if (sourceReads.size() >= MAX_SERIES) datasetID = OTHER;
+      h = sourceReads.computeIfAbsent(datasetID, k -> new Histogram());
+    }
+    h.record(millis);
+  }
+}
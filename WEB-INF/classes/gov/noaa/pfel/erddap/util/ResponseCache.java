@@ -0,0 +1,201 @@
+/*
+ * ResponseCache Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.Calendar2;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This manages the cache of response files which EDDGrid.respondToDapQuery and
+ * EDDTable.respondToDapQuery make in each dataset's cacheDirectory(). A cached response's file name
+ * is derived from (datasetID, the percent-decoded query, fileType) (see EDD.suggestFileName), and,
+ * for datasets which are updated (see updateEveryNMillis) and which know when their data changes
+ * (see EDD.tracksDataVersion), the dataset's data version. So a cached response is reused until the
+ * data actually changes (except for queries which use relative times, e.g., now-1day, see usesNow).
+ *
+ * <p>Cached files are deleted if they are older than cacheMinutes. If EDStatic.cacheMaxMB &gt; 0,
+ * trim() then deletes the least recently used files until the cache is small enough. Both are done
+ * once per major LoadDatasets cycle (see RunLoadDatasets), so between cycles the cache may grow
+ * past cacheMaxMB. Since versioned responses never become stale, they are touched each time they
+ * are reused, so their lastModified time is their last use. Responses with unique (_U) names (for
+ * real_time datasets, and for updated datasets which don't know their data version or queries which
+ * use relative times) are never reused, so they aren't counted as hits or misses.
+ */
+public class ResponseCache {
+
+  /** Files modified more recently than this are never deleted by trim() (they may be in use). */
+  public static final long TRIM_MIN_AGE_MILLIS = 5 * Calendar2.MILLIS_PER_MINUTE;
+
+  /** Matches "now" as a word, as in a relative time constraint like time&gt;=now-1day. */
+  private static final Pattern NOW_PATTERN = Pattern.compile("(?i)\\bnow\\b");
+
+  private static boolean metricsRegistered = false;
+
+  // statistics
+  private static final LongAdder nHits = new LongAdder(); // since startup
+  private static final LongAdder nMisses = new LongAdder(); // since startup
+  private static final LongAdder nTrimmed = new LongAdder(); // since startup
+
+  /**
+   * This registers the cache's Prometheus metrics. EDStatic calls this when setup.xml is read (if
+   * usePrometheusMetrics).
+   */
+  public static synchronized void registerMetrics() {
+    if (metricsRegistered) return;
+    metricsRegistered = true;
+    CounterWithCallback.builder()
+        .name("erddap_response_cache_hits")
+        .help("Number of responses which were served from a cached file.")
+        .callback(callback -> callback.call(nHits.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_response_cache_misses")
+        .help("Number of cacheable responses which had to be made.")
+        .callback(callback -> callback.call(nMisses.sum()))
+        .register();
+    CounterWithCallback.builder()
+        .name("erddap_response_cache_trimmed_files")
+        .help("Number of cached files deleted because the cache was bigger than cacheMaxMB.")
+        .callback(callback -> callback.call(nTrimmed.sum()))
+        .register();
+  }
+
+  /**
+   * This tests if a cached response file exists and notes the hit or miss.
+   *
+   * @param cacheFullName the cached response's full file name
+   * @param versioned true if cacheFullName includes the dataset's data version (so the file's
+   *     contents are never stale). If true and this is a hit, the file is touched so the least
+   *     recently used files are trimmed first.
+   * @param unique true if cacheFullName is unique to this request (it has a _U suffix), so the
+   *     response can't be reused and isn't counted as a hit or a miss.
+   * @return true if the file exists
+   */
+  public static boolean isCached(String cacheFullName, boolean versioned, boolean unique) {
+    if (File2.isFile(cacheFullName)) {
+      if (!unique) nHits.increment();
+      if (versioned) File2.touch(cacheFullName);
+      return true;
+    }
+    countMiss(unique);
+    return false;
+  }
+
+  /**
+   * This notes a miss for a response which was made without calling isCached (e.g., a streamed .nc
+   * response).
+   *
+   * @param unique true if the response's name is unique to this request (see isCached)
+   */
+  public static void countMiss(boolean unique) {
+    if (!unique) nMisses.increment();
+  }
+
+  /**
+   * This tests if a query uses relative times (e.g., time&gt;=now-1day), so its response changes
+   * as time passes even if the data doesn't change. So it must not be reused until the data
+   * version changes.
+   *
+   * @param userDapQuery the query (percent-encoded or not)
+   * @return true if the query uses "now"
+   */
+  public static boolean usesNow(String userDapQuery) {
+    return userDapQuery != null && NOW_PATTERN.matcher(userDapQuery).find();
+  }
+
+  /**
+   * This deletes the least recently modified files in dir (and its subdirectories) until the total
+   * size of the files is at most maxBytes. Files modified in the last TRIM_MIN_AGE_MILLIS are never
+   * deleted. This won't throw an exception if trouble.
+   *
+   * @param dir the cache directory, e.g., EDStatic.fullCacheDirectory
+   * @param maxBytes the maximum total size
+   * @return the number of files deleted
+   */
+  public static int trim(String dir, long maxBytes) {
+    try {
+      long time = System.currentTimeMillis();
+      ArrayList<File> files = new ArrayList<>();
+      gatherFiles(new File(dir), files);
+      long lastModified[] = new long[files.size()];
+      long totalBytes = 0;
+      for (int i = 0; i < lastModified.length; i++) {
+        File file = files.get(i);
+        totalBytes += file.length();
+        lastModified[i] = file.lastModified();
+      }
+      if (totalBytes <= maxBytes) return 0;
+
+      // delete the least recently modified files first
+      Integer order[] = new Integer[lastModified.length];
+      for (int i = 0; i < order.length; i++) order[i] = i;
+      java.util.Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+      long tooYoung = time - TRIM_MIN_AGE_MILLIS;
+      int nDeleted = 0;
+      for (int i = 0; i < order.length && totalBytes > maxBytes; i++) {
+        File file = files.get(order[i]);
+        if (lastModified[order[i]] >= tooYoung) break; // the rest are newer
+        long length = file.length();
+        if (file.delete()) {
+          totalBytes -= length;
+          nDeleted++;
+        }
+      }
+      nTrimmed.add(nDeleted);
+      String2.log(
+          "ResponseCache.trim("
+              + dir
+              + ") nFiles="
+              + files.size()
+              + " nDeleted="
+              + nDeleted
+              + " remainingMB="
+              + totalBytes / Math2.BytesPerMB
+              + " maxMB="
+              + maxBytes / Math2.BytesPerMB
+              + " time="
+              + (System.currentTimeMillis() - time)
+              + "ms");
+      return nDeleted;
+    } catch (Throwable t) {
+      String2.log(String2.ERROR + " in ResponseCache.trim(" + dir + "):\n" + t.toString());
+      return 0;
+    }
+  }
+
+  /** This adds all of the files in dir and its subdirectories to files. */
+  private static void gatherFiles(File dir, ArrayList<File> files) {
+    File tFiles[] = dir.listFiles();
+    if (tFiles == null) return;
+    for (File file : tFiles) {
+      if (file.isFile()) files.add(file);
+      else if (file.isDirectory()) gatherFiles(file, files);
+    }
+  }
+
+  /**
+   * This returns a one line status report for the status page, e.g., "ResponseCache: hits=12
+   * misses=34 trimmedFiles=0".
+   *
+   * @return the status string (with a trailing newline)
+   */
+  public static String statusString() {
+    return "ResponseCache: hits="
+        + nHits.sum()
+        + " misses="
+        + nMisses.sum()
+        + " trimmedFiles="
+        + nTrimmed.sum()
+        + "\n";
+  }
+}
@@ -0,0 +1,239 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.String2;
+import io.prometheus.metrics.core.metrics.GaugeWithCallback;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is the server-wide, long-lived pool of worker threads that ThreadedWorkManager uses (if
+ * EDStatic.useSharedWorkerPool) to read data from files for EDDGridFromFiles and
+ * EDDTableFromFiles. Using one pool avoids creating and destroying a fixed thread pool for every
+ * request (and every partial request).
+ *
+ * <p>The pool is bounded: at most nThreads tasks run at once. If useVirtualThreads, each task gets
+ * a new virtual thread, but a semaphore still limits the number of concurrently running tasks.
+ *
+ * <p>Per-request fairness is handled by ThreadedWorkManager: each request may have at most its
+ * nThreads tasks queued or running in the shared pool at once.
+ */
+public class SharedWorkerPool {
+
+  private static ExecutorService executor = null; // guarded by SharedWorkerPool.class
+  private static Semaphore virtualPermits = null; // only used if virtual threads
+  private static int poolNThreads = 0;
+  private static boolean poolUsesVirtualThreads = false;
+  private static boolean metricsRegistered = false;
+
+  /** This is true for threads which are currently running a task for the shared pool. */
+  private static final ThreadLocal<Boolean> isWorkerThread =
+      ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  // statistics
+  private static final AtomicInteger nQueued = new AtomicInteger(); // submitted, not yet started
+  private static final AtomicInteger nActive = new AtomicInteger(); // currently running
+  private static final LongAdder nSubmitted = new LongAdder(); // since startup
+  private static final LongAdder nCompleted = new LongAdder(); // since startup
+  private static final LongAdder nRanInline = new LongAdder(); // since startup
+
+  /**
+   * This (re)creates the shared pool. It is called by EDStatic when setup.xml is read. If a pool
+   * already exists, it is shut down (running tasks are allowed to finish).
+   *
+   * @param tNThreads the maximum number of concurrently running tasks (1+)
+   * @param tUseVirtualThreads if true, each task is run on a new virtual thread
+   */
+  public static synchronized void initialize(int tNThreads, boolean tUseVirtualThreads) {
+    if (executor != null) executor.shutdown();
+    poolNThreads = Math.max(1, tNThreads);
+    poolUsesVirtualThreads = tUseVirtualThreads;
+    if (poolUsesVirtualThreads) {
+      virtualPermits = new Semaphore(poolNThreads, true);
+      executor =
+          Executors.newThreadPerTaskExecutor(
+              Thread.ofVirtual().name("ERDDAP SharedWorkerPool virtual ", 0).factory());
+    } else {
+      virtualPermits = null;
+      AtomicInteger threadNumber = new AtomicInteger();
+      ThreadFactory factory =
+          runnable -> {
+            Thread thread =
+                new Thread(runnable, "ERDDAP SharedWorkerPool " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          };
+      ThreadPoolExecutor tpe =
+          new ThreadPoolExecutor(
+              poolNThreads,
+              poolNThreads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              factory);
+      tpe.allowCoreThreadTimeOut(true); // idle threads go away
+      executor = tpe;
+    }
+    if (EDStatic.usePrometheusMetrics && !metricsRegistered) {
+      metricsRegistered = true;
+      GaugeWithCallback.builder()
+          .name("erddap_shared_worker_pool_queued_tasks")
+          .help("Number of tasks waiting to run in the shared worker pool.")
+          .callback(callback -> callback.call(nQueued.get()))
+          .register();
+      GaugeWithCallback.builder()
+          .name("erddap_shared_worker_pool_active_tasks")
+          .help("Number of tasks currently running in the shared worker pool.")
+          .callback(callback -> callback.call(nActive.get()))
+          .register();
+    }
+    String2.log(
+        "SharedWorkerPool initialized with nThreads="
+            + poolNThreads
+            + " useVirtualThreads="
+            + poolUsesVirtualThreads);
+  }
+
+  /**
+   * This returns true if the shared pool has been initialized and not shut down.
+   *
+   * @return true if the shared pool is available
+   */
+  public static synchronized boolean isActive() {
+    return executor != null && !executor.isShutdown();
+  }
+
+  /**
+   * This returns true if the current thread is one of the shared pool's worker threads. Work
+   * submitted from a worker thread is run inline so that nested work can't deadlock the pool.
+   *
+   * @return true if the current thread is running a shared pool task
+   */
+  public static boolean isWorkerThread() {
+    return isWorkerThread.get();
+  }
+
+  /**
+   * This submits a task to the shared pool.
+   *
+   * @param runnable the task. It must handle its own exceptions (e.g., a FutureTask).
+   * @throws IllegalStateException if the pool isn't active
+   */
+  public static void submit(Runnable runnable) {
+    ExecutorService tExecutor;
+    Semaphore tPermits;
+    synchronized (SharedWorkerPool.class) {
+      tExecutor = executor;
+      tPermits = virtualPermits;
+    }
+    if (tExecutor == null)
+      throw new IllegalStateException("The SharedWorkerPool hasn't been initialized.");
+    nSubmitted.increment();
+    nQueued.incrementAndGet();
+    try {
+      tExecutor.execute(
+          () -> {
+            boolean acquired = false;
+            try {
+              if (tPermits != null) {
+                tPermits.acquire();
+                acquired = true;
+              }
+              nQueued.decrementAndGet();
+              nActive.incrementAndGet();
+              isWorkerThread.set(Boolean.TRUE);
+              try {
+                runnable.run();
+              } finally {
+                isWorkerThread.set(Boolean.FALSE);
+                nActive.decrementAndGet();
+                nCompleted.increment();
+              }
+            } catch (InterruptedException e) {
+              // the pool is being shut down; don't leave the caller waiting forever
+              nQueued.decrementAndGet();
+              if (runnable instanceof Future<?> future) future.cancel(false);
+              Thread.currentThread().interrupt();
+            } finally {
+              if (acquired) tPermits.release();
+            }
+          });
+    } catch (RuntimeException e) { // e.g., RejectedExecutionException
+      nQueued.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /** This notes that a task was run inline (not via the pool). It is just for statistics. */
+  static void noteRanInline() {
+    nRanInline.increment();
+  }
+
+  /**
+   * This returns the current number of tasks waiting to run.
+   *
+   * @return the current queue depth
+   */
+  public static int queueDepth() {
+    return nQueued.get();
+  }
+
+  /**
+   * This returns the current number of tasks running.
+   *
+   * @return the current number of active tasks
+   */
+  public static int activeCount() {
+    return nActive.get();
+  }
+
+  /**
+   * This returns a one line status report for the status page, e.g., "SharedWorkerPool:
+   * nThreads=8 virtual=false queued=0 active=2 submitted=123 completed=121 ranInline=4".
+   *
+   * @return the status string (with a trailing newline), or "" if the pool isn't active.
+   */
+  public static String statusString() {
+    int tNThreads;
+    boolean tVirtual;
+    synchronized (SharedWorkerPool.class) {
+      if (executor == null) return "";
+      tNThreads = poolNThreads;
+      tVirtual = poolUsesVirtualThreads;
+    }
+    return "SharedWorkerPool: nThreads="
+        + tNThreads
+        + " virtual="
+        + tVirtual
+        + " queued="
+        + nQueued.get()
+        + " active="
+        + nActive.get()
+        + " submitted="
+        + nSubmitted.sum()
+        + " completed="
+        + nCompleted.sum()
+        + " ranInline="
+        + nRanInline.sum()
+        + "\n";
+  }
+
+  /**
+   * This shuts down the shared pool (running tasks are interrupted). EDStatic.destroy calls this
+   * when Tomcat is stopped.
+   */
+  public static synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+      virtualPermits = null;
+    }
+  }
+}
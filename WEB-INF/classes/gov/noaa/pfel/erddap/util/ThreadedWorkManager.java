@@ -7,9 +7,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 
 public class ThreadedWorkManager<T> {
   ExecutorService executorService = null;
+  // If using the SharedWorkerPool, this limits this request to nThreads queued or running tasks,
+  // so one big request can't starve the others.
+  Semaphore sharedQuota = null;
   List<FutureTask<T>> taskList = new ArrayList<>();
   WorkConsumer<T> processor;
 
@@ -17,7 +21,13 @@ public class ThreadedWorkManager<T> {
 
   public ThreadedWorkManager(int nThreads, WorkConsumer<T> processResult) {
     if (nThreads > 1) {
-      executorService = Executors.newFixedThreadPool(nThreads);
+      if (EDStatic.useSharedWorkerPool && SharedWorkerPool.isActive()) {
+        // If this is already running in a shared pool thread, the work is done inline
+        // (sharedQuota stays null) so nested work can't deadlock the pool.
+        if (!SharedWorkerPool.isWorkerThread()) sharedQuota = new Semaphore(nThreads);
+      } else {
+        executorService = Executors.newFixedThreadPool(nThreads);
+      }
     }
     processor = processResult;
   }
@@ -30,8 +40,27 @@ public class ThreadedWorkManager<T> {
       if (executorService != null) {
         executorService.submit(task);
       }
+    } else if (sharedQuota != null) {
+      // wait for one of this request's slots, which is released when a task finishes
+      // (not when its result is consumed), so this can't deadlock
+      sharedQuota.acquire();
+      FutureTask<T> task =
+          new FutureTask<T>(callable) {
+            @Override
+            protected void done() {
+              sharedQuota.release();
+            }
+          };
+      taskList.add(task);
+      try {
+        SharedWorkerPool.submit(task);
+      } catch (RuntimeException e) {
+        task.cancel(false); // releases the slot
+        throw e;
+      }
     } else {
       // No threading here, just do the work and process it.
+      if (EDStatic.useSharedWorkerPool) SharedWorkerPool.noteRanInline();
       processor.accept(callable.call());
     }
   }
@@ -51,11 +80,18 @@ public class ThreadedWorkManager<T> {
     if (executorService != null) {
       executorService.shutdown();
     }
+    // the shared pool is never shut down by a request
   }
 
   public void forceShutdown() {
     if (executorService != null) {
       executorService.shutdownNow();
+    } else if (sharedQuota != null) {
+      // just cancel (and interrupt) this request's tasks
+      for (int i = completed; i < taskList.size(); i++) {
+        FutureTask<T> task = taskList.get(i);
+        if (task != null) task.cancel(true);
+      }
     }
   }
 
@@ -4,11 +4,16 @@ import com.cohort.util.File2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Random;
 
 class PrimitiveArrayTests {
   /**
@@ -1748,4 +1753,229 @@ class PrimitiveArrayTests {
             + (System.currentTimeMillis() - tTime)
             + " (Java 1.8 31ms, 1.7M4700 32ms, 2012-06-29: 282 ms)");
   }
+
+  /**
+   * This tests that RowRanker (used by rank and rankIgnoreCase) ranks exactly like sorting with a
+   * RowComparator, for all of the key types and for small and big (parallel) tables.
+   */
+  @org.junit.jupiter.api.Test
+  void testRowRanker() throws Throwable {
+    Random random = new Random(17);
+    String strings[] = {"", "a", "A", "abe", "ABE", "b", "Zed"};
+    for (int nRows : new int[] {0, 1, 5, 100, RowRanker.PARALLEL_MIN_ROWS + 11}) {
+      DoubleArray da = new DoubleArray();
+      FloatArray fa = new FloatArray();
+      LongArray la = new LongArray();
+      IntArray ia = new IntArray();
+      UIntArray uia = new UIntArray();
+      ShortArray sa = new ShortArray();
+      UByteArray uba = new UByteArray();
+      StringArray stra = new StringArray();
+      CharArray ca = new CharArray();
+      ia.setMaxIsMV(true);
+      for (int row = 0; row < nRows; row++) {
+        int r = random.nextInt(10); // few distinct values, so lots of ties
+        da.add(r == 9 ? Double.NaN : r - 4.5);
+        fa.add(r == 8 ? Float.NaN : -r);
+        la.add(r * 1000000000000L - 3);
+        ia.add(r == 7 ? Integer.MAX_VALUE : r - 5);
+        uia.add(r * 400000000L);
+        sa.add((short) (r * 10 - 40));
+        uba.add((short) (r * 25));
+        stra.add(strings[random.nextInt(strings.length)]);
+        ca.add((char) ('a' + random.nextInt(3)));
+      }
+      ArrayList<PrimitiveArray> table = new ArrayList<>();
+      table.add(da);
+      table.add(fa);
+      table.add(la);
+      table.add(ia);
+      table.add(uia);
+      table.add(sa);
+      table.add(uba);
+      table.add(stra);
+      table.add(ca);
+
+      int keysList[][] = {{0}, {1}, {7, 2}, {3, 4, 0}, {5, 6, 8}, {8, 7, 1, 0}};
+      for (int keys[] : keysList) {
+        boolean ascending[] = new boolean[keys.length];
+        for (int k = 0; k < keys.length; k++) ascending[k] = random.nextBoolean();
+        String msg = "nRows=" + nRows + " keys=" + Arrays.toString(keys);
+        Test.ensureEqual(
+            PrimitiveArray.rank(table, keys, ascending),
+            comparatorRank(new RowComparator(table, keys, ascending), nRows),
+            msg);
+        Test.ensureEqual(
+            PrimitiveArray.rankIgnoreCase(table, keys, ascending),
+            comparatorRank(new RowComparatorIgnoreCase(table, keys, ascending), nRows),
+            msg + " ignoreCase");
+      }
+    }
+
+    // removeDuplicates
+    IntArray ia = new IntArray(new int[] {1, 1, 1, 2, 2, 3});
+    StringArray sa = new StringArray(new String[] {"a", "a", "b", "b", "b", "c"});
+    ArrayList<PrimitiveArray> table = new ArrayList<>();
+    table.add(ia);
+    table.add(sa);
+    Test.ensureEqual(PrimitiveArray.removeDuplicates(table), 2, "");
+    Test.ensureEqual(ia.toString(), "1, 1, 2, 3", "");
+    Test.ensureEqual(sa.toString(), "a, b, b, c", "");
+  }
+
+  /** This ranks the rows the old way, by sorting an Integer[] with a RowComparator. */
+  private static int[] comparatorRank(RowComparator comparator, int nRows) {
+    Integer rows[] = new Integer[nRows];
+    for (int i = 0; i < nRows; i++) rows[i] = i;
+    Arrays.sort(rows, comparator);
+    int result[] = new int[nRows];
+    for (int i = 0; i < nRows; i++) result[i] = rows[i];
+    return result;
+  }
+
+  /**
+   * This tests that ConstraintTester (used by applyConstraint) gets the same results as testing each
+   * row with testValueOpValue, including for NaNs, missing values (maxIsMV), and value2 at the edges.
+   */
+  @org.junit.jupiter.api.Test
+  void testConstraintTester() throws Throwable {
+    Random random = new Random(7);
+    String strings[] = {"", "a", "A", "abe", "ABE", "b", "Zed"};
+    int nRows = 1000;
+    ArrayList<PrimitiveArray> pas = new ArrayList<>();
+    for (boolean maxIsMV : new boolean[] {false, true}) {
+      DoubleArray da = new DoubleArray();
+      FloatArray fa = new FloatArray();
+      LongArray la = new LongArray();
+      IntArray ia = new IntArray();
+      ShortArray sa = new ShortArray();
+      UShortArray usa = new UShortArray();
+      ByteArray ba = new ByteArray();
+      UByteArray uba = new UByteArray();
+      StringArray stra = new StringArray();
+      for (int row = 0; row < nRows; row++) {
+        int r = random.nextInt(10);
+        boolean mv = r == 9;
+        da.add(mv ? Double.NaN : r - 4.5 + (r == 8 ? 1e-12 : 0));
+        fa.add(mv ? Float.NaN : r - 4.5f);
+        la.add(mv ? Long.MAX_VALUE : r - 5);
+        ia.add(mv ? Integer.MAX_VALUE : r - 5);
+        sa.add(mv ? Short.MAX_VALUE : (short) (r - 5));
+        usa.add(mv ? UShortArray.MAX_VALUE : r);
+        ba.add(mv ? Byte.MAX_VALUE : (byte) (r - 5));
+        uba.add(mv ? UByteArray.MAX_VALUE : (short) r);
+        stra.add(strings[random.nextInt(strings.length)]);
+      }
+      for (PrimitiveArray pa : new PrimitiveArray[] {da, fa, la, ia, sa, usa, ba, uba, stra}) {
+        pa.setMaxIsMV(maxIsMV);
+        pas.add(pa);
+      }
+    }
+
+    String ops[] = {"=", "!=", "<=", ">=", "<", ">"};
+    String values[] = {"-1", "0", "3", "-0.5", "", "NaN", "127", "255", "32767", "a", "ABE"};
+    int nTested = 0;
+    for (PrimitiveArray pa : pas) {
+      for (boolean morePrecise : new boolean[] {false, true}) {
+        for (String op : ops) {
+          for (String value2 : values) {
+            ConstraintTester tester = ConstraintTester.compile(pa, morePrecise, op, value2);
+            if (tester == null) continue;
+            BitSet keep = new BitSet();
+            for (int row = 0; row < nRows; row++) if (random.nextInt(4) > 0) keep.set(row);
+            BitSet expected = new BitSet();
+            for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1))
+              if (oneAtATime(pa, morePrecise, op, value2, row)) expected.set(row);
+            String msg =
+                pa.elementTypeString() + " maxIsMV=" + pa.getMaxIsMV() + " " + op + value2;
+            Test.ensureEqual(tester.apply(keep), expected.cardinality(), msg);
+            Test.ensureEqual(keep, expected, msg);
+            nTested++;
+          }
+        }
+      }
+    }
+    Test.ensureTrue(nTested > 500, "nTested=" + nTested);
+
+    // not specialized: regex, and integer columns with non-integer value2
+    Test.ensureTrue(ConstraintTester.compile(pas.get(8), false, "=~", "a.*") == null, "");
+    Test.ensureTrue(ConstraintTester.compile(pas.get(3), false, "<", "0.5") == null, "");
+
+    // applyConstraint uses it
+    IntArray ia = new IntArray(new int[] {1, 2, Integer.MAX_VALUE, 4});
+    Test.ensureEqual(ia.applyConstraintAndKeep(false, ">=", "2"), 2, "");
+    Test.ensureEqual(ia.toString(), "2, 4", "");
+  }
+
+  /** This tests one row the way applyConstraint does without a ConstraintTester. */
+  private static boolean oneAtATime(
+      PrimitiveArray pa, boolean morePrecise, String op, String value2, int row) {
+    switch (pa.elementType()) {
+      case STRING:
+        return PrimitiveArray.testValueOpValue(pa.getString(row), op, value2);
+      case LONG:
+        return PrimitiveArray.testValueOpValue(pa.getLong(row), op, String2.parseLong(value2));
+      case FLOAT:
+        return PrimitiveArray.testValueOpValue(pa.getFloat(row), op, String2.parseFloat(value2));
+      case DOUBLE:
+        return morePrecise
+            ? PrimitiveArray.testValueOpValueExtra(
+                pa.getDouble(row), op, String2.parseDouble(value2))
+            : PrimitiveArray.testValueOpValue(pa.getDouble(row), op, String2.parseDouble(value2));
+      default:
+        return PrimitiveArray.testValueOpValue(pa.getInt(row), op, String2.parseInt(value2));
+    }
+  }
+
+  /**
+   * This tests that the bulk writeDos, readDis, externalizeForDODS, and internalizeFromDODS methods
+   * read and write exactly the same bytes as writing/reading 1 element at a time.
+   */
+  @org.junit.jupiter.api.Test
+  void testBulkDosDis() throws Throwable {
+    String2.log("*** PrimitiveArray.testBulkDosDis");
+    Random random = new Random(1);
+    int n = 40000; // > the number of elements in a bulk buffer
+    PAType paTypes[] = {
+      PAType.SHORT, PAType.USHORT, PAType.INT, PAType.UINT, PAType.LONG, PAType.ULONG,
+      PAType.FLOAT, PAType.DOUBLE
+    };
+    for (PAType paType : paTypes) {
+      PrimitiveArray pa = PrimitiveArray.factory(paType, n, false);
+      for (int i = 0; i < n; i++) pa.addLong(random.nextInt(100000) - 50000);
+      pa.setString(n / 2, ""); // a missing value
+
+      // writeDos
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(expected);
+      for (int i = 0; i < n; i++) pa.writeDos(dos, i);
+      ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+      dos = new DataOutputStream(bulk);
+      pa.writeDos(dos);
+      Test.ensureEqual(dos.size(), expected.size(), paType.toString());
+      Test.ensureTrue(Arrays.equals(bulk.toByteArray(), expected.toByteArray()), paType.toString());
+
+      // readDis (appends)
+      PrimitiveArray pa2 = PrimitiveArray.factory(paType, 1, false);
+      pa2.addInt(7);
+      pa2.readDis(new DataInputStream(new ByteArrayInputStream(bulk.toByteArray())), n);
+      Test.ensureEqual(pa2.size(), n + 1, paType.toString());
+      Test.ensureEqual(pa2.getInt(0), 7, paType.toString());
+      pa2.removeRange(0, 1);
+      Test.ensureEqual(pa2.testEquals(pa), "", paType.toString());
+
+      // externalizeForDODS and internalizeFromDODS
+      expected = new ByteArrayOutputStream();
+      dos = new DataOutputStream(expected);
+      dos.writeInt(n);
+      dos.writeInt(n);
+      for (int i = 0; i < n; i++) pa.externalizeForDODS(dos, i);
+      bulk = new ByteArrayOutputStream();
+      pa.externalizeForDODS(new DataOutputStream(bulk));
+      Test.ensureTrue(Arrays.equals(bulk.toByteArray(), expected.toByteArray()), paType.toString());
+      pa2 = PrimitiveArray.factory(paType, n, false);
+      pa2.internalizeFromDODS(new DataInputStream(new ByteArrayInputStream(bulk.toByteArray())));
+      Test.ensureEqual(pa2.testEquals(pa), "", paType.toString());
+    }
+  }
 }
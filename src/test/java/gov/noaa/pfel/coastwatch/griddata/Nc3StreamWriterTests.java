@@ -0,0 +1,122 @@
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.UByteArray;
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.jupiter.api.io.TempDir;
+import ucar.ma2.Array;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.Variable;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+class Nc3StreamWriterTests {
+
+  @TempDir private static Path TEMP_DIR;
+
+  /**
+   * This tests that a file written by Nc3StreamWriter matches the same file written by
+   * NetcdfFormatWriter.
+   */
+  @org.junit.jupiter.api.Test
+  void testMatchesNetcdfFormatWriter() throws Exception {
+    String streamDir = TEMP_DIR.toAbsolutePath().toString() + "/stream/";
+    String nfwDir = TEMP_DIR.toAbsolutePath().toString() + "/nfw/";
+    File2.makeDirectory(streamDir);
+    File2.makeDirectory(nfwDir);
+
+    Attributes gAtts = new Attributes();
+    gAtts.set("title", "A test été");
+    gAtts.set("history", "line 1\nline 2");
+    gAtts.set("ints", new IntArray(new int[] {1, 2, 3}));
+    Attributes timeAtts = new Attributes();
+    timeAtts.set("units", "seconds since 1970-01-01T00:00:00Z");
+    timeAtts.set("actual_range", new LongArray(new long[] {0, 86400}));
+    Attributes latAtts = new Attributes();
+    latAtts.set("units", "degrees_north");
+    Attributes sstAtts = new Attributes();
+    sstAtts.set("_FillValue", new ShortArray(new short[] {-999}));
+    sstAtts.set("scale_factor", new FloatArray(new float[] {0.01f}));
+    Attributes flagAtts = new Attributes();
+    flagAtts.set("_FillValue", new UByteArray(new short[] {255}));
+
+    PrimitiveArray time = new LongArray(new long[] {0, 86400});
+    PrimitiveArray lat = new FloatArray(new float[] {10.5f, 11, 11.5f});
+    PrimitiveArray sst = new ShortArray(new short[] {1, 2, 3, 4, -999, 6});
+    PrimitiveArray flag = new UByteArray(new short[] {0, 1, 200, 255, 7, 8});
+
+    // write it with Nc3StreamWriter (written in 2 chunks for sst)
+    Nc3StreamWriter writer = new Nc3StreamWriter();
+    int dims[] = {writer.addDimension("time", 2), writer.addDimension("latitude", 3)};
+    writer.setGlobalAttributes(gAtts);
+    writer.addVariable("time", PAType.LONG, new int[] {dims[0]}, timeAtts);
+    writer.addVariable("latitude", PAType.FLOAT, new int[] {dims[1]}, latAtts);
+    writer.addVariable("sst", PAType.SHORT, dims, sstAtts);
+    writer.addVariable("flag", PAType.UBYTE, dims, flagAtts);
+    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    try (FileOutputStream fos = new FileOutputStream(streamDir + "test.nc")) {
+      writer.writeHeader(fos, copy);
+      writer.write(time);
+      writer.write(lat);
+      writer.write(sst.subset(0, 1, 3));
+      writer.write(sst.subset(4, 1, 5));
+      writer.write(flag);
+      writer.finish();
+    }
+    Test.ensureEqual(File2.length(streamDir + "test.nc"), writer.nBytes(), "");
+    Test.ensureEqual(copy.size(), writer.nBytes(), "");
+
+    // write it with NetcdfFormatWriter
+    NetcdfFormatWriter.Builder nc = NetcdfFormatWriter.createNewNetcdf3(nfwDir + "test.nc");
+    Group.Builder rootGroup = nc.getRootGroup();
+    nc.setFill(false);
+    Dimension timeDim = NcHelper.addDimension(rootGroup, "time", 2);
+    Dimension latDim = NcHelper.addDimension(rootGroup, "latitude", 3);
+    ArrayList<Dimension> dimList = new ArrayList<>(Arrays.asList(timeDim, latDim));
+    Variable.Builder timeVar =
+        NcHelper.addVariable(rootGroup, "time", NcHelper.getNc3DataType(PAType.LONG), timeDim);
+    Variable.Builder latVar =
+        NcHelper.addVariable(rootGroup, "latitude", NcHelper.getNc3DataType(PAType.FLOAT), latDim);
+    Variable.Builder sstVar =
+        NcHelper.addVariable(rootGroup, "sst", NcHelper.getNc3DataType(PAType.SHORT), dimList);
+    Variable.Builder flagVar =
+        NcHelper.addVariable(rootGroup, "flag", NcHelper.getNc3DataType(PAType.UBYTE), dimList);
+    NcHelper.setAttributes(true, rootGroup, gAtts);
+    NcHelper.setAttributes(true, timeVar, timeAtts, false);
+    NcHelper.setAttributes(true, latVar, latAtts, false);
+    NcHelper.setAttributes(true, sstVar, sstAtts, false);
+    NcHelper.setAttributes(true, flagVar, flagAtts, true);
+    NetcdfFormatWriter ncWriter = nc.build();
+    try {
+      ncWriter.write("time", NcHelper.get1DArray(new DoubleArray(time)));
+      ncWriter.write("latitude", NcHelper.get1DArray(lat));
+      ncWriter.write(
+          "sst",
+          Array.factory(
+              NcHelper.getNc3DataType(PAType.SHORT), new int[] {2, 3}, sst.toObjectArray()));
+      ncWriter.write(
+          "flag",
+          Array.factory(
+              NcHelper.getNc3DataType(PAType.UBYTE), new int[] {2, 3}, flag.toObjectArray()));
+    } finally {
+      ncWriter.close();
+    }
+
+    String results = NcHelper.ncdump(streamDir + "test.nc", "");
+    Test.ensureEqual(results, NcHelper.ncdump(nfwDir + "test.nc", ""), "results=\n" + results);
+    Test.ensureTrue(results.indexOf("flag =") > 0, "results=\n" + results);
+  }
+}
@@ -0,0 +1,38 @@
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.util.Math2;
+import com.cohort.util.Test;
+import java.nio.file.Path;
+import ucar.nc2.NetcdfFile;
+
+class NcFileCacheTests {
+
+  /** This tests that idle handles are reused, and are closed by the sweeper without traffic. */
+  @org.junit.jupiter.api.Test
+  void testIdleSweep() throws Throwable {
+    String fileName =
+        Path.of(NcFileCacheTests.class.getResource("/data/unlimited.nc").toURI()).toString();
+    NcFileCache.setLimits(5, 200);
+    try {
+      NetcdfFile ncFile = NcFileCache.open(fileName);
+      NcFileCache.release(ncFile);
+      Test.ensureTrue(NcFileCache.open(fileName) == ncFile, "the idle handle is reused");
+      NcFileCache.release(ncFile);
+      Test.ensureTrue(
+          NcFileCache.statusString().indexOf(" idle=1 ") > 0, NcFileCache.statusString());
+
+      // no more requests, but the sweeper closes the idle handle
+      for (int i = 0; i < 50 && NcFileCache.statusString().indexOf(" idle=0 ") < 0; i++)
+        Math2.sleep(100);
+      String status = NcFileCache.statusString();
+      Test.ensureTrue(status.indexOf(" idle=0 ") > 0, status);
+      Test.ensureTrue(status.indexOf(" evicted=0\n") < 0, status);
+      Test.ensureEqual(NcFileCache.closeIdle(), 0, "");
+      NetcdfFile ncFile2 = NcFileCache.open(fileName);
+      Test.ensureTrue(ncFile2 != ncFile, "the closed handle isn't reused");
+      NcFileCache.release(ncFile2);
+    } finally {
+      NcFileCache.setLimits(0, 60000);
+    }
+  }
+}
@@ -19,6 +19,7 @@ import com.cohort.util.Test;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import org.junit.jupiter.api.io.TempDir;
 import tags.TagMissingFile;
 import ucar.ma2.Array;
@@ -460,6 +461,61 @@ class NcHelperTests {
     Test.ensureEqual(results, expected, "results=" + results);
   }
 
+  /**
+   * Test getPrimitiveArray(variable, keep).
+   *
+   * @throws Exception if trouble
+   */
+  @org.junit.jupiter.api.Test
+  void testGetPrimitiveArrayKeep() throws Exception {
+    String fullName = TEMP_DIR.toAbsolutePath().toString() + "/keepRows.nc";
+    IntArray ia = new IntArray();
+    StringArray sa = new StringArray();
+    for (int i = 0; i < 1000; i++) {
+      ia.add(i);
+      sa.add("s" + i);
+    }
+    NcHelper.writePAsInNc3(
+        fullName, new StringArray(new String[] {"ia", "sa"}), new PrimitiveArray[] {ia, sa});
+    NetcdfFile ncFile = NcHelper.openFile(fullName);
+    try {
+      Variable iVar = ncFile.findVariable("ia");
+      Variable sVar = ncFile.findVariable("sa");
+
+      // a few ranges (read separately)
+      BitSet keep = new BitSet();
+      keep.set(0, 3);
+      keep.set(500, 502);
+      keep.set(998, 1000);
+      Test.ensureEqual(
+          NcHelper.getPrimitiveArray(iVar, keep).toString(),
+          "0, 1, 2, 500, 501, 998, 999",
+          "");
+      Test.ensureEqual(
+          NcHelper.getPrimitiveArray(sVar, keep).toString(),
+          "s0, s1, s2, s500, s501, s998, s999",
+          "");
+
+      // many ranges (read all, then justKeep)
+      keep.clear();
+      for (int i = 0; i < 1000; i += 3) keep.set(i);
+      PrimitiveArray pa = NcHelper.getPrimitiveArray(iVar, keep);
+      Test.ensureEqual(pa.size(), 334, "");
+      Test.ensureEqual(pa.getInt(333), 999, "");
+      pa = NcHelper.getPrimitiveArray(sVar, keep);
+      Test.ensureEqual(pa.size(), 334, "");
+      Test.ensureEqual(pa.getString(1), "s3", "");
+
+      // no rows
+      keep.clear();
+      pa = NcHelper.getPrimitiveArray(iVar, keep);
+      Test.ensureTrue(pa instanceof IntArray, "");
+      Test.ensureEqual(pa.size(), 0, "");
+    } finally {
+      ncFile.close();
+    }
+  }
+
   /** This is the test that Bob sent to Sean. It only uses netcdf-java methods, not NcHelper. */
   @org.junit.jupiter.api.Test
   void testReadStructure() throws Throwable {
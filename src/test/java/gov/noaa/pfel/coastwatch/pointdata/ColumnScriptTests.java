@@ -0,0 +1,90 @@
+package gov.noaa.pfel.coastwatch.pointdata;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.util.Script2;
+import com.cohort.util.Test;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+
+class ColumnScriptTests {
+
+  /** This tests that ColumnScript gets exactly the same results as JEXL. */
+  @org.junit.jupiter.api.Test
+  void testSameAsJexl() throws Exception {
+    Table table = new Table();
+    table.addColumn("d", new DoubleArray(new double[] {0, 1.1, -2.5, Double.NaN, 1e300, 360.5}));
+    table.addColumn("f", new FloatArray(new float[] {0, 1.1f, -2.5f, Float.NaN, 3e38f, -190.25f}));
+    IntArray ia = new IntArray(new int[] {0, 10, -20, Integer.MAX_VALUE, 40, 50});
+    ia.setMaxIsMV(true);
+    table.addColumn("i", ia);
+    int nRows = table.nRows();
+
+    String scripts[] = {
+      "row.columnDouble(\"d\")",
+      "row.columnFloat(\"f\")*9/5+32",
+      "(row.columnDouble(\"d\") - 32) * 5 / 9;",
+      "-row.columnDouble(\"i\") + 25.0 - -3",
+      "row.columnDouble(\"d\") / row.columnDouble(\"i\")",
+      "1 / row.columnFloat('f')",
+      "row.columnFloat(\"f\") + row.columnDouble(\"d\")",
+      "-row.columnFloat(\"f\") * 0.1",
+      "row.columnDouble(\"notAColumn\") + 1",
+      "Math.sqrt(Math.abs(row.columnDouble(\"d\"))) + Math.pow(row.columnFloat(\"f\"), 2)",
+      "Math.max(row.columnDouble(\"d\"), row.columnDouble(\"i\")) - Math.min(NaN, 0.5)",
+      "Math2.anglePM180(row.columnFloat(\"f\"))",
+      "Math.atan2(row.columnDouble(\"d\"), 1) + Math.toDegrees(row.columnDouble(\"i\"))"
+    };
+    for (String script : scripts) {
+      ColumnScript columnScript = ColumnScript.compile(script);
+      Test.ensureTrue(columnScript != null, "script=" + script);
+      Test.ensureTrue(ColumnScript.compile(script) == columnScript, "cached? script=" + script);
+      double values[] = columnScript.evaluate(table);
+      Test.ensureEqual(values.length, nRows, "");
+
+      JexlScript jscript = Script2.jexlScript(script);
+      MapContext jcontext = Script2.jexlMapContext();
+      ScriptRow scriptRow = new ScriptRow("", table);
+      jcontext.set("row", scriptRow);
+      DoubleArray expected = new DoubleArray();
+      for (int row = 0; row < nRows; row++) {
+        scriptRow.setRow(row);
+        Object o;
+        try {
+          o = jscript.execute(jcontext);
+        } catch (Exception e) {
+          o = null;
+        }
+        expected.addObject(o);
+      }
+      // ensureEqual(double, double) only compares 9 significant digits
+      for (int row = 0; row < nRows; row++)
+        Test.ensureEqual(
+            Double.doubleToLongBits(values[row]),
+            Double.doubleToLongBits(expected.get(row)),
+            "script=" + script + " row=" + row + " value=" + values[row] + " expected=" + expected);
+    }
+  }
+
+  /** This tests that scripts which JEXL would evaluate differently aren't compiled. */
+  @org.junit.jupiter.api.Test
+  void testUnsupported() throws Exception {
+    String scripts[] = {
+      "row.columnInt(\"i\") + 1.5",
+      "7/2*row.columnDouble(\"d\")",
+      "row.columnDouble(\"d\") * 1.5f",
+      "row.columnFloat(\"f\")",
+      "Math.abs(row.columnFloat(\"f\")) + 1.0",
+      "Math.round(row.columnDouble(\"d\")) + 1.0",
+      "row.columnDouble(\"d\") > 1 ? 1.0 : 2.0",
+      "var x = row.columnDouble(\"d\"); return x * 2;",
+      "row.columnDouble(\"a\\\"b\") * 2",
+      "row.columnDouble(\"d\") * 2 +",
+      "row.columnDouble(\"d\") * 1.5e3",
+      "10"
+    };
+    for (String script : scripts)
+      Test.ensureTrue(ColumnScript.compile(script) == null, "script=" + script);
+  }
+}
@@ -32,6 +32,7 @@ import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import org.junit.jupiter.api.BeforeAll;
@@ -3821,6 +3822,87 @@ public class TableTests {
     Test.ensureEqual(results, expected, "results=\n" + results);
   }
 
+  /**
+   * Test readASCII with loadColumnTypes.
+   *
+   * @throws Exception if trouble
+   */
+  @org.junit.jupiter.api.Test
+  void testReadAsciiTyped() throws Exception {
+    String results, expected;
+    StringArray sa = new StringArray();
+    String fileName = TableTests.class.getResource("/data/csvAscii.txt").getPath();
+
+    // read typed subset, testing a column which isn't loaded
+    Table table = new Table();
+    table.allowRaggedRightInReadASCII = true;
+    table.readASCII(
+        fileName,
+        File2.ISO_8859_1,
+        "\\*\\*\\* END OF HEADER.*",
+        "#.*",
+        0,
+        1,
+        "",
+        new String[] {"aByte", "notInFile"},
+        new double[] {12, 0},
+        new double[] {15, 0},
+        new String[] {"aString", "aBoolean", "anInt", "aDouble", "aChar", "notInFile"},
+        new String[] {"String", "boolean", "int", "double", "char", "float"});
+    results = table.dataToString();
+    expected =
+        "aString,aBoolean,anInt,aDouble,aChar,notInFile\n"
+            + "h,1,120000,2.0E200,H,\n"
+            + "i,1,12000,3.0E200,I,\n"
+            + "j,0,1200,4.0E200,J,\n"
+            + "k,0,120,5.0E200,K,\n";
+    Test.ensureEqual(results, expected, "results=\n" + results);
+    for (int col = 0; col < table.nColumns(); col++)
+      sa.add(table.getColumn(col).elementTypeString());
+    results = sa.toString();
+    expected = "String, byte, int, double, char, float";
+    Test.ensureEqual(results, expected, "results=\n" + results);
+
+    // more rows than READ_ASCII_CHUNK_SIZE
+    fileName = TEMP_DIR.toAbsolutePath().toString() + "/testReadAsciiTyped.tsv";
+    int nRows = Table.READ_ASCII_CHUNK_SIZE * 2 + 5;
+    StringBuilder sb = new StringBuilder("i\ts\td\n");
+    for (int row = 0; row < nRows; row++)
+      sb.append(row + "\t s" + row + " \t" + (row % 7 == 0 ? "" : "" + row / 2.0) + "\n");
+    File2.writeToFile88591(fileName, sb.toString());
+    table = new Table();
+    table.readASCII(
+        fileName,
+        File2.ISO_8859_1,
+        "",
+        "",
+        0,
+        1,
+        "\t",
+        null,
+        null,
+        null,
+        new String[] {"d", "i"},
+        new String[] {"double", "int"});
+    Test.ensureEqual(table.nRows(), nRows, "");
+    Test.ensureEqual(table.getColumnName(0), "d", "");
+    Test.ensureEqual(table.getColumn(1).elementTypeString(), "int", "");
+    for (int row = 0; row < nRows; row += 997) {
+      Test.ensureEqual(table.getIntData(1, row), row, "row=" + row);
+      Test.ensureEqual(table.getDoubleData(0, row), row % 7 == 0 ? Double.NaN : row / 2.0, "");
+    }
+
+    // splitNeededItems
+    ArrayList<String> items = new ArrayList();
+    Table.splitNeededItems(" a , b,\tc ,", ',', new boolean[] {true, false, true, true}, items);
+    Test.ensureEqual(String2.toJson(items.toString()), "\"[a, null, c, ]\"", "");
+    Table.splitNeededItems(" a , b,\tc ,", ',', new boolean[] {false, true}, items);
+    Test.ensureEqual(String2.toJson(items.toString()), "\"[null, b, null, null]\"", "");
+    Table.splitNeededItems("", ',', null, items);
+    Test.ensureEqual(items.size(), 1, "");
+    Test.ensureEqual(items.get(0), "", "");
+  }
+
   /**
    * Test readASCII with ssv file.
    *
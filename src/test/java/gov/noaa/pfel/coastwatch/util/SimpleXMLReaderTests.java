@@ -245,4 +245,54 @@ class SimpleXMLReaderTests {
 
     String2.log("SimpleXMLReader.tests's tests finished successfully.\n");
   }
+
+  /** This tests startCapture and stopCapture. */
+  @org.junit.jupiter.api.Test
+  void testCapture() throws Exception {
+    String dataset =
+        "<dataset type=\"EDDTableFromNcFiles\" datasetID=\"a&amp;b\" active=\"true\">\n"
+            + "    <!-- a comment -->\n"
+            + "    <reloadEveryNMinutes>10</reloadEveryNMinutes>\n"
+            + "    <sourceUrl><![CDATA[https://x.y/z?a<b]]></sourceUrl>\n"
+            + "    <empty/>\n"
+            + "</dataset>";
+    SimpleXMLReader xmlReader =
+        new SimpleXMLReader(
+            new ByteArrayInputStream(
+                String2.stringToUtf8Bytes(
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<erddapDatasets>\n"
+                        + dataset
+                        + "\n<dataset datasetID=\"two\"/>\n</erddapDatasets>\n")),
+            "erddapDatasets");
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.allTags(), "<erddapDatasets><dataset>", "");
+    xmlReader.startCapture();
+    while (!xmlReader.allTags().equals("<erddapDatasets></dataset>")) xmlReader.nextTag();
+    String results = xmlReader.stopCapture();
+    Test.ensureEqual(results, dataset, "");
+    Test.ensureEqual(xmlReader.stopCapture(), null, "");
+
+    // the captured xml can be parsed by another reader
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.attributeValue("datasetID"), "two", "");
+    xmlReader.close();
+    xmlReader =
+        new SimpleXMLReader(
+            new ByteArrayInputStream(
+                String2.stringToUtf8Bytes(
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<erddapDatasets>"
+                        + results
+                        + "</erddapDatasets>\n")),
+            "erddapDatasets");
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.attributeValue("datasetID"), "a&b", "");
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.allTags(), "<erddapDatasets><dataset><reloadEveryNMinutes>", "");
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.content(), "10", "");
+    xmlReader.nextTag();
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.content(), "https://x.y/z?a<b", "");
+    xmlReader.close();
+  }
 }
@@ -0,0 +1,145 @@
+package gov.noaa.pfel.erddap;
+
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.erddap.dataset.EDD;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class ParallelDatasetLoaderTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests which datasets in datasets.xml are built in parallel. */
+  @org.junit.jupiter.api.Test
+  void testCandidates() throws Throwable {
+    Test.ensureTrue(
+        ParallelDatasetLoader.isLocalErddapUrl("http://localhost:8080/erddap/griddap/x"), "");
+    Test.ensureTrue(ParallelDatasetLoader.isLocalErddapUrl(" https://127.0.0.1/erddap/x "), "");
+    Test.ensureTrue(ParallelDatasetLoader.isLocalErddapUrl(EDStatic.erddapUrl + "/griddap/x"), "");
+    Test.ensureTrue(
+        !ParallelDatasetLoader.isLocalErddapUrl("https://example.com/erddap/griddap/x"), "");
+    Test.ensureTrue(
+        !ParallelDatasetLoader.isLocalErddapUrl("https://localhostx.com/erddap/griddap/x"), "");
+    Test.ensureTrue(!ParallelDatasetLoader.isLocalErddapUrl(null), "");
+
+    String remote = "<sourceUrl>https://nonexistent.invalid/erddap/griddap/x</sourceUrl>";
+    String datasetsXml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<erddapDatasets>\n"
+            + "<dataset type=\"EDDGridFromErddap\" datasetID=\"pdlRemote\">"
+            + remote
+            + "</dataset>\n"
+            + "<dataset type=\"EDDGridFromErddap\" datasetID=\"pdlLocalGrid\">"
+            + "<sourceUrl>http://localhost:8080/erddap/griddap/pdlRemote</sourceUrl></dataset>\n"
+            + "<dataset type=\"EDDTableFromErddap\" datasetID=\"pdlLocalTable\"><sourceUrl>"
+            + EDStatic.erddapUrl
+            + "/tabledap/x</sourceUrl></dataset>\n"
+            + "<dataset type=\"EDDGridSideBySide\" datasetID=\"pdlParent\">"
+            + "<dataset type=\"EDDGridFromErddap\" datasetID=\"pdlChild\">"
+            + remote
+            + "</dataset></dataset>\n"
+            + "<dataset type=\"EDDGridFromErddap\" datasetID=\"pdlInactive\" active=\"false\">"
+            + remote
+            + "</dataset>\n"
+            + "<dataset type=\"EDDGridFromErddap\" datasetID=\"pdlRemote\">"
+            + remote
+            + "</dataset>\n"
+            + "</erddapDatasets>\n";
+    // the datasets aren't really built (no network access, no files)
+    ConcurrentHashMap<String, String> built = new ConcurrentHashMap<>();
+    ParallelDatasetLoader loader =
+        new ParallelDatasetLoader(
+            new HashMap<String, EDD>(),
+            new HashMap<String, EDD>(),
+            String2.stringToUtf8Bytes(datasetsXml),
+            ".*",
+            2,
+            candidate -> {
+              built.put(candidate.type, candidate.xml);
+              return null;
+            });
+    try {
+      Test.ensureTrue(loader.isCandidate("pdlRemote"), "");
+      for (String id :
+          new String[] {"pdlLocalGrid", "pdlLocalTable", "pdlParent", "pdlChild", "pdlInactive"})
+        Test.ensureTrue(!loader.isCandidate(id), id);
+
+      ParallelDatasetLoader.Candidate candidate = loader.claim("pdlRemote");
+      Test.ensureTrue(loader.getDataset(candidate) == null, "");
+      Test.ensureEqual(built.size(), 1, "");
+      Test.ensureTrue(built.get("EDDGridFromErddap").indexOf("pdlRemote") > 0, "");
+      Test.ensureTrue(!loader.isCandidate("pdlRemote"), "it was claimed");
+      Test.ensureTrue(loader.claim("pdlLocalGrid") == null, "");
+    } finally {
+      loader.finish();
+    }
+  }
+
+  /** This tests discarding a candidate before and while it is being built. */
+  @org.junit.jupiter.api.Test
+  void testDiscard() throws Throwable {
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    try {
+      // discarded before it is built: it is never built
+      AtomicBoolean made = new AtomicBoolean();
+      ParallelDatasetLoader.Candidate candidate =
+          new ParallelDatasetLoader.Candidate("EDDGridFromErddap", "");
+      candidate.discard();
+      try {
+        candidate.build(
+            () -> {
+              made.set(true);
+              return null;
+            });
+        throw new RuntimeException("shouldn't get here");
+      } catch (CancellationException e) {
+      }
+      Test.ensureTrue(!made.get(), "");
+      Test.ensureEqual(candidate.state.get(), ParallelDatasetLoader.Candidate.DISCARDED, "");
+
+      // discarded while it is being built: the build is interrupted and discard waits for it
+      CountDownLatch started = new CountDownLatch(1);
+      AtomicBoolean interrupted = new AtomicBoolean();
+      ParallelDatasetLoader.Candidate candidate2 =
+          new ParallelDatasetLoader.Candidate("EDDGridFromErddap", "");
+      Future<EDD> future =
+          executor.submit(
+              () ->
+                  candidate2.build(
+                      () -> {
+                        started.countDown();
+                        try {
+                          Thread.sleep(60000);
+                        } catch (InterruptedException e) {
+                          interrupted.set(true);
+                          Thread.sleep(500); // e.g., cleaning up
+                        }
+                        return null;
+                      }));
+      candidate2.future = future;
+      Test.ensureTrue(started.await(10, TimeUnit.SECONDS), "");
+      long time = System.currentTimeMillis();
+      candidate2.discard();
+      Test.ensureTrue(interrupted.get(), "");
+      Test.ensureEqual(candidate2.state.get(), ParallelDatasetLoader.Candidate.FINISHED, "");
+      Test.ensureTrue(System.currentTimeMillis() - time >= 400, "discard waits for the build");
+      Test.ensureTrue(future.isCancelled(), "");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package gov.noaa.pfel.erddap;
+
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+
+class SearchIndexTests {
+
+  private static byte[][] words(String... words) {
+    byte bytes[][] = new byte[words.length][];
+    for (int w = 0; w < words.length; w++) bytes[w] = String2.stringToUtf8Bytes(words[w]);
+    return bytes;
+  }
+
+  /** This tests finding the candidate datasets for a search. */
+  @org.junit.jupiter.api.Test
+  void testCandidates() throws Exception {
+    SearchIndex index = new SearchIndex();
+    byte sst[] = String2.stringToUtf8Bytes("all\ntitle=sea surface temperature\n");
+    byte wind[] = String2.stringToUtf8Bytes("all\ntitle=wind speed, café\n");
+    index.add("sst", sst);
+    index.add("wind", wind);
+    Test.ensureEqual(index.size(), 2, "");
+
+    // substrings of words and phrases
+    SearchIndex.Candidates candidates =
+        index.candidates(new boolean[] {false, false}, words("surf", "sea sur"));
+    Test.ensureTrue(index.isCandidate(candidates, "sst", sst), "");
+    Test.ensureTrue(!index.isCandidate(candidates, "wind", wind), "");
+    candidates = index.candidates(new boolean[] {false}, words("café"));
+    Test.ensureTrue(!index.isCandidate(candidates, "sst", sst), "");
+    Test.ensureTrue(index.isCandidate(candidates, "wind", wind), "");
+    candidates = index.candidates(new boolean[] {false}, words("zzzzz"));
+    Test.ensureTrue(!index.isCandidate(candidates, "sst", sst), "");
+    Test.ensureTrue(!index.isCandidate(candidates, "wind", wind), "");
+
+    // negative words and short words can't eliminate datasets
+    Test.ensureTrue(index.candidates(new boolean[] {true}, words("surface")) == null, "");
+    Test.ensureTrue(index.candidates(new boolean[] {false}, words("se")) == null, "");
+
+    // datasets which aren't in the index (or have different searchBytes) are candidates
+    candidates = index.candidates(new boolean[] {false}, words("surface"));
+    Test.ensureTrue(index.isCandidate(candidates, "other", wind), "");
+    Test.ensureTrue(index.isCandidate(candidates, "wind", sst), "");
+
+    // after a change to the index, old candidates don't eliminate datasets
+    index.remove("wind", new byte[0]); // not this version, so not removed
+    Test.ensureEqual(index.size(), 2, "");
+    Test.ensureTrue(!index.isCandidate(candidates, "wind", wind), "");
+    byte wind2[] = String2.stringToUtf8Bytes("all\ntitle=wind surface stress\n");
+    index.add("wind", wind2);
+    Test.ensureEqual(index.size(), 2, "");
+    Test.ensureTrue(index.isCandidate(candidates, "wind", wind2), "");
+    candidates = index.candidates(new boolean[] {false}, words("surface"));
+    Test.ensureTrue(index.isCandidate(candidates, "wind", wind2), "");
+    Test.ensureTrue(index.isCandidate(candidates, "sst", sst), "");
+    candidates = index.candidates(new boolean[] {false}, words("speed"));
+    Test.ensureTrue(!index.isCandidate(candidates, "wind", wind2), "");
+
+    index.remove("sst", sst);
+    Test.ensureEqual(index.size(), 1, "");
+    candidates = index.candidates(new boolean[] {false}, words("temperature"));
+    Test.ensureTrue(!index.isCandidate(candidates, "wind", wind2), "");
+  }
+}
@@ -0,0 +1,295 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.variable.EDV;
+import gov.noaa.pfel.erddap.variable.EDVGridAxis;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.EDDTestDataset;
+import testDataset.Initialization;
+
+class EDDGridChildrenSourceDataTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /**
+   * A child dataset which slowly gets its data from some of the axis0 values of another dataset, so
+   * that concurrent requests to several children finish in a different order than they were made.
+   */
+  private static class SlowChild extends EDDGrid {
+    final EDDGrid source;
+    final int sourceIndex[]; // the source's axis0 index for each of this child's axis0 values
+    final long sleepMillis;
+    volatile boolean fail = false;
+
+    SlowChild(
+        String tDatasetID,
+        EDDGrid tSource,
+        int tSourceIndex[],
+        EDV tDataVariables[],
+        long tSleepMillis)
+        throws Throwable {
+      className = "SlowChild";
+      datasetID = tDatasetID;
+      source = tSource;
+      sourceIndex = tSourceIndex;
+      sleepMillis = tSleepMillis;
+      setReloadEveryNMinutes(source.getReloadEveryNMinutes());
+      localSourceUrl = source.localSourceUrl();
+      sourceGlobalAttributes = source.sourceGlobalAttributes();
+      addGlobalAttributes = source.addGlobalAttributes();
+      combinedGlobalAttributes = source.combinedGlobalAttributes();
+
+      // a copy, since EDDGridSideBySide changes its children's axisVariables
+      axisVariables = source.axisVariables().clone();
+      lonIndex = source.lonIndex;
+      latIndex = source.latIndex;
+      altIndex = source.altIndex;
+      depthIndex = source.depthIndex;
+      timeIndex = source.timeIndex;
+      EDVGridAxis av0 = axisVariables[0];
+      PrimitiveArray sourceValues = av0.sourceValues();
+      PrimitiveArray values =
+          PrimitiveArray.factory(sourceValues.elementType(), sourceIndex.length, false);
+      for (int i : sourceIndex) values.addDouble(sourceValues.getDouble(i));
+      axisVariables[0] =
+          makeAxisVariable(
+              datasetID,
+              0,
+              av0.sourceName(),
+              av0.destinationName(),
+              av0.sourceAttributes(),
+              av0.addAttributes(),
+              values);
+      dataVariables = tDataVariables;
+    }
+
+    /** This returns the n indices starting at start. */
+    static int[] range(int start, int n) {
+      int ar[] = new int[n];
+      for (int i = 0; i < n; i++) ar[i] = start + i;
+      return ar;
+    }
+
+    @Override
+    public PrimitiveArray[] getSourceData(
+        int language,
+        Table tDirTable,
+        Table tFileTable,
+        EDV tDataVariables[],
+        IntArray tConstraints)
+        throws Throwable {
+      Math2.sleep(sleepMillis);
+      if (fail) throw new WaitThenTryAgainException("SlowChild " + datasetID + " failed.");
+
+      // convert the axis0 constraints to the source's (they must be evenly spaced there, too)
+      int start = tConstraints.get(0);
+      int stride = tConstraints.get(1);
+      int n = (tConstraints.get(2) - start) / stride;
+      int sourceStart = sourceIndex[start];
+      int sourceStride = n == 0 ? 1 : sourceIndex[start + stride] - sourceStart;
+      for (int i = 0; i <= n; i++)
+        Test.ensureEqual(sourceIndex[start + i * stride], sourceStart + i * sourceStride, "");
+      IntArray sourceConstraints = (IntArray) tConstraints.clone();
+      sourceConstraints.set(0, sourceStart);
+      sourceConstraints.set(1, sourceStride);
+      sourceConstraints.set(2, sourceStart + n * sourceStride);
+      return source.getSourceData(language, null, null, tDataVariables, sourceConstraints);
+    }
+
+    /**
+     * This makes sibling #tLocalSourceUrl, which has the next sourceIndex.length axis0 values and
+     * is 100ms faster than this dataset.
+     */
+    @Override
+    public EDDGrid sibling(
+        String tLocalSourceUrl, int firstAxisToMatch, int matchAxisNDigits, boolean shareInfo)
+        throws Throwable {
+      int sib = String2.parseInt(tLocalSourceUrl);
+      int n = sourceIndex.length;
+      return new SlowChild(
+          datasetID + "_" + sib,
+          source,
+          range(sourceIndex[0] + sib * n, n),
+          dataVariables,
+          Math.max(0, sleepMillis - sib * 100));
+    }
+  }
+
+  /** This makes constraints for axis0 start:stride:stop and a small part of the other axes. */
+  private static IntArray constraints(int start, int stride, int stop) {
+    // altitude, latitude, longitude
+    return new IntArray(new int[] {start, stride, stop, 0, 1, 0, 0, 10, 100, 0, 10, 30});
+  }
+
+  private static void ensureEqual(PrimitiveArray results[], PrimitiveArray expected[]) {
+    Test.ensureEqual(results.length, expected.length, "");
+    for (int i = 0; i < expected.length; i++)
+      Test.ensureEqual(results[i].toString(), expected[i].toString(), "i=" + i);
+  }
+
+  /**
+   * This tests that getChildrenSourceData and EDDGridAggregateExistingDimension return the
+   * children's results in order, even if the children finish in a different order, and that a
+   * child's WaitThenTryAgainException is thrown unwrapped.
+   */
+  @org.junit.jupiter.api.Test
+  void testAggregateExistingDimension() throws Throwable {
+    int language = 0;
+    EDDGrid source = (EDDGrid) EDDTestDataset.gettestGriddedNcFiles();
+    int per = source.axisVariables()[0].sourceValues().size() / 3;
+    Test.ensureTrue(per >= 1, "");
+    SlowChild firstChild =
+        new SlowChild(
+            "testSlowChild", source, SlowChild.range(0, per), source.dataVariables(), 300);
+    EDDGridAggregateExistingDimension agg =
+        new EDDGridAggregateExistingDimension(
+            "testAggregateSlowChildren",
+            null,
+            null,
+            false,
+            false,
+            new StringArray(),
+            null,
+            null,
+            null,
+            null,
+            firstChild,
+            new String[] {"1", "2"},
+            null,
+            null,
+            false,
+            null,
+            null,
+            EDDGrid.DEFAULT_MATCH_AXIS_N_DIGITS,
+            3,
+            true);
+    Test.ensureEqual(agg.childDatasets.length, 3, "");
+    EDV dataVariables[] = agg.dataVariables();
+
+    // getChildrenSourceData: the slowest child is first, so the results finish out of order
+    EDDGrid children[] = {
+      agg.childDatasets[0], agg.childDatasets[1], agg.childDatasets[2], agg.childDatasets[0]
+    };
+    int childIndex[] = {0, 0, 0, per - 1};
+    IntArray childConstraints[] = new IntArray[children.length];
+    EDV childDataVariables[][] = new EDV[children.length][];
+    for (int r = 0; r < children.length; r++) {
+      childConstraints[r] = constraints(childIndex[r], 1, childIndex[r]);
+      childDataVariables[r] = dataVariables;
+    }
+    PrimitiveArray childResults[][] =
+        agg.getChildrenSourceData(language, children, childDataVariables, childConstraints);
+    Test.ensureEqual(childResults.length, children.length, "");
+    for (int r = 0; r < children.length; r++) {
+      int sourceIndex = ((SlowChild) children[r]).sourceIndex[childIndex[r]];
+      IntArray sourceConstraints = constraints(sourceIndex, 1, sourceIndex);
+      ensureEqual(
+          childResults[r],
+          source.getSourceData(language, null, null, dataVariables, sourceConstraints));
+    }
+
+    // the aggregate's results are the same as the source's (with strides within and across
+    // children)
+    int last = 3 * per - 1;
+    for (int stride : new int[] {1, 2}) {
+      ensureEqual(
+          agg.getSourceData(language, null, null, dataVariables, constraints(0, stride, last)),
+          source.getSourceData(language, null, null, dataVariables, constraints(0, stride, last)));
+    }
+
+    // a child's WaitThenTryAgainException is thrown unwrapped
+    ((SlowChild) agg.childDatasets[2]).fail = true;
+    try {
+      agg.getSourceData(language, null, null, dataVariables, constraints(0, 1, last));
+      throw new RuntimeException("shouldn't get here");
+    } catch (WaitThenTryAgainException e) {
+      Test.ensureTrue(e.getMessage().indexOf("testSlowChild_2 failed.") >= 0, e.toString());
+    }
+    try {
+      agg.getChildrenSourceData(language, children, childDataVariables, childConstraints);
+      throw new RuntimeException("shouldn't get here");
+    } catch (WaitThenTryAgainException e) {
+      Test.ensureTrue(e.getMessage().indexOf("testSlowChild_2 failed.") >= 0, e.toString());
+    }
+  }
+
+  /**
+   * This tests that EDDGridSideBySide reassembles the children's results in order (including the
+   * missing values where a child doesn't have an axis0 value), even if the children finish in a
+   * different order, and that a child's WaitThenTryAgainException is thrown unwrapped.
+   */
+  @org.junit.jupiter.api.Test
+  void testSideBySide() throws Throwable {
+    int language = 0;
+    EDDGrid source = (EDDGrid) EDDTestDataset.gettestGriddedNcFiles();
+    Test.ensureTrue(source.axisVariables()[0].sourceValues().size() >= 4, "");
+    EDV xWind = source.findDataVariableByDestinationName("x_wind");
+    EDV yWind = source.findDataVariableByDestinationName("y_wind");
+    // the slower child has all axis0 values; the faster one doesn't have axis0 #1
+    SlowChild xChild =
+        new SlowChild("testSlowX", source, SlowChild.range(0, 4), new EDV[] {xWind}, 300);
+    SlowChild yChild =
+        new SlowChild("testSlowY", source, new int[] {0, 2, 3}, new EDV[] {yWind}, 0);
+    EDDGridSideBySide sbs =
+        new EDDGridSideBySide(
+            "testSideBySideSlowChildren",
+            null,
+            null,
+            false,
+            false,
+            EDDGrid.DEFAULT_MATCH_AXIS_N_DIGITS,
+            new StringArray(),
+            null,
+            null,
+            null,
+            null,
+            new EDDGrid[] {xChild, yChild},
+            3,
+            true);
+    EDV dataVariables[] = sbs.dataVariables();
+    Test.ensureEqual(dataVariables.length, 2, "");
+
+    // y_wind has 2 pieces (axis0 #0 and #2:3) and a missing row (axis0 #1)
+    PrimitiveArray results[] =
+        sbs.getSourceData(language, null, null, dataVariables, constraints(0, 1, 3));
+    int nAv = sbs.axisVariables().length;
+    Test.ensureEqual(results.length, nAv + 2, "");
+    PrimitiveArray expectedX[] =
+        source.getSourceData(language, null, null, new EDV[] {xWind}, constraints(0, 1, 3));
+    for (int av = 0; av < nAv; av++)
+      Test.ensureEqual(results[av].toString(), expectedX[av].toString(), "av=" + av);
+    Test.ensureEqual(results[nAv].toString(), expectedX[nAv].toString(), "");
+    EDV yOnly[] = {yWind};
+    PrimitiveArray expectedY =
+        source.getSourceData(language, null, null, yOnly, constraints(0, 1, 0))[nAv];
+    expectedY.addNDoubles(expectedY.size(), yWind.sourceMissingValue());
+    expectedY.append(source.getSourceData(language, null, null, yOnly, constraints(2, 1, 3))[nAv]);
+    Test.ensureEqual(results[nAv + 1].toString(), expectedY.toString(), "");
+
+    // both, in the other order, with a stride
+    EDV reversed[] = {dataVariables[1], dataVariables[0]};
+    results = sbs.getSourceData(language, null, null, reversed, constraints(0, 2, 2));
+    PrimitiveArray expected[] =
+        source.getSourceData(language, null, null, reversed, constraints(0, 2, 2));
+    for (int dv = 0; dv < 2; dv++)
+      Test.ensureEqual(results[nAv + dv].toString(), expected[nAv + dv].toString(), "dv=" + dv);
+
+    // a child's WaitThenTryAgainException is thrown unwrapped
+    yChild.fail = true;
+    try {
+      sbs.getSourceData(language, null, null, dataVariables, constraints(0, 1, 3));
+      throw new RuntimeException("shouldn't get here");
+    } catch (WaitThenTryAgainException e) {
+      Test.ensureTrue(e.getMessage().indexOf("testSlowY failed.") >= 0, e.toString());
+    }
+  }
+}
@@ -13,6 +13,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.security.MessageDigest;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 import org.junit.jupiter.api.BeforeAll;
 import tags.TagImageComparison;
@@ -1000,4 +1001,43 @@ class EDDGridTests {
             "2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745 2745\n";
     Test.ensureEqual(results, expected, "results=\n" + results);
   }
+
+  /**
+   * This tests that .dods and .asc responses are byte for byte the same whether the data variables
+   * are read in one pass or one pass per data variable.
+   */
+  @org.junit.jupiter.api.Test
+  void testReadDataVariablesInOnePass() throws Throwable {
+    int language = 0;
+    EDDGrid eddGrid = (EDDGrid) EDDTestDataset.gettestGriddedNcFiles();
+    String dir = EDStatic.fullTestCacheDirectory;
+    String query = "x_wind[0:1][0][0:100:400][0:10:30],y_wind[0:1][0][0:100:400][0:10:30]";
+    boolean oOnePass = EDStatic.dapReadDataVariablesInOnePass;
+    try {
+      for (String fileType : new String[] {".dods", ".asc"}) {
+        byte results[][] = new byte[2][];
+        for (int i = 0; i < 2; i++) {
+          EDStatic.dapReadDataVariablesInOnePass = i == 0;
+          Test.ensureEqual(
+              EDDGrid.readDataVariablesInOnePass(eddGrid.dataVariables(), true), i == 0, "");
+          String tName =
+              eddGrid.makeNewFileForDapQuery(
+                  language,
+                  null,
+                  null,
+                  query,
+                  dir,
+                  "EDDGrid_testReadDataVariablesInOnePass" + i + "_" + Math2.random(1000000),
+                  fileType);
+          results[i] = SSR.getFileBytes(dir + tName);
+          File2.delete(dir + tName);
+        }
+        Test.ensureTrue(results[0].length > 100, fileType + " length=" + results[0].length);
+        Test.ensureEqual(results[0].length, results[1].length, fileType);
+        Test.ensureTrue(Arrays.equals(results[0], results[1]), fileType);
+      }
+    } finally {
+      EDStatic.dapReadDataVariablesInOnePass = oOnePass;
+    }
+  }
 }
@@ -14,6 +14,7 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.GenerateDatasetsXml;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.EDV;
+import java.io.File;
 import java.nio.file.Path;
 import java.util.Calendar;
 import java.util.HashSet;
@@ -2129,4 +2130,74 @@ class EDDTableFromHttpGetTests {
     testStatic(3);
     testStatic(0);
   }
+
+  /**
+   * This tests compacting a data file, reading the compacted version, and that the compacted
+   * version isn't used after data is appended to the data file or the data file is deleted.
+   */
+  @org.junit.jupiter.api.Test
+  void testCompaction() throws Throwable {
+    EDDTableFromHttpGet eddTable = (EDDTableFromHttpGet) EDDTestDataset.gettestFromHttpGet();
+    String dir = TEMP_DIR.toAbsolutePath().toString() + "/compaction/";
+    File2.makeDirectory(dir);
+    String fullName = dir + "46088.jsonl";
+    String compactedName = eddTable.compactedFileName(fullName);
+    File2.delete(compactedName);
+    // the 3rd row changes the 1st row
+    File2.writeToFileUtf8(
+        fullName,
+        "[\"stationID\",\"time\",\"airTemp\",\"waterTemp\",\"timestamp\",\"author\",\"command\"]\n"
+            + "[\"46088\",\"2016-06-21T14:15:16Z\",10.1,11.1,1.5e9,\"bsimons\",0]\n"
+            + "[\"46088\",\"2016-06-21T14:15:17Z\",10.2,11.2,1.5e9,\"bsimons\",0]\n"
+            + "[\"46088\",\"2016-06-21T14:15:16Z\",10.3,11.3,1.6e9,\"bsimons\",0]\n");
+    new File(fullName).setLastModified(System.currentTimeMillis() - Calendar2.MILLIS_PER_HOUR);
+    String names[] = {"stationID", "time", "airTemp"};
+    String types[] = {"String", "String", "float"};
+    Table expected =
+        EDDTableFromHttpGet.readFile(
+            fullName,
+            new StringArray(names),
+            types,
+            eddTable.httpGetRequiredVariableNames,
+            eddTable.httpGetRequiredVariableTypes,
+            true,
+            Double.MAX_VALUE);
+    Test.ensureEqual(expected.nRows(), 2, "");
+
+    int oCompactAfterMinutes = EDStatic.httpGetCompactAfterMinutes;
+    EDStatic.httpGetCompactAfterMinutes = 1;
+    try {
+      // no compacted version yet, so this starts compacting the file in the background
+      Test.ensureEqual(eddTable.readCompacted(fullName, new StringArray(names), types), null, "");
+      for (int i = 0; i < 100 && !File2.isFile(compactedName); i++) Math2.sleep(100);
+      Test.ensureTrue(File2.isFile(compactedName), "");
+
+      // read back just the requested columns
+      Table table = eddTable.readCompacted(fullName, new StringArray(names), types);
+      Test.ensureEqual(table.getColumnNamesCSVString(), "stationID,time,airTemp", "");
+      for (String name : names)
+        Test.ensureEqual(
+            table.getColumn(name).toString(), expected.getColumn(name).toString(), name);
+
+      // a different type (e.g., the dataset was changed) isn't read from the compacted version
+      Test.ensureEqual(
+          eddTable.readCompacted(
+              fullName, new StringArray(names), new String[] {"String", "String", "double"}),
+          null,
+          "");
+
+      // appended data makes the compacted version obsolete (and it isn't recompacted right away)
+      File2.appendFileUtf8(
+          fullName, "[\"46088\",\"2016-06-21T14:15:18Z\",10.4,11.4,1.7e9,\"bsimons\",0]\n");
+      Test.ensureEqual(eddTable.readCompacted(fullName, new StringArray(names), types), null, "");
+      Test.ensureTrue(File2.isFile(compactedName), "");
+
+      // if the data file is deleted, so is the compacted version
+      File2.delete(fullName);
+      Test.ensureEqual(eddTable.readCompacted(fullName, new StringArray(names), types), null, "");
+      Test.ensureTrue(!File2.isFile(compactedName), "");
+    } finally {
+      EDStatic.httpGetCompactAfterMinutes = oCompactAfterMinutes;
+    }
+  }
 }
@@ -0,0 +1,86 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.util.Random;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class ExternalTableSorterTests {
+
+  private static int oldExternalSortRunMB;
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+    oldExternalSortRunMB = EDStatic.externalSortRunMB;
+  }
+
+  @AfterAll
+  static void cleanUp() {
+    EDStatic.externalSortRunMB = oldExternalSortRunMB;
+  }
+
+  /** This makes a chunk of data with lots of ties and duplicate rows. */
+  private static Table makeChunk(Random random, int nRows) {
+    String strings[] = {"a", "A", "b", "B", "c"};
+    Table table = new Table();
+    IntArray ia = new IntArray();
+    StringArray sa = new StringArray();
+    DoubleArray da = new DoubleArray();
+    for (int row = 0; row < nRows; row++) {
+      ia.add(random.nextInt(20));
+      sa.add(strings[random.nextInt(strings.length)]);
+      da.add(random.nextInt(4) == 0 ? Double.NaN : random.nextInt(3));
+    }
+    table.addColumn("i", ia);
+    table.addColumn("s", sa);
+    table.addColumn("d", da);
+    return table;
+  }
+
+  /**
+   * This sends the chunks through the tableWriter (orderBy or distinct) and returns the cumulative
+   * table received by the next tableWriter.
+   */
+  private static Table runThrough(String which, Table[] chunks, int runMB) throws Throwable {
+    EDStatic.externalSortRunMB = runMB;
+    String dir = EDStatic.fullTestCacheDirectory;
+    TableWriterAll receiver = new TableWriterAll(0, null, null, dir, "externalSort" + which);
+    TableWriterAll tw =
+        which.equals("orderBy")
+            ? new TableWriterOrderBy(0, null, null, dir, "externalSortOB", receiver, "i,s")
+            : new TableWriterDistinct(0, null, null, dir, "externalSortD", receiver);
+    for (Table chunk : chunks) tw.writeSome((Table) chunk.clone());
+    tw.finish();
+    Table results = receiver.cumulativeTable();
+    receiver.releaseResources();
+    return results;
+  }
+
+  /** This tests that the external sort's results are the same as the in-memory sort's. */
+  @org.junit.jupiter.api.Test
+  void testSameAsInMemory() throws Throwable {
+    Random random = new Random(17);
+    // with externalSortRunMB=1, a run is spilled about every 33000 rows
+    Table chunks[] = new Table[7];
+    for (int c = 0; c < chunks.length; c++) chunks[c] = makeChunk(random, 12000);
+
+    for (String which : new String[] {"orderBy", "distinct"}) {
+      Table inMemory = runThrough(which, chunks, 0);
+      Table external = runThrough(which, chunks, 1);
+      Test.ensureEqual(external.nRows(), inMemory.nRows(), which);
+      Test.ensureEqual(external.dataToString(), inMemory.dataToString(), which);
+    }
+
+    // everything fits in one run: nothing is spilled
+    Table inMemory = runThrough("orderBy", new Table[] {chunks[0]}, 0);
+    Table external = runThrough("orderBy", new Table[] {chunks[0]}, 1000);
+    Test.ensureEqual(external.dataToString(), inMemory.dataToString(), "");
+  }
+}
@@ -0,0 +1,125 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PAType;
+import com.cohort.array.StringArray;
+import com.cohort.util.Math2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.variable.EDV;
+import java.util.BitSet;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class FileTableIndexTests {
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests that the candidates are always a superset of the files that pass isOK(). */
+  @org.junit.jupiter.api.Test
+  void testCandidates() throws Throwable {
+    int nRows = 1000;
+    Table fileTable = new Table();
+    for (int col = 0; col < EDDTableFromFiles.dv0; col++)
+      fileTable.addColumn("col" + col, new StringArray(nRows, true));
+    DoubleArray mins = new DoubleArray();
+    DoubleArray maxs = new DoubleArray();
+    IntArray hasNaNs = new IntArray();
+    for (int row = 0; row < nRows; row++) {
+      if (row % 97 == 0) {
+        // all NaN
+        mins.add(Double.NaN);
+        maxs.add(Double.NaN);
+        hasNaNs.add(1);
+      } else {
+        double min = Math2.random(1000) / 10.0;
+        mins.add(min);
+        maxs.add(min + Math2.random(50) / 10.0);
+        hasNaNs.add(row % 3 == 0 ? 1 : 0);
+      }
+    }
+    fileTable.addColumn("sst_min_", mins);
+    fileTable.addColumn("sst_max_", maxs);
+    fileTable.addColumn("sst_hasNaN_", hasNaNs);
+    Attributes addAtts = new Attributes().add("ioos_category", "Temperature");
+    EDV edv = new EDV("testFileTableIndex", "sst", "sst", new Attributes(), addAtts, "double");
+
+    FileTableIndex index = new FileTableIndex(fileTable, EDDTableFromFiles.dv0, new EDV[] {edv});
+    Test.ensureTrue(index.isFor(fileTable), "");
+    Test.ensureTrue(index.isIndexed(0), "");
+
+    String ops[] = {"<", "<=", "=", ">=", ">"};
+    double values[] = {-1, 0, 12.3, 50, 99.9, 104.9, 200};
+    for (String op : ops) {
+      for (double value : values) {
+        BitSet candidates = index.candidates(0, PAType.DOUBLE, op, value);
+        int nOK = 0;
+        for (int row = 0; row < nRows; row++) {
+          if (EDDTableFromFiles.isOK(
+              PAType.DOUBLE, mins.get(row), maxs.get(row), hasNaNs.get(row), op, value)) {
+            nOK++;
+            Test.ensureTrue(candidates.get(row), "op=" + op + " value=" + value + " row=" + row);
+          }
+        }
+        // the extras are the all-NaN rows and rows at the edge of the loosened test
+        Test.ensureTrue(candidates.cardinality() - nOK <= 50, "op=" + op + " value=" + value);
+      }
+    }
+
+    // tests that can't use the index
+    Test.ensureEqual(index.candidates(0, PAType.DOUBLE, "!=", 5), null, "");
+    Test.ensureEqual(index.candidates(0, PAType.DOUBLE, "=", Double.NaN), null, "");
+  }
+
+  /** This tests that isOK's almost0 equality (e.g., FLOAT =0 matches 5e-6) is a candidate. */
+  @org.junit.jupiter.api.Test
+  void testCandidatesNearZero() throws Throwable {
+    double tMins[] = {5e-6, -5e-6, 9e-6, 2e-5, 1e-14, -5e-14, 0, 1e-12, -1, 3e-6};
+    double tMaxs[] = {5e-6, -5e-6, 9e-6, 2e-5, 1e-14, -5e-14, 0, 1e-12, -2e-5, 1};
+    int nRows = tMins.length;
+    Table fileTable = new Table();
+    for (int col = 0; col < EDDTableFromFiles.dv0; col++)
+      fileTable.addColumn("col" + col, new StringArray(nRows, true));
+    DoubleArray mins = new DoubleArray(tMins);
+    DoubleArray maxs = new DoubleArray(tMaxs);
+    IntArray hasNaNs = new IntArray(new int[nRows]);
+    fileTable.addColumn("x_min_", mins);
+    fileTable.addColumn("x_max_", maxs);
+    fileTable.addColumn("x_hasNaN_", hasNaNs);
+    EDV edv = new EDV("testFileTableIndex", "x", "x", new Attributes(), new Attributes(), "double");
+    FileTableIndex index = new FileTableIndex(fileTable, EDDTableFromFiles.dv0, new EDV[] {edv});
+
+    PAType paTypes[] = {PAType.FLOAT, PAType.DOUBLE, PAType.INT, PAType.STRING};
+    String ops[] = {"<", "<=", "=", ">=", ">"};
+    double values[] = {0, 1e-6, -3e-6, 1e-14, -1e-14, 5e-6, -1e-5};
+    for (PAType paType : paTypes) {
+      for (String op : ops) {
+        for (double value : values) {
+          BitSet candidates = index.candidates(0, paType, op, value);
+          for (int row = 0; row < nRows; row++) {
+            if (EDDTableFromFiles.isOK(paType, mins.get(row), maxs.get(row), 0, op, value))
+              Test.ensureTrue(
+                  candidates.get(row),
+                  "paType=" + paType + " op=" + op + " value=" + value + " row=" + row);
+          }
+        }
+      }
+    }
+    // e.g., a FLOAT =0 constraint matches a file with min=max=5e-6
+    Test.ensureTrue(EDDTableFromFiles.isOK(PAType.FLOAT, 5e-6, 5e-6, 0, "=", 0), "");
+    Test.ensureTrue(index.candidates(0, PAType.FLOAT, "=", 0).get(0), "");
+  }
+
+  /** This tests the stable sort of row numbers. */
+  @org.junit.jupiter.api.Test
+  void testSortRows() {
+    double keys[] = {3, 1, 2, 1, 0, 3};
+    int rows[] = {0, 1, 2, 3, 4, 5};
+    FileTableIndex.sortRows(rows, keys);
+    Test.ensureEqual(new IntArray(rows).toString(), "4, 1, 3, 2, 0, 5", "");
+  }
+}
@@ -0,0 +1,221 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.ByteArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.io.RandomAccessFile;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class FileTableJournalTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This makes a fileTable with the standard columns and one data variable, x. */
+  private static Table makeFileTable(short dirIndex[], String fileList[], double xMin[]) {
+    int n = dirIndex.length;
+    Table table = new Table();
+    table.addColumn("dirIndex", new ShortArray(dirIndex));
+    table.addColumn("fileList", new StringArray(fileList));
+    table.addColumn("lastMod", new LongArray(new long[n]));
+    table.addColumn("size", new LongArray(new long[n]));
+    table.addColumn("sortedSpacing", new DoubleArray(new double[n]));
+    table.addColumn("x_min_", new DoubleArray(xMin));
+    table.addColumn("x_max_", new DoubleArray(xMin));
+    table.addColumn("x_hasNaN_", new ByteArray(new byte[n]));
+    return table;
+  }
+
+  /** This tests appending changes to the journal and applying them to the saved fileTable. */
+  @org.junit.jupiter.api.Test
+  void testAppendApply() throws Throwable {
+    String dir = EDStatic.fullTestCacheDirectory + "fileTableJournal/";
+    File2.makeDirectory(dir);
+    String journalName = dir + FileTableJournal.FILENAME;
+    File2.delete(journalName);
+    int sortColumns[] = {5};
+    boolean sortAscending[] = {true};
+
+    Table base =
+        makeFileTable(
+            new short[] {0, 0, 1}, new String[] {"a.nc", "b.nc", "c.nc"}, new double[] {1, 2, 3});
+    String baseId = FileTableJournal.newBaseId();
+    base.globalAttributes().set(FileTableJournal.BASE_ID, baseId);
+
+    // no journal
+    Test.ensureTrue(FileTableJournal.apply(journalName, base, true, null, null) == base, "");
+    Test.ensureEqual(FileTableJournal.nChanges(journalName, baseId), -1, "");
+
+    // batch 1: remove b.nc, change c.nc, add d.nc
+    Table removed = makeFileTable(new short[] {0}, new String[] {"b.nc"}, new double[] {2});
+    Table changed =
+        makeFileTable(new short[] {1, 1}, new String[] {"c.nc", "d.nc"}, new double[] {0, 5});
+    Test.ensureEqual(
+        FileTableJournal.append(journalName, baseId, baseId, removed, changed), 3, "");
+    // batch 2: remove d.nc, add b.nc back
+    removed = makeFileTable(new short[] {1}, new String[] {"d.nc"}, new double[] {5});
+    changed = makeFileTable(new short[] {0}, new String[] {"b.nc"}, new double[] {4});
+    Test.ensureEqual(
+        FileTableJournal.append(journalName, baseId, baseId, removed, changed), 5, "");
+    Test.ensureEqual(FileTableJournal.nChanges(journalName, baseId), 5, "");
+
+    Table table = FileTableJournal.apply(journalName, base, true, sortColumns, sortAscending);
+    Test.ensureEqual(table.getColumn(1).toString(), "c.nc, a.nc, b.nc", "");
+    Test.ensureEqual(table.getColumn(5).toString(), "0.0, 1.0, 4.0", "");
+    Test.ensureEqual(base.nRows(), 3, "the shared base table isn't changed");
+    Test.ensureEqual(base.getColumn(1).toString(), "a.nc, b.nc, c.nc", "");
+    Test.ensureTrue(
+        FileTableJournal.apply(journalName, base, true, sortColumns, sortAscending) == table,
+        "the result is shared until the journal changes");
+
+    // an incomplete last batch is ignored, then overwritten by the next batch
+    long length = File2.length(journalName);
+    try (RandomAccessFile raf = new RandomAccessFile(journalName, "rw")) {
+      raf.seek(length);
+      raf.writeInt(1000);
+      raf.writeInt(5);
+    }
+    table = FileTableJournal.apply(journalName, base, true, sortColumns, sortAscending);
+    Test.ensureEqual(table.getColumn(1).toString(), "c.nc, a.nc, b.nc", "");
+    removed = makeFileTable(new short[] {0}, new String[] {"a.nc"}, new double[] {1});
+    changed = makeFileTable(new short[0], new String[0], new double[0]);
+    Test.ensureEqual(
+        FileTableJournal.append(journalName, baseId, baseId, removed, changed), 6, "");
+    table = FileTableJournal.apply(journalName, base, false, sortColumns, sortAscending);
+    Test.ensureTrue(table == base, "if !readOnly, the base table is changed");
+    Test.ensureEqual(table.getColumn(1).toString(), "c.nc, b.nc", "");
+
+    // changes for a stale fileTable (not the one saved on disk) are rejected
+    // and the valid journal isn't changed
+    length = File2.length(journalName);
+    String staleId = FileTableJournal.newBaseId();
+    String savedAndCallerIds[][] = {{staleId, baseId}, {null, baseId}, {baseId, staleId}};
+    for (String ids[] : savedAndCallerIds) {
+      try {
+        FileTableJournal.append(journalName, ids[0], ids[1], removed, changed);
+        throw new RuntimeException("shouldn't get here");
+      } catch (Exception e) {
+        Test.ensureTrue(e.getMessage().indexOf("saved fileTable has BASE_ID=") >= 0, e.toString());
+      }
+    }
+    Test.ensureEqual(File2.length(journalName), length, "");
+    Test.ensureEqual(FileTableJournal.nChanges(journalName, baseId), 6, "");
+
+    // a journal for a different fileTable is ignored
+    Table base2 = makeFileTable(new short[] {0}, new String[] {"a.nc"}, new double[] {1});
+    base2.globalAttributes().set(FileTableJournal.BASE_ID, FileTableJournal.newBaseId());
+    Test.ensureTrue(FileTableJournal.apply(journalName, base2, true, null, null) == base2, "");
+
+    // a left over journal is replaced if the changes are for the saved fileTable
+    String baseId2 = base2.globalAttributes().getString(FileTableJournal.BASE_ID);
+    changed = makeFileTable(new short[] {0}, new String[] {"b.nc"}, new double[] {7});
+    Test.ensureEqual(
+        FileTableJournal.append(journalName, baseId2, baseId2, removed, changed), 2, "");
+    Test.ensureEqual(FileTableJournal.nChanges(journalName, baseId), -1, "");
+    table = FileTableJournal.apply(journalName, base2, true, null, null);
+    Test.ensureEqual(table.getColumn(1).toString(), "b.nc", "");
+
+    FileTableJournal.delete(journalName);
+    Test.ensureTrue(!File2.isFile(journalName), "");
+  }
+
+  /**
+   * This tests that compacting the journal of a dataset with fileTableInMemory saves the journaled
+   * changes (not the instance's fileTable from before the changes), so they are still in the saved
+   * fileTable after the dataset is reloaded.
+   */
+  @org.junit.jupiter.api.Test
+  void testCompactFileTableInMemory() throws Throwable {
+    String datasetID = "testFileTableJournalInMemory";
+    String dir = EDStatic.fullTestCacheDirectory + "fileTableJournalInMemory/";
+    File2.makeDirectory(dir);
+    File2.deleteAllFiles(dir);
+    EDD.deleteCachedDatasetInfo(datasetID);
+    Test.ensureEqual(File2.writeToFileUtf8(dir + "a.csv", "x,y\n1,1.5\n2,2.5\n"), "", "");
+    String xml =
+        "<dataset type=\"EDDTableFromAsciiFiles\" datasetID=\""
+            + datasetID
+            + "\" active=\"true\">\n"
+            + "    <reloadEveryNMinutes>10080</reloadEveryNMinutes>\n"
+            + "    <fileDir>"
+            + dir
+            + "</fileDir>\n"
+            + "    <fileNameRegex>.*\\.csv</fileNameRegex>\n"
+            + "    <recursive>false</recursive>\n"
+            + "    <columnNamesRow>1</columnNamesRow>\n"
+            + "    <firstDataRow>2</firstDataRow>\n"
+            + "    <fileTableInMemory>true</fileTableInMemory>\n"
+            + "    <addAttributes>\n"
+            + "        <att name=\"cdm_data_type\">Other</att>\n"
+            + "        <att name=\"infoUrl\">https://www.example.com</att>\n"
+            + "        <att name=\"institution\">NOAA</att>\n"
+            + "        <att name=\"license\">[standard]</att>\n"
+            + "        <att name=\"summary\">A test of the fileTable journal.</att>\n"
+            + "        <att name=\"title\">Test fileTable Journal In Memory</att>\n"
+            + "    </addAttributes>\n"
+            + "    <dataVariable>\n"
+            + "        <sourceName>x</sourceName>\n"
+            + "        <dataType>int</dataType>\n"
+            + "        <addAttributes>\n"
+            + "            <att name=\"ioos_category\">Unknown</att>\n"
+            + "        </addAttributes>\n"
+            + "    </dataVariable>\n"
+            + "    <dataVariable>\n"
+            + "        <sourceName>y</sourceName>\n"
+            + "        <dataType>double</dataType>\n"
+            + "        <addAttributes>\n"
+            + "            <att name=\"ioos_category\">Unknown</att>\n"
+            + "        </addAttributes>\n"
+            + "    </dataVariable>\n"
+            + "</dataset>\n";
+
+    int oldMaxChanges = EDStatic.fileTableJournalMaxChanges;
+    EDStatic.fileTableJournalMaxChanges = 1; // so each change starts a compaction
+    try {
+      EDDTableFromFiles edd = (EDDTableFromFiles) EDD.oneFromXmlFragment(null, xml);
+      Test.ensureTrue(edd.fileTableInMemory, "");
+      String fileTableName = edd.datasetDir() + EDD.FILE_TABLE_FILENAME;
+      String journalName = edd.datasetDir() + FileTableJournal.FILENAME;
+      Test.ensureEqual(edd.getFileTableCopy().getColumn(1).toString(), "a.csv", "");
+
+      // add a file: the change is journaled
+      // (holding the lock keeps the compaction from running until the old fileTable is restored,
+      // as if the compaction ran before the caller swapped in the new fileTable)
+      Table oldFileTable = edd.fileTable;
+      Test.ensureEqual(File2.writeToFileUtf8(dir + "b.csv", "x,y\n3,3.5\n"), "", "");
+      synchronized (FileTableJournal.lock(journalName)) {
+        edd.handleUpdates(new StringArray(new String[] {dir + "b.csv"}));
+        Test.ensureTrue(File2.isFile(journalName), "the change wasn't journaled");
+        edd.fileTable = oldFileTable;
+      }
+
+      // then compacted, with the journaled change
+      for (int i = 0; i < 100 && File2.isFile(journalName); i++) Math2.sleep(100);
+      Test.ensureTrue(!File2.isFile(journalName), "the journal wasn't compacted");
+      Test.ensureEqual(
+          edd.tryToLoadDirFileTable(fileTableName).getColumn(1).toString(),
+          "a.csv, b.csv",
+          "saved");
+
+      // reload: the saved fileTable has the new file
+      edd = (EDDTableFromFiles) EDD.oneFromXmlFragment(null, xml);
+      Table table = edd.getFileTableCopy();
+      Test.ensureEqual(table.getColumn(1).toString(), "a.csv, b.csv", "");
+      int bRow = ((StringArray) table.getColumn(1)).indexOf("b.csv");
+      Test.ensureEqual(table.findColumn("x_min_").getInt(bRow), 3, "");
+      Test.ensureEqual(table.findColumn("y_max_").getDouble(bRow), 3.5, "");
+    } finally {
+      EDStatic.fileTableJournalMaxChanges = oldMaxChanges;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import java.nio.file.Path;
+import org.junit.jupiter.api.io.TempDir;
+
+class GridChunkCacheTests {
+
+  @TempDir private static Path TEMP_DIR;
+
+  /** This tests copying the requested values from chunks. */
+  @org.junit.jupiter.api.Test
+  void testCopy() throws Exception {
+    // a [time=3][lat=100][lon=130] grid where each value is its row-major index
+    int size[] = {3, 100, 130};
+    int chunkLength[] = {1, GridChunkCache.CHUNK_LENGTH, GridChunkCache.CHUNK_LENGTH};
+    PrimitiveArray axisValues[] = new PrimitiveArray[3];
+    for (int av = 0; av < 3; av++) {
+      axisValues[av] = new DoubleArray();
+      for (int i = 0; i < size[av]; i++) axisValues[av].addDouble(i);
+    }
+    int start[] = {1, 10, 60};
+    int stop[] = {2, 90, 129};
+    IntArray constraints = new IntArray();
+    int firstChunk[] = new int[3];
+    int lastChunk[] = new int[3];
+    for (int av = 0; av < 3; av++) {
+      constraints.add(start[av]);
+      constraints.add(1);
+      constraints.add(stop[av]);
+      firstChunk[av] = start[av] / chunkLength[av];
+      lastChunk[av] = stop[av] / chunkLength[av];
+    }
+
+    // make the chunks, in row-major order
+    PrimitiveArray chunks[] = new PrimitiveArray[2 * 2 * 3]; // lon 60 - 129 is in 3 chunks
+    int c = 0;
+    for (int t = firstChunk[0]; t <= lastChunk[0]; t++)
+      for (int lat = firstChunk[1]; lat <= lastChunk[1]; lat++)
+        for (int lon = firstChunk[2]; lon <= lastChunk[2]; lon++) {
+          DoubleArray chunk = new DoubleArray();
+          for (int i = lat * 64; i < Math.min((lat + 1) * 64, size[1]); i++)
+            for (int j = lon * 64; j < Math.min((lon + 1) * 64, size[2]); j++)
+              chunk.add((t * size[1] + i) * size[2] + j);
+          chunks[c++] = chunk;
+        }
+
+    DoubleArray results = new DoubleArray();
+    GridChunkCache.copy(
+        chunks, constraints, axisValues, chunkLength, firstChunk, lastChunk, results);
+    DoubleArray expected = new DoubleArray();
+    for (int t = start[0]; t <= stop[0]; t++)
+      for (int i = start[1]; i <= stop[1]; i++)
+        for (int j = start[2]; j <= stop[2]; j++) expected.add((t * size[1] + i) * size[2] + j);
+    Test.ensureEqual(results.size(), expected.size(), "");
+    Test.ensureEqual(results.toString(), expected.toString(), "");
+  }
+
+  /** This tests which requests use the chunk cache. */
+  @org.junit.jupiter.api.Test
+  void testPlan() throws Exception {
+    int axisSizes[] = {10, 720, 1440};
+
+    // a small region: 1 time, 2x2 chunks
+    int plan[][] =
+        GridChunkCache.plan(
+            new IntArray(new int[] {9, 1, 9, 70, 1, 180, 10, 1, 120}), axisSizes);
+    Test.ensureEqual(new IntArray(plan[0]).toString(), "1, 64, 64", "");
+    Test.ensureEqual(new IntArray(plan[1]).toString(), "9, 1, 0", "");
+    Test.ensureEqual(new IntArray(plan[2]).toString(), "9, 2, 1", "");
+
+    // 1 time of the whole grid would be 12x23=276 chunks (so 276 requests to the source, not 1)
+    Test.ensureEqual(
+        GridChunkCache.plan(new IntArray(new int[] {9, 1, 9, 0, 1, 719, 0, 1, 1439}), axisSizes),
+        null,
+        "");
+    // 10 times x 2 x 1 = 20 chunks (more than MAX_CHUNKS)
+    Test.ensureEqual(
+        GridChunkCache.plan(new IntArray(new int[] {0, 1, 9, 0, 1, 127, 0, 1, 63}), axisSizes),
+        null,
+        "");
+    // stride > 1
+    Test.ensureEqual(
+        GridChunkCache.plan(new IntArray(new int[] {9, 1, 9, 0, 2, 10, 0, 1, 10}), axisSizes),
+        null,
+        "");
+    // much more data than requested
+    Test.ensureEqual(
+        GridChunkCache.plan(new IntArray(new int[] {9, 1, 9, 63, 1, 64, 63, 1, 64}), axisSizes),
+        null,
+        "");
+  }
+
+  /** This tests writing and reading a chunk file. */
+  @org.junit.jupiter.api.Test
+  void testWriteRead() throws Exception {
+    String fullName = TEMP_DIR.toAbsolutePath().toString() + "/chunk_test.bin";
+    IntArray ia = new IntArray(new int[] {1, -5, Integer.MAX_VALUE, 7});
+    ia.setMaxIsMV(true);
+    GridChunkCache.write(ia, fullName);
+    Test.ensureTrue(File2.isFile(fullName), "");
+    PrimitiveArray pa = GridChunkCache.read(fullName);
+    Test.ensureTrue(pa instanceof IntArray, "");
+    Test.ensureEqual(pa.toString(), "1, -5, 2147483647, 7", "");
+    Test.ensureTrue(pa.getMaxIsMV(), "");
+  }
+}
@@ -0,0 +1,73 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.Test;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.EDDTestDataset;
+import testDataset.Initialization;
+
+class GridDataAccessorTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This gets all of the data values (for data variable 0) from a GridDataAccessor. */
+  private static String getAll(GridDataAccessor gda) throws Throwable {
+    StringBuilder sb = new StringBuilder();
+    while (gda.increment()) sb.append(gda.getDataValueAsDouble(0)).append(',');
+    return sb.toString();
+  }
+
+  /**
+   * This tests that the read ahead gets the same data, and that the read ahead thread is stopped
+   * after the last chunk or if the GridDataAccessor isn't used to the end.
+   */
+  @org.junit.jupiter.api.Test
+  void testReadAhead() throws Throwable {
+    int language = 0;
+    EDDGrid eddGrid = (EDDGrid) EDDTestDataset.gettestGriddedNcFiles();
+    String query = "x_wind[0][0][0:10:400][0:10:30]";
+    int oReadAheadNChunks = EDStatic.gridReadAheadNChunks;
+    int oPartialRequestMaxBytes = EDStatic.partialRequestMaxBytes;
+    try {
+      EDStatic.partialRequestMaxBytes = 100; // so each latitude is a chunk
+      EDStatic.gridReadAheadNChunks = 0;
+      GridDataAccessor gda = new GridDataAccessor(language, eddGrid, "", query, true, true);
+      String expected = getAll(gda);
+      Test.ensureTrue(gda.readAheadExecutor == null, "");
+
+      // all of the data, row major and column major
+      EDStatic.gridReadAheadNChunks = 3;
+      for (boolean rowMajor : new boolean[] {true, false}) {
+        gda = new GridDataAccessor(language, eddGrid, "", query, rowMajor, true);
+        String results = getAll(gda);
+        if (rowMajor) Test.ensureEqual(results, expected, "");
+        Test.ensureEqual(results.length(), expected.length(), "rowMajor=" + rowMajor);
+        Test.ensureTrue(gda.readAheadExecutor.isShutdown(), "rowMajor=" + rowMajor);
+        Test.ensureTrue(gda.readAheadExecutor.awaitTermination(10, TimeUnit.SECONDS), "");
+      }
+      Test.ensureEqual(GridDataAccessor.releaseThreadReadAheads(), 0, "");
+
+      // a GridDataAccessor which isn't used to the end
+      gda = new GridDataAccessor(language, eddGrid, "", query, true, true);
+      Test.ensureTrue(gda.increment(), "");
+      Test.ensureTrue(!gda.readAheadExecutor.isShutdown(), "");
+      Test.ensureEqual(GridDataAccessor.releaseThreadReadAheads(), 1, "");
+      Test.ensureTrue(gda.readAheadExecutor.awaitTermination(10, TimeUnit.SECONDS), "");
+      Test.ensureEqual(GridDataAccessor.releaseThreadReadAheads(), 0, "");
+
+      // releaseGetResources stops it, too
+      gda = new GridDataAccessor(language, eddGrid, "", query, true, true);
+      Test.ensureTrue(gda.increment(), "");
+      gda.releaseGetResources();
+      Test.ensureTrue(gda.readAheadExecutor.awaitTermination(10, TimeUnit.SECONDS), "");
+      Test.ensureEqual(GridDataAccessor.releaseThreadReadAheads(), 0, "");
+    } finally {
+      EDStatic.gridReadAheadNChunks = oReadAheadNChunks;
+      EDStatic.partialRequestMaxBytes = oPartialRequestMaxBytes;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.Test;
+import java.util.HashMap;
+import java.util.Random;
+
+class GroupKeyMapTests {
+
+  /** This tests GroupKeyMap against a HashMap with String keys. */
+  @org.junit.jupiter.api.Test
+  void testGroups() throws Throwable {
+    String strings[] = {"a", "A", "", null, "station1", "station2"};
+    Random random = new Random(7);
+    GroupKeyMap groups = new GroupKeyMap(2);
+    HashMap<String, Integer> expected = new HashMap<>();
+    for (int row = 0; row < 100000; row++) {
+      double d = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(5000);
+      String s = strings[random.nextInt(strings.length)];
+      groups.setDouble(0, d);
+      groups.setString(1, s);
+      int g = groups.group();
+      String key = d + "\t" + (s == null ? "" : s);
+      Integer eg = expected.get(key);
+      if (eg == null) {
+        eg = expected.size();
+        expected.put(key, eg);
+      }
+      Test.ensureEqual(g, eg.intValue(), "row=" + row + " key=" + key);
+    }
+    Test.ensureEqual(groups.size(), expected.size(), "");
+
+    // 0.0 and -0.0 are different keys, all NaNs are the same key
+    groups = new GroupKeyMap(1);
+    groups.setDouble(0, 0.0);
+    Test.ensureEqual(groups.group(), 0, "");
+    groups.setDouble(0, -0.0);
+    Test.ensureEqual(groups.group(), 1, "");
+    groups.setDouble(0, Double.NaN);
+    Test.ensureEqual(groups.group(), 2, "");
+    groups.setDouble(0, Double.longBitsToDouble(0x7ff8000000000001L));
+    Test.ensureEqual(groups.group(), 2, "");
+
+    // no keys: everything is in one group
+    groups = new GroupKeyMap(0);
+    Test.ensureEqual(groups.group(), 0, "");
+    Test.ensureEqual(groups.group(), 0, "");
+    Test.ensureEqual(groups.size(), 1, "");
+  }
+}
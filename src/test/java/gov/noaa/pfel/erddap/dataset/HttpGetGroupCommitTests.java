@@ -0,0 +1,86 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.File2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class HttpGetGroupCommitTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /**
+   * This tests that concurrent commits to one file are all written, with just one header, and that
+   * no request is acknowledged before its rows have been synced.
+   */
+  @org.junit.jupiter.api.Test
+  void testConcurrentCommits() throws Throwable {
+    String dir = EDStatic.fullTestCacheDirectory + "httpGetGroupCommit/";
+    String fullFileName = String2.canonical(dir + "test.jsonl");
+    File2.delete(fullFileName);
+    int nThreads = 8;
+    int nPerThread = 50;
+    Table fileTable = new Table();
+    AtomicInteger nUpdates = new AtomicInteger();
+    AtomicInteger nAcknowledged = new AtomicInteger();
+    long nSynced0 = HttpGetGroupCommit.nSyncedRequests();
+    Test.ensureTrue(EDStatic.httpGetSyncWrites, "the default");
+    ArrayList<Throwable> errors = new ArrayList<>();
+
+    ArrayList<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < nThreads; t++) {
+      int tt = t;
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 0; i < nPerThread; i++) {
+                    HttpGetGroupCommit.commit(
+                        fullFileName,
+                        String2.stringToUtf8Bytes("[\"thread\",\"i\"]\n"),
+                        String2.stringToUtf8Bytes("[" + tt + "," + i + "]\n"),
+                        1,
+                        fileTable,
+                        (lastMod, length) -> {
+                          Test.ensureTrue(length > 0, "");
+                          nUpdates.incrementAndGet();
+                        });
+                    // each batch is synced before any of its requests are acknowledged
+                    int acknowledged = nAcknowledged.incrementAndGet();
+                    long synced = HttpGetGroupCommit.nSyncedRequests() - nSynced0;
+                    Test.ensureTrue(
+                        synced >= acknowledged,
+                        "synced=" + synced + " acknowledged=" + acknowledged);
+                  }
+                } catch (Throwable e) {
+                  synchronized (errors) {
+                    errors.add(e);
+                  }
+                }
+              }));
+    }
+    for (Thread thread : threads) thread.start();
+    for (Thread thread : threads) thread.join();
+    Test.ensureEqual(errors.size(), 0, errors.toString());
+    Test.ensureEqual(nUpdates.get(), nThreads * nPerThread, "");
+    Test.ensureEqual(HttpGetGroupCommit.nSyncedRequests() - nSynced0, nThreads * nPerThread, "");
+
+    String lines[] = String2.splitNoTrim(File2.directReadFromUtf8File(fullFileName), '\n');
+    Test.ensureEqual(lines.length, 1 + nThreads * nPerThread + 1, ""); // +1 for last \n
+    Test.ensureEqual(lines[0], "[\"thread\",\"i\"]", "");
+    HashSet<String> set = new HashSet<>();
+    for (int i = 1; i <= nThreads * nPerThread; i++) set.add(lines[i]);
+    Test.ensureEqual(set.size(), nThreads * nPerThread, "each row is written once");
+    Test.ensureTrue(HttpGetGroupCommit.statusString().startsWith("HttpGet ingest"), "");
+    File2.delete(fullFileName);
+  }
+}
@@ -0,0 +1,82 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.ByteArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.array.UIntArray;
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class MappedDirFileTableTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests that a table written by MappedDirFileTable is read back exactly. */
+  @org.junit.jupiter.api.Test
+  void testWriteRead() throws Throwable {
+    String dir = EDStatic.fullTestCacheDirectory + "mappedDirFileTable/";
+    File2.makeDirectory(dir);
+    String fileName = MappedDirFileTable.binFileName(dir + EDD.FILE_TABLE_FILENAME);
+    Test.ensureTrue(fileName.endsWith("/fileTable.bin"), fileName);
+
+    Table table = new Table();
+    table.globalAttributes().set(EDD._dirFileTableVersion_, EDD.DIR_FILE_TABLE_VERSION);
+    table.globalAttributes().set("erddapVersion", "2.99");
+    table.addColumn("dirIndex", new ShortArray(new short[] {0, 1, 1}));
+    table.addColumn("fileList", new StringArray(new String[] {"a.nc", "", "été.nc"}));
+    table.addColumn("lastMod", new LongArray(new long[] {1, Long.MAX_VALUE, -5}));
+    table.addColumn("sortedSpacing", new DoubleArray(new double[] {1.5, Double.NaN, -1}));
+    table.addColumn("x_min_", new FloatArray(new float[] {1.5f, Float.NaN, 3}));
+    table.addColumn("x_max_", new UIntArray(new long[] {0, 4294967295L, 7}));
+    table.addColumn("x_hasNaN_", new ByteArray(new byte[] {0, 1, 0}));
+    table.addColumn("s_min_", new StringArray(new String[] {"A", "B", "a\nlong\tvalue"}));
+    table.columnAttributes(2).set("units", "ms");
+    table.getColumn(5).setMaxIsMV(true);
+
+    MappedDirFileTable.write(table, fileName);
+    Table table2 = MappedDirFileTable.read(fileName, false);
+    Test.ensureEqual(table2.toString(), table.toString(), "");
+    Test.ensureEqual(table2.dataToString(), table.dataToString(), "");
+    Test.ensureEqual(table2.getColumn(5).elementType(), table.getColumn(5).elementType(), "");
+    Test.ensureTrue(table2.getColumn(5).getMaxIsMV(), "");
+    Test.ensureEqual(
+        MappedDirFileTable.readGlobalAttributes(fileName).toString(),
+        table.globalAttributes().toString(),
+        "");
+
+    // just some columns (the others, including String columns, are skipped)
+    Table subset =
+        MappedDirFileTable.read(fileName, new String[] {"s_min_", "fileList", "x_max_", "junk"});
+    Test.ensureEqual(subset.getColumnNamesCSVString(), "fileList,x_max_,s_min_", "");
+    Test.ensureEqual(subset.getColumn(0).toString(), table.getColumn(1).toString(), "");
+    Test.ensureEqual(subset.getColumn(1).toString(), table.getColumn(5).toString(), "");
+    Test.ensureEqual(subset.getColumn(2).toString(), table.getColumn(7).toString(), "");
+    Test.ensureTrue(subset.getColumn(1).getMaxIsMV(), "");
+    Test.ensureEqual(subset.globalAttributes().toString(), table.globalAttributes().toString(), "");
+    Test.ensureEqual(MappedDirFileTable.read(fileName, new String[0]).nColumns(), 0, "");
+
+    // read-only tables are shared until the file changes
+    Table shared = MappedDirFileTable.read(fileName, true);
+    Test.ensureTrue(shared == MappedDirFileTable.read(fileName, true), "");
+    Test.ensureTrue(shared != MappedDirFileTable.read(fileName, false), "");
+    table.getColumn(1).setString(0, "b.nc");
+    MappedDirFileTable.write(table, fileName);
+    MappedDirFileTable.invalidate(fileName);
+    Test.ensureEqual(MappedDirFileTable.read(fileName, true).getColumn(1).getString(0), "b.nc", "");
+
+    // no file
+    File2.delete(fileName);
+    Test.ensureEqual(MappedDirFileTable.read(fileName, true), null, "");
+    Test.ensureEqual(MappedDirFileTable.readGlobalAttributes(fileName), null, "");
+  }
+}
@@ -0,0 +1,78 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.util.BitSet;
+
+class SubsetIndexTests {
+
+  /** This tests selecting rows and getting distinct values with a SubsetIndex. */
+  @org.junit.jupiter.api.Test
+  void testSelect() throws Exception {
+    Table table = new Table();
+    table.addColumn("station", new StringArray(new String[] {"b", "a", "b", "c", "a", ""}));
+    table.addColumn("depth", new IntArray(new int[] {5, 10, 10, Integer.MAX_VALUE, 5, 5}));
+    // 3 times on 2 days
+    table.addColumn("time", new DoubleArray(new double[] {0, 3600, 86400, 0, 86400, 7200}));
+    table.getColumn(1).setMaxIsMV(true);
+    table.columnAttributes(0).set("long_name", "Station");
+    SubsetIndex index =
+        new SubsetIndex(
+            null,
+            table,
+            new boolean[] {false, false, true},
+            new String[] {null, null, "1970-01-01"});
+    Test.ensureTrue(!index.isCurrent(), "");
+
+    // distinct values in all rows
+    BitSet keep = index.allRows();
+    Test.ensureEqual(
+        String2.toCSSVString(index.distinctValues(0, keep).toStringArray()), ", a, b, c", "");
+    Test.ensureEqual(index.distinctValues(1, keep).toString(), "5, 10, 2147483647", "");
+    Test.ensureEqual(
+        String2.toCSSVString(index.distinctValues(2, keep).toStringArray()),
+        "1970-01-01, 1970-01-02",
+        "");
+    Test.ensureEqual(index.distinctSourceValues(2).toString(), "0.0, 3600.0, 7200.0, 86400.0", "");
+
+    // select station=b
+    index.and(keep, 0, "b");
+    Test.ensureEqual(keep.toString(), "{0, 2}", "");
+    Test.ensureEqual(index.distinctValues(1, keep).toString(), "5, 10", "");
+    Test.ensureEqual(
+        String2.toCSSVString(index.distinctValues(2, keep).toStringArray()),
+        "1970-01-01, 1970-01-02",
+        "");
+
+    // then time=1970-01-01
+    index.and(keep, 2, "1970-01-01");
+    Test.ensureEqual(keep.toString(), "{0}", "");
+
+    // a numeric missing value is "NaN" on the .subset web page
+    keep = index.allRows();
+    index.and(keep, 1, "NaN");
+    Test.ensureEqual(keep.toString(), "{3}", "");
+
+    // an unknown value selects nothing
+    keep = index.allRows();
+    index.and(keep, 0, "zz");
+    Test.ensureEqual(keep.cardinality(), 0, "");
+
+    // subsetTable is a copy
+    keep = index.allRows();
+    index.and(keep, 2, "1970-01-02");
+    Table subset = index.subsetTable(keep);
+    Test.ensureEqual(String2.toCSSVString(subset.getColumn(0).toStringArray()), "b, a", "");
+    Test.ensureEqual(subset.getColumn(1).toString(), "10, 5", "");
+    Test.ensureEqual(subset.columnAttributes(0).getString("long_name"), "Station", "");
+    subset.columnAttributes(0).set("long_name", "changed");
+    subset.getColumn(0).setString(0, "changed");
+    Test.ensureEqual(table.columnAttributes(0).getString("long_name"), "Station", "");
+    Test.ensureEqual(table.getColumn(0).getString(2), "b", "");
+    Test.ensureEqual(index.subsetTable(null).nRows(), 6, "");
+  }
+}
@@ -1,6 +1,7 @@
 package gov.noaa.pfel.erddap.util;
 
 import com.cohort.array.Attributes;
+import com.cohort.util.Math2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
 
@@ -40,4 +41,19 @@ class EDStaticTests {
             + "    sourceUrl=http://coastwatch.pfel.noaa.gov\n"; // unchanged
     Test.ensureEqual(results, expected, "results=\n" + results);
   }
+
+  /** This tests reserveMemory and releaseMemory. */
+  @org.junit.jupiter.api.Test
+  void testReserveMemory() throws Exception {
+    long reserved = EDStatic.reservedMemoryBytes();
+    Test.ensureTrue(EDStatic.reserveMemory(Math2.BytesPerMB), "");
+    Test.ensureEqual(EDStatic.reservedMemoryBytes(), reserved + Math2.BytesPerMB, "");
+    // too much, by itself or with the other reservations
+    Test.ensureTrue(!EDStatic.reserveMemory(Math2.maxSafeMemory), "");
+    Test.ensureTrue(!EDStatic.reserveMemory(Math2.maxSafeMemory / 4), "");
+    Test.ensureEqual(EDStatic.reservedMemoryBytes(), reserved + Math2.BytesPerMB, "");
+    EDStatic.releaseMemory(Math2.BytesPerMB);
+    Test.ensureEqual(EDStatic.reservedMemoryBytes(), reserved, "");
+    Test.ensureTrue(EDStatic.reserveMemory(0), "");
+  }
 }
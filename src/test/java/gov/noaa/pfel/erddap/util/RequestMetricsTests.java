@@ -0,0 +1,72 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class RequestMetricsTests {
+
+  /** This tests the histogram's buckets and quantiles. */
+  @org.junit.jupiter.api.Test
+  void testHistogram() throws Exception {
+    // each time is in a bucket which includes it, and the buckets are in order
+    long previousUpper = -1;
+    for (long millis = 0; millis < 100000; millis++) {
+      int bucket = RequestMetrics.Histogram.bucket(millis);
+      long upper = RequestMetrics.Histogram.upperBound(bucket);
+      Test.ensureTrue(millis <= upper, "millis=" + millis);
+      Test.ensureTrue(bucket == 0 || millis > RequestMetrics.Histogram.upperBound(bucket - 1), "");
+      Test.ensureTrue(upper <= millis * 1.25 + 1, "millis=" + millis + " upper=" + upper);
+      Test.ensureTrue(upper >= previousUpper, "");
+      previousUpper = upper;
+    }
+    Test.ensureEqual(
+        RequestMetrics.Histogram.bucket(Long.MAX_VALUE),
+        RequestMetrics.Histogram.N_BUCKETS - 1,
+        "");
+
+    RequestMetrics.Histogram h = new RequestMetrics.Histogram();
+    Test.ensureEqual(h.quantileMillis(0.5), 0, "");
+    for (int i = 1; i <= 100; i++) h.record(i);
+    Test.ensureEqual(h.count(), 100, "");
+    Test.ensureEqual(h.sumMillis(), 5050, "");
+    Test.ensureEqual(h.quantileMillis(0.5), 55, ""); // the bucket 48 - 55
+    Test.ensureEqual(h.quantileMillis(0.99), 111, ""); // the bucket 96 - 111
+    Test.ensureEqual(h.quantileMillis(0), 1, "");
+  }
+
+  /** This tests that concurrent updates aren't lost. */
+  @org.junit.jupiter.api.Test
+  void testConcurrency() throws Exception {
+    RequestMetrics.Histogram h = new RequestMetrics.Histogram();
+    int distribution[] = new int[String2.TimeDistributionSize];
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    for (int t = 0; t < 8; t++)
+      pool.submit(
+          () -> {
+            for (int i = 0; i < 100000; i++) {
+              h.record(5);
+              String2.distributeTime(5, distribution);
+            }
+          });
+    pool.shutdown();
+    Test.ensureTrue(pool.awaitTermination(1, TimeUnit.MINUTES), "");
+    Test.ensureEqual(h.count(), 800000, "");
+    Test.ensureEqual(String2.getTimeDistributionN(distribution), 800000, "");
+  }
+
+  /** This tests CountingOutputStream. */
+  @org.junit.jupiter.api.Test
+  void testCountingOutputStream() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    RequestMetrics.CountingOutputStream out = new RequestMetrics.CountingOutputStream(baos);
+    out.write('a');
+    out.write(new byte[] {1, 2, 3, 4}, 1, 2);
+    out.write(new byte[10]);
+    Test.ensureEqual(out.nBytes(), 13, "");
+    Test.ensureEqual(baos.size(), 13, "");
+  }
+}
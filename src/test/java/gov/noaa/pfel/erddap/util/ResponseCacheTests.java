@@ -0,0 +1,70 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.Calendar2;
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class ResponseCacheTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests that trim deletes the least recently used files first, but not very new files. */
+  @org.junit.jupiter.api.Test
+  void testTrim() throws Throwable {
+    String dir = EDStatic.fullTestCacheDirectory + "responseCache/";
+    File2.deleteAllFiles(dir, true, true);
+    File2.makeDirectory(dir + "sub/");
+    String content = "x".repeat(1000);
+    String names[] = {"a", "b", "sub/c", "d", "e"};
+    for (int i = 0; i < names.length; i++) {
+      File2.writeToFileUtf8(dir + names[i], content);
+      // a is the oldest, e is new (so it can't be deleted)
+      if (i < 4) File2.touch(dir + names[i], (10 - i) * Calendar2.MILLIS_PER_MINUTE);
+    }
+
+    // big enough: nothing is deleted
+    Test.ensureEqual(ResponseCache.trim(dir, 5000), 0, "");
+
+    // a and b are the least recently used
+    Test.ensureEqual(ResponseCache.trim(dir, 3000), 2, "");
+    Test.ensureTrue(!File2.isFile(dir + "a") && !File2.isFile(dir + "b"), "");
+    Test.ensureTrue(File2.isFile(dir + "sub/c") && File2.isFile(dir + "d"), "");
+
+    // e is too new to be deleted
+    Test.ensureEqual(ResponseCache.trim(dir, 0), 2, "");
+    Test.ensureTrue(File2.isFile(dir + "e"), "");
+
+    // isCached: unique (_U) names aren't counted as hits or misses
+    String status = ResponseCache.statusString();
+    Test.ensureTrue(status.startsWith("ResponseCache: hits="), status);
+    Test.ensureTrue(ResponseCache.isCached(dir + "e", false, true), "");
+    Test.ensureTrue(!ResponseCache.isCached(dir + "a", false, true), "");
+    Test.ensureEqual(ResponseCache.statusString(), status, "");
+    Test.ensureTrue(ResponseCache.isCached(dir + "e", true, false), "");
+    Test.ensureTrue(!ResponseCache.isCached(dir + "a", false, false), "");
+    Test.ensureTrue(!ResponseCache.statusString().equals(status), "");
+    status = ResponseCache.statusString();
+    ResponseCache.countMiss(true);
+    Test.ensureEqual(ResponseCache.statusString(), status, "");
+    ResponseCache.countMiss(false);
+    Test.ensureTrue(!ResponseCache.statusString().equals(status), "");
+    File2.deleteAllFiles(dir, true, true);
+  }
+
+  /** This tests which queries use relative times, so their responses can't be reused. */
+  @org.junit.jupiter.api.Test
+  void testUsesNow() throws Throwable {
+    Test.ensureTrue(ResponseCache.usesNow("time,sst&time>=now-1day"), "");
+    Test.ensureTrue(ResponseCache.usesNow("sst[(NOW-7days):1:(now)][0][0]"), "");
+    Test.ensureTrue(ResponseCache.usesNow("time,sst&time>=max(time)-1day&time<now"), "");
+    Test.ensureTrue(!ResponseCache.usesNow("time,snow_depth&snow_depth>1"), "");
+    Test.ensureTrue(!ResponseCache.usesNow("sst[(2020-01-01):1:(last)][0][0]"), "");
+    Test.ensureTrue(!ResponseCache.usesNow(""), "");
+    Test.ensureTrue(!ResponseCache.usesNow(null), "");
+  }
+}
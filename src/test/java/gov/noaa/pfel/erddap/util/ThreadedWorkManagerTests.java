@@ -0,0 +1,64 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.array.IntArray;
+import com.cohort.util.Math2;
+import com.cohort.util.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class ThreadedWorkManagerTests {
+
+  private static boolean oldUseSharedWorkerPool;
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+    oldUseSharedWorkerPool = EDStatic.useSharedWorkerPool;
+  }
+
+  @AfterAll
+  static void cleanUp() {
+    EDStatic.useSharedWorkerPool = oldUseSharedWorkerPool;
+    if (!oldUseSharedWorkerPool) SharedWorkerPool.shutdown();
+  }
+
+  /** This ensures results are processed in the order the tasks were added. */
+  private static void testOrderedResults(int nThreads) throws Throwable {
+    IntArray results = new IntArray();
+    ThreadedWorkManager<Integer> workManager =
+        new ThreadedWorkManager<>(nThreads, result -> results.add(result));
+    for (int i = 0; i < 20; i++) {
+      int ti = i;
+      workManager.addTask(
+          () -> {
+            Math2.sleep((20 - ti) * 2); // later tasks finish first
+            return ti;
+          });
+    }
+    workManager.finishedEnqueing();
+    workManager.processResults();
+    Test.ensureEqual(
+        results.toString(),
+        "0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19",
+        "nThreads=" + nThreads);
+  }
+
+  @org.junit.jupiter.api.Test
+  void testPerRequestPool() throws Throwable {
+    EDStatic.useSharedWorkerPool = false;
+    testOrderedResults(1);
+    testOrderedResults(4);
+  }
+
+  @org.junit.jupiter.api.Test
+  void testSharedPool() throws Throwable {
+    EDStatic.useSharedWorkerPool = true;
+    SharedWorkerPool.initialize(3, false);
+    testOrderedResults(4);
+
+    SharedWorkerPool.initialize(3, true);
+    testOrderedResults(4);
+    Test.ensureEqual(SharedWorkerPool.queueDepth(), 0, "");
+  }
+}